@@ -40,9 +40,11 @@ public class MeteringService extends ResourceService {
 
     public static final String HOUR_BUCKET_TIME_FORMAT = "yyyy-MM-dd'T'HH";
     public static final String MINUTE_BUCKET_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm";
+    public static final String DAY_BUCKET_TIME_FORMAT = "yyyy-MM-dd";
+    public static final String MONTH_BUCKET_TIME_FORMAT = "yyyy-MM";
 
     public static final String BAD_TIMEBUCKET_MSG = "Error: time_bucket parameter format supplied is not valid.\n"
-            + "Acceptable formats: yyyy-MM-dd'T'HH , yyyy-MM-dd'T'HH:mm";
+            + "Acceptable formats: yyyy-MM-dd'T'HH , yyyy-MM-dd'T'HH:mm , yyyy-MM-dd , yyyy-MM";
 
     public StatRetriever getStatRetriever() {
         return _statRetriever;
@@ -53,10 +55,12 @@ public class MeteringService extends ResourceService {
     }
 
     /**
-     * Retrieves the bulk metering stats for all resources in a specified time bucket (minute or hour).
+     * Retrieves the bulk metering stats for all resources in a specified time bucket (minute, hour, day or month).
+     * A day bucket returns the last stats of each resource in each hour of the day, a month bucket
+     * the last stats of each resource in each day of the month.
      * 
      * @param time_bucket required Time bucket for retrieval of stats. Acceptable formats are: yyyy-MM-dd'T'HH for hour bucket,
-     *            yyyy-MM-dd'T'HH:mm for minute bucket
+     *            yyyy-MM-dd'T'HH:mm for minute bucket, yyyy-MM-dd for day bucket, yyyy-MM for month bucket
      * @brief List metering statistics for time period
      * @return - Output stream of stats or an error status.
      */
@@ -85,6 +89,10 @@ public class MeteringService extends ResourceService {
                 HOUR_BUCKET_TIME_FORMAT).withZoneUTC();
         DateTimeFormatter dfMinuteFormat = DateTimeFormat.forPattern(
                 MINUTE_BUCKET_TIME_FORMAT).withZoneUTC();
+        DateTimeFormatter dfDayFormat = DateTimeFormat.forPattern(
+                DAY_BUCKET_TIME_FORMAT).withZoneUTC();
+        DateTimeFormatter dfMonthFormat = DateTimeFormat.forPattern(
+                MONTH_BUCKET_TIME_FORMAT).withZoneUTC();
         DateTime timeBucket = null;
         TimeBucket granularity = TimeBucket.HOUR;
 
@@ -97,6 +105,12 @@ public class MeteringService extends ResourceService {
                     .length() - 2)) {
                 timeBucket = dfMinuteFormat.parseDateTime(timeBucketParam);
                 granularity = TimeSeriesMetadata.TimeBucket.MINUTE;
+            } else if ((null != timeBucketParam) && (timeBucketParam.length() == DAY_BUCKET_TIME_FORMAT.length())) {
+                timeBucket = dfDayFormat.parseDateTime(timeBucketParam);
+                granularity = TimeSeriesMetadata.TimeBucket.DAY;
+            } else if ((null != timeBucketParam) && (timeBucketParam.length() == MONTH_BUCKET_TIME_FORMAT.length())) {
+                timeBucket = dfMonthFormat.parseDateTime(timeBucketParam);
+                granularity = TimeSeriesMetadata.TimeBucket.MONTH;
             } else {
                 throw APIException.badRequests.invalidTimeBucket(timeBucketParam);
             }
@@ -119,7 +133,7 @@ public class MeteringService extends ResourceService {
      * @param timeBucket
      *            - time_bucket for retrieval of stats
      * @param granularity
-     *            - granularity can be HOUR or MINUTE
+     *            - granularity can be MONTH, DAY, HOUR or MINUTE
      * @param mediaType
      *            - mediaType application/xml (default) or application/json
      * @return StreamingOuput() - produces StreamingOutput of Stats
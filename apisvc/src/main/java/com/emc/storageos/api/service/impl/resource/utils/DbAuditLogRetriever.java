@@ -6,6 +6,9 @@
 package com.emc.storageos.api.service.impl.resource.utils;
 
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.ws.rs.core.MediaType;
 
 import com.emc.storageos.security.audit.AuditLogRequest;
@@ -68,10 +71,13 @@ public class DbAuditLogRetriever extends AbstractDbRetriever implements AuditLog
         marshaller.header(writer);
 
         log.info("Query time bucket  {} to {}", start,end);
+        // all hours are read at once and streamed to the marshaller in time order
+        List<DateTime> timeBuckets = new ArrayList<DateTime>();
         for ( ; !start.isAfter(end.toInstant());start = start.plusHours(1)){
-            dbClient.queryTimeSeries(AuditLogTimeSeries.class, start, bucket, result,
-                    getThreadPool());
+            timeBuckets.add(start);
         }
+        dbClient.queryTimeSeries(AuditLogTimeSeries.class, timeBuckets, bucket, result,
+                getThreadPool());
         result.outputCount();
 
         marshaller.tailer(writer);
@@ -9,7 +9,10 @@ import javax.ws.rs.core.MediaType;
 import org.joda.time.DateTime;
 
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
+import com.emc.storageos.db.client.model.StatDailyRollupTimeSeries;
+import com.emc.storageos.db.client.model.StatHourlyRollupTimeSeries;
 import com.emc.storageos.db.client.model.StatTimeSeries;
+import com.emc.storageos.db.client.model.TimeSeries;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 
 public class DbStatRetriever extends AbstractDbRetriever implements StatRetriever {
@@ -26,8 +29,23 @@ public class DbStatRetriever extends AbstractDbRetriever implements StatRetrieve
         }
 
         MeteringQueryResults result = new MeteringQueryResults(marshaller, out);
-        dbClient.queryTimeSeries(StatTimeSeries.class, timeBucket,
+        dbClient.queryTimeSeries(getTimeSeries(granularity), timeBucket,
                 granularity, result, getThreadPool());
         marshaller.tailer(out);
     }
+
+    /**
+     * Day and month queries are answered from the hourly and daily rollups, which
+     * hold one stat per resource and hour or day instead of every collected stat.
+     */
+    private static Class<? extends TimeSeries> getTimeSeries(TimeBucket granularity) {
+        switch (granularity) {
+            case DAY:
+                return StatHourlyRollupTimeSeries.class;
+            case MONTH:
+                return StatDailyRollupTimeSeries.class;
+            default:
+                return StatTimeSeries.class;
+        }
+    }
 }
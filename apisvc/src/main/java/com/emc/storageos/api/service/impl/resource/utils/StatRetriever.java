@@ -17,7 +17,7 @@ public interface StatRetriever {
      * @param timeBucket
      *            - time-bucket for retrieval of stats
      * @param granularity
-     *            - granularity can be HOUR or MINUTE
+     *            - granularity can be MONTH, DAY, HOUR or MINUTE
      * @param MediaType
      *            - mediaType application/xml (default) or application/json
      * @param PrintWriter
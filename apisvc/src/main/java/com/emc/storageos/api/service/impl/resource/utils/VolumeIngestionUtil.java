@@ -1375,10 +1375,10 @@ public class VolumeIngestionUtil {
             DbClient dbClient) {
         List<UnManagedExportMask> unManagedMasks = new ArrayList<UnManagedExportMask>();
         for (UnManagedExportMask mask : masks) {
-            @SuppressWarnings("deprecation")
-            List<URI> maskUris = dbClient.queryByConstraint(AlternateIdConstraint.Factory
-                    .getExportMaskByNameConstraint(mask.getLabel()));
-            if (null == maskUris || maskUris.isEmpty()) {
+            // only existence matters, stop reading the index at the first hit
+            boolean ingested = dbClient.streamByConstraint(AlternateIdConstraint.Factory
+                    .getExportMaskByNameConstraint(mask.getLabel()), new URIQueryResultList(), 1).findFirst().isPresent();
+            if (!ingested) {
                 unManagedMasks.add(mask);
             } else {
                 _logger.info("Export Mask {} already ingested ", mask.getLabel());
@@ -1396,11 +1396,10 @@ public class VolumeIngestionUtil {
      */
     public static ExportMask getExportsMaskAlreadyIngested(UnManagedExportMask mask, DbClient dbClient) {
         ExportMask exportMask = null;
-        @SuppressWarnings("deprecation")
-        List<URI> maskUris = dbClient.queryByConstraint(AlternateIdConstraint.Factory
-                .getExportMaskByNameConstraint(mask.getMaskName()));
-        if (null != maskUris && !maskUris.isEmpty()) {
-            return dbClient.queryObject(ExportMask.class, maskUris.get(0));
+        URI maskUri = dbClient.streamByConstraint(AlternateIdConstraint.Factory
+                .getExportMaskByNameConstraint(mask.getMaskName()), new URIQueryResultList(), 1).findFirst().orElse(null);
+        if (null != maskUri) {
+            return dbClient.queryObject(ExportMask.class, maskUri);
         }
 
         return exportMask;
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -409,6 +410,15 @@ public class DummyDBClient implements DbClient {
         }
     }
 
+    @Override
+    public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
+            List<DateTime> timeBuckets, TimeBucket bucket, TimeSeriesQueryResult<T> callback,
+            ExecutorService workerThreads) throws DatabaseException {
+        for (DateTime timeBucket : timeBuckets) {
+            queryTimeSeries(tsType, timeBucket, bucket, callback, workerThreads);
+        }
+    }
+
     @Override
     public TimeSeriesMetadata queryTimeSeriesMetadata(Class<? extends TimeSeries> tsType) throws DatabaseException {
         // TODO Auto-generated method stub
@@ -438,6 +448,11 @@ public class DummyDBClient implements DbClient {
             throws DatabaseException {
     }
 
+    @Override
+    public <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize) {
+        return null;
+    }
+
     @Override
     public Operation createTaskOpStatus(Class<? extends DataObject> clazz, URI id, String opId,
             Operation newOperation) throws DatabaseException {
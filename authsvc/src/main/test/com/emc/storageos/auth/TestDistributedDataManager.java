@@ -88,11 +88,32 @@ public class TestDistributedDataManager implements DistributedDataManager {
         _dataMap.put(path, data);
     }
 
+    @Override
+    public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes)
+            throws Exception {
+        _dataMap.putAll(creates);
+        _dataMap.putAll(updates);
+        for (String path : removes) {
+            _dataMap.remove(path);
+        }
+    }
+
     @Override
     public Object getData(String path, boolean watch) throws Exception {
         return _dataMap.get(path);
     }
 
+    @Override
+    public Object getData(String path, Stat stat) throws Exception {
+        return _dataMap.get(path);
+    }
+
+    @Override
+    public boolean putData(String path, Object data, int version) throws Exception {
+        _dataMap.put(path, data);
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -5,7 +5,6 @@
 package com.emc.storageos.networkcontroller;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.text.MessageFormat;
 import java.util.regex.Matcher;
@@ -20,9 +19,13 @@ public class SSHDialog {
     private static final Logger _log = LoggerFactory.getLogger(SSHDialog.class);
     SSHSession session;
     protected Integer defaultTimeout;   // default timeout in milliseconds
-    InputStreamReader insr;
+    SSHReceiveBuffer received;
     OutputStreamWriter oswr;
     protected String devname = "__unknown__device__";
+    private final SSHPromptMatcher promptMatcher = new SSHPromptMatcher();
+    private volatile boolean failed = false;
+    // quiet time after which the input is checked for prompts when delayMatchCheck is set
+    private static final long DELAY_MATCH_CHECK_MSEC = 10;
 
     public SSHDialog(SSHSession session, Integer defaultTimeout) {
         this.session = session;
@@ -30,26 +33,17 @@ public class SSHDialog {
             defaultTimeout = 60000;
         }
         this.defaultTimeout = defaultTimeout;
-        this.insr = new InputStreamReader(session.ins);
+        this.received = session.received;
         this.oswr = new OutputStreamWriter(session.outs);
     }
 
-    private SSHPrompt checkForPrompt(String buf, SSHPrompt[] prompts) throws NetworkDeviceControllerException {
-        for (SSHPrompt p : prompts) {
-            String regex = p.getRegex();
-            if (regex.contains("<<devname>>")) {
-                regex = regex.replace("<<devname>>", "\\Q" + devname + "\\E");
-            }
-            regex = "(?sm).*" + regex;
-            // Only check the last few lines of the buffer for the prompt as
-            // it is always at the end and checking the full buffer can be costly
-            String substring = buf.substring(Math.max(0, (buf.length() - 1024)));
-            _log.debug("Checking prompts in " + substring);
-            if (substring.matches(regex)) {
-                return p;
-            }
+    private SSHPrompt checkForPrompt(CharSequence buf, SSHPrompt[] prompts) throws NetworkDeviceControllerException {
+        // Only check the last few lines of the buffer for the prompt as
+        // it is always at the end and checking the full buffer can be costly
+        if (_log.isDebugEnabled()) {
+            _log.debug("Checking prompts in " + buf.subSequence(Math.max(0, buf.length() - SSHPromptMatcher.WINDOW), buf.length()));
         }
-        return SSHPrompt.NOMATCH;
+        return promptMatcher.match(buf, prompts, devname);
     }
 
     /**
@@ -67,50 +61,54 @@ public class SSHDialog {
             timeout = defaultTimeout;
         }
         buf.setLength(0);
-        char[] input = new char[32670];
         int nread = 0;
         long start = 0;
         long lastInputTime = System.currentTimeMillis();
-        while (System.currentTimeMillis() - lastInputTime < timeout && nread != -1) {
-            try {
-                Thread.sleep(10);
-                if (insr.ready()) {
-                    nread = insr.read(input);
-                    _log.debug("insr is ready and the buffer will be appended by " + String.valueOf(input));
-                    if (nread != -1) {
+        boolean interrupted = false;
+        try {
+            while (nread != -1) {
+                long remaining = timeout - (System.currentTimeMillis() - lastInputTime);
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    // wakes up as soon as input arrives
+                    nread = received.read(buf, remaining);
+                    if (nread > 0) {
                         lastInputTime = System.currentTimeMillis();
-                        buf.append(input, 0, nread);
                         if (delayMatchCheck) {
-                            Thread.sleep(10);
+                            // check once the input pauses
+                            while (received.read(buf, DELAY_MATCH_CHECK_MSEC) > 0) {
+                                lastInputTime = System.currentTimeMillis();
+                            }
                         }
-                        start = System.currentTimeMillis();
-                        _log.debug("Checking for prompts in new input: " + String.valueOf(input));
-                        SSHPrompt px = checkForPrompt(buf.toString(), prompts);
-                        _log.debug("Checking for prompts in new input only took " + (System.currentTimeMillis() - start));
-                        if (px != SSHPrompt.NOMATCH) {
-                            _log.debug("Prompt found " + px);
-                            return px;
+                        if (_log.isDebugEnabled()) {
+                            _log.debug("Received " + nread + " characters, " + buf.length() + " in total");
                         }
-                    } else {
-                        _log.debug("Reached EOF. Will check the full buffer for prompts");
                         start = System.currentTimeMillis();
-                        SSHPrompt px = checkForPrompt(buf.toString(), prompts);
-                        _log.debug("Checking for prompts in the full buffer took " + (System.currentTimeMillis() - start));
+                        SSHPrompt px = checkForPrompt(buf, prompts);
+                        _log.debug("Checking for prompts in new input only took {}", System.currentTimeMillis() - start);
                         if (px != SSHPrompt.NOMATCH) {
+                            _log.debug("Prompt found {}", px);
                             return px;
                         }
+                    } else if (nread == -1) {
+                        _log.debug("Reached EOF. Will check the full buffer for prompts");
                     }
+                } catch (InterruptedException ex) {
+                    _log.error(ex.getLocalizedMessage());
+                    interrupted = true;
                 }
-
-            } catch (IOException ex) {
-                _log.error(ex.getLocalizedMessage());
-            } catch (InterruptedException ex) {
-                _log.error(ex.getLocalizedMessage());
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
 
-        SSHPrompt prompt = checkForPrompt(buf.toString(), prompts);
+        SSHPrompt prompt = checkForPrompt(buf, prompts);
         if (prompt == SSHPrompt.NOMATCH) {
+            failed = true;
             StringBuffer expectedPrompts = new StringBuffer("Expected one of these prompts, but not found: ");
             for (SSHPrompt chkPrompt : prompts) {
                 expectedPrompts.append(chkPrompt.toString()).append("(" + chkPrompt.getRegex() + "), ");
@@ -120,6 +118,25 @@ public class SSHDialog {
         return prompt;
     }
 
+    /**
+     * Drops the characters received and not read yet, e.g. the rest of the output of a
+     * command which timed out, so that they are not taken for the output of the next one.
+     */
+    public void discardInput() {
+        int count = received.discard();
+        if (count > 0) {
+            _log.debug("Discarded {} characters", count);
+        }
+    }
+
+    /**
+     * @return true if waiting for a prompt timed out or sending failed, which leaves
+     *         the dialog out of step with the device
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
     protected String[] getLines(StringBuilder buf) {
         String[] lines = buf.toString().split("[\n\r]+");
         return lines;
@@ -147,6 +164,7 @@ public class SSHDialog {
 
             prompt = waitFor(prompts, timeout, buf, false);
         } catch (Exception ex) {
+            failed = true;
             _log.error("Exception sending string: {},  recevied: {}", send, buf);
             throw new NetworkDeviceControllerException(ex);
         }
@@ -169,6 +187,7 @@ public class SSHDialog {
             oswr.flush();
             _log.debug("Sent: " + send);
         } catch (IOException ex) {
+            failed = true;
             String msg = "Exception sending string: " + send + " " + ex.getLocalizedMessage();
             _log.error(msg);
         }
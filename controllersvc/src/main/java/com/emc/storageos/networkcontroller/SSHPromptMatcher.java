@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the prompts of a dialog at the end of the characters received.
+ *
+ * A prompt is always at the end of the received characters, so only the last WINDOW
+ * characters are matched, however long the output of the command is, and they are read
+ * straight from the receive buffer rather than from a copy of it. The prompt regular
+ * expressions are compiled once per device name instead of on every check.
+ */
+public class SSHPromptMatcher {
+    /** Number of characters at the end of the received characters a prompt is looked for in */
+    public static final int WINDOW = 1024;
+
+    private static final String DEVNAME = "<<devname>>";
+
+    private final Map<SSHPrompt, Pattern> patterns = new EnumMap<SSHPrompt, Pattern>(SSHPrompt.class);
+    private String devname;
+
+    /**
+     * Returns the first of the prompts found at the end of buf.
+     *
+     * @param buf -- the characters received.
+     * @param prompts -- List of possible prompts.
+     * @param devname -- the device name substituted for <<devname>> in the prompts.
+     * @return the prompt found, or SSHPrompt.NOMATCH
+     */
+    public synchronized SSHPrompt match(CharSequence buf, SSHPrompt[] prompts, String devname) {
+        if (!devname.equals(this.devname)) {
+            patterns.clear();
+            this.devname = devname;
+        }
+        CharSequence tail = buf.subSequence(Math.max(0, buf.length() - WINDOW), buf.length());
+        for (SSHPrompt prompt : prompts) {
+            if (getPattern(prompt).matcher(tail).matches()) {
+                return prompt;
+            }
+        }
+        return SSHPrompt.NOMATCH;
+    }
+
+    private Pattern getPattern(SSHPrompt prompt) {
+        Pattern pattern = patterns.get(prompt);
+        if (pattern == null) {
+            String regex = prompt.getRegex();
+            if (regex.contains(DEVNAME)) {
+                regex = regex.replace(DEVNAME, "\\Q" + devname + "\\E");
+            }
+            pattern = Pattern.compile("(?sm).*" + regex);
+            patterns.put(prompt, pattern);
+        }
+        return pattern;
+    }
+}
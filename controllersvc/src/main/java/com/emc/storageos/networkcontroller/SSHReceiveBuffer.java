@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Characters received on an SSH channel. The channel writes the bytes it receives into the
+ * buffer from the session thread, and the dialog waits for them with a timeout instead of
+ * polling the channel input stream. Bytes are decoded with the default charset, as the
+ * InputStreamReader used before, a character split across two writes being decoded once
+ * its last byte arrives.
+ */
+public class SSHReceiveBuffer extends OutputStream {
+    private final CharsetDecoder decoder;
+    private final StringBuilder received = new StringBuilder();
+    // bytes of a character not completely received yet
+    private ByteBuffer partial = ByteBuffer.allocate(0);
+    private boolean closed = false;
+
+    public SSHReceiveBuffer() {
+        this(Charset.defaultCharset());
+    }
+
+    public SSHReceiveBuffer(Charset charset) {
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.allocate(partial.remaining() + len);
+        in.put(partial).put(b, off, len).flip();
+        CharBuffer out = CharBuffer.allocate((int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte()));
+        decoder.decode(in, out, false);
+        out.flip();
+        received.append(out);
+        partial = in.slice();
+        if (out.hasRemaining()) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Called by the channel when it reaches end of file.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Moves the characters received so far to the end of buf, waiting for some if there are none.
+     *
+     * @param buf -- OUTPUT parameter the characters are appended to.
+     * @param timeout -- maximum time to wait in milliseconds.
+     * @return the number of characters appended, 0 if none arrived within the timeout,
+     *         or -1 if the channel reached end of file and all the characters were read.
+     * @throws InterruptedException
+     */
+    public synchronized int read(StringBuilder buf, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (received.length() == 0 && !closed && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        int count = received.length();
+        if (count == 0) {
+            return closed ? -1 : 0;
+        }
+        buf.append(received);
+        received.setLength(0);
+        return count;
+    }
+
+    /**
+     * @return true if characters were received and not read yet
+     */
+    public synchronized boolean ready() {
+        return received.length() > 0;
+    }
+
+    /**
+     * Drops the characters received and not read yet.
+     *
+     * @return the number of characters dropped
+     */
+    public synchronized int discard() {
+        int count = received.length();
+        received.setLength(0);
+        return count;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
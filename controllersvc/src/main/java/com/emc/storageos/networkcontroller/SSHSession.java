@@ -4,7 +4,6 @@
  */
 package com.emc.storageos.networkcontroller;
 
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Hashtable;
 
@@ -21,8 +20,9 @@ public class SSHSession {
     JSch jsch;
     Session session;
     Channel channel;
-    InputStream ins;
+    SSHReceiveBuffer received;
     OutputStream outs;
+    long connectedAt;
 
     private static final Logger _log = LoggerFactory.getLogger(SSHSession.class);
     static final Integer timeout = 15000;           // in milliseconds
@@ -44,10 +44,12 @@ public class SSHSession {
         channel = session.openChannel("shell");
         ((ChannelShell) channel).setPtyType("vt102");
         // channel.setInputStream(System.in);
-        // channel.setOutputStream(System.out);
-        ins = channel.getInputStream();
+        // the channel writes what it receives into the buffer, the dialog waits on it
+        received = new SSHReceiveBuffer();
+        channel.setOutputStream(received);
         outs = channel.getOutputStream();
         channel.connect(connectTimeout);
+        connectedAt = System.currentTimeMillis();
     }
 
     public void setTimeout(int timeout) {
@@ -62,6 +64,13 @@ public class SSHSession {
         return channel.isConnected();
     }
 
+    /**
+     * @return time the session was connected
+     */
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
     public void disconnect() {
         channel.disconnect();
         session.disconnect();
@@ -79,8 +88,8 @@ public class SSHSession {
         return channel;
     }
 
-    public InputStream getIns() {
-        return ins;
+    public SSHReceiveBuffer getReceived() {
+        return received;
     }
 
     public OutputStream getOuts() {
@@ -65,6 +65,7 @@ import com.emc.storageos.networkcontroller.NetworkController;
 import com.emc.storageos.networkcontroller.NetworkFCContext;
 import com.emc.storageos.networkcontroller.NetworkFCZoneInfo;
 import com.emc.storageos.networkcontroller.exceptions.NetworkDeviceControllerException;
+import com.emc.storageos.networkcontroller.impl.NetworkZoningPipeline.ZoningRequest;
 import com.emc.storageos.networkcontroller.impl.mds.Zone;
 import com.emc.storageos.networkcontroller.impl.mds.ZoneMember;
 import com.emc.storageos.networkcontroller.impl.mds.ZoneMember.ConnectivityMemberType;
@@ -112,6 +113,7 @@ public class NetworkDeviceController implements NetworkController {
     private CustomConfigHandler customConfigHandler;
 
     private RecordableEventManager _eventManager;
+    private NetworkZoningPipeline _zoningPipeline;
 
     public void setEventManager(RecordableEventManager eventManager) {
         _eventManager = eventManager;
@@ -137,6 +139,18 @@ public class NetworkDeviceController implements NetworkController {
         _networkScheduler = networkScheduler;
     }
 
+    public void setZoningPipeline(NetworkZoningPipeline zoningPipeline) {
+        _zoningPipeline = zoningPipeline;
+    }
+
+    private synchronized NetworkZoningPipeline getZoningPipeline() {
+        if (_zoningPipeline == null) {
+            _zoningPipeline = new NetworkZoningPipeline();
+            _zoningPipeline.setCoordinator(_coordinator);
+        }
+        return _zoningPipeline;
+    }
+
     public NetworkScheduler getNetworkScheduler() {
         return _networkScheduler;
     }
@@ -357,9 +371,26 @@ public class NetworkDeviceController implements NetworkController {
             URI exportGroupUri, List<NetworkFCZoneInfo> fabricInfos, boolean doRemove,
             boolean retryAltNetworkDevice)
             throws ControllerException {
+        ZoningRequest request = submitZones(device, fabricId, fabricWwn, fabricInfos, doRemove);
+        return completeZones(request, device, fabricId, fabricWwn, exportGroupUri, fabricInfos, retryAltNetworkDevice);
+    }
 
-        BiosCommandResult result = null;
-        String taskId = UUID.randomUUID().toString();
+    /**
+     * Queues the zones of a group of NetworkFabricInfo structures to be added or removed by the
+     * zoning pipeline, which adds or removes them together with the zones other workflows queued
+     * for the same fabric. See completeZones to wait for them and record the zone references.
+     * 
+     * @param device NetworkDevice
+     * @param fabricId String
+     * @param fabricWwn String
+     * @param fabricInfos - Describe each zone.
+     * @param doRemove - true to remove the zones, false to add them
+     * @return the queued request
+     * @throws ControllerException
+     */
+    private ZoningRequest submitZones(NetworkSystem device, String fabricId, String fabricWwn,
+            List<NetworkFCZoneInfo> fabricInfos, boolean doRemove)
+            throws ControllerException {
         List<Zone> zones = new ArrayList<Zone>();
         // Make the zone operations. Don't make the same zone more than once,
         // as determined by its key. The same zone shows up multiple times because it
@@ -398,11 +429,37 @@ public class NetworkDeviceController implements NetworkController {
                     device.getSystemType());
         }
 
-        // Lock to prevent concurrent operations on the same VSAN / FABRIC.
-        InterProcessLock fabricLock = NetworkFabricLocker.lockFabric(fabricId, _coordinator);
+        // The pipeline locks the fabric to prevent concurrent operations on the same VSAN / FABRIC.
+        return getZoningPipeline().submit(networkDevice, device, fabricId, fabricWwn, zones, doRemove);
+    }
+
+    /**
+     * Waits for the zones queued by submitZones to be added or removed, and updates the
+     * FCZoneReferences and the rollback state of the NetworkFabricInfo structures.
+     * 
+     * @param request the request returned by submitZones
+     * @param device NetworkDevice
+     * @param fabricId String
+     * @param fabricWwn String
+     * @param exportGroupUri The ExportGroup URI. Used for reference counting.
+     * @param fabricInfos - Describe each zone.
+     * @param retryAltNetworkDevice - a boolean to indicate if re-try to be done.
+     *            This is to stop this function from running again after the alternate
+     *            system is retried once.
+     * @return BiosCommandResult
+     * @throws ControllerException
+     */
+    private BiosCommandResult completeZones(ZoningRequest request, NetworkSystem device, String fabricId,
+            String fabricWwn, URI exportGroupUri, List<NetworkFCZoneInfo> fabricInfos, boolean retryAltNetworkDevice)
+            throws ControllerException {
+
+        BiosCommandResult result = null;
+        String taskId = UUID.randomUUID().toString();
+        List<Zone> zones = request.getZones();
+        boolean doRemove = request.isRemove();
         try {
+            result = request.getResult();
             if (doRemove) { /* Removing zones */
-                result = networkDevice.removeZones(device, zones, fabricId, fabricWwn, true);
                 if (result.isCommandSuccess()) {
                     String refKey = null;
                     try {
@@ -426,7 +483,6 @@ public class NetworkDeviceController implements NetworkController {
                 }
 
             } else { /* Adding zones */
-                result = networkDevice.addZones(device, zones, fabricId, fabricWwn, true);
                 if (result.isCommandSuccess()) {
                     String refKey = null;
                     try {
@@ -449,6 +505,7 @@ public class NetworkDeviceController implements NetworkController {
                 }
             }
             // Update the FCZoneInfo structures if we changed device state for rollback.
+            // A zone created for another workflow zoned in the same call is NO_CHANGE for this one.
             Map<String, String> map = (Map<String, String>) result.getObjectList().get(0);
             for (NetworkFCZoneInfo info : fabricInfos) {
                 if (NetworkSystemDevice.SUCCESS.equals(map.get(info.getZoneName()))) {
@@ -469,8 +526,6 @@ public class NetworkDeviceController implements NetworkController {
             URI altUri = fabricInfo.getAltNetworkDeviceId();
             // If we took an error, attempt a retry with an alternate device if possible.
             if (altUri != null && retryAltNetworkDevice) {
-                NetworkFabricLocker.unlockFabric(fabricId, fabricLock);
-                fabricLock = null;
                 _log.error("Zone operation failed using device: " + primaryUri + " retrying with alternate device: " + altUri);
                 fabricInfo.setNetworkDeviceId(altUri);
                 device = getDeviceObject(altUri);
@@ -487,15 +542,25 @@ public class NetworkDeviceController implements NetworkController {
                 }
                 throw ex;
             }
-        } finally {
-            NetworkFabricLocker.unlockFabric(fabricId, fabricLock);
         }
     }
 
+    /**
+     * Zones of one fabric queued by addRemoveZones
+     */
+    private static class FabricZoning {
+        private NetworkSystem device;
+        private String fabricId;
+        private String fabricWwn;
+        private List<NetworkFCZoneInfo> fabricInfos;
+        private ZoningRequest request;
+    }
+
     /**
      * Adds/removes a bunch of zones based on their NetworkFCZoneInfo structures.
      * They are split into groups and subgroups, first by the device used for zoning, and then by the fabricId to be zoned.
-     * Then each subgroup is processed separately.
+     * The subgroups are all queued to the zoning pipeline first, so that the fabrics are zoned in parallel,
+     * and then each subgroup is completed separately.
      * 
      * @param exportGroupUri
      * @param fabricInfos
@@ -541,7 +606,7 @@ public class NetworkDeviceController implements NetworkController {
         }
 
         // Now loop through each device, splitting the collection of fabric infos by fabric ID/WWN.
-        StringBuilder messageBuffer = new StringBuilder();
+        List<FabricZoning> fabricZonings = new ArrayList<FabricZoning>();
         for (URI deviceId : deviceId2NetworkFabricInfos.keySet()) {
             NetworkSystem device = deviceId2NetworkSystem.get(deviceId);
             Map<String, List<NetworkFCZoneInfo>> fabric2FabricInfos = new HashMap<String, List<NetworkFCZoneInfo>>();
@@ -560,18 +625,45 @@ public class NetworkDeviceController implements NetworkController {
                 singleFabricInfos.add(fabricInfo);
             }
 
-            // Now for each fabric, do the zoning.
-            for (String key : fabric2FabricInfos.keySet()) {
-                List<NetworkFCZoneInfo> singleFabricInfos = fabric2FabricInfos.get(key);
-                String fabricId = singleFabricInfos.get(0).getFabricId();
-                String fabricWwn = singleFabricInfos.get(0).getFabricWwn();
-                BiosCommandResult rslt = addRemoveZones(device, fabricId, fabricWwn, exportGroupUri, singleFabricInfos, doRemove, true);
-                if (messageBuffer.length() > 0) {
-                    messageBuffer.append("; ");
+            for (List<NetworkFCZoneInfo> singleFabricInfos : fabric2FabricInfos.values()) {
+                FabricZoning fabricZoning = new FabricZoning();
+                fabricZoning.device = device;
+                fabricZoning.fabricId = singleFabricInfos.get(0).getFabricId();
+                fabricZoning.fabricWwn = singleFabricInfos.get(0).getFabricWwn();
+                fabricZoning.fabricInfos = singleFabricInfos;
+                fabricZonings.add(fabricZoning);
+            }
+        }
+
+        // Queue the zoning of every fabric, then wait for each. The zones already changed on the
+        // other fabrics are recorded even if a fabric fails, and the first failure is thrown.
+        ControllerException failure = null;
+        for (FabricZoning fabricZoning : fabricZonings) {
+            try {
+                fabricZoning.request = submitZones(fabricZoning.device, fabricZoning.fabricId, fabricZoning.fabricWwn,
+                        fabricZoning.fabricInfos, doRemove);
+            } catch (ControllerException ex) {
+                if (failure == null) {
+                    failure = ex;
                 }
-                messageBuffer.append(rslt.getMessage());
             }
         }
+        for (FabricZoning fabricZoning : fabricZonings) {
+            if (fabricZoning.request == null) {
+                continue;
+            }
+            try {
+                completeZones(fabricZoning.request, fabricZoning.device, fabricZoning.fabricId, fabricZoning.fabricWwn,
+                        exportGroupUri, fabricZoning.fabricInfos, true);
+            } catch (ControllerException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
         BiosCommandResult result = BiosCommandResult.createSuccessfulResult();
         return result;
     }
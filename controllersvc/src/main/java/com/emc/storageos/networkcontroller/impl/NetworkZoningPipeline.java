@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.db.client.model.NetworkSystem;
+import com.emc.storageos.networkcontroller.exceptions.NetworkDeviceControllerException;
+import com.emc.storageos.networkcontroller.impl.mds.Zone;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
+import com.emc.storageos.volumecontroller.ControllerException;
+import com.emc.storageos.volumecontroller.impl.BiosCommandResult;
+
+/**
+ * NetworkZoningPipeline -- Queues the zones to be added or removed by the export workflows
+ * of this controller node per network system and fabric, and runs the fabrics in parallel.
+ *
+ * The requests waiting on a fabric while it is locked are coalesced: once the fabric lock
+ * is acquired, the zones of all the pending adds (or all the pending removes) are sent to
+ * the network system in a single call, which means one session, one commit and one zoneset
+ * activation for all of them. Adds and removes are not mixed in one call, and a request is
+ * not moved ahead of an earlier one of the other kind for the same zone.
+ *
+ * Each request is completed on its own with the results of its own zones in the call it was
+ * part of, so that its workflow records its own zone references. A zone asked for by several
+ * requests of a call is reported as changed (SUCCESS) to the first of them only, and as
+ * NO_CHANGE to the others, as if they had been run one after the other: only the workflow
+ * which created a zone may remove it on rollback. If a call for several requests fails, the
+ * requests are retried one by one so that a bad zone only fails the workflow asking for it.
+ *
+ * The fabric lock still serializes the zoning of a fabric with the other controller nodes.
+ */
+public class NetworkZoningPipeline {
+    private static final Logger _log = LoggerFactory.getLogger(NetworkZoningPipeline.class);
+
+    private static final int DEFAULT_MAX_PARALLEL_FABRICS = 8;
+    private static final int DEFAULT_MAX_ZONES_PER_BATCH = 1000;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+    // past the 60 minute fabric lock wait of a few batches ahead of the request
+    private static final long DEFAULT_RESULT_TIMEOUT_SECONDS = 3 * 60 * 60;
+
+    private CoordinatorClient _coordinator;
+    private int _maxParallelFabrics = DEFAULT_MAX_PARALLEL_FABRICS;
+    private int _maxZonesPerBatch = DEFAULT_MAX_ZONES_PER_BATCH;
+    private long _resultTimeoutSeconds = DEFAULT_RESULT_TIMEOUT_SECONDS;
+    private NamedThreadPoolExecutor _executor;
+
+    // pending requests keyed by network system and fabric, a queue is present while it is drained
+    private final Map<String, Deque<ZoningRequest>> _queues = new HashMap<String, Deque<ZoningRequest>>();
+
+    /**
+     * Zones to be added or removed on a fabric for one workflow step, completed once they are.
+     */
+    public static class ZoningRequest {
+        private final NetworkSystemDevice _networkDevice;
+        private final NetworkSystem _device;
+        private final String _fabricId;
+        private final String _fabricWwn;
+        private final List<Zone> _zones;
+        private final boolean _doRemove;
+        private final long _timeoutSeconds;
+        private final CountDownLatch _done = new CountDownLatch(1);
+        private BiosCommandResult _result;
+        private RuntimeException _exception;
+
+        ZoningRequest(NetworkSystemDevice networkDevice, NetworkSystem device, String fabricId,
+                String fabricWwn, List<Zone> zones, boolean doRemove, long timeoutSeconds) {
+            _networkDevice = networkDevice;
+            _device = device;
+            _fabricId = fabricId;
+            _fabricWwn = fabricWwn;
+            _zones = zones;
+            _doRemove = doRemove;
+            _timeoutSeconds = timeoutSeconds;
+        }
+
+        public List<Zone> getZones() {
+            return _zones;
+        }
+
+        public boolean isRemove() {
+            return _doRemove;
+        }
+
+        /**
+         * Waits for the zones to be added or removed.
+         *
+         * @return the result of the network system call, its object list holds the
+         *         zone name to NetworkSystemDevice.SUCCESS/NO_CHANGE/ERROR map
+         * @throws ControllerException if the call failed, or if there is no result within the
+         *             timeout of the pipeline
+         */
+        public BiosCommandResult getResult() throws ControllerException {
+            boolean interrupted = false;
+            boolean done = false;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(_timeoutSeconds);
+            while (true) {
+                try {
+                    done = _done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    break;
+                } catch (InterruptedException ex) {
+                    // the zoning goes on regardless, the workflow has to record it
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (!done) {
+                throw NetworkDeviceControllerException.exceptions.operationFailed("Zoning on fabric " + _fabricId,
+                        new TimeoutException("no result after " + _timeoutSeconds + " seconds"));
+            }
+            if (_exception != null) {
+                throw _exception;
+            }
+            return _result;
+        }
+
+        private void complete(BiosCommandResult result, RuntimeException exception) {
+            if (_done.getCount() == 0) {
+                return;
+            }
+            _result = result;
+            _exception = exception;
+            _done.countDown();
+        }
+    }
+
+    public void setCoordinator(CoordinatorClient coordinator) {
+        _coordinator = coordinator;
+    }
+
+    /**
+     * @param maxParallelFabrics number of fabrics zoned at the same time by this node
+     */
+    public void setMaxParallelFabrics(int maxParallelFabrics) {
+        _maxParallelFabrics = maxParallelFabrics;
+    }
+
+    /**
+     * @param resultTimeoutSeconds time a workflow waits for the zones of a request to be added
+     *            or removed before failing
+     */
+    public void setResultTimeoutSeconds(long resultTimeoutSeconds) {
+        _resultTimeoutSeconds = resultTimeoutSeconds;
+    }
+
+    /**
+     * @param maxZonesPerBatch number of zones past which no more requests are added to a call,
+     *            a single request is never split
+     */
+    public void setMaxZonesPerBatch(int maxZonesPerBatch) {
+        _maxZonesPerBatch = maxZonesPerBatch;
+    }
+
+    private synchronized NamedThreadPoolExecutor getExecutor() {
+        if (_executor == null) {
+            _executor = new NamedThreadPoolExecutor(NetworkZoningPipeline.class.getSimpleName(),
+                    _maxParallelFabrics, _maxParallelFabrics, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            _executor.allowCoreThreadTimeOut(true);
+        }
+        return _executor;
+    }
+
+    /**
+     * Stops the zoning threads once the pending requests are done.
+     */
+    public synchronized void shutdown() {
+        if (_executor != null) {
+            _executor.shutdown();
+        }
+    }
+
+    /**
+     * Queues zones to be added or removed on a fabric and returns without waiting, see
+     * ZoningRequest.getResult.
+     *
+     * @param networkDevice the network system implementation
+     * @param device the network system zoning the fabric
+     * @param fabricId the fabric id or vsan
+     * @param fabricWwn the fabric WWN
+     * @param zones the zones to add or remove
+     * @param doRemove true to remove the zones, false to add them
+     * @return the request
+     */
+    public ZoningRequest submit(NetworkSystemDevice networkDevice, NetworkSystem device, String fabricId,
+            String fabricWwn, List<Zone> zones, boolean doRemove) {
+        ZoningRequest request = new ZoningRequest(networkDevice, device, fabricId, fabricWwn, zones, doRemove,
+                _resultTimeoutSeconds);
+        final String key = device.getId() + "/" + fabricId + "/" + fabricWwn;
+        boolean drain = false;
+        synchronized (_queues) {
+            Deque<ZoningRequest> queue = _queues.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<ZoningRequest>();
+                _queues.put(key, queue);
+                drain = true;
+            }
+            queue.add(request);
+        }
+        if (drain) {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain(key);
+                }
+            });
+        }
+        return request;
+    }
+
+    /**
+     * Runs the pending requests of a fabric, a batch per fabric lock, until there are none.
+     * If an Error stops it, the requests of the batch and the pending ones are failed and
+     * the queue is removed, so that the next request starts a new drain.
+     */
+    private void drain(String key) {
+        List<ZoningRequest> batch = null;
+        try {
+            while (true) {
+                ZoningRequest head;
+                synchronized (_queues) {
+                    Deque<ZoningRequest> queue = _queues.get(key);
+                    if (queue.isEmpty()) {
+                        _queues.remove(key);
+                        return;
+                    }
+                    head = queue.peek();
+                }
+                batch = null;
+                InterProcessLock fabricLock = null;
+                try {
+                    // requests queued while waiting for the lock join the batch
+                    fabricLock = lockFabric(head._fabricId);
+                    synchronized (_queues) {
+                        batch = takeBatch(_queues.get(key));
+                    }
+                    execute(batch);
+                } catch (RuntimeException ex) {
+                    _log.error("Zoning failed on fabric " + head._fabricId, ex);
+                    if (batch == null) {
+                        synchronized (_queues) {
+                            batch = takeBatch(_queues.get(key));
+                        }
+                    }
+                    for (ZoningRequest request : batch) {
+                        request.complete(null, ex);
+                    }
+                } finally {
+                    try {
+                        unlockFabric(head._fabricId, fabricLock);
+                    } catch (RuntimeException ex) {
+                        _log.error("Could not unlock fabric " + head._fabricId, ex);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            _log.error("Zoning aborted for " + key, t);
+            RuntimeException ex = NetworkDeviceControllerException.exceptions.operationFailed("Zoning for " + key, t);
+            synchronized (_queues) {
+                // the requests already completed keep their result
+                List<ZoningRequest> requests = new ArrayList<ZoningRequest>();
+                if (batch != null) {
+                    requests.addAll(batch);
+                }
+                Deque<ZoningRequest> queue = _queues.remove(key);
+                if (queue != null) {
+                    requests.addAll(queue);
+                }
+                for (ZoningRequest request : requests) {
+                    request.complete(null, ex);
+                }
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw (RuntimeException) t;
+        }
+    }
+
+    /**
+     * Locks the fabric against the zoning of the other controller nodes.
+     */
+    protected InterProcessLock lockFabric(String fabricId) {
+        return NetworkFabricLocker.lockFabric(fabricId, _coordinator);
+    }
+
+    protected void unlockFabric(String fabricId, InterProcessLock fabricLock) {
+        NetworkFabricLocker.unlockFabric(fabricId, fabricLock);
+    }
+
+    /**
+     * Takes the requests of the same kind as the first pending one off the queue, passing over
+     * requests of the other kind unless a later request has a zone in common with one of them.
+     */
+    private List<ZoningRequest> takeBatch(Deque<ZoningRequest> queue) {
+        List<ZoningRequest> batch = new ArrayList<ZoningRequest>();
+        boolean doRemove = queue.peek()._doRemove;
+        Set<String> passedOver = new HashSet<String>();
+        int zoneCount = 0;
+        Iterator<ZoningRequest> it = queue.iterator();
+        while (it.hasNext()) {
+            ZoningRequest request = it.next();
+            if (request._doRemove != doRemove) {
+                for (Zone zone : request._zones) {
+                    passedOver.add(zone.getName());
+                }
+                continue;
+            }
+            if (!batch.isEmpty()
+                    && (zoneCount + request._zones.size() > _maxZonesPerBatch || hasZone(request, passedOver))) {
+                break;
+            }
+            batch.add(request);
+            zoneCount += request._zones.size();
+            it.remove();
+        }
+        return batch;
+    }
+
+    private static boolean hasZone(ZoningRequest request, Set<String> zoneNames) {
+        for (Zone zone : request._zones) {
+            if (zoneNames.contains(zone.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds or removes the zones of the batch in one call, the fabric being locked.
+     */
+    private void execute(List<ZoningRequest> batch) {
+        ZoningRequest head = batch.get(0);
+        // the same zone can be asked for by several workflows
+        Map<String, Zone> zones = new LinkedHashMap<String, Zone>();
+        for (ZoningRequest request : batch) {
+            for (Zone zone : request._zones) {
+                if (!zones.containsKey(zone.getName())) {
+                    zones.put(zone.getName(), zone);
+                }
+            }
+        }
+        _log.info(String.format("%s %d zones of %d requests on fabric %s", head._doRemove ? "Removing" : "Adding",
+                zones.size(), batch.size(), head._fabricId));
+        BiosCommandResult result = null;
+        try {
+            result = call(head, new ArrayList<Zone>(zones.values()));
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                head.complete(null, ex);
+                return;
+            }
+            _log.warn("Zoning of " + batch.size() + " requests failed on fabric " + head._fabricId
+                    + ", retrying them one by one", ex);
+            for (ZoningRequest request : batch) {
+                try {
+                    request.complete(call(request, request._zones), null);
+                } catch (RuntimeException requestEx) {
+                    request.complete(null, requestEx);
+                }
+            }
+            return;
+        }
+        if (batch.size() == 1) {
+            head.complete(result, null);
+            return;
+        }
+        Set<String> changedZones = new HashSet<String>();
+        for (ZoningRequest request : batch) {
+            request.complete(getRequestResult(request, result, changedZones), null);
+        }
+    }
+
+    /**
+     * Builds the result of one request of a call from the result of the call, keeping the
+     * results of the zones of the request only.
+     *
+     * @param request the request
+     * @param result the result of the call
+     * @param changedZones INPUT/OUTPUT names of the zones already reported as changed to an
+     *            earlier request of the call
+     * @return the result of the request
+     */
+    @SuppressWarnings("unchecked")
+    private static BiosCommandResult getRequestResult(ZoningRequest request, BiosCommandResult result,
+            Set<String> changedZones) {
+        if (result == null || result.getObjectList() == null || result.getObjectList().isEmpty()
+                || !(result.getObjectList().get(0) instanceof Map)) {
+            return result;
+        }
+        Map<String, String> callResults = (Map<String, String>) result.getObjectList().get(0);
+        Map<String, String> results = new HashMap<String, String>();
+        boolean error = false;
+        for (Zone zone : request._zones) {
+            String zoneResult = callResults.get(zone.getName());
+            if (zoneResult == null) {
+                continue;
+            }
+            if (NetworkSystemDevice.SUCCESS.equals(zoneResult) && !changedZones.add(zone.getName())) {
+                zoneResult = NetworkSystemDevice.NO_CHANGE;
+            }
+            error |= NetworkSystemDevice.ERROR.equals(zoneResult);
+            results.put(zone.getName(), zoneResult);
+        }
+        // a failure not due to a zone, e.g. of the activation, fails all the requests
+        if (!result.isCommandSuccess() && !callResults.containsValue(NetworkSystemDevice.ERROR)) {
+            error = true;
+        }
+        BiosCommandResult requestResult = error ? BiosCommandResult.createErrorResult(result.getServiceCoded())
+                : BiosCommandResult.createSuccessfulResult();
+        requestResult.setObjectList(Collections.singletonList((Object) results));
+        return requestResult;
+    }
+
+    private static BiosCommandResult call(ZoningRequest request, List<Zone> zones) {
+        if (request._doRemove) {
+            return request._networkDevice.removeZones(request._device, zones, request._fabricId, request._fabricWwn, true);
+        }
+        return request._networkDevice.addZones(request._device, zones, request._fabricId, request._fabricWwn, true);
+    }
+}
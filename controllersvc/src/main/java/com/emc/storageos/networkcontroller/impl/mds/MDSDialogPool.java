@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller.impl.mds;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.model.NetworkSystem;
+import com.emc.storageos.networkcontroller.SSHPrompt;
+import com.emc.storageos.networkcontroller.SSHSession;
+
+/**
+ * Logged in MDS dialogs kept open per switch between operations of the MdsNetworkSystemDevice,
+ * so that an operation does not pay the SSH connection, login and dialog initialization again.
+ *
+ * A dialog is only given back to the pool when it is at the exec prompt: not in config mode,
+ * not in a zone session, and its last command did not time out. A dialog taken from the pool
+ * is checked first by sending an empty line and waiting for the exec prompt; dialogs failing
+ * the check, idle for longer than the idle timeout or connected for longer than the maximum
+ * age are logged out. The maximum age bounds how long a changed password goes unnoticed.
+ */
+public class MDSDialogPool {
+    private static final Logger _log = LoggerFactory.getLogger(MDSDialogPool.class);
+
+    private static final int DEFAULT_MAX_IDLE_PER_SWITCH = 2;
+    private static final long DEFAULT_IDLE_TIMEOUT_MSEC = 5 * 60 * 1000L;
+    private static final long DEFAULT_MAX_AGE_MSEC = 30 * 60 * 1000L;
+    private static final int HEALTH_CHECK_TIMEOUT_MSEC = 5000;
+
+    private int maxIdlePerSwitch = DEFAULT_MAX_IDLE_PER_SWITCH;
+    private long idleTimeoutMsec = DEFAULT_IDLE_TIMEOUT_MSEC;
+    private long maxAgeMsec = DEFAULT_MAX_AGE_MSEC;
+
+    private static class IdleDialog {
+        private final MDSDialog dialog;
+        private final long idleSince;
+
+        IdleDialog(MDSDialog dialog) {
+            this.dialog = dialog;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    // idle dialogs keyed by user@host:port, the most recently used last
+    private final Map<String, Deque<IdleDialog>> idle = new HashMap<String, Deque<IdleDialog>>();
+
+    /**
+     * @param maxIdlePerSwitch number of dialogs kept open per switch, 0 to not keep any
+     */
+    public void setMaxIdlePerSwitch(int maxIdlePerSwitch) {
+        this.maxIdlePerSwitch = maxIdlePerSwitch;
+    }
+
+    /**
+     * @param idleTimeoutMsec dialogs idle for longer are logged out
+     */
+    public void setIdleTimeoutMsec(long idleTimeoutMsec) {
+        this.idleTimeoutMsec = idleTimeoutMsec;
+    }
+
+    /**
+     * @param maxAgeMsec dialogs connected for longer are logged out
+     */
+    public void setMaxAgeMsec(long maxAgeMsec) {
+        this.maxAgeMsec = maxAgeMsec;
+    }
+
+    private static String getKey(String username, String host, int port) {
+        return username + "@" + host + ":" + port;
+    }
+
+    private static String getKey(MDSDialog dialog) {
+        SSHSession session = dialog.getSession();
+        return getKey(session.getSession().getUserName(), session.getSession().getHost(), session.getSession().getPort());
+    }
+
+    /**
+     * Takes an open dialog to a switch out of the pool.
+     *
+     * @param network NetworkSystem
+     * @return a dialog at the exec prompt, or null if there is none and one has to be set up
+     */
+    public MDSDialog poll(NetworkSystem network) {
+        String key = getKey(network.getUsername(), network.getIpAddress(), network.getPortNumber());
+        while (true) {
+            IdleDialog idleDialog;
+            synchronized (idle) {
+                Deque<IdleDialog> dialogs = idle.get(key);
+                idleDialog = dialogs != null ? dialogs.pollLast() : null;
+            }
+            if (idleDialog == null) {
+                return null;
+            }
+            MDSDialog dialog = idleDialog.dialog;
+            long now = System.currentTimeMillis();
+            if (now - idleDialog.idleSince > idleTimeoutMsec || now - dialog.getSession().getConnectedAt() > maxAgeMsec) {
+                logout(dialog);
+                continue;
+            }
+            if (isHealthy(dialog)) {
+                _log.debug("Reusing session to {}", key);
+                return dialog;
+            }
+            _log.info("Session to {} failed the health check, logging it out", key);
+            logout(dialog);
+        }
+    }
+
+    private boolean isHealthy(MDSDialog dialog) {
+        if (!dialog.getSession().isConnected()) {
+            return false;
+        }
+        try {
+            dialog.discardInput();
+            SSHPrompt[] prompts = { SSHPrompt.MDS_POUND, SSHPrompt.MDS_GREATER_THAN };
+            dialog.sendWaitFor("\n", HEALTH_CHECK_TIMEOUT_MSEC, prompts, new StringBuilder());
+            return true;
+        } catch (Exception ex) {
+            _log.debug("Health check failed: " + ex.getLocalizedMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gives a dialog back once an operation is done with it, keeping it open if it can be reused.
+     *
+     * @param dialog the dialog, may be null
+     */
+    public void release(MDSDialog dialog) {
+        if (dialog == null) {
+            return;
+        }
+        if (dialog.isInConfigMode() || dialog.isInSession() || dialog.isFailed()
+                || !dialog.getSession().isConnected()
+                || System.currentTimeMillis() - dialog.getSession().getConnectedAt() > maxAgeMsec) {
+            logout(dialog);
+            return;
+        }
+        IdleDialog evicted = null;
+        synchronized (idle) {
+            String key = getKey(dialog);
+            Deque<IdleDialog> dialogs = idle.get(key);
+            if (dialogs == null) {
+                dialogs = new ArrayDeque<IdleDialog>();
+                idle.put(key, dialogs);
+            }
+            dialogs.addLast(new IdleDialog(dialog));
+            if (dialogs.size() > maxIdlePerSwitch) {
+                evicted = dialogs.pollFirst();
+            }
+        }
+        if (evicted != null) {
+            logout(evicted.dialog);
+        }
+    }
+
+    /**
+     * Logs out all the idle dialogs.
+     */
+    public void shutdown() {
+        List<IdleDialog> dialogs = new ArrayList<IdleDialog>();
+        synchronized (idle) {
+            for (Deque<IdleDialog> switchDialogs : idle.values()) {
+                dialogs.addAll(switchDialogs);
+            }
+            idle.clear();
+        }
+        for (IdleDialog idleDialog : dialogs) {
+            logout(idleDialog.dialog);
+        }
+    }
+
+    /**
+     * Sends an "exit" command to log out, and disconnects the session.
+     *
+     * @param dialog
+     */
+    static void logout(MDSDialog dialog) {
+        try {
+            dialog.send("exit\n");
+            dialog.getSession().disconnect();
+        } catch (Exception ex) {
+            _log.debug("Exception disconnecting: " + ex.getLocalizedMessage());
+        }
+    }
+}
@@ -43,15 +43,32 @@ public class MdsNetworkSystemDevice extends NetworkSystemDeviceImpl implements N
 
     private static volatile CoordinatorClient _coordinator;
     private static volatile DbClient _dbClient;
+    private MDSDialogPool _dialogPool = new MDSDialogPool();
 
     /**
-     * Sets up a session. Gets session parameters from the NetworkSystem.
+     * Sets up a session, reusing an open one from the dialog pool if there is one.
+     * Gets session parameters from the NetworkSystem.
      * 
      * @param network NetworkSystem
      * @return MDSDialog representing the session
      * @throws NetworkDeviceControllerException
      */
     private MDSDialog setUpDialog(NetworkSystem network) throws NetworkDeviceControllerException {
+        MDSDialog dialog = _dialogPool.poll(network);
+        if (dialog != null) {
+            return dialog;
+        }
+        return connectDialog(network);
+    }
+
+    /**
+     * Sets up a new session. Gets session parameters from the NetworkSystem.
+     * 
+     * @param network NetworkSystem
+     * @return MDSDialog representing the session
+     * @throws NetworkDeviceControllerException
+     */
+    private MDSDialog connectDialog(NetworkSystem network) throws NetworkDeviceControllerException {
         try {
             SSHSession session = new SSHSession();
             session.connect(network.getIpAddress(), network.getPortNumber(), network.getUsername(), network.getPassword());
@@ -73,15 +90,13 @@ public class MdsNetworkSystemDevice extends NetworkSystemDeviceImpl implements N
     }
 
     /**
-     * Disconnect a session. Sends an "exit" command to log out.
+     * Done with a session. Gives it back to the dialog pool, which sends an "exit" command
+     * to log out unless the session is kept open for the next operation.
      * 
      * @param dialog
      */
     private void disconnect(MDSDialog dialog) {
-        if (dialog != null) {
-            dialog.send("exit\n");
-            dialog.getSession().disconnect();
-        }
+        _dialogPool.release(dialog);
     }
 
     @Override
@@ -89,7 +104,7 @@ public class MdsNetworkSystemDevice extends NetworkSystemDeviceImpl implements N
         BiosCommandResult result = null;
         MDSDialog dialog = null;
         try {
-            dialog = setUpDialog(network);
+            dialog = connectDialog(network);
             String[] versInfo = dialog.showVersion();
             result = BiosCommandResult.createSuccessfulResult();
             if (versInfo[0].startsWith("MDS") == false && versInfo[0].startsWith("Nexus") == false) {
@@ -1245,6 +1260,10 @@ public class MdsNetworkSystemDevice extends NetworkSystemDeviceImpl implements N
         }
     }
 
+    public void setDialogPool(MDSDialogPool dialogPool) {
+        _dialogPool = dialogPool;
+    }
+
     @Override
     public BiosCommandResult updateZones(NetworkSystem network, List<ZoneUpdate> updateZones,
             String fabricId, String fabricWwn, boolean activateZones) throws NetworkDeviceControllerException {
@@ -42,4 +42,24 @@ public abstract class Job {
     public void setPollingStartTime(long pollingStartTime) {
         this.pollingStartTime = pollingStartTime;
     }
+
+    /**
+     * Identifies the provider the job status is polled from, so that jobs on the same
+     * provider share a poller pool in the job tracker.
+     * 
+     * @return the provider key, the job class name by default
+     */
+    public String getProviderKey() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Identifier of the job on the device, used to match status change notifications
+     * from the device to the tracked job.
+     * 
+     * @return the device job id, or null if the device does not notify job status changes
+     */
+    public String getDeviceJobId() {
+        return null;
+    }
 }
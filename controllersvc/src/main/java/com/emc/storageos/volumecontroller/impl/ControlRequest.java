@@ -19,6 +19,7 @@ public class ControlRequest implements Serializable {
     private static final String DEVICE_INFO_NAME = "deviceinfo";
     private static final String TIMESTAMP = "timestamp";
     private static final String LOCK_GROUP = "lockGroup";
+    private static final String PRIORITY = "priority";
 
     private Map<String, Object> _req = new HashMap<String, Object>();
 
@@ -67,6 +68,18 @@ public class ControlRequest implements Serializable {
         return (String) _req.get(LOCK_GROUP);
     }
 
+    public void setPriority(String priority) {
+        _req.put(PRIORITY, priority);
+    }
+
+    /**
+     * @return name of the Dispatcher.Priority lane of the request, null for requests
+     *         queued before priorities were recorded
+     */
+    public String getPriority() {
+        return (String) _req.get(PRIORITY);
+    }
+
     @SuppressWarnings({ "squid:S2118" })
     public byte[] serialize() {
         try {
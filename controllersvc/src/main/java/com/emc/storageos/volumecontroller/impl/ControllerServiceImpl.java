@@ -8,6 +8,8 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.curator.framework.recipes.leader.LeaderSelector;
@@ -79,6 +81,9 @@ public class ControllerServiceImpl implements ControllerService {
     private static final String SCAN_JOB_QUEUE_NAME = "scanjobqueue";
     public static final String MONITORING_JOB_QUEUE_NAME = "monitoringjobqueue";
     private static final String METERING_JOB_QUEUE_NAME = "meteringjobqueue";
+    private static final int DISCOVER_JOB_QUEUE_MAX_ITEMS = 200;
+    private static final int COMPUTE_DISCOVER_JOB_QUEUE_MAX_ITEMS = 50000;
+    private static final int METERING_JOB_QUEUE_MAX_ITEMS = 200;
     public static final String DISCOVERY = "Discovery";
     public static final String DISCOVERY_RECONCILE_TZ = "DiscoveryReconcileTZ";
     public static final String SCANNER = "Scanner";
@@ -122,6 +127,10 @@ public class ControllerServiceImpl implements ControllerService {
     private static volatile DistributedQueue<DataCollectionJob> _scanJobQueue = null;
     private static volatile DistributedQueue<DataCollectionJob> _meteringJobQueue = null;
     private static volatile DistributedQueue<DataCollectionJob> _monitoringJobQueue = null;
+    // queues of the jobs of the devices owned by each controller node, by queue name
+    private static final ConcurrentMap<String, DistributedQueue<DataCollectionJob>> _nodeJobQueues =
+            new ConcurrentHashMap<String, DistributedQueue<DataCollectionJob>>();
+    private static volatile CoordinatorClient _nodeJobQueueCoordinator;
     private CIMConnectionFactory _cimConnectionFactory;
     private VPlexApiFactory _vplexApiFactory;
     private HDSApiFactory hdsApiFactory;
@@ -155,7 +164,8 @@ public class ControllerServiceImpl implements ControllerService {
         COMPUTE_DATA_COLLECTION_LOCK("lock-compute-datacollectionjob-"),
         CS_DATA_COLLECTION_LOCK("lock-cs-datacollectionjob-"),
         POOL_MATCHER_LOCK("lock-implicitpoolmatcherjob-"),
-        DISCOVER_RECONCILE_TZ_LOCK("lock-discoverreconciletz-");
+        DISCOVER_RECONCILE_TZ_LOCK("lock-discoverreconciletz-"),
+        NODE_JOB_QUEUE_LOCK("lock-nodejobqueue-");
 
         private final String _lockName;
         private InterProcessLock _processLock;
@@ -471,13 +481,26 @@ public class ControllerServiceImpl implements ControllerService {
         _scanJobConsumer.start();
         _meteringJobConsumer.start();
         _discoverJobQueue = _coordinator.getQueue(DISCOVER_JOB_QUEUE_NAME, _discoverJobConsumer,
-                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(DISCOVERY_COREPOOLSIZE)), 200);
+                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(DISCOVERY_COREPOOLSIZE)),
+                DISCOVER_JOB_QUEUE_MAX_ITEMS);
         _computeDiscoverJobQueue = _coordinator.getQueue(COMPUTE_DISCOVER_JOB_QUEUE_NAME, _computeDiscoverJobConsumer,
-                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(COMPUTE_DISCOVERY_COREPOOLSIZE)), 50000);
+                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(COMPUTE_DISCOVERY_COREPOOLSIZE)),
+                COMPUTE_DISCOVER_JOB_QUEUE_MAX_ITEMS);
         _meteringJobQueue = _coordinator.getQueue(METERING_JOB_QUEUE_NAME, _meteringJobConsumer,
-                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(METERING_COREPOOLSIZE)), 200);
+                new DataCollectionJobSerializer(), Integer.parseInt(_configInfo.get(METERING_COREPOOLSIZE)),
+                METERING_JOB_QUEUE_MAX_ITEMS);
         _scanJobQueue = _coordinator.getQueue(SCAN_JOB_QUEUE_NAME, _scanJobConsumer,
                 new DataCollectionJobSerializer(), 1, 50);
+
+        /**
+         * Queues of this node, holding the discovery and metering jobs of the devices
+         * it owns. They share the consumers and thread pools of the queues above.
+         */
+        _nodeJobQueueCoordinator = _coordinator;
+        String nodeId = _svcBeacon.info().getId();
+        startNodeJobQueue(DISCOVERY, nodeId, _discoverJobConsumer, DISCOVERY_COREPOOLSIZE);
+        startNodeJobQueue(CS_DISCOVERY, nodeId, _computeDiscoverJobConsumer, COMPUTE_DISCOVERY_COREPOOLSIZE);
+        startNodeJobQueue(METERING, nodeId, _meteringJobConsumer, METERING_COREPOOLSIZE);
         
         /**
          * Monitoring use cases starts here
@@ -518,6 +541,10 @@ public class ControllerServiceImpl implements ControllerService {
         _scanJobQueue.stop(120000);
         _monitoringJobQueue.stop(120000);
         _meteringJobQueue.stop(120000);
+        for (DistributedQueue<DataCollectionJob> queue : _nodeJobQueues.values()) {
+            queue.stop(120000);
+        }
+        _nodeJobQueues.clear();
         _dispatcher.stop();
         _scanJobConsumer.stop();
         _discoverJobConsumer.stop();
@@ -662,6 +689,87 @@ public class ControllerServiceImpl implements ControllerService {
 
     }
 
+    /**
+     * Queueing Discovery Job into the queue of the controller node owning the device,
+     * so that it runs where the connection to the device is already established.
+     * Jobs without a node queue (scan, monitoring) go to the shared queue.
+     * 
+     * @param job
+     * @param nodeId id of the controller node owning the device, null for the shared queue
+     * @throws Exception
+     */
+    public static void enqueueDataCollectionJob(DataCollectionJob job, String nodeId) throws Exception {
+        String jobType = job.getType();
+        String queueName = nodeId != null ? getNodeJobQueueName(jobType, nodeId) : null;
+        if (queueName == null) {
+            enqueueDataCollectionJob(job);
+            return;
+        }
+        DistributedQueue<DataCollectionJob> queue = _nodeJobQueues.get(queueName);
+        if (queue == null) {
+            synchronized (_nodeJobQueues) {
+                queue = _nodeJobQueues.get(queueName);
+                if (queue == null) {
+                    // put only queue of another node
+                    queue = _nodeJobQueueCoordinator.getQueue(queueName, null, new DataCollectionJobSerializer(),
+                            1, getJobQueueMaxItems(jobType));
+                    _nodeJobQueues.put(queueName, queue);
+                }
+            }
+        }
+        queue.put(job);
+        _log.info("Queued " + jobType + " job for " + job.systemString() + " on node " + nodeId);
+    }
+
+    private void startNodeJobQueue(String jobType, String nodeId, DataCollectionJobConsumer consumer,
+            String corePoolSizeKey) {
+        String queueName = getNodeJobQueueName(jobType, nodeId);
+        _nodeJobQueues.put(queueName, _coordinator.getQueue(queueName, consumer, new DataCollectionJobSerializer(),
+                Integer.parseInt(_configInfo.get(corePoolSizeKey)), getJobQueueMaxItems(jobType)));
+    }
+
+    /**
+     * @return name of the node queue of the job type, null if jobs of the type are not sharded
+     */
+    private static String getNodeJobQueueName(String jobType, String nodeId) {
+        String queueName;
+        if (jobType.equals(CS_DISCOVERY)) {
+            queueName = COMPUTE_DISCOVER_JOB_QUEUE_NAME;
+        } else if (isDiscoveryJobTypeSupported(jobType)) {
+            queueName = DISCOVER_JOB_QUEUE_NAME;
+        } else if (jobType.equals(METERING)) {
+            queueName = METERING_JOB_QUEUE_NAME;
+        } else {
+            return null;
+        }
+        return queueName + "-" + nodeId;
+    }
+
+    /**
+     * @param queueName name of a distributed queue
+     * @return id of the controller node whose discovery or metering jobs the queue holds,
+     *         null if it is not the queue of a node
+     */
+    public static String getNodeOfJobQueue(String queueName) {
+        for (String sharedQueueName : Arrays.asList(DISCOVER_JOB_QUEUE_NAME, COMPUTE_DISCOVER_JOB_QUEUE_NAME,
+                METERING_JOB_QUEUE_NAME)) {
+            String prefix = sharedQueueName + "-";
+            if (queueName.startsWith(prefix) && queueName.length() > prefix.length()) {
+                return queueName.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
+    private static int getJobQueueMaxItems(String jobType) {
+        if (jobType.equals(CS_DISCOVERY)) {
+            return COMPUTE_DISCOVER_JOB_QUEUE_MAX_ITEMS;
+        } else if (jobType.equals(METERING)) {
+            return METERING_JOB_QUEUE_MAX_ITEMS;
+        }
+        return DISCOVER_JOB_QUEUE_MAX_ITEMS;
+    }
+
     /**
      * Queueing MonitoringJob instance into Monitoring Queue
      * 
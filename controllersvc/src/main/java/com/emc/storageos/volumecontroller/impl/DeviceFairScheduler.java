@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.volumecontroller.impl.Dispatcher.Priority;
+
+/**
+ * Schedules the requests of a Dispatcher queue onto its thread pool.
+ *
+ * Requests wait in a ready queue per device and priority lane instead of the FIFO
+ * queue of the thread pool. Whenever a thread is free, the next request is taken from
+ * the highest priority lane that has work, going round robin across the devices of
+ * that lane and skipping devices that already run as many requests as they allow
+ * connections. A burst of requests for one array therefore neither holds all the
+ * threads nor delays requests for other arrays, and rollback steps overtake bulk work.
+ *
+ * A lower lane is not starved by a steady stream of higher priority requests: once
+ * as many higher priority requests as the starvation limit were dispatched in a row
+ * while it had work, the next request is taken from that lane. The devices of a
+ * queue are dropped once they have no queued or running requests.
+ */
+public class DeviceFairScheduler {
+    private static final Logger _log = LoggerFactory.getLogger(DeviceFairScheduler.class);
+    // key for requests that have no device
+    private static final URI NO_DEVICE = URI.create("urn:storageos:none");
+    private static final int DEFAULT_STARVATION_LIMIT = 8;
+
+    private final String _name;
+    private final Executor _executor;
+    private final ScheduledExecutorService _timer;
+    private volatile int _maxRunning;
+    private volatile int _starvationLimit = DEFAULT_STARVATION_LIMIT;
+
+    // guarded by _lock
+    private final Object _lock = new Object();
+    private final Map<URI, DeviceQueue> _devices = new HashMap<URI, DeviceQueue>();
+    private final Map<Priority, ArrayDeque<DeviceQueue>> _readyDevices = new EnumMap<Priority, ArrayDeque<DeviceQueue>>(
+            Priority.class);
+    // number of higher priority requests dispatched in a row while the lane had work
+    private final Map<Priority, Integer> _passedOver = new EnumMap<Priority, Integer>(Priority.class);
+    private int _running;
+
+    private static class Entry {
+        final Runnable _task;
+        final long _queuedAt = System.currentTimeMillis();
+
+        Entry(Runnable task) {
+            _task = task;
+        }
+    }
+
+    /**
+     * Pending and running requests of one device
+     */
+    private static class DeviceQueue {
+        final URI _device;
+        int _maxRunning;
+        int _running;
+        final Map<Priority, ArrayDeque<Entry>> _pending = new EnumMap<Priority, ArrayDeque<Entry>>(Priority.class);
+        final Map<Priority, Boolean> _ready = new EnumMap<Priority, Boolean>(Priority.class);
+        long _dispatched;
+        long _totalWaitMillis;
+        long _maxWaitMillis;
+
+        DeviceQueue(URI device) {
+            _device = device;
+            for (Priority priority : Priority.values()) {
+                _pending.put(priority, new ArrayDeque<Entry>());
+                _ready.put(priority, Boolean.FALSE);
+            }
+        }
+
+        int getQueued() {
+            int queued = 0;
+            for (ArrayDeque<Entry> entries : _pending.values()) {
+                queued += entries.size();
+            }
+            return queued;
+        }
+
+        boolean isIdle() {
+            return _running == 0 && getQueued() == 0;
+        }
+    }
+
+    /**
+     * Queue depth and wait time of the requests of a device
+     */
+    public static class DeviceQueueStats {
+        private final URI _device;
+        private final int _queued;
+        private final int _running;
+        private final long _dispatched;
+        private final long _averageWaitMillis;
+        private final long _maxWaitMillis;
+
+        DeviceQueueStats(DeviceQueue queue) {
+            _device = queue._device;
+            _queued = queue.getQueued();
+            _running = queue._running;
+            _dispatched = queue._dispatched;
+            _averageWaitMillis = queue._dispatched == 0 ? 0 : queue._totalWaitMillis / queue._dispatched;
+            _maxWaitMillis = queue._maxWaitMillis;
+        }
+
+        public URI getDevice() {
+            return _device;
+        }
+
+        /**
+         * @return number of requests waiting to run
+         */
+        public int getQueued() {
+            return _queued;
+        }
+
+        public int getRunning() {
+            return _running;
+        }
+
+        public long getDispatched() {
+            return _dispatched;
+        }
+
+        /**
+         * @return average time dispatched requests waited in the ready queue
+         */
+        public long getAverageWaitMillis() {
+            return _averageWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return _maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s queued=%d running=%d dispatched=%d avgWait=%dms maxWait=%dms",
+                    _device, _queued, _running, _dispatched, _averageWaitMillis, _maxWaitMillis);
+        }
+    }
+
+    /**
+     * @param name name used in log messages
+     * @param executor executor running the requests
+     * @param timer executor used to delay resubmitted requests
+     * @param maxRunning maximum number of requests run at the same time
+     */
+    public DeviceFairScheduler(String name, Executor executor, ScheduledExecutorService timer, int maxRunning) {
+        _name = name;
+        _executor = executor;
+        _timer = timer;
+        _maxRunning = maxRunning;
+        for (Priority priority : Priority.values()) {
+            _readyDevices.put(priority, new ArrayDeque<DeviceQueue>());
+            _passedOver.put(priority, 0);
+        }
+    }
+
+    public void setMaxRunning(int maxRunning) {
+        _maxRunning = maxRunning;
+        dispatch();
+    }
+
+    /**
+     * @param starvationLimit number of higher priority requests dispatched in a row while a
+     *            lower lane has work, before the next request is taken from the lower lane
+     */
+    public void setStarvationLimit(int starvationLimit) {
+        _starvationLimit = Math.max(starvationLimit, 1);
+    }
+
+    /**
+     * Queues a request for a device
+     *
+     * @param device device the request runs against, may be null
+     * @param maxRunning maximum number of requests run against the device at the same time
+     * @param priority priority lane of the request
+     * @param task the request
+     */
+    public void submit(URI device, int maxRunning, Priority priority, Runnable task) {
+        URI key = device != null ? device : NO_DEVICE;
+        Priority lane = priority != null ? priority : Priority.NORMAL;
+        synchronized (_lock) {
+            DeviceQueue queue = _devices.get(key);
+            if (queue == null) {
+                queue = new DeviceQueue(key);
+                _devices.put(key, queue);
+            }
+            queue._maxRunning = Math.max(maxRunning, 1);
+            queue._pending.get(lane).add(new Entry(task));
+            if (!queue._ready.get(lane)) {
+                queue._ready.put(lane, Boolean.TRUE);
+                _readyDevices.get(lane).add(queue);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Queues a request for a device after a delay, without holding a thread while waiting
+     *
+     * @see #submit(URI, int, Priority, Runnable)
+     */
+    public void submit(final URI device, final int maxRunning, final Priority priority, final Runnable task,
+            long delay, TimeUnit unit) {
+        _timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                submit(device, maxRunning, priority, task);
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * @return queue depth and wait time of each device with queued or running requests
+     */
+    public List<DeviceQueueStats> getStats() {
+        List<DeviceQueueStats> stats = new ArrayList<DeviceQueueStats>();
+        synchronized (_lock) {
+            for (DeviceQueue queue : _devices.values()) {
+                stats.add(new DeviceQueueStats(queue));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Hands requests to the executor while there are free threads and runnable requests
+     */
+    private void dispatch() {
+        while (true) {
+            final DeviceQueue queue;
+            final Entry entry;
+            synchronized (_lock) {
+                if (_running >= _maxRunning) {
+                    return;
+                }
+                Priority starved = getStarvedLane();
+                Priority lane = starved;
+                DeviceQueue next = starved != null ? poll(starved) : null;
+                for (Priority priority : Priority.values()) {
+                    if (next != null) {
+                        break;
+                    }
+                    lane = priority;
+                    next = poll(priority);
+                }
+                if (next == null) {
+                    return;
+                }
+                Entry nextEntry = next._pending.get(lane).poll();
+                if (next._pending.get(lane).isEmpty()) {
+                    next._ready.put(lane, Boolean.FALSE);
+                } else {
+                    _readyDevices.get(lane).add(next);
+                }
+                passOver(lane);
+                queue = next;
+                entry = nextEntry;
+                long wait = System.currentTimeMillis() - entry._queuedAt;
+                queue._running++;
+                queue._dispatched++;
+                queue._totalWaitMillis += wait;
+                queue._maxWaitMillis = Math.max(queue._maxWaitMillis, wait);
+                _running++;
+            }
+
+            try {
+                _executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            entry._task.run();
+                        } finally {
+                            done(queue);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                _log.error("{}: Executor rejected request for device {}", _name, queue._device, e);
+                synchronized (_lock) {
+                    release(queue);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the next device with a free connection from the round robin of a lane
+     *
+     * @return the device, no longer in the round robin, or null if the lane has none
+     */
+    private DeviceQueue poll(Priority lane) {
+        ArrayDeque<DeviceQueue> ready = _readyDevices.get(lane);
+        for (int i = ready.size(); i > 0; i--) {
+            DeviceQueue candidate = ready.poll();
+            if (candidate._running < candidate._maxRunning) {
+                return candidate;
+            }
+            // device is busy, keep its place in the round robin
+            ready.add(candidate);
+        }
+        return null;
+    }
+
+    /**
+     * @return the highest priority lane passed over as many times as the starvation limit, or null
+     */
+    private Priority getStarvedLane() {
+        for (Priority priority : Priority.values()) {
+            if (_passedOver.get(priority) >= _starvationLimit) {
+                return priority;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts a request dispatched from a lane against the lower lanes that have work
+     */
+    private void passOver(Priority lane) {
+        _passedOver.put(lane, 0);
+        for (Priority priority : Priority.values()) {
+            if (priority.compareTo(lane) > 0) {
+                _passedOver.put(priority, _readyDevices.get(priority).isEmpty() ? 0 : _passedOver.get(priority) + 1);
+            }
+        }
+    }
+
+    /**
+     * Frees the connection of a device, dropping the device once it has nothing left to run
+     */
+    private void release(DeviceQueue queue) {
+        queue._running--;
+        _running--;
+        if (queue.isIdle()) {
+            _devices.remove(queue._device);
+        }
+    }
+
+    private void done(DeviceQueue queue) {
+        synchronized (_lock) {
+            release(queue);
+        }
+        dispatch();
+    }
+}
@@ -60,6 +60,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
     private static final int DEFAULT_CONTROLLER_MAX_ITEM = 1000;
     private static final int MAX_WORKFLOW_STEPS = 10000;
     private static final long STALE_ITEM_THRESHOLD = 24 * 60 * 60 * 1000; // 24 hours in milliseconds
+    private static final long STATS_LOG_INTERVAL_SECONDS = 60;
 
     // Define the Queues used by the Dispatcher.
     // To add a new Queue, add its name to the QueueName enum, and then add a constructor
@@ -68,6 +69,60 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         controller, workflow_outer, workflow_inner;
     };
 
+    /**
+     * Priority lanes of a Dispatcher queue. A request is only run when no request of a
+     * higher priority lane is waiting for a device that has a free connection.
+     */
+    public static enum Priority {
+        INTERACTIVE, // rollback and cancel requests a user is waiting on
+        NORMAL,
+        BULK; // discovery and other background work
+
+        private static final String[] INTERACTIVE_METHOD_PREFIXES = { "rollback", "cancel" };
+        private static final String[] BULK_METHOD_PREFIXES = { "discover", "rediscover", "scan", "collect" };
+
+        /**
+         * Determines the default priority of a request from the name of the method invoked
+         * 
+         * @param methodName controller method name
+         * @return the priority lane of the request
+         */
+        public static Priority forMethod(String methodName) {
+            if (methodName != null) {
+                String name = methodName.toLowerCase();
+                for (String prefix : INTERACTIVE_METHOD_PREFIXES) {
+                    if (name.startsWith(prefix)) {
+                        return INTERACTIVE;
+                    }
+                }
+                for (String prefix : BULK_METHOD_PREFIXES) {
+                    if (name.startsWith(prefix)) {
+                        return BULK;
+                    }
+                }
+            }
+            return NORMAL;
+        }
+
+        /**
+         * Determines the priority lane recorded in a queued request. Requests queued
+         * without one, or by a node knowing other lanes, run in the NORMAL lane.
+         * 
+         * @param name name of the lane, may be null
+         * @return the priority lane of the request
+         */
+        public static Priority fromName(String name) {
+            if (name != null) {
+                try {
+                    return valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    _log.warn("Unknown priority {}, using {}", name, NORMAL);
+                }
+            }
+            return NORMAL;
+        }
+    };
+
     private class DispatcherQueue {
         final QueueName _queue_name;
         final Integer _method_executor_pool_size;
@@ -75,6 +130,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         Integer _queue_max_item;
         DistributedQueue<ControlRequest> _queue;
         ScheduledThreadPoolExecutor _methodPoolExecutor;
+        DeviceFairScheduler _scheduler;
 
         DispatcherQueue(QueueName name, Integer poolSize, Integer maxItem) {
             _queue_name = name;
@@ -114,6 +170,14 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         public void setMethodPoolExecutor(ScheduledThreadPoolExecutor executor) {
             _methodPoolExecutor = executor;
         }
+
+        public DeviceFairScheduler getScheduler() {
+            return _scheduler;
+        }
+
+        public void setScheduler(DeviceFairScheduler scheduler) {
+            _scheduler = scheduler;
+        }
     }
 
     DispatcherQueue[] _queues = {
@@ -190,6 +254,21 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         return deviceSemaphore;
     }
 
+    /**
+     * Returns how many requests may run against a device at the same time on this node,
+     * which is the number of connections allowed to the device when it is locked.
+     * 
+     * @param info Light wrapper of needed device properties (e.g., URI, DeviceType)
+     * @return maxConnections of the device type, or Integer.MAX_VALUE if not limited
+     */
+    private int getMaxRunning(DeviceInfo info) {
+        if (info == null || !info.getNeedsLock() || _deviceMaxConnectionMap == null) {
+            return Integer.MAX_VALUE;
+        }
+        Integer maxConnections = _deviceMaxConnectionMap.get(info.getType());
+        return maxConnections != null ? maxConnections.intValue() : Integer.MAX_VALUE;
+    }
+
     /**
      * A Runnable to enable periodic retries, in the event that the semaphore's leases are exhausted.
      * The item is processed and removed from the distributed queue when:
@@ -204,6 +283,9 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         private final DistributedQueueItemProcessedCallback _callback;
         private final DistributedSemaphore _deviceSemaphore;
         private final Object[] _args;
+        private final URI _deviceURI;
+        private final int _maxRunning;
+        private final Priority _priority;
 
         public DeviceMethodInvoker(ControlRequest item,
                 DistributedQueueItemProcessedCallback callback) throws DeviceControllerException {
@@ -219,6 +301,24 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
             _args = item.getArg();
             _deviceSemaphore = getSemaphore(item.getDeviceInfo());
             _callback = callback;
+            _deviceURI = item.getDeviceInfo() != null ? item.getDeviceInfo().getURI() : null;
+            _maxRunning = getMaxRunning(item.getDeviceInfo());
+            _priority = Priority.fromName(item.getPriority());
+        }
+
+        /**
+         * Queues the invoker to the scheduler of its queue
+         */
+        public void submit() {
+            _queue.getScheduler().submit(_deviceURI, _maxRunning, _priority, this);
+        }
+
+        /**
+         * Queues the invoker again after a delay. No thread is held while waiting, and
+         * the invoker goes behind the requests queued for the device in the meantime.
+         */
+        private void resubmit(long delaySeconds) {
+            _queue.getScheduler().submit(_deviceURI, _maxRunning, _priority, this, delaySeconds, TimeUnit.SECONDS);
         }
 
         @Override
@@ -274,7 +374,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                         } else {
                             // Could not get a lease. Retry.
                             _log.info("Rescheduling task {}: {}", _method.getName(), _args);
-                            _queue.getMethodPoolExecutor().schedule(this, _acquireLeaseRetryWaitTimeSeconds, TimeUnit.SECONDS);
+                            resubmit(_acquireLeaseRetryWaitTimeSeconds);
                             bRetryLease = true;
                         }
                     }
@@ -290,7 +390,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                     _item.setLockGroup(lockEx.getLockIdentifier());
                     if (!addRequestToLockQueue(lockEx, _item)) {
                         _log.warn("Rescheduling task {}: {}", _method.getName(), _args);
-                        _queue.getMethodPoolExecutor().schedule(this, LOCK_RETRY_WAIT_TIME_SECONDS, TimeUnit.SECONDS);
+                        resubmit(LOCK_RETRY_WAIT_TIME_SECONDS);
                         bRetryLock = true;
                     }
                 } else {
@@ -397,6 +497,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
      */
     public void setMethodExecutorPoolSize(int corePoolSize) {
         getDefaultQueue().getMethodPoolExecutor().setMaximumPoolSize(corePoolSize);
+        getDefaultQueue().getScheduler().setMaxRunning(corePoolSize);
     }
 
     /**
@@ -432,6 +533,37 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                         }
                     }
                     );
+            q.setScheduler(new DeviceFairScheduler(q.getQueueName().name(), q.getMethodPoolExecutor(),
+                    q.getMethodPoolExecutor(), q.getMethodExecutorPoolSize()));
+        }
+        getDefaultQueue().getMethodPoolExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                logDeviceQueueStats();
+            }
+        }, STATS_LOG_INTERVAL_SECONDS, STATS_LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the queue depth and wait time of the requests of each device in a Dispatcher queue
+     * 
+     * @param queueName the Dispatcher queue
+     * @return statistics of each device with queued or running requests on the queue
+     */
+    public List<DeviceFairScheduler.DeviceQueueStats> getDeviceQueueStats(QueueName queueName) {
+        return getQueue(queueName).getScheduler().getStats();
+    }
+
+    /**
+     * Logs the statistics of the devices that have requests waiting
+     */
+    private void logDeviceQueueStats() {
+        for (DispatcherQueue q : getQueues()) {
+            for (DeviceFairScheduler.DeviceQueueStats stats : q.getScheduler().getStats()) {
+                if (stats.getQueued() > 0) {
+                    _log.info("Dispatcher queue {}: {}", q.getQueueName(), stats);
+                }
+            }
         }
     }
 
@@ -484,8 +616,29 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
      */
     public void queue(final QueueName queueName, final URI deviceURI, final String deviceType, boolean lockDevice,
             Object target, String method, Object... args) throws ControllerException {
+        queue(queueName, deviceURI, deviceType, lockDevice, Priority.forMethod(method), target, method, args);
+    }
+
+    /**
+     * Queues a method call against device specific controller in the given priority lane
+     * 
+     * @param queueName of enum QueueName identifies the Dispatcher queue to be
+     *            used
+     * @param deviceURI
+     * @param deviceType
+     * @param lockDevice indicates whether a semaphore should be acquired for the device
+     * @param priority the priority lane of the request
+     * @param target
+     * @param method
+     * @param args
+     * 
+     * @throws ControllerException
+     */
+    public void queue(final QueueName queueName, final URI deviceURI, final String deviceType, boolean lockDevice,
+            Priority priority, Object target, String method, Object... args) throws ControllerException {
         ControlRequest req = new ControlRequest(queueName.name(),
                 new DeviceInfo(deviceURI, deviceType, lockDevice), target, method, args);
+        req.setPriority(priority.name());
         try {
             if (QueueName.controller.equals(queueName)) {
                 checkZkStepToWorkflowSize();
@@ -581,8 +734,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
 
     @Override
     public void consumeItem(ControlRequest item, DistributedQueueItemProcessedCallback callback) throws Exception {
-        DispatcherQueue queue = getQueue(item.getQueueName());
-        queue.getMethodPoolExecutor().execute(new DeviceMethodInvoker(item, callback));
+        new DeviceMethodInvoker(item, callback).submit();
     }
 
     /**
@@ -7,6 +7,7 @@ package com.emc.storageos.volumecontroller.impl.job;
 import com.emc.storageos.coordinator.client.service.impl.DistributedQueueConsumer;
 import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcessedCallback;
 import com.emc.storageos.exceptions.DeviceControllerException;
+import com.emc.storageos.services.util.NamedScheduledThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.model.ServiceError;
 import com.emc.storageos.volumecontroller.Job;
 import com.emc.storageos.volumecontroller.JobContext;
@@ -17,12 +18,24 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * QueueJobTracker tracks jobs in the job queue
+ * 
+ * By default all active jobs are polled by a single thread every tracking period. In
+ * event driven mode each job is instead scheduled on a poller pool of the provider it
+ * runs on, polled soon after it is queued and then at a growing interval capped by the
+ * tracking period. A job is polled immediately when the device notifies a status change
+ * for it (see {@link #jobStatusChanged(String)}), so completion latency does not depend
+ * on the number of jobs being tracked.
  */
 public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implements Runnable
 {
@@ -33,6 +46,15 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
     private ConcurrentLinkedQueue<JobWrapper> _activeJobs = new ConcurrentLinkedQueue<JobWrapper>();
     private JobContext _jobContext;
 
+    // event driven tracking
+    private boolean _eventDriven = false;
+    private long _minPollIntervalInMillis = 2000;
+    private double _pollBackoffFactor = 2.0;
+    private int _pollerThreadsPerProvider = 2;
+    private final ConcurrentMap<String, ScheduledThreadPoolExecutor> _providerPollers =
+            new ConcurrentHashMap<String, ScheduledThreadPoolExecutor>();
+    private final ConcurrentMap<String, TrackedJob> _jobsByDeviceId = new ConcurrentHashMap<String, TrackedJob>();
+
     private class JobWrapper
     {
         Job _job;
@@ -52,17 +74,174 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
         }
     }
 
+    /**
+     * A job polled on the poller pool of its provider at an adaptive interval
+     */
+    private class TrackedJob extends JobWrapper {
+        private final ScheduledThreadPoolExecutor _poller;
+        private long _pollInterval;
+        // incremented whenever the next poll is rescheduled, so a superseded poll is a no-op
+        private long _generation;
+        private ScheduledFuture<?> _nextPoll;
+        private boolean _polling;
+        private boolean _wakeUpPending;
+        private boolean _done;
+
+        public TrackedJob(Job job, DistributedQueueItemProcessedCallback cb, ScheduledThreadPoolExecutor poller) {
+            super(job, cb);
+            _poller = poller;
+            _pollInterval = _minPollIntervalInMillis;
+        }
+
+        private void schedule(long delay) {
+            final long generation = ++_generation;
+            _nextPoll = _poller.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(generation);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Polls the job right away instead of at its next scheduled time
+         */
+        public synchronized void wakeUp() {
+            if (_done) {
+                return;
+            }
+            if (_polling) {
+                _wakeUpPending = true;
+                return;
+            }
+            if (_nextPoll != null && _nextPoll.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                // already due
+                return;
+            }
+            if (_nextPoll != null) {
+                _nextPoll.cancel(false);
+            }
+            _pollInterval = _minPollIntervalInMillis;
+            schedule(0);
+        }
+
+        private void poll(long generation) {
+            synchronized (this) {
+                if (_done || _polling || generation != _generation) {
+                    return;
+                }
+                _polling = true;
+                _wakeUpPending = false;
+            }
+
+            boolean stopped = false;
+            Job job = getJob();
+            try {
+                setPollingStartTime(job);
+                JobPollResult result = job.poll(_jobContext, _pollInterval);
+                _logger.debug("Tracker: Job {} ({}) is {}% complete", new Object[] {
+                        result.getJobId(), result.getJobName(), result.getJobPercentComplete() });
+                stopped = stopTrackingIfDone(this, result);
+            } catch (Exception ex) {
+                _logger.error("Tracker: Unexpected exception.", ex);
+            }
+
+            synchronized (this) {
+                _polling = false;
+                if (stopped) {
+                    _done = true;
+                    String deviceJobId = job.getDeviceJobId();
+                    if (deviceJobId != null) {
+                        _jobsByDeviceId.remove(deviceJobId, this);
+                    }
+                    return;
+                }
+                if (_wakeUpPending) {
+                    _pollInterval = _minPollIntervalInMillis;
+                    schedule(0);
+                } else {
+                    _pollInterval = nextPollInterval(_pollInterval, _pollBackoffFactor, _trackingPeriodInMillis);
+                    schedule(_pollInterval);
+                }
+            }
+        }
+    }
+
     public void setJobContext(JobContext jobContext) {
         _jobContext = jobContext;
     }
 
     public void start() {
+        if (_eventDriven) {
+            _logger.info("Tracker: Event driven job tracking, poll interval {} to {} ms",
+                    _minPollIntervalInMillis, _trackingPeriodInMillis);
+            return;
+        }
         _trackerService = Executors.newSingleThreadExecutor();
         _trackerService.submit(this);
     }
 
     public void consumeItem(QueueJob job, DistributedQueueItemProcessedCallback cb) {
-        _activeJobs.add(new JobWrapper(job.getJob(), cb));
+        if (!_eventDriven) {
+            _activeJobs.add(new JobWrapper(job.getJob(), cb));
+            return;
+        }
+
+        TrackedJob trackedJob = new TrackedJob(job.getJob(), cb, getProviderPoller(job.getJob().getProviderKey()));
+        _activeJobs.add(trackedJob);
+        String deviceJobId = job.getJob().getDeviceJobId();
+        if (deviceJobId != null) {
+            _jobsByDeviceId.put(deviceJobId, trackedJob);
+        }
+        synchronized (trackedJob) {
+            trackedJob.schedule(_minPollIntervalInMillis);
+        }
+    }
+
+    /**
+     * Called when the device notifies a status change of a job, polls the job immediately
+     * if it is tracked by this node.
+     * 
+     * @param deviceJobId the id of the job on the device (see {@link Job#getDeviceJobId()})
+     * @return true if the job is tracked by this node
+     */
+    public boolean jobStatusChanged(String deviceJobId) {
+        TrackedJob trackedJob = deviceJobId != null ? _jobsByDeviceId.get(deviceJobId) : null;
+        if (trackedJob == null) {
+            return false;
+        }
+        _logger.debug("Tracker: Status change notified for job {}", deviceJobId);
+        trackedJob.wakeUp();
+        return true;
+    }
+
+    private ScheduledThreadPoolExecutor getProviderPoller(String providerKey) {
+        ScheduledThreadPoolExecutor poller = _providerPollers.get(providerKey);
+        if (poller == null) {
+            poller = new NamedScheduledThreadPoolExecutor("JobTracker-" + providerKey, _pollerThreadsPerProvider);
+            // providers with no active jobs don't hold on to threads
+            poller.setKeepAliveTime(_trackingPeriodInMillis * 2, TimeUnit.MILLISECONDS);
+            poller.allowCoreThreadTimeOut(true);
+            poller.setRemoveOnCancelPolicy(true);
+            ScheduledThreadPoolExecutor existing = _providerPollers.putIfAbsent(providerKey, poller);
+            if (existing != null) {
+                poller.shutdown();
+                poller = existing;
+            }
+        }
+        return poller;
+    }
+
+    /**
+     * Computes the interval until the next poll of a job that is still in progress
+     * 
+     * @param pollInterval the interval before the last poll
+     * @param backoffFactor the factor the interval grows by
+     * @param maxPollInterval upper bound of the interval
+     * @return the next poll interval
+     */
+    static long nextPollInterval(long pollInterval, double backoffFactor, long maxPollInterval) {
+        return Math.min(Math.max((long) (pollInterval * backoffFactor), pollInterval), maxPollInterval);
     }
 
     public void run() {
@@ -82,33 +261,7 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
                         JobPollResult result = job.poll(_jobContext, _trackingPeriodInMillis);
                         updateJobProgress(jobProgressMap, result);
 
-                        boolean stopJobTracking = false;
-                        String msg = null;
-                        // Check if we have to stop job tracking.
-                        if (result.isJobInTerminalState()) {
-                            // stop tracking jobs in final status and final post processing status
-                            msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s",
-                                    result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus());
-                            stopJobTracking = true;
-                        } else {
-                            long trackingTime = System.currentTimeMillis() - job.getPollingStartTime();
-                            if (trackingTime > Job.JOB_TRACKING_LIMIT) {
-                                // Stop tracking job if maximum job tracking time was reached.
-                                msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s .\n" +
-                                        "The job tracking time reached job tracking time limit, job tracking time %d hours.",
-                                        result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus(),
-                                        trackingTime / (60 * 60 * 1000));
-                                String errorMsg = String.format(
-                                        "Could not execute job %s on backend device. Exceeded time limit for job status tracking.",
-                                        result.getJobName());
-                                ServiceError error = DeviceControllerException.errors.unableToExecuteJob(errorMsg);
-                                job.getTaskCompleter().error(_jobContext.getDbClient(), error);
-                                stopJobTracking = true;
-                            }
-                        }
-                        if (stopJobTracking) {
-                            _logger.info(msg);
-                            stopTrackingJob(jobWrapper);
+                        if (stopTrackingIfDone(jobWrapper, result)) {
                             completedJobs.add(result.getJobId());
                         }
                     } catch (Exception ex) {
@@ -127,6 +280,46 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
         }
     }
 
+    /**
+     * Stops tracking the job if it reached a terminal state or the job tracking time limit
+     * 
+     * @param jobWrapper the tracked job
+     * @param result the result of the last poll of the job
+     * @return true if the job is no longer tracked
+     */
+    private boolean stopTrackingIfDone(JobWrapper jobWrapper, JobPollResult result) {
+        Job job = jobWrapper.getJob();
+        boolean stopJobTracking = false;
+        String msg = null;
+        // Check if we have to stop job tracking.
+        if (result.isJobInTerminalState()) {
+            // stop tracking jobs in final status and final post processing status
+            msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s",
+                    result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus());
+            stopJobTracking = true;
+        } else {
+            long trackingTime = System.currentTimeMillis() - job.getPollingStartTime();
+            if (trackingTime > Job.JOB_TRACKING_LIMIT) {
+                // Stop tracking job if maximum job tracking time was reached.
+                msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s .\n" +
+                        "The job tracking time reached job tracking time limit, job tracking time %d hours.",
+                        result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus(),
+                        trackingTime / (60 * 60 * 1000));
+                String errorMsg = String.format(
+                        "Could not execute job %s on backend device. Exceeded time limit for job status tracking.",
+                        result.getJobName());
+                ServiceError error = DeviceControllerException.errors.unableToExecuteJob(errorMsg);
+                job.getTaskCompleter().error(_jobContext.getDbClient(), error);
+                stopJobTracking = true;
+            }
+        }
+        if (stopJobTracking) {
+            _logger.info(msg);
+            stopTrackingJob(jobWrapper);
+        }
+        return stopJobTracking;
+    }
+
     private void updateJobProgress(HashMap<String, HashMap<String, Integer>> jobProgressMap, JobPollResult result) {
         HashMap<String, Integer> jobInstancesForJobName = jobProgressMap.get(result.getJobName());
         if (jobInstancesForJobName == null) {
@@ -170,6 +363,42 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
         this._trackingPeriodInMillis = trackingPeriodInMillis;
     }
 
+    public boolean isEventDriven() {
+        return _eventDriven;
+    }
+
+    /**
+     * @param eventDriven true to poll jobs on per provider poller pools at an adaptive
+     *            interval, false to poll all jobs every tracking period
+     */
+    public void setEventDriven(boolean eventDriven) {
+        _eventDriven = eventDriven;
+    }
+
+    public long getMinPollIntervalInMillis() {
+        return _minPollIntervalInMillis;
+    }
+
+    public void setMinPollIntervalInMillis(long minPollIntervalInMillis) {
+        _minPollIntervalInMillis = minPollIntervalInMillis;
+    }
+
+    public double getPollBackoffFactor() {
+        return _pollBackoffFactor;
+    }
+
+    public void setPollBackoffFactor(double pollBackoffFactor) {
+        _pollBackoffFactor = pollBackoffFactor;
+    }
+
+    public int getPollerThreadsPerProvider() {
+        return _pollerThreadsPerProvider;
+    }
+
+    public void setPollerThreadsPerProvider(int pollerThreadsPerProvider) {
+        _pollerThreadsPerProvider = pollerThreadsPerProvider;
+    }
+
     private void setPollingStartTime(Job job) {
         if (job.getPollingStartTime() == 0L) {
             // set job polling start time
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.volumecontroller.impl.monitoring.cim;
+
+import java.util.Hashtable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.cimadapter.connections.cim.CimConstants;
+import com.emc.storageos.cimadapter.consumers.CimIndicationConsumer;
+import com.emc.storageos.volumecontroller.impl.job.QueueJobTracker;
+
+/**
+ * An indication consumer that passes instance indications on SMI-S jobs to the job
+ * tracker, so that a job is polled as soon as the provider reports a change to it
+ * instead of at its next scheduled poll.
+ *
+ * This consumer expects the passed indication to be in the form of name/value pairs
+ * passed in a Hashtable<String, String>.
+ */
+public class JobStatusIndicationConsumer extends CimIndicationConsumer {
+
+    private static final Logger _logger = LoggerFactory.getLogger(JobStatusIndicationConsumer.class);
+
+    // name/value pairs of the job object path the indication is about
+    private static final String JOB_CLASS_NAME = CimConstants.INST_INDICATION_KEY + CimConstants.CLASS_NAME_KEY;
+    private static final String JOB_INSTANCE_ID = CimConstants.INST_INDICATION_KEY + "InstanceID";
+
+    private QueueJobTracker _jobTracker;
+
+    public void setJobTracker(QueueJobTracker jobTracker) {
+        _jobTracker = jobTracker;
+    }
+
+    @Override
+    public void consumeIndication(Object indicationData) {
+        if (!(indicationData instanceof Hashtable<?, ?>) || !_jobTracker.isEventDriven()) {
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Hashtable<String, String> indication = (Hashtable<String, String>) indicationData;
+        String className = indication.get(JOB_CLASS_NAME);
+        String instanceId = indication.get(JOB_INSTANCE_ID);
+        if (className == null || instanceId == null || !className.toLowerCase().endsWith("job")) {
+            return;
+        }
+
+        try {
+            if (_jobTracker.jobStatusChanged(instanceId)) {
+                _logger.debug("Status change indication received for job {}", instanceId);
+            }
+        } catch (Exception e) {
+            _logger.error("Exception while processing job indication for {}", instanceId, e);
+        }
+    }
+}
@@ -20,8 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
 import com.emc.storageos.coordinator.client.service.LeaderSelectorListenerForPeriodicTask;
 import com.emc.storageos.coordinator.client.service.impl.LeaderSelectorListenerImpl;
+import com.emc.storageos.coordinator.common.Service;
+import com.emc.storageos.coordinator.common.impl.ZkPath;
 import com.emc.storageos.datadomain.restapi.DataDomainClientFactory;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.URIUtil;
@@ -63,6 +66,9 @@ import com.emc.storageos.xtremio.restapi.XtremIOClientFactory;
  * 2. Consume Discovery Jobs
  * 3. Submit the Discovery Jobs to ExecutorService
  * 
+ * Discovery and metering jobs of a device are queued to the controller node owning the
+ * device, see {@link DataCollectionJobSharding}, so that they keep running where the
+ * provider connection and caches already exist.
  */
 public class DataCollectionJobScheduler {
     private static final Logger _logger = LoggerFactory
@@ -92,6 +98,9 @@ public class DataCollectionJobScheduler {
     private XtremIOClientFactory xioClientFactory;
     private PortMetricsProcessor _portMetricsProcessor;
     private LeaderSelector computePortMetricsSelector;
+    private Service _serviceInfo;
+    private final DataCollectionJobSharding _sharding = new DataCollectionJobSharding();
+    private DistributedDataManager _queueDataManager;
 
     static enum JobIntervals {
 
@@ -505,6 +514,7 @@ public class DataCollectionJobScheduler {
     }
 
     private void enqueueJobs(List<DataCollectionJob> jobs) {
+        refreshNodes();
         for (DataCollectionJob job : jobs) {
             try {
                 DataCollectionTaskCompleter completer = job.getCompleter();
@@ -517,7 +527,7 @@ public class DataCollectionJobScheduler {
                     _dbClient.persistObject(system);
                     completer.setNextRunTime(_dbClient,
                             System.currentTimeMillis() + JobIntervals.get(job.getType()).getInterval() * 1000);
-                    ControllerServiceImpl.enqueueDataCollectionJob(job);
+                    ControllerServiceImpl.enqueueDataCollectionJob(job, _sharding.getOwner(completer.getId()));
                 }
                 else {
                     _logger.info("Skipping {} Job for {}", job.getType(), completer.getId());
@@ -541,6 +551,107 @@ public class DataCollectionJobScheduler {
         }
     }
 
+    /**
+     * Updates the device ownership with the live controller nodes. The service lookup is
+     * served from the coordinator read cache, which is invalidated by zk watches when a
+     * node joins or leaves, so this is cheap and sees membership changes right away.
+     * The jobs left in the queues of departed nodes are then moved to their new owners.
+     */
+    private void refreshNodes() {
+        if (_serviceInfo == null) {
+            return;
+        }
+        try {
+            List<Service> services = _coordinator.locateAllServices(_serviceInfo.getName(),
+                    _serviceInfo.getVersion(), null, null);
+            List<String> nodes = new ArrayList<String>();
+            for (Service service : services) {
+                nodes.add(service.getId());
+            }
+            _sharding.setNodes(nodes);
+        } catch (Exception e) {
+            _logger.warn("Failed to look up controller nodes, keeping nodes {}: {}", _sharding.getNodes(), e.getMessage());
+            return;
+        }
+        // jobs are scheduled from every node, one at a time moves the jobs of departed nodes
+        ControllerServiceImpl.Lock lock = ControllerServiceImpl.Lock.NODE_JOB_QUEUE_LOCK;
+        try {
+            if (!lock.acquire(lock.getRecommendedTimeout())) {
+                return;
+            }
+            try {
+                synchronized (this) {
+                    if (_queueDataManager == null) {
+                        _queueDataManager = _coordinator.createDistributedDataManager(ZkPath.QUEUE.toString());
+                    }
+                }
+                moveJobsOfDepartedNodes(_queueDataManager);
+            } finally {
+                lock.release();
+            }
+        } catch (Exception e) {
+            _logger.warn("Failed to move the jobs of departed controller nodes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the jobs left in the queues of the controller nodes which are no longer live
+     * to the queues of the nodes now owning their devices, so that they neither wait for
+     * the idle timeout nor run a second time when the node comes back. The queues are kept
+     * in zk until moved, so a new leader moves whatever the previous one did not.
+     * A job which a node is still running holds the lock of its queue item, it is moved
+     * once the lock goes away with the zk session of the node.
+     * 
+     * @param queues data manager of the distributed queues
+     */
+    void moveJobsOfDepartedNodes(DistributedDataManager queues) throws Exception {
+        String queuesPath = ZkPath.QUEUE.toString();
+        for (String queueName : queues.getChildren(queuesPath)) {
+            String node = ControllerServiceImpl.getNodeOfJobQueue(queueName);
+            if (node == null || _sharding.getNodes().isEmpty() || _sharding.getNodes().contains(node)) {
+                continue;
+            }
+            String itemsPath = queuesPath + "/" + queueName + "/queue";
+            String locksPath = queuesPath + "/" + queueName + "/lock";
+            if (queues.checkExists(itemsPath) == null) {
+                continue;
+            }
+            List<String> items = queues.getChildren(itemsPath);
+            List<String> locks = queues.checkExists(locksPath) != null ? queues.getChildren(locksPath)
+                    : new ArrayList<String>();
+            for (String item : items) {
+                if (locks.contains(item)) {
+                    _logger.info("Job {} of departed node {} is still running, not moved", item, node);
+                    continue;
+                }
+                String itemPath = itemsPath + "/" + item;
+                DataCollectionJob job = (DataCollectionJob) queues.getData(itemPath, false);
+                if (job != null) {
+                    URI id = job.getCompleter().getId();
+                    String owner = _sharding.getOwner(id);
+                    _logger.info("Moving {} Job for {} from departed node {} to node {}",
+                            new Object[] { job.getType(), id, node, owner });
+                    enqueueMovedJob(job, owner);
+                }
+                queues.removeNode(itemPath);
+            }
+        }
+    }
+
+    /**
+     * Queues a job moved from the queue of a departed node
+     * 
+     * @param job the job
+     * @param owner id of the node now owning the device of the job
+     */
+    void enqueueMovedJob(DataCollectionJob job, String owner) throws Exception {
+        ControllerServiceImpl.enqueueDataCollectionJob(job, owner);
+    }
+
+    DataCollectionJobSharding getSharding() {
+        return _sharding;
+    }
+
     private <T extends DiscoveredSystemObject> boolean isInProgress(
             T storageSystem, String type) {
         // if inprogress,
@@ -783,6 +894,9 @@ public class DataCollectionJobScheduler {
     public void stop() {
         try {
             discoverySchedulingSelector.close();
+            if (_queueDataManager != null) {
+                _queueDataManager.close();
+            }
             _dataCollectionExecutorService.shutdown();
             _dataCollectionExecutorService.awaitTermination(120, TimeUnit.SECONDS);
         } catch (Exception e) {
@@ -813,6 +927,15 @@ public class DataCollectionJobScheduler {
         return _configInfo;
     }
 
+    /**
+     * Set the service info of this controller, used to look up the live controller nodes
+     * 
+     * @param serviceInfo
+     */
+    public void setServiceInfo(Service serviceInfo) {
+        _serviceInfo = serviceInfo;
+    }
+
     public void setConnectionFactory(CIMConnectionFactory cimConnectionFactory) {
         _connectionFactory = cimConnectionFactory;
     }
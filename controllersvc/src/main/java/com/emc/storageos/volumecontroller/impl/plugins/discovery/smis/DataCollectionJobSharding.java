@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.discovery.smis;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consistent hash ownership of devices across the live controller nodes.
+ *
+ * Each node is placed on a hash ring at a number of virtual points, and a device is owned
+ * by the node at the first point following the hash of its id. When a node joins or
+ * leaves, only the devices between its points and the points before them change owner,
+ * so the data collection jobs of all other devices keep running on the node that already
+ * holds their provider connections and caches.
+ *
+ * The jobs left in the queue of a departed node are moved to their new owner by the
+ * scheduler, see DataCollectionJobScheduler.moveJobsOfDepartedNodes.
+ */
+public class DataCollectionJobSharding {
+    private static final Logger _logger = LoggerFactory.getLogger(DataCollectionJobSharding.class);
+
+    static final int VIRTUAL_NODES = 128;
+
+    private static class Ring {
+        private final Set<String> _nodes;
+        private final TreeMap<Long, String> _points = new TreeMap<Long, String>();
+
+        Ring(Collection<String> nodes) {
+            _nodes = Collections.unmodifiableSet(new TreeSet<String>(nodes));
+            for (String node : _nodes) {
+                for (int i = 0; i < VIRTUAL_NODES; i++) {
+                    // on a collision the smallest node id keeps the point, on every node
+                    long point = hash(node + "#" + i);
+                    String current = _points.get(point);
+                    if (current == null || node.compareTo(current) < 0) {
+                        _points.put(point, node);
+                    }
+                }
+            }
+        }
+
+        String getOwner(String key) {
+            if (_points.isEmpty()) {
+                return null;
+            }
+            SortedMap<Long, String> tail = _points.tailMap(hash(key));
+            return tail.isEmpty() ? _points.firstEntry().getValue() : tail.get(tail.firstKey());
+        }
+    }
+
+    private volatile Ring _ring = new Ring(Collections.<String> emptySet());
+
+    /**
+     * Updates the live nodes
+     *
+     * @param nodes ids of the live controller nodes
+     * @return true if the membership changed
+     */
+    public synchronized boolean setNodes(Collection<String> nodes) {
+        Set<String> current = new TreeSet<String>(nodes);
+        if (current.equals(_ring._nodes)) {
+            return false;
+        }
+        _logger.info("Data collection nodes changed from {} to {}", _ring._nodes, current);
+        _ring = new Ring(current);
+        return true;
+    }
+
+    /**
+     * @return ids of the live nodes
+     */
+    public Set<String> getNodes() {
+        return _ring._nodes;
+    }
+
+    /**
+     * @param id device id
+     * @return id of the node owning the device, null if no node is known
+     */
+    public String getOwner(URI id) {
+        return _ring.getOwner(id.toString());
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is available on every java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -70,6 +70,7 @@ public class PortMetricsProcessor {
     private static volatile CoordinatorClient _coordinator;
     @Autowired
     private static CustomConfigHandler customConfigHandler;
+    private static volatile PortMetricsStore _metricsStore = new PortMetricsStore();
 
     final private static int DEFAULT_PORT_UTILIZATION_CEILING = 100;
     final private static int DEFAULT_CPU_UTILIZATION_CEILING = 100;
@@ -130,7 +131,7 @@ public class PortMetricsProcessor {
         percentBusy *= 10.0;
         if (percentBusy >= 0.0) {
         	computePercentBusyAverages(percentBusy.longValue(), 1000L, iopsDelta,
-        			dbMetrics, haDomain.getNativeGuid(),
+        			dbMetrics, haDomain.getId(), haDomain.getNativeGuid(),
         			haDomain.getAdapterName() + " [cpu]", sampleTime, system);
         }
 
@@ -181,7 +182,7 @@ public class PortMetricsProcessor {
         // If we have had a previous sample, and this sample has accumulated time
         if (busyTicks >= 0 && cumTicksValue > 0L && cumTicksDelta > 0L) {
             computePercentBusyAverages(busyTicks, cumTicksDelta, iopsDelta,
-                    dbMetrics, haDomain.getNativeGuid(),
+                    dbMetrics, haDomain.getId(), haDomain.getNativeGuid(),
                     haDomain.getAdapterName() + " [cpu]", sampleTime, system);
         }
 
@@ -244,11 +245,11 @@ public class PortMetricsProcessor {
         // and the kbytesDelta is not negative, add it to the average.
         if (kbytesDelta >= 0 && secondsDelta > 0 && secondsDelta < SECONDS_PER_YEAR) {
             computePercentBusyAverages(kbytesDelta / secondsDelta, maxKBytesPerSecond, iopsDelta,
-                    dbMetrics, port.getNativeGuid(), portName(port), sampleTime, system);
+                    dbMetrics, port.getId(), port.getNativeGuid(), portName(port), sampleTime, system);
             // Compute the current port metric.
             List<StoragePort> portList = new ArrayList<StoragePort>();
             portList.add(port);
-            updateStaticPortUsage(portList);
+            updateStaticPortUsage(portList, false);
             Double portMetric = computePortMetric(port);
             MetricsKeys.putDouble(MetricsKeys.portMetric, portMetric, dbMetrics);
             MetricsKeys.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis(), dbMetrics);
@@ -317,11 +318,11 @@ public class PortMetricsProcessor {
         // and the kbytesDelta is not negative, add it to the average.
         if (kbytesDelta >= 0 && secondsDelta > 0 && secondsDelta < SECONDS_PER_YEAR) {
             computePercentBusyAverages(kbytesDelta / secondsDelta, maxKBytesPerSecond, iopsDelta,
-                    dbMetrics, port.getNativeGuid(), portName(port), sampleTime, system);
+                    dbMetrics, port.getId(), port.getNativeGuid(), portName(port), sampleTime, system);
             // Compute the current port metric.
             List<StoragePort> portList = new ArrayList<StoragePort>();
             portList.add(port);
-            updateStaticPortUsage(portList);
+            updateStaticPortUsage(portList, false);
             Double portMetric = computePortMetric(port);
             MetricsKeys.putDouble(MetricsKeys.portMetric, portMetric, dbMetrics);
             MetricsKeys.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis(), dbMetrics);
@@ -397,12 +398,13 @@ public class PortMetricsProcessor {
      * @param denomDelta -- The denominator of the percent calculated as the delta between two samples.
      * @param iopsDelta -- The iops delta between the two samples. Used for informational purposes now.
      * @param dbMetrics -- The db metrics field of the appropriate structure (StoragePort or StorageHADomain).
+     * @param id -- The id of the element, keying its samples in the metrics store.
      * @param nativeGuid -- The native guid of the element (for logging).
      * @param name -- The name of the port or cpu (for logging).
      * @param sampleTime -- The sample time of this sample.
      */
     private void computePercentBusyAverages(Long numeratorDelta, Long denomDelta, Long iopsDelta,
-            StringMap dbMetrics, String nativeGuid, String name, Long sampleTime, StorageSystem system) {
+            StringMap dbMetrics, URI id, String nativeGuid, String name, Long sampleTime, StorageSystem system) {
         // Read existing values.
         Long avgCountValue = MetricsKeys.getLong(MetricsKeys.avgCount, dbMetrics);
         Long avgStartTimeValue = MetricsKeys.getLong(MetricsKeys.avgStartTime, dbMetrics);
@@ -425,18 +427,22 @@ public class PortMetricsProcessor {
             _log.error("avgPercentBusyValue invalid: " + avgPercentBusyValue.toString());
             avgPercentBusyValue = percentBusy;
         }
-        Double avgPercentBusy = (1.0 / (avgCountValue + 1.0)) * percentBusy
-                + ((double) avgCountValue / (avgCountValue + 1.0)) * avgPercentBusyValue;
 
-        // Check to see if the average should be reset. It is reset when
+        // The short term average is the mean of the samples of the last averagePeriod,
+        // kept in a sliding window by the metrics store. The window of an element this node
+        // has no samples of yet starts from the persisted average.
+        Long currentTime = System.currentTimeMillis();
+        Long averagePeriod = getMinutesToAverage(DiscoveredDataObject.Type.valueOf(system.getSystemType()))
+                * MSEC_PER_MIN;
+        Double avgPercentBusy = _metricsStore.addSample(id, currentTime, percentBusy, averagePeriod,
+                avgCountValue > 0 ? avgPercentBusyValue : null, avgStartTimeValue);
+
+        // Check to see if the average should be folded into the ema. It is folded when
         // a sample arrives whoose time difference from the avgStartTime
         // (i.e. the time the current average was started) exceeds
         // the averagePeriod (expressed in msec.)
         // In this case we reset the avgStartTime to the current time, and update
         // the emaPercentBusy with our current avgPercentBusy.
-        Long currentTime = System.currentTimeMillis();
-        Long averagePeriod = getMinutesToAverage(DiscoveredDataObject.Type.valueOf(system.getSystemType()))
-                * MSEC_PER_MIN;
         avgCountValue++;
         if ((currentTime - avgStartTimeValue) > averagePeriod) {
             _log.debug("Resetting average for: " + nativeGuid + " " + name);
@@ -682,6 +688,14 @@ public class PortMetricsProcessor {
         return _dbClient;
     }
 
+    public void setMetricsStore(PortMetricsStore metricsStore) {
+        _metricsStore = metricsStore;
+    }
+
+    public PortMetricsStore getMetricsStore() {
+        return _metricsStore;
+    }
+
     /**
      * Eliminates ports from the candidate list that are over one of their ceilings.
      * 
@@ -720,10 +734,11 @@ public class PortMetricsProcessor {
         // to optimize performance, avoid redundant update port usage. When this method invoked
         // locally, port usage is already computed. Hence, usage values generally do not need to update
         if (updatePortUsages) {
-            updateStaticPortUsage(Collections.singletonList(sp));
+            updateStaticPortUsage(Collections.singletonList(sp), true);
         }
 
         StringMap metrics = sp.getMetrics();
+        Map<String, String> metricsBefore = new HashMap<String, String>(metrics);
         Long initiatorCount = MetricsKeys.getLong(MetricsKeys.initiatorCount, metrics);
         Integer ceiling = getInitiatorCeiling(StorageSystem.Type.valueOf(system.getSystemType()));
         if (initiatorCount >= ceiling) {
@@ -773,7 +788,9 @@ public class PortMetricsProcessor {
 
         // Save the over ceiling value for display on the UI.
         MetricsKeys.putBoolean(MetricsKeys.allocationDisqualified, overCeiling, sp.getMetrics());
-        _dbClient.persistObject(sp);
+        if (!metricsBefore.equals(metrics)) {
+            _dbClient.persistObject(sp);
+        }
         return overCeiling;
     }
 
@@ -862,10 +879,14 @@ public class PortMetricsProcessor {
 
     /**
      * Updates the static port usage parameters for a set of ports.
+     * The counts computed from the export masks are kept in the metrics store, and ports whose
+     * counts did not change are not persisted.
      * 
      * @param candidatePorts List<StoragePort>
+     * @param useStoredUsage -- if true, the counts kept in the metrics store are used while
+     *            recent enough rather than computed again from the export masks
      */
-    static private void updateStaticPortUsage(List<StoragePort> candidatePorts) {
+    static private void updateStaticPortUsage(List<StoragePort> candidatePorts, boolean useStoredUsage) {
         _log.debug(String.format("updateStaticPortUsage: %s", candidatePorts.toString()));
         StorageSystem system = null;
         Map<StoragePort, Long> portCache = new HashMap<StoragePort, Long>();
@@ -873,6 +894,11 @@ public class PortMetricsProcessor {
             system = _dbClient.queryObject(StorageSystem.class, candidatePorts.get(0).getStorageDevice());
         }
         for (StoragePort sp : candidatePorts) {
+            PortMetricsStore.Usage usage = useStoredUsage ? _metricsStore.getUsage(sp.getId()) : null;
+            if (usage != null) {
+                setStaticPortUsage(sp, usage.getInitiatorCount(), usage.getVolumeCount());
+                continue;
+            }
             Long initiatorCount = 0L;
             Long volumeCount = 0L;
             // Find all the Export Masks containing the port.
@@ -918,15 +944,55 @@ public class PortMetricsProcessor {
             }
 
             // Update the counts.
-            MetricsKeys.putLong(MetricsKeys.initiatorCount, initiatorCount, sp.getMetrics());
-            MetricsKeys.putLong(MetricsKeys.volumeCount, volumeCount, sp.getMetrics());
-            _dbClient.persistObject(sp);
+            _metricsStore.putUsage(sp.getId(), initiatorCount, volumeCount);
+            setStaticPortUsage(sp, initiatorCount, volumeCount);
 
             _log.debug(String.format("Port %s %s updated initiatorCount %d volumeCount %d",
                     sp.getNativeGuid(), portName(sp), initiatorCount, volumeCount));
         }
     }
 
+    /**
+     * Sets the initiator and volume counts of a port, persisting it if they changed.
+     */
+    static private void setStaticPortUsage(StoragePort sp, Long initiatorCount, Long volumeCount) {
+        StringMap metrics = sp.getMetrics();
+        if (initiatorCount.equals(MetricsKeys.getLong(MetricsKeys.initiatorCount, metrics))
+                && volumeCount.equals(MetricsKeys.getLong(MetricsKeys.volumeCount, metrics))
+                && metrics.containsKey(MetricsKeys.initiatorCount.name())
+                && metrics.containsKey(MetricsKeys.volumeCount.name())) {
+            return;
+        }
+        MetricsKeys.putLong(MetricsKeys.initiatorCount, initiatorCount, metrics);
+        MetricsKeys.putLong(MetricsKeys.volumeCount, volumeCount, metrics);
+        _dbClient.persistObject(sp);
+    }
+
+    /**
+     * Drops the counts of ports kept in the metrics store, so they are computed from the export masks next time.
+     * 
+     * @param ports -- List<StoragePort>
+     */
+    private void removeStoredPortUsage(List<StoragePort> ports) {
+        for (StoragePort sp : ports) {
+            _metricsStore.removeUsage(sp.getId());
+        }
+    }
+
+    /**
+     * Records the initiators and volumes just allocated to ports in the metrics store, so
+     * that the following allocations see them without counting the export masks again.
+     * 
+     * @param ports -- the ports allocated
+     * @param initiators -- number of initiators added to each port
+     * @param volumes -- number of volumes added to each port
+     */
+    public void addStaticPortUsage(List<StoragePort> ports, long initiators, long volumes) {
+        for (StoragePort sp : ports) {
+            _metricsStore.addUsage(sp.getId(), initiators, volumes);
+        }
+    }
+
     /**
      * For the VMAX2, we calculate the number of volumes using a port differently.
      * We identify all the volumes using either of the ports on a cpu, and then sum the
@@ -1405,6 +1471,7 @@ public class PortMetricsProcessor {
             for (URI storageSystemId : storageSysteIds) {
                 StorageSystem storageSystem = _dbClient.queryObject(StorageSystem.class, storageSystemId);
                 List<StoragePort> systemPorts = ControllerUtils.getSystemPortsOfSystem(_dbClient, storageSystemId);
+                removeStoredPortUsage(systemPorts);
                 computeStoragePortUsage(systemPorts, storageSystem, true);
                 computeStorageSystemAvgPortMetrics(storageSystemId);
             }
@@ -1427,6 +1494,7 @@ public class PortMetricsProcessor {
         Set<StoragePort> disqualifiedPortBeforeCompute = filterAllocationDisqualifiedPorts(storagePorts);
 
         // compute ports usage which also determine whether their qualification changed
+        removeStoredPortUsage(storagePorts);
         computeStoragePortUsage(storagePorts, storageSystem, true);
 
         // get list of ports that are disqualified from allocation process after they are compute for
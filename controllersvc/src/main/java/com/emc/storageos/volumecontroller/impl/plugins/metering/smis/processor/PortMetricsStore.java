@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In memory port metrics of this controller node, used by the PortMetricsProcessor.
+ *
+ * Percent busy samples of each port and cpu are kept in a fixed size window, so that the
+ * short term average is the mean of the samples of the last average period rather than
+ * of the samples since the period started, which dropped to a single sample at the start
+ * of every period. Metering of a storage system stays on the node owning it, so the
+ * windows fill on that node; after a restart a window starts from the persisted average.
+ *
+ * The initiator and volume counts of each port are kept with the time they were counted
+ * from the export masks, so that port allocation can use them for a while instead of
+ * visiting all the export masks of all the candidate ports on every export. Ports
+ * allocated in the meantime have their counts raised as they are allocated.
+ *
+ * The persisted port metrics remain what the other nodes and the UI read. Subclasses can
+ * replace the in memory state, see PortMetricsProcessor.setMetricsStore.
+ */
+public class PortMetricsStore {
+    /** Maximum number of samples averaged per port or cpu */
+    static final int WINDOW_CAPACITY = 64;
+    private static final long DEFAULT_USAGE_MAX_AGE_MSEC = 60 * 1000L;
+
+    /**
+     * Ring buffer of the latest percent busy samples of a port or cpu
+     */
+    static class SampleWindow {
+        private final long[] _times = new long[WINDOW_CAPACITY];
+        private final double[] _values = new double[WINDOW_CAPACITY];
+        // index of the oldest sample
+        private int _first;
+        private int _size;
+        private double _sum;
+
+        synchronized double add(long time, double value, long windowMsec) {
+            if (_size == WINDOW_CAPACITY) {
+                removeFirst();
+            }
+            int last = (_first + _size) % WINDOW_CAPACITY;
+            _times[last] = time;
+            _values[last] = value;
+            _size++;
+            _sum += value;
+            while (_size > 1 && time - _times[_first] > windowMsec) {
+                removeFirst();
+            }
+            return mean();
+        }
+
+        private void removeFirst() {
+            _first = (_first + 1) % WINDOW_CAPACITY;
+            _size--;
+            if (_first == 0) {
+                // add up again once per turn of the buffer, dropping the rounding errors of the running sum
+                _sum = 0.0;
+                for (int i = 0; i < _size; i++) {
+                    _sum += _values[i];
+                }
+            } else {
+                _sum -= _values[(_first + WINDOW_CAPACITY - 1) % WINDOW_CAPACITY];
+            }
+        }
+
+        synchronized double mean() {
+            return _size == 0 ? 0.0 : _sum / _size;
+        }
+
+        synchronized int size() {
+            return _size;
+        }
+    }
+
+    /**
+     * Initiator and volume counts of a port
+     */
+    public static class Usage {
+        private final long _initiatorCount;
+        private final long _volumeCount;
+        private final long _countedAt;
+
+        Usage(long initiatorCount, long volumeCount, long countedAt) {
+            _initiatorCount = initiatorCount;
+            _volumeCount = volumeCount;
+            _countedAt = countedAt;
+        }
+
+        public long getInitiatorCount() {
+            return _initiatorCount;
+        }
+
+        public long getVolumeCount() {
+            return _volumeCount;
+        }
+
+        /**
+         * @return time the counts were computed from the export masks
+         */
+        public long getCountedAt() {
+            return _countedAt;
+        }
+    }
+
+    private final ConcurrentMap<URI, SampleWindow> _windows = new ConcurrentHashMap<URI, SampleWindow>();
+    private final ConcurrentMap<URI, Usage> _usages = new ConcurrentHashMap<URI, Usage>();
+    private volatile long _usageMaxAgeMsec = DEFAULT_USAGE_MAX_AGE_MSEC;
+
+    /**
+     * Adds a percent busy sample of a port or cpu.
+     *
+     * @param id port or HA domain id
+     * @param time time of the sample
+     * @param percentBusy percent busy of the sample
+     * @param windowMsec the average period, older samples are dropped
+     * @param persistedAverage average persisted before this node had samples, null if none
+     * @param persistedTime time of the persisted average
+     * @return mean percent busy over the average period
+     */
+    public double addSample(URI id, long time, double percentBusy, long windowMsec,
+            Double persistedAverage, long persistedTime) {
+        SampleWindow window = _windows.get(id);
+        if (window == null) {
+            SampleWindow created = new SampleWindow();
+            window = _windows.putIfAbsent(id, created);
+            if (window == null) {
+                window = created;
+                if (persistedAverage != null) {
+                    window.add(persistedTime, persistedAverage, windowMsec);
+                }
+            }
+        }
+        return window.add(time, percentBusy, windowMsec);
+    }
+
+    /**
+     * @param portId port id
+     * @return counts of the port if counted within the maximum age, otherwise null
+     */
+    public Usage getUsage(URI portId) {
+        Usage usage = _usages.get(portId);
+        if (usage == null || System.currentTimeMillis() - usage.getCountedAt() > _usageMaxAgeMsec) {
+            return null;
+        }
+        return usage;
+    }
+
+    /**
+     * Records counts of a port just computed from the export masks
+     */
+    public void putUsage(URI portId, long initiatorCount, long volumeCount) {
+        _usages.put(portId, new Usage(initiatorCount, volumeCount, System.currentTimeMillis()));
+    }
+
+    /**
+     * Raises the counts of a port being allocated. Ports whose counts are not kept are
+     * skipped, they are counted from the export masks next time.
+     *
+     * @param portId port id
+     * @param initiators initiators added
+     * @param volumes volumes added
+     */
+    public void addUsage(URI portId, long initiators, long volumes) {
+        while (true) {
+            Usage usage = _usages.get(portId);
+            if (usage == null) {
+                return;
+            }
+            Usage raised = new Usage(usage.getInitiatorCount() + initiators, usage.getVolumeCount() + volumes,
+                    usage.getCountedAt());
+            if (_usages.replace(portId, usage, raised)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the counts of a port, so they are computed from the export masks next time
+     */
+    public void removeUsage(URI portId) {
+        _usages.remove(portId);
+    }
+
+    /**
+     * @param usageMaxAgeMsec how long the counts of a port are used before being computed again
+     */
+    public void setUsageMaxAgeMsec(long usageMaxAgeMsec) {
+        _usageMaxAgeMsec = usageMaxAgeMsec;
+    }
+
+    public long getUsageMaxAgeMsec() {
+        return _usageMaxAgeMsec;
+    }
+}
@@ -91,6 +91,19 @@ public class SmisJob extends Job implements Serializable
         return (String) _map.get(JOB_NAME_NAME);
     }
 
+    @Override
+    public String getProviderKey() {
+        URI storageSystem = getStorageSystemURI();
+        return storageSystem != null ? storageSystem.toString() : super.getProviderKey();
+    }
+
+    @Override
+    public String getDeviceJobId() {
+        CIMObjectPath cimJob = getCimJob();
+        CIMProperty<?> instanceID = cimJob != null ? cimJob.getKey("InstanceID") : null;
+        return instanceID != null && instanceID.getValue() != null ? instanceID.getValue().toString() : null;
+    }
+
     private long getErrorTrackingStartTime() {
         return (Long) _map.get(ERROR_TRACKING_START_TIME);
     }
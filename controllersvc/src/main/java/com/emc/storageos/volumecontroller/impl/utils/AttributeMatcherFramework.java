@@ -10,6 +10,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +47,51 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
     private static final Logger _logger = LoggerFactory
             .getLogger(AttributeMatcherFramework.class);
     private static volatile ApplicationContext _context;
+    private static final ConcurrentMap<String, MatcherStats> _matcherStats = new ConcurrentHashMap<String, MatcherStats>();
+
+    /**
+     * Counters of the runs of an attribute matcher since the controller started
+     */
+    public static class MatcherStats {
+        private final AtomicLong _runs = new AtomicLong();
+        private final AtomicLong _poolsIn = new AtomicLong();
+        private final AtomicLong _poolsOut = new AtomicLong();
+        private final AtomicLong _nanos = new AtomicLong();
+
+        void record(int poolsIn, int poolsOut, long nanos) {
+            _runs.incrementAndGet();
+            _poolsIn.addAndGet(poolsIn);
+            _poolsOut.addAndGet(poolsOut);
+            _nanos.addAndGet(nanos);
+        }
+
+        public long getRuns() {
+            return _runs.get();
+        }
+
+        /**
+         * @return number of pools passed to the matcher
+         */
+        public long getPoolsIn() {
+            return _poolsIn.get();
+        }
+
+        /**
+         * @return number of pools the matcher kept
+         */
+        public long getPoolsOut() {
+            return _poolsOut.get();
+        }
+
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(_nanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d runs, %d ms, %d of %d pools kept", getRuns(), getMillis(), getPoolsOut(), getPoolsIn());
+        }
+    }
 
     @Override
     public void setApplicationContext(ApplicationContext appContext)
@@ -77,7 +127,10 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
                 int poolSizeAtTheStart = matchedPools.size();
                 if (!matchedPools.isEmpty()) {
                     _logger.debug("passing {} pools to match", matchedPools.size());
+                    long start = System.nanoTime();
                     matchedPools = matcher.runMatchStoragePools(matchedPools, attributeMap);
+                    getMatcherStats(matcher.getClass().getSimpleName()).record(poolSizeAtTheStart, matchedPools.size(),
+                            System.nanoTime() - start);
                     if (matchedPools.isEmpty()) {
                         _logger.info(String.format("Failed to find match because of %s",
                                 matcher.getClass().getSimpleName()));
@@ -101,6 +154,28 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
         return matchedPools;
     }
 
+    private static MatcherStats getMatcherStats(String matcherName) {
+        MatcherStats stats = _matcherStats.get(matcherName);
+        if (stats == null) {
+            MatcherStats created = new MatcherStats();
+            stats = _matcherStats.putIfAbsent(matcherName, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the time spent in each attribute matcher and the pools it eliminated, since
+     * the controller started.
+     *
+     * @return counters by matcher class name
+     */
+    public static Map<String, MatcherStats> getMatcherStats() {
+        return new TreeMap<String, MatcherStats>(_matcherStats);
+    }
+
     /**
      * Method will iterate through all AttributeMatchers (not a subset) and apply common references to them.
      *
@@ -191,17 +191,30 @@ public class ImplicitPoolMatcher {
      */
     public static void matchModifiedStoragePoolsWithAllVirtualPool(List<StoragePool> updatedPoolList,
             DbClient dbClient, CoordinatorClient coordinator) {
+        long start = System.currentTimeMillis();
         List<URI> vpoolURIs = dbClient.queryByType(VirtualPool.class, true);
         Iterator<VirtualPool> vpoolListItr = dbClient.queryIterativeObjects(VirtualPool.class, vpoolURIs);
         List<VirtualPool> vPoolsToUpdate = new ArrayList<VirtualPool>();
+        StoragePoolMatchingIndex index = new StoragePoolMatchingIndex(updatedPoolList, dbClient);
         while (vpoolListItr.hasNext()) {
             VirtualPool vpool = vpoolListItr.next();
-            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, null);
+            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, null, index);
             vPoolsToUpdate.add(vpool);
         }
         if (!vPoolsToUpdate.isEmpty()) {
             persistUpdatedVpoolList(vPoolsToUpdate, dbClient);
         }
+        logMatchingStats(vPoolsToUpdate.size(), updatedPoolList.size(), index, start);
+    }
+
+    /**
+     * Logs how many vpool and pool pairs were run through the matchers, and the time spent
+     * in each matcher so far.
+     */
+    private static void logMatchingStats(int vpools, int pools, StoragePoolMatchingIndex index, long start) {
+        _logger.info("Matched {} vpools with {} pools in {} ms, {} of {} pairs run through the matchers",
+                vpools, pools, System.currentTimeMillis() - start, index.getCandidatePairs(), index.getPairs());
+        _logger.info("Attribute matcher stats: {}", AttributeMatcherFramework.getMatcherStats());
     }
 
     /**
@@ -216,9 +229,10 @@ public class ImplicitPoolMatcher {
                                                                  DbClient dbClient, CoordinatorClient coordinator, String matcherGroupName) {
         Iterator<VirtualPool> vpoolListItr = dbClient.queryIterativeObjects(VirtualPool.class, vpoolURIs);
         List<VirtualPool> vPoolsToUpdate = new ArrayList<VirtualPool>();
+        StoragePoolMatchingIndex index = new StoragePoolMatchingIndex(updatedPoolList, dbClient);
         while (vpoolListItr.hasNext()) {
             VirtualPool vpool = vpoolListItr.next();
-            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, matcherGroupName);
+            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, matcherGroupName, index);
             vPoolsToUpdate.add(vpool);
         }
         if (!vPoolsToUpdate.isEmpty()) {
@@ -239,11 +253,24 @@ public class ImplicitPoolMatcher {
      */
     public static void matchvPoolWithStoragePools(VirtualPool vpool, List<StoragePool> pools, DbClient dbClient,
             CoordinatorClient coordinator, String matcherGroupName) {
+        matchvPoolWithStoragePools(vpool, pools, dbClient, coordinator, matcherGroupName,
+                new StoragePoolMatchingIndex(pools, dbClient));
+    }
+
+    /**
+     * Matches given VirtualPool with list of pools provided and update matched/invalid pools in
+     * VirtualPool.
+     * 
+     * @param index index of the pools, shared by the virtual pools matched in one run
+     */
+    private static void matchvPoolWithStoragePools(VirtualPool vpool, List<StoragePool> pools, DbClient dbClient,
+            CoordinatorClient coordinator, String matcherGroupName, StoragePoolMatchingIndex index) {
         List<StoragePool> filterPools = getMatchedPoolWithStoragePools(vpool, pools,
                 VirtualPool.getProtectionSettings(vpool, dbClient),
                 VirtualPool.getRemoteProtectionSettings(vpool, dbClient),
-                VirtualPool.getFileRemoteProtectionSettings(vpool, dbClient), dbClient, coordinator, matcherGroupName);
-        updateInvalidAndMatchedPoolsForVpool(vpool, filterPools, pools, dbClient);
+                VirtualPool.getFileRemoteProtectionSettings(vpool, dbClient), dbClient, coordinator, matcherGroupName,
+                index);
+        updateInvalidAndMatchedPoolsForVpool(vpool, filterPools, pools, index);
     }
 
     /**
@@ -258,6 +285,23 @@ public class ImplicitPoolMatcher {
             Map<URI, VpoolRemoteCopyProtectionSettings> fileRemoteSettingsMap,
             DbClient dbClient,
             CoordinatorClient coordinator, String matcherGroupName) {
+        return getMatchedPoolWithStoragePools(vpool, pools, protectionVarraySettings, remoteSettingsMap,
+                fileRemoteSettingsMap, dbClient, coordinator, matcherGroupName, null);
+    }
+
+    /**
+     * Matches given VirtualPool with list of pools provided. With an index, only the pools
+     * the vpool can possibly match are run through the vpool matchers.
+     * 
+     * @param index index of the pools, null to run all pools through the matchers
+     */
+    private static List<StoragePool> getMatchedPoolWithStoragePools(VirtualPool vpool,
+            List<StoragePool> pools,
+            Map<URI, VpoolProtectionVarraySettings> protectionVarraySettings,
+            Map<URI, VpoolRemoteCopyProtectionSettings> remoteSettingsMap,
+            Map<URI, VpoolRemoteCopyProtectionSettings> fileRemoteSettingsMap,
+            DbClient dbClient,
+            CoordinatorClient coordinator, String matcherGroupName, StoragePoolMatchingIndex index) {
         // By default use all vpool matchers.
         if (matcherGroupName == null) {
             matcherGroupName = AttributeMatcher.VPOOL_MATCHERS;
@@ -268,6 +312,14 @@ public class ImplicitPoolMatcher {
                 VirtualPool.groupRemoteCopyModesByVPool(vpool.getId(), fileRemoteSettingsMap));
         Map<String, Object> attributeMap = vpoolMapBuilder.buildMap();
         _logger.info("Implict Pool matching populated attribute map: {}", attributeMap);
+        if (index != null && AttributeMatcher.VPOOL_MATCHERS.equals(matcherGroupName)) {
+            // the index only stands in for the vpool matchers
+            pools = index.getCandidatePools(attributeMap);
+            if (pools.isEmpty()) {
+                _logger.info("No pools can match vpool {} attributes", vpool.getId());
+                return pools;
+            }
+        }
         List<StoragePool> filterPools = _matcherFramework.matchAttributes(pools, attributeMap, dbClient, coordinator,
                 matcherGroupName);
         _logger.info("Ended matching pools with vpool attributes. Found {} matching pools", filterPools.size());
@@ -291,11 +343,11 @@ public class ImplicitPoolMatcher {
      *            : List of pools matched after running attribute matchers.
      * @param storagePools
      *            : List of processed pools.
-     * @param dbClient
-     *            : dbClient reference.
+     * @param index
+     *            : index of the processed pools.
      */
     private static void updateInvalidAndMatchedPoolsForVpool(VirtualPool vpool, List<StoragePool> matchedPools,
-            List<StoragePool> storagePools, DbClient dbClient) {
+            List<StoragePool> storagePools, StoragePoolMatchingIndex index) {
         URI currentVpoolId = vpool.getId();
         StringSet newMatchedPools = new StringSet();
         StringSet newInvalidPools = new StringSet();
@@ -307,10 +359,7 @@ public class ImplicitPoolMatcher {
         }
         for (StoragePool pool : storagePools) {
             String poolIdStr = pool.getId().toString();
-            URIQueryResultList queryResult = new URIQueryResultList();
-            dbClient.queryByConstraint(
-                    ContainmentConstraint.Factory.getMatchedPoolVirtualPoolConstraint(pool.getId()), queryResult);
-            Iterator<URI> oldMatchedVpoolItr = queryResult.iterator();
+            Iterator<URI> oldMatchedVpoolItr = index.getMatchedVirtualPools(pool.getId()).iterator();
             if (!oldMatchedVpoolItr.hasNext()) {
                 if (matchedPools.contains(pool)) {
                     _logger.debug("New pool found {}", poolIdStr);
@@ -384,7 +433,10 @@ public class ImplicitPoolMatcher {
             allPoolsToProcess.add(storagePoolList.next());
         }
         if (!allPoolsToProcess.isEmpty()) {
-            matchvPoolWithStoragePools(vpool, allPoolsToProcess, dbClient, coordinator, null);
+            long start = System.currentTimeMillis();
+            StoragePoolMatchingIndex index = new StoragePoolMatchingIndex(allPoolsToProcess, dbClient);
+            matchvPoolWithStoragePools(vpool, allPoolsToProcess, dbClient, coordinator, null, index);
+            logMatchingStats(1, allPoolsToProcess.size(), index, start);
         }
     }
 
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.constraint.AlternateIdConstraint;
+import com.emc.storageos.db.client.constraint.ContainmentConstraint;
+import com.emc.storageos.db.client.constraint.URIQueryResultList;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StorageSystem.SupportedProvisioningTypes;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.VirtualPool;
+import com.emc.storageos.db.client.model.VirtualPool.SupportedDriveTypes;
+import com.emc.storageos.volumecontroller.AttributeMatcher.Attributes;
+
+/**
+ * Index of the storage pools of one implicit pool matching run, partitioning them by the
+ * attributes the vpool matchers discriminate on: vpool type, virtual array, system type,
+ * provisioning type, drive type and RAID level.
+ *
+ * For each virtual pool, only the pools found in all the partitions its attributes select
+ * are run through the vpool matchers; the other pools would be rejected by one of the
+ * vpool type, neighborhoods, device type, provisioning type, drive type or RAID level
+ * matchers anyway. The index never excludes a pool one of these matchers could accept,
+ * so the matched pools are the same as when all pools are run through the matchers.
+ *
+ * Virtual array pools and the virtual pools each pool was matched with before are read
+ * from the database once per run rather than once per virtual pool. Virtual pools are
+ * persisted at the end of a run, so the latter do not change during it.
+ */
+public class StoragePoolMatchingIndex {
+    private final DbClient _dbClient;
+    private final Map<URI, StoragePool> _pools = new LinkedHashMap<URI, StoragePool>();
+
+    private final Map<String, Set<URI>> _poolsByServiceType = new HashMap<String, Set<URI>>();
+    private final Map<String, Set<URI>> _poolsBySystemType = new HashMap<String, Set<URI>>();
+    private final Map<String, Set<URI>> _poolsByDriveType = new HashMap<String, Set<URI>>();
+    private final Map<String, Set<URI>> _poolsByRaidLevel = new HashMap<String, Set<URI>>();
+    // pools not supporting thick or thin volumes, because of the pool or of its system
+    private final Set<URI> _thinOnlyPools = new HashSet<URI>();
+    private final Set<URI> _thickOnlyPools = new HashSet<URI>();
+    // pools whose system could not be read are never excluded by system attributes,
+    // nor pools without a service type, the matchers fail on them as before
+    private final Set<URI> _poolsWithoutSystem = new HashSet<URI>();
+    private final Set<URI> _poolsWithoutServiceType = new HashSet<URI>();
+
+    private final Map<String, Set<URI>> _varrayPools = new HashMap<String, Set<URI>>();
+    private final Map<URI, List<URI>> _matchedVirtualPools = new HashMap<URI, List<URI>>();
+
+    private long _pairs;
+    private long _candidatePairs;
+
+    /**
+     * @param pools pools being matched
+     * @param dbClient db client
+     */
+    public StoragePoolMatchingIndex(List<StoragePool> pools, DbClient dbClient) {
+        _dbClient = dbClient;
+        Set<URI> systemIds = new HashSet<URI>();
+        for (StoragePool pool : pools) {
+            _pools.put(pool.getId(), pool);
+            if (pool.getStorageDevice() != null) {
+                systemIds.add(pool.getStorageDevice());
+            }
+        }
+        Map<URI, StorageSystem> systems = new HashMap<URI, StorageSystem>();
+        if (!systemIds.isEmpty()) {
+            for (StorageSystem system : dbClient.queryObject(StorageSystem.class, systemIds)) {
+                if (system != null) {
+                    systems.put(system.getId(), system);
+                }
+            }
+        }
+        for (StoragePool pool : _pools.values()) {
+            index(pool, systems.get(pool.getStorageDevice()));
+        }
+    }
+
+    private void index(StoragePool pool, StorageSystem system) {
+        URI id = pool.getId();
+        if (pool.getPoolServiceType() == null) {
+            _poolsWithoutServiceType.add(id);
+        }
+        add(_poolsByServiceType, pool.getPoolServiceType(), id);
+        addAll(_poolsByDriveType, pool.getSupportedDriveTypes(), id);
+        addAll(_poolsByRaidLevel, pool.getSupportedRaidLevels(), id);
+        if (system == null) {
+            _poolsWithoutSystem.add(id);
+            return;
+        }
+        add(_poolsBySystemType, system.getSystemType(), id);
+        if (StoragePool.SupportedResourceTypes.THIN_ONLY.name().equalsIgnoreCase(pool.getSupportedResourceTypes())
+                || SupportedProvisioningTypes.THIN.name().equalsIgnoreCase(system.getSupportedProvisioningType())) {
+            _thinOnlyPools.add(id);
+        }
+        if (StoragePool.SupportedResourceTypes.THICK_ONLY.name().equalsIgnoreCase(pool.getSupportedResourceTypes())
+                || SupportedProvisioningTypes.THICK.name().equalsIgnoreCase(system.getSupportedProvisioningType())) {
+            _thickOnlyPools.add(id);
+        }
+    }
+
+    private static void add(Map<String, Set<URI>> partitions, String value, URI id) {
+        if (value == null) {
+            return;
+        }
+        Set<URI> partition = partitions.get(value);
+        if (partition == null) {
+            partition = new HashSet<URI>();
+            partitions.put(value, partition);
+        }
+        partition.add(id);
+    }
+
+    private static void addAll(Map<String, Set<URI>> partitions, Set<String> values, URI id) {
+        if (values != null) {
+            for (String value : values) {
+                add(partitions, value, id);
+            }
+        }
+    }
+
+    private static Set<URI> get(Map<String, Set<URI>> partitions, String value) {
+        Set<URI> partition = partitions.get(value);
+        return partition == null ? new HashSet<URI>() : partition;
+    }
+
+    /**
+     * Returns the pools a virtual pool can possibly match, in the order they were given.
+     *
+     * @param attributeMap attributes of the virtual pool, as built for the vpool matchers
+     * @return pools to run through the vpool matchers
+     */
+    @SuppressWarnings("unchecked")
+    public List<StoragePool> getCandidatePools(Map<String, Object> attributeMap) {
+        Set<URI> candidates = new HashSet<URI>(_pools.keySet());
+
+        // CoSTypeAttributeMatcher
+        Object vpoolType = attributeMap.get(Attributes.vpool_type.toString());
+        if (vpoolType != null) {
+            Set<URI> ofType = new HashSet<URI>(_poolsWithoutServiceType);
+            for (Map.Entry<String, Set<URI>> entry : _poolsByServiceType.entrySet()) {
+                if (entry.getKey().contains(vpoolType.toString())) {
+                    ofType.addAll(entry.getValue());
+                }
+            }
+            candidates.retainAll(ofType);
+        }
+
+        // NeighborhoodsMatcher
+        Set<String> varrays = (Set<String>) attributeMap.get(Attributes.varrays.toString());
+        if (varrays == null || varrays.isEmpty()) {
+            candidates.clear();
+        } else if (!candidates.isEmpty()) {
+            Set<URI> inVarrays = new HashSet<URI>();
+            for (String varray : varrays) {
+                inVarrays.addAll(getVarrayPools(varray));
+            }
+            candidates.retainAll(inVarrays);
+        }
+
+        // ProvisioningTypeMatcher
+        Object provisioningType = attributeMap.get(Attributes.provisioning_type.toString());
+        if (provisioningType != null) {
+            if (VirtualPool.ProvisioningType.Thick.name().equalsIgnoreCase(provisioningType.toString())) {
+                candidates.removeAll(_thinOnlyPools);
+            } else if (VirtualPool.ProvisioningType.Thin.name().equalsIgnoreCase(provisioningType.toString())) {
+                candidates.removeAll(_thickOnlyPools);
+            }
+        }
+
+        // DeviceTypeMatcher
+        StringSet systemTypes = (StringSet) attributeMap.get(Attributes.system_type.toString());
+        if (systemTypes != null && !systemTypes.contains(VirtualPool.SystemType.NONE.toString())) {
+            Set<URI> ofSystemType = new HashSet<URI>(_poolsWithoutSystem);
+            for (String systemType : systemTypes) {
+                ofSystemType.addAll(get(_poolsBySystemType, systemType));
+            }
+            candidates.retainAll(ofSystemType);
+        }
+
+        // DriveTypeMatcher and RaidLevelMatcher are turned off by an auto tiering policy
+        if (!attributeMap.containsKey(Attributes.auto_tiering_policy_name.toString())) {
+            Object driveType = attributeMap.get(Attributes.drive_type.toString());
+            if (driveType != null && !SupportedDriveTypes.NONE.toString().equals(driveType.toString())) {
+                // HDS pools with external storage match any drive type
+                Set<URI> ofDriveType = new HashSet<URI>(get(_poolsByDriveType, driveType.toString()));
+                ofDriveType.addAll(get(_poolsByDriveType, SupportedDriveTypes.UNKNOWN.toString()));
+                candidates.retainAll(ofDriveType);
+            }
+            Set<String> raidLevels = (Set<String>) attributeMap.get(Attributes.raid_levels.toString());
+            if (raidLevels != null && !raidLevels.isEmpty()) {
+                Set<URI> ofRaidLevel = new HashSet<URI>();
+                for (String raidLevel : raidLevels) {
+                    ofRaidLevel.addAll(get(_poolsByRaidLevel, raidLevel));
+                }
+                candidates.retainAll(ofRaidLevel);
+            }
+        }
+
+        List<StoragePool> pools = new ArrayList<StoragePool>(candidates.size());
+        for (StoragePool pool : _pools.values()) {
+            if (candidates.contains(pool.getId())) {
+                pools.add(pool);
+            }
+        }
+        _pairs += _pools.size();
+        _candidatePairs += pools.size();
+        return pools;
+    }
+
+    private Set<URI> getVarrayPools(String varray) {
+        Set<URI> pools = _varrayPools.get(varray);
+        if (pools == null) {
+            pools = new HashSet<URI>();
+            URIQueryResultList queryResult = new URIQueryResultList();
+            _dbClient.queryByConstraint(AlternateIdConstraint.Factory.getVirtualArrayStoragePoolsConstraint(varray),
+                    queryResult);
+            Iterator<URI> poolItr = queryResult.iterator();
+            while (poolItr.hasNext()) {
+                pools.add(poolItr.next());
+            }
+            _varrayPools.put(varray, pools);
+        }
+        return pools;
+    }
+
+    /**
+     * @param poolId pool id
+     * @return ids of the virtual pools the pool was matched with as of the start of the run
+     */
+    public List<URI> getMatchedVirtualPools(URI poolId) {
+        List<URI> vpools = _matchedVirtualPools.get(poolId);
+        if (vpools == null) {
+            vpools = new ArrayList<URI>();
+            URIQueryResultList queryResult = new URIQueryResultList();
+            _dbClient.queryByConstraint(ContainmentConstraint.Factory.getMatchedPoolVirtualPoolConstraint(poolId),
+                    queryResult);
+            Iterator<URI> vpoolItr = queryResult.iterator();
+            while (vpoolItr.hasNext()) {
+                vpools.add(vpoolItr.next());
+            }
+            _matchedVirtualPools.put(poolId, vpools);
+        }
+        return vpools;
+    }
+
+    /**
+     * @return number of virtual pool and pool pairs looked up
+     */
+    public long getPairs() {
+        return _pairs;
+    }
+
+    /**
+     * @return number of those pairs run through the matchers
+     */
+    public long getCandidatePairs() {
+        return _candidatePairs;
+    }
+}
@@ -57,7 +57,6 @@ import com.emc.storageos.xtremio.restapi.XtremIOClientFactory;
 import com.emc.storageos.xtremio.restapi.XtremIOConstants;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOConsistencyGroup;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOInitiator;
-import com.emc.storageos.xtremio.restapi.model.response.XtremIOObjectInfo;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOVolume;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
@@ -226,18 +225,15 @@ public class XtremIOUnManagedVolumeDiscoverer {
         Map<String, StringSet> igKnownVolumesMap = new HashMap<String, StringSet>();
 
         String xioClusterName = xtremIOClient.getClusterDetails(storageSystem.getSerialNumber()).getName();
-        // get the xtremio volume links and process them in batches
-        List<XtremIOObjectInfo> volLinks = xtremIOClient.getXtremIOVolumeLinks(xioClusterName);
-
-        // Get the volume details
-        List<List<XtremIOObjectInfo>> volume_partitions = Lists.partition(volLinks, Constants.DEFAULT_PARTITION_SIZE);
+        // get the xtremio volumes with their details and process them in batches
+        List<XtremIOVolume> allVolumes = xtremIOClient.getXtremIOVolumes(xioClusterName);
+        List<List<XtremIOVolume>> volume_partitions = Lists.partition(allVolumes, Constants.DEFAULT_PARTITION_SIZE);
 
         // Set containing cgs that cannot be ingested, for now that
         // means they contain volumes which belong to more than one cg
         unSupportedCG = new HashSet<String>();
 
-        for (List<XtremIOObjectInfo> partition : volume_partitions) {
-            List<XtremIOVolume> volumes = xtremIOClient.getXtremIOVolumesForLinks(partition, xioClusterName);
+        for (List<XtremIOVolume> volumes : volume_partitions) {
             for (XtremIOVolume volume : volumes) {
                 try {
                     // If the volume is a snap don't process it. We will get the snap info from the
@@ -395,6 +391,8 @@ public class XtremIOUnManagedVolumeDiscoverer {
         // Next discover the unmanaged export masks
         discoverUnmanagedExportMasks(storageSystem.getId(), igUnmanagedVolumesMap, igKnownVolumesMap, xtremIOClient, xioClusterName,
                 dbClient, partitionManager);
+        log.info("Finished discovery of UnManagedVolumes for system {}, request latencies {}", accessProfile.getSystemId(),
+                xtremIOClient.getRequestLatencies());
     }
 
     private void populateKnownVolsMap(XtremIOVolume vol, BlockObject viprObj, Map<String, StringSet> igKnownVolumesMap) {
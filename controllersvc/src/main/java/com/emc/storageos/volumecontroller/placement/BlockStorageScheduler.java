@@ -398,10 +398,18 @@ public class BlockStorageScheduler {
                 continue;                
             }
             // Allocate the storage ports.
-            portsAllocated.put(network, allocatePortsFromNetwork(
+            List<StoragePort> allocatedPorts = allocatePortsFromNetwork(
                     system.getId(), network, varray, portsNeeded,
                     portUsageMap.get(netURI), allocator, existingPortsMap.get(netURI),
-                    true));
+                    true);
+            portsAllocated.put(network, allocatedPorts);
+            // Account for the new usage right away, so that the next allocations on this node
+            // see it before the port usage is computed again from the export masks.
+            if (_portMetricsProcessor != null && allocatedPorts != null && !allocatedPorts.isEmpty()) {
+                long initiatorsPerPort = (initiators.size() + allocatedPorts.size() - 1) / allocatedPorts.size();
+                _portMetricsProcessor.addStaticPortUsage(allocatedPorts, initiatorsPerPort,
+                        volumeURIs == null ? 0 : volumeURIs.size());
+            }
         }
         return portsAllocated;
     }
@@ -2072,13 +2072,14 @@ public class VPlexDeviceController implements VPlexController, BlockOrchestratio
             Map<URI, List<URI>> exportMasksToUpdateOnDeviceWithStoragePorts, String opId) throws Exception {
         boolean foundMatchingStorageView = false;
 
-        List<String> initiatorNames = new ArrayList<String>();
-        for (Initiator initiator : inits) {
-            String portWwn = initiator.getInitiatorPort();
-            String initiatorName = initiatorWwnToNameMap.get(WWNUtility.getUpperWWNWithNoColons(portWwn));
-            if (initiatorName != null) {
-                initiatorNames.add(initiatorName);
-            }
+        List<String> initiatorNames = getInitiatorNames(inits, initiatorWwnToNameMap);
+        if (initiatorNames.size() < inits.size()) {
+            // The initiator map comes from the inventory snapshot of the VPLEX, read
+            // it again in case the missing initiators were registered since.
+            _log.info("not all initiators are in the initiator map, reading it again from the VPLEX");
+            client.invalidateInventory();
+            initiatorWwnToNameMap.putAll(client.getInitiatorWwnToNameMap(vplexCluster));
+            initiatorNames = getInitiatorNames(inits, initiatorWwnToNameMap);
         }
 
         long start = new Date().getTime();
@@ -2212,6 +2213,26 @@ public class VPlexDeviceController implements VPlexController, BlockOrchestratio
         return foundMatchingStorageView;
     }
 
+    /**
+     * Returns the VPLEX names of the passed initiators which are in the passed
+     * initiator map.
+     *
+     * @param inits the host initiators
+     * @param initiatorWwnToNameMap map of the initiator port WWNs to names on the VPLEX
+     * @return the names of the initiators found in the map
+     */
+    private List<String> getInitiatorNames(List<Initiator> inits, Map<String, String> initiatorWwnToNameMap) {
+        List<String> initiatorNames = new ArrayList<String>();
+        for (Initiator initiator : inits) {
+            String portWwn = initiator.getInitiatorPort();
+            String initiatorName = initiatorWwnToNameMap.get(WWNUtility.getUpperWWNWithNoColons(portWwn));
+            if (initiatorName != null) {
+                initiatorNames.add(initiatorName);
+            }
+        }
+        return initiatorNames;
+    }
+
     /**
      * Handles re-using an existing ViPR ExportMask for a volume export process.
      *
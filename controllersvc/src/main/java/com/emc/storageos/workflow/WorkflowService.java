@@ -9,9 +9,12 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.Controller;
 import com.emc.storageos.coordinator.client.service.CoordinatorClient;
 import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.coordinator.client.service.impl.GenericSerializer;
 import com.emc.storageos.coordinator.common.impl.ZkPath;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.URIUtil;
@@ -81,6 +85,40 @@ public class WorkflowService {
     private String _zkStepToWorkflowPath = ZkPath.WORKFLOW.toString() + "/step2workflow/%s";
     private String _zkStepToWorkflow = ZkPath.WORKFLOW.toString() + "/step2workflow";
 
+    // estimated size of the paths of a step and of its stepToWorkflowPath node and data
+    private static final int STEP_PATHS_BYTES = 512;
+
+    // If true, step creation and status updates of a workflow are grouped into
+    // ZK multi-op transactions of up to _stepPersistenceBatchSize steps and MAX_TRANSACTION_BYTES
+    private boolean _batchStepPersistence = true;
+    private int _stepPersistenceBatchSize = 50;
+
+    // ZK writes batched per workflow on this node, logged when the workflow completes. The least
+    // recently written workflows are dropped first, e.g. the ones completed on other nodes.
+    private static final int MAX_BATCHED_WRITE_COUNTS = 1000;
+    private final Map<URI, BatchedWriteCounts> _batchedWriteCounts = Collections.synchronizedMap(
+            new LinkedHashMap<URI, BatchedWriteCounts>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<URI, BatchedWriteCounts> eldest) {
+                    return size() > MAX_BATCHED_WRITE_COUNTS;
+                }
+            });
+
+    /**
+     * Numbers of ZK operations of a workflow committed in transactions, and of those transactions.
+     * Each operation would otherwise have been a write of its own.
+     */
+    static class BatchedWriteCounts {
+        long operations;
+        long transactions;
+
+        long getWritesSaved() {
+            return operations - transactions;
+        }
+    }
+
     /**
      * Returns the ZK path for workflow state. This node has a child for each Step.
      * 
@@ -140,10 +178,22 @@ public class WorkflowService {
         this._dbClient = dbClient;
     }
 
+    void setDataManager(DistributedDataManager dataManager) {
+        this._dataManager = dataManager;
+    }
+
     public void setLocker(ControllerLockingService locker) {
         this._locker = locker;
     }
 
+    public void setBatchStepPersistence(boolean batchStepPersistence) {
+        this._batchStepPersistence = batchStepPersistence;
+    }
+
+    public void setStepPersistenceBatchSize(int stepPersistenceBatchSize) {
+        this._stepPersistenceBatchSize = stepPersistenceBatchSize;
+    }
+
     /**
      * Start the service.
      */
@@ -393,9 +443,13 @@ public class WorkflowService {
                 StepStatus status = workflow.getStepStatus(stepId);
                 _log.info(String.format("Updating workflow step: %s state %s : %s", stepId, state, message));
                 status.updateState(state, code, message);
-                // Persist the updated step state
                 Step step = workflow.getStepMap().get(stepId);
-                persistWorkflowStepUpdate(workflow, step);
+                // All steps changed by this update are persisted together before
+                // any unblocked step is dispatched
+                List<Step> changedSteps = new ArrayList<Step>();
+                changedSteps.add(step);
+                List<String> removedPaths = new ArrayList<String>();
+                List<Step> unblockedSteps = new ArrayList<Step>();
                 if (status.isTerminalState()) {
                     // release any step level locks held.
                     boolean releasedLocks = _ownerLocker.releaseLocks(stepId);
@@ -403,11 +457,20 @@ public class WorkflowService {
                         _log.info("Unable to release StepLocks for step: " + stepId);
                     }
                     // Check for any blocked steps and unblock them
-                    checkBlockedSteps(workflow, stepId);
+                    unblockedSteps = checkBlockedSteps(workflow, stepId, changedSteps);
                     // Terminal state achieved, delete the callback node
                     // _dataManager.removeNode(path);
                     // Remove the step to workflow path
-                    _dataManager.removeNode(getZKStep2WorkflowPath(stepId));
+                    removedPaths.add(getZKStep2WorkflowPath(stepId));
+                }
+                // Persist the updated step states
+                persistWorkflowStepUpdates(workflow, changedSteps, removedPaths);
+                for (Step unblocked : unblockedSteps) {
+                    try {
+                        dispatchStep(unblocked, workflow._nested);
+                    } catch (Exception ex) {
+                        _log.error("Exception" + ex.getMessage());
+                    }
                 }
                 // Check to see if the workflow might be finished, or need a rollback.
                 if (workflow.allStatesTerminal()) {
@@ -522,6 +585,7 @@ public class WorkflowService {
             }
         } finally {
             logWorkflow(workflow, true);
+            logBatchedWrites(workflow);
             // Release the Workflow's locks, if any.
             boolean removed = _ownerLocker.releaseLocks(workflow.getWorkflowURI().toString());
             if (!removed) {
@@ -688,6 +752,212 @@ public class WorkflowService {
         }
     }
 
+    /**
+     * Save a set of Workflow Steps, along with their stepToWorkflowPath nodes, in ZK.
+     * With batched step persistence the writes are grouped into multi-op transactions
+     * of _stepPersistenceBatchSize steps and MAX_TRANSACTION_BYTES; a batch that can't be committed
+     * (e.g. because some of the nodes already exist) is written one step at a time instead.
+     * When the steps exist (retried steps), the stepToWorkflowPath node is only created if
+     * it was removed when the step reached a terminal state.
+     * 
+     * @param workflow
+     * @param steps
+     * @param stepsExist true if the step nodes have been created before
+     * @return the number of ZK writes saved by batching, operations committed less transactions
+     * @throws WorkflowException
+     */
+    long persistWorkflowSteps(Workflow workflow, Collection<Step> steps, boolean stepsExist)
+            throws WorkflowException {
+        if (!_batchStepPersistence) {
+            for (Step step : steps) {
+                persistWorkflowStep(workflow, step);
+            }
+            return 0;
+        }
+        long saved = 0;
+        String workflowPath = getZKWorkflowPath(workflow);
+        for (List<Step> batch : partitionSteps(steps)) {
+            Map<String, Object> creates = new LinkedHashMap<String, Object>();
+            Map<String, Object> updates = new LinkedHashMap<String, Object>();
+            for (Step step : batch) {
+                logStep(workflow, step);
+                String step2WorkflowPath = getZKStep2WorkflowPath(step.stepId);
+                if (stepsExist) {
+                    updates.put(getZKStepPath(workflow, step), step);
+                    if (!nodeExists(step2WorkflowPath)) {
+                        creates.put(step2WorkflowPath, workflowPath);
+                    }
+                } else {
+                    creates.put(getZKStepPath(workflow, step), step);
+                    creates.put(step2WorkflowPath, workflowPath);
+                }
+            }
+            if (commitStepBatch(workflow, creates, updates, Collections.<String> emptyList())) {
+                saved += creates.size() + updates.size() - 1;
+            } else {
+                for (Step step : batch) {
+                    persistWorkflowStep(workflow, step);
+                }
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Update the state of a set of Steps in ZK and remove the given nodes. With batched
+     * step persistence this is done in multi-op transactions, otherwise (or if a batch
+     * can't be committed) step by step. As with persistWorkflowStepUpdate, steps whose
+     * node has already been deleted are not written.
+     * 
+     * @param workflow
+     * @param steps
+     * @param removedPaths paths of nodes to delete, e.g. stepToWorkflowPath nodes of completed steps
+     * @return the number of ZK writes saved by batching, operations committed less transactions
+     * @throws WorkflowException
+     */
+    long persistWorkflowStepUpdates(Workflow workflow, List<Step> steps, List<String> removedPaths)
+            throws WorkflowException {
+        long saved = 0;
+        List<String> removes = removedPaths;
+        for (List<Step> batch : partitionSteps(steps)) {
+            Map<String, Object> updates = new LinkedHashMap<String, Object>();
+            for (Step step : batch) {
+                updates.put(getZKStepPath(workflow, step), step);
+            }
+            if (_batchStepPersistence) {
+                for (Step step : batch) {
+                    logStep(workflow, step);
+                }
+            }
+            if (_batchStepPersistence
+                    && commitStepBatch(workflow, Collections.<String, Object> emptyMap(), updates, removes)) {
+                saved += updates.size() + removes.size() - 1;
+            } else {
+                for (Step step : batch) {
+                    persistWorkflowStepUpdate(workflow, step);
+                }
+                removeNodes(removes);
+            }
+            // the removals go with the first batch only
+            removes = Collections.emptyList();
+        }
+        return saved;
+    }
+
+    /**
+     * Splits steps into batches of at most _stepPersistenceBatchSize steps and MAX_TRANSACTION_BYTES
+     * of serialized data. A step too large to be serialized goes in a batch of its own, whose
+     * commit reports the error.
+     * 
+     * @param steps
+     * @return the batches, in the order of the steps
+     */
+    private List<List<Step>> partitionSteps(Collection<Step> steps) {
+        List<List<Step>> batches = new ArrayList<List<Step>>();
+        List<Step> batch = new ArrayList<Step>();
+        int batchBytes = 0;
+        for (Step step : steps) {
+            int bytes;
+            try {
+                bytes = GenericSerializer.serialize(step).length + STEP_PATHS_BYTES;
+            } catch (RuntimeException ex) {
+                bytes = DistributedDataManager.MAX_TRANSACTION_BYTES;
+            }
+            if (!batch.isEmpty() && (batch.size() >= _stepPersistenceBatchSize
+                    || batchBytes + bytes > DistributedDataManager.MAX_TRANSACTION_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<Step>();
+                batchBytes = 0;
+            }
+            batch.add(step);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Commits one batch of step writes in a single ZK transaction
+     * 
+     * @return true if committed, false if the writes need to be retried one at a time
+     */
+    private boolean commitStepBatch(Workflow workflow, Map<String, Object> creates, Map<String, Object> updates,
+            List<String> removes) {
+        try {
+            _dataManager.putDataInTransaction(creates, updates, removes);
+            countBatchedWrites(workflow, creates.size() + updates.size() + removes.size());
+            return true;
+        } catch (Exception ex) {
+            _log.warn(String.format("Workflow %s: batched ZK write failed, writing steps one at a time: %s",
+                    workflow.getOrchTaskId(), ex.getMessage()));
+            return false;
+        }
+    }
+
+    private boolean nodeExists(String path) throws WorkflowException {
+        try {
+            return _dataManager.checkExists(path) != null;
+        } catch (Exception ex) {
+            throw new WorkflowException("Cannot check ZK node: " + path, ex);
+        }
+    }
+
+    private void removeNodes(List<String> paths) throws WorkflowException {
+        for (String path : paths) {
+            try {
+                _dataManager.removeNode(path);
+            } catch (Exception ex) {
+                throw new WorkflowException("Cannot remove ZK node: " + path, ex);
+            }
+        }
+    }
+
+    /**
+     * Adds a committed transaction to the batched writes of a workflow
+     * 
+     * @param workflow
+     * @param operations number of ZK operations of the transaction
+     */
+    private void countBatchedWrites(Workflow workflow, int operations) {
+        BatchedWriteCounts counts;
+        synchronized (_batchedWriteCounts) {
+            counts = _batchedWriteCounts.get(workflow.getWorkflowURI());
+            if (counts == null) {
+                counts = new BatchedWriteCounts();
+                _batchedWriteCounts.put(workflow.getWorkflowURI(), counts);
+            }
+            counts.operations += operations;
+            counts.transactions++;
+        }
+        _log.debug(String.format("Workflow %s: committed %d ZK ops in one transaction",
+                workflow.getOrchTaskId(), operations));
+    }
+
+    /**
+     * Returns the writes of a workflow batched on this node
+     * 
+     * @param workflow
+     * @return the counts, null if none was batched
+     */
+    BatchedWriteCounts getBatchedWriteCounts(Workflow workflow) {
+        return _batchedWriteCounts.get(workflow.getWorkflowURI());
+    }
+
+    /**
+     * Logs the ZK writes batched on this node for a completed workflow
+     * 
+     * @param workflow
+     */
+    private void logBatchedWrites(Workflow workflow) {
+        BatchedWriteCounts counts = _batchedWriteCounts.remove(workflow.getWorkflowURI());
+        if (counts != null) {
+            _log.info(String.format("Workflow %s: %d ZK ops written in %d transactions, batching saved %d ZK writes",
+                    workflow.getOrchTaskId(), counts.operations, counts.transactions, counts.getWritesSaved()));
+        }
+    }
+
     /**
      * Returns false if this workflow doesn't exist.
      * 
@@ -784,23 +1054,26 @@ public class WorkflowService {
                 persistWorkflow(workflow);
                 _log.info("Executing workflow plan: " + workflow.getWorkflowURI() + " " + workflow.getOrchTaskId());
 
-                for (Step step : workflow.getStepMap().values()) {
-                    persistWorkflowStep(workflow, step);
-                }
-
                 /**
                  * Lock the workflow.
                  */
                 lock = lockWorkflow(workflow);
 
                 /**
-                 * Queue any steps that have not been queued.
+                 * Save the steps, queueing any steps that have not been queued.
+                 * Each step is written once, with its queued state.
                  */
+                List<Step> createdSteps = new ArrayList<Step>();
+                List<Step> otherSteps = new ArrayList<Step>();
                 for (Step step : workflow.getStepMap().values()) {
                     if (step.status.state == StepState.CREATED) {
-                        queueWorkflowStep(workflow, step);
+                        createdSteps.add(step);
+                    } else {
+                        otherSteps.add(step);
                     }
                 }
+                persistWorkflowSteps(workflow, otherSteps, false);
+                queueWorkflowSteps(workflow, createdSteps, false);
             } else {
                 _log.info("Workflow executed with no steps: " + workflow.getWorkflowURI());
                 // release any workflow locks
@@ -824,26 +1097,47 @@ public class WorkflowService {
      */
     public void queueWorkflowStep(Workflow workflow, Step step)
             throws WorkflowException {
+        queueWorkflowSteps(workflow, Collections.singletonList(step), true);
+    }
+
+    /**
+     * Queue a set of steps. All of them are persisted before any is sent to the
+     * Dispatcher, which allows their ZK writes to be batched.
+     * 
+     * @param workflow -- The Workflow containing the steps
+     * @param steps -- Steps to be queued for execution
+     * @param stepsExist -- true if the steps have been persisted before
+     */
+    private void queueWorkflowSteps(Workflow workflow, Collection<Step> steps, boolean stepsExist)
+            throws WorkflowException {
         synchronized (workflow) {
-            StepState state = StepState.QUEUED; // default is to go into QUEUED state
-            try {
-                if (isBlocked(workflow, step)) {
-                    // We are blocked waiting on a prerequisite step
-                    state = StepState.BLOCKED;
+            List<Step> readySteps = new ArrayList<Step>();
+            for (Step step : steps) {
+                StepState state = StepState.QUEUED; // default is to go into QUEUED state
+                try {
+                    if (isBlocked(workflow, step)) {
+                        // We are blocked waiting on a prerequisite step
+                        state = StepState.BLOCKED;
+                    }
+                } catch (CancelledException cancelEx) {
+                    // Cancelled due to failure of a prerequisite step
+                    state = StepState.CANCELLED;
+                }
+                workflow.getStepStatus(step.stepId).updateState(state, null, "");
+                if (state == StepState.QUEUED) {
+                    readySteps.add(step);
                 }
-            } catch (CancelledException cancelEx) {
-                // Cancelled due to failure of a prerequisite step
-                state = StepState.CANCELLED;
             }
 
-            // Persist the Workflow and the Steps in Zookeeper
-            workflow.getStepStatus(step.stepId).updateState(state, null, "");
-            persistWorkflowStep(workflow, step);
-            _log.info(String.format("%s step: %s queued state %s", step.description,
-                    step.stepId, state));
+            // Persist the Steps in Zookeeper
+            persistWorkflowSteps(workflow, steps, stepsExist);
+            for (Step step : steps) {
+                _log.info(String.format("%s step: %s queued state %s", step.description,
+                        step.stepId, step.status.state));
+            }
 
             // If step is ready to run, send it to the Dispatcher.
-            if (state == StepState.QUEUED) {
+            for (Step step : readySteps) {
                 dispatchStep(step, workflow._nested);
             }
         }
@@ -872,9 +1166,12 @@ public class WorkflowService {
         // Queue the step for via the dispatcher. If nested we use a different Dispatcher queue
         // than if we're the top-level Workflow.
         try {
+            // Rollback steps overtake regular work queued for the same devices
+            Dispatcher.Priority priority = step.isRollbackStep() ? Dispatcher.Priority.INTERACTIVE
+                    : Dispatcher.Priority.forMethod(step.executeMethod.methodName);
             _dispatcher.queue(
                     (isNested ? Dispatcher.QueueName.workflow_inner : Dispatcher.QueueName.workflow_outer),
-                    step.deviceURI, step.deviceType, step.lockDevice, controller,
+                    step.deviceURI, step.deviceType, step.lockDevice, priority, controller,
                     step.executeMethod.methodName, argList.toArray());
         } catch (InternalException ex) {
             throw new WorkflowException(String.format(
@@ -885,12 +1182,17 @@ public class WorkflowService {
 
     /**
      * Checks the workflow for any BLOCKED steps that have become unblocked,
-     * and dispatches them or cancels them if necessary.
+     * and queues them or cancels them if necessary. The changed steps are not
+     * persisted here, they are added to changedSteps for the caller to persist
+     * before dispatching the returned steps.
      * 
      * @param workflow -- The Workflow to be checked.
      * @param fromStepId -- The Step that has changed state.
+     * @param changedSteps -- Steps whose state has changed.
+     * @return the steps that were unblocked and need to be dispatched
      */
-    private void checkBlockedSteps(Workflow workflow, String fromStepId) {
+    private List<Step> checkBlockedSteps(Workflow workflow, String fromStepId, List<Step> changedSteps) {
+        List<Step> unblockedSteps = new ArrayList<Step>();
         boolean again = true;
         do {
             again = false;      // only loop again if made change
@@ -904,17 +1206,17 @@ public class WorkflowService {
                             again = true;
                             step.status.updateState(StepState.QUEUED, null, "Unblocked by step: "
                                     + fromStepId);
-                            persistWorkflowStepUpdate(workflow, step);
+                            changedSteps.add(step);
+                            unblockedSteps.add(step);
                             _log.info(String.format("Step %s has been unblocked by step %s",
                                     step.stepId, fromStepId));
-                            dispatchStep(step, workflow._nested);
                         }
                     } catch (CancelledException ex) {
                         again = true;
                         // If we got a CancelledException, this step needs to be cancelled.
                         step.status.updateState(StepState.CANCELLED, null, "Cancelled by step: "
                                 + fromStepId);
-                        persistWorkflowStepUpdate(workflow, step);
+                        changedSteps.add(step);
                         _log.info(String.format("Step %s has been cancelled by step %s",
                                 step.stepId, fromStepId));
                     }
@@ -923,6 +1225,7 @@ public class WorkflowService {
                 }
             }
         } while (again == true);
+        return unblockedSteps;
     }
 
     /**
@@ -1104,9 +1407,7 @@ public class WorkflowService {
         persistWorkflow(workflow);
 
         // Now queue all the new steps.
-        for (Step step : rollbackStepMap.values()) {
-            queueWorkflowStep(workflow, step);
-        }
+        queueWorkflowSteps(workflow, rollbackStepMap.values(), false);
         return true;
     }
 
@@ -1664,13 +1965,15 @@ public class WorkflowService {
             }
         }
         // Now queue all the steps to be restarted.
+        List<Step> retrySteps = new ArrayList<Step>();
         for (Step step : stepMap.values()) {
             if (step.isRollbackStep() && step.status.state == StepState.CREATED) {
                 _log.info(String.format("Retrying previous rollback step %s : %s",
                         step.stepId, step.description));
-                queueWorkflowStep(workflow, step);
+                retrySteps.add(step);
             }
         }
+        queueWorkflowSteps(workflow, retrySteps, true);
         return true;
     }
 
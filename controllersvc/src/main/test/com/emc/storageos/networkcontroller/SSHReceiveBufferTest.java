@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Waiting for and decoding the characters received on an SSH channel
+ */
+public class SSHReceiveBufferTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testReadAppends() throws Exception {
+        SSHReceiveBuffer received = new SSHReceiveBuffer(UTF8);
+        received.write("show zoneset\r\n".getBytes(UTF8));
+        received.write("switch# ".getBytes(UTF8));
+        Assert.assertTrue(received.ready());
+
+        StringBuilder buf = new StringBuilder("x");
+        Assert.assertEquals(22, received.read(buf, 1000));
+        Assert.assertEquals("xshow zoneset\r\nswitch# ", buf.toString());
+        Assert.assertFalse(received.ready());
+    }
+
+    @Test
+    public void testSplitCharacter() throws Exception {
+        SSHReceiveBuffer received = new SSHReceiveBuffer(UTF8);
+        byte[] bytes = "zone\u00e9#".getBytes(UTF8);
+        received.write(bytes, 0, 5);
+        StringBuilder buf = new StringBuilder();
+        Assert.assertEquals(4, received.read(buf, 0));
+        received.write(bytes, 5, bytes.length - 5);
+        Assert.assertEquals(2, received.read(buf, 0));
+        Assert.assertEquals("zone\u00e9#", buf.toString());
+    }
+
+    @Test
+    public void testTimeoutAndEof() throws Exception {
+        SSHReceiveBuffer received = new SSHReceiveBuffer(UTF8);
+        StringBuilder buf = new StringBuilder();
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(0, received.read(buf, 50));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 40);
+
+        received.write("bye".getBytes(UTF8));
+        received.close();
+        Assert.assertEquals(3, received.read(buf, 1000));
+        Assert.assertEquals(-1, received.read(buf, 1000));
+        Assert.assertEquals("bye", buf.toString());
+    }
+
+    @Test
+    public void testWakesUpOnWrite() throws Exception {
+        final SSHReceiveBuffer received = new SSHReceiveBuffer(UTF8);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                received.write("switch# ".getBytes(UTF8));
+            }
+        };
+        writer.start();
+        StringBuilder buf = new StringBuilder();
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(8, received.read(buf, 10000));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        writer.join();
+
+        received.write("leftover".getBytes(UTF8));
+        Assert.assertEquals(8, received.discard());
+        Assert.assertEquals(0, received.read(buf, 0));
+    }
+}
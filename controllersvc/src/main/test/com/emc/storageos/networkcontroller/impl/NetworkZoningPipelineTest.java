@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.networkcontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.NetworkSystem;
+import com.emc.storageos.networkcontroller.exceptions.NetworkDeviceControllerException;
+import com.emc.storageos.networkcontroller.impl.NetworkZoningPipeline.ZoningRequest;
+import com.emc.storageos.networkcontroller.impl.mds.Zone;
+import com.emc.storageos.volumecontroller.impl.BiosCommandResult;
+
+/**
+ * Coalescing of the zoning requests of a fabric by the NetworkZoningPipeline
+ */
+public class NetworkZoningPipelineTest {
+    private static final String BAD_ZONE = "bad";
+
+    /**
+     * Pipeline whose fabric lock is held by the test until the requests are queued
+     */
+    private static class TestPipeline extends NetworkZoningPipeline {
+        private final Semaphore gate = new Semaphore(0);
+        private volatile Error lockError;
+
+        @Override
+        protected InterProcessLock lockFabric(String fabricId) {
+            gate.acquireUninterruptibly();
+            if (lockError != null) {
+                throw lockError;
+            }
+            return null;
+        }
+
+        @Override
+        protected void unlockFabric(String fabricId, InterProcessLock fabricLock) {
+        }
+
+        void open() {
+            gate.release(Integer.MAX_VALUE / 2);
+        }
+    }
+
+    private TestPipeline pipeline;
+    private NetworkSystemDevice networkDevice;
+    private NetworkSystem device;
+    // calls made to the network system, e.g. "add z1,z2"
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Records the call and answers SUCCESS for each zone, failing if a zone is BAD_ZONE
+     */
+    private class ZoningAnswer implements IAnswer<BiosCommandResult> {
+        private final String kind;
+
+        ZoningAnswer(String kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public BiosCommandResult answer() {
+            List<Zone> zones = (List<Zone>) EasyMock.getCurrentArguments()[1];
+            StringBuilder call = new StringBuilder(kind).append(' ');
+            Map<String, String> results = new HashMap<String, String>();
+            for (Zone zone : zones) {
+                call.append(results.isEmpty() ? "" : ",").append(zone.getName());
+                results.put(zone.getName(), NetworkSystemDevice.SUCCESS);
+            }
+            calls.add(call.toString());
+            if (results.containsKey(BAD_ZONE)) {
+                throw new IllegalStateException("zone " + BAD_ZONE + " rejected");
+            }
+            BiosCommandResult result = BiosCommandResult.createSuccessfulResult();
+            result.setObjectList(Collections.singletonList((Object) results));
+            return result;
+        }
+    }
+
+    @Before
+    public void setup() {
+        networkDevice = EasyMock.createMock(NetworkSystemDevice.class);
+        EasyMock.expect(networkDevice.addZones(EasyMock.anyObject(NetworkSystem.class), EasyMock.<List<Zone>> anyObject(),
+                EasyMock.anyObject(String.class), EasyMock.anyObject(String.class), EasyMock.anyBoolean()))
+                .andAnswer(new ZoningAnswer("add")).anyTimes();
+        EasyMock.expect(networkDevice.removeZones(EasyMock.anyObject(NetworkSystem.class), EasyMock.<List<Zone>> anyObject(),
+                EasyMock.anyObject(String.class), EasyMock.anyObject(String.class), EasyMock.anyBoolean()))
+                .andAnswer(new ZoningAnswer("remove")).anyTimes();
+        EasyMock.replay(networkDevice);
+        device = new NetworkSystem();
+        device.setId(URI.create("urn:storageos:NetworkSystem:1:vdc1"));
+        pipeline = new TestPipeline();
+    }
+
+    @After
+    public void shutdown() {
+        pipeline.shutdown();
+    }
+
+    private ZoningRequest submit(boolean doRemove, String... zoneNames) {
+        List<Zone> zones = new ArrayList<Zone>();
+        for (String name : zoneNames) {
+            zones.add(new Zone(name));
+        }
+        return pipeline.submit(networkDevice, device, "10", "10:00:00:00:00:00:00:01", zones, doRemove);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> getZoneResults(ZoningRequest request) {
+        BiosCommandResult result = request.getResult();
+        Assert.assertTrue(result.isCommandSuccess());
+        return (Map<String, String>) result.getObjectList().get(0);
+    }
+
+    private static Map<String, String> zoneResults(String... nameAndResults) {
+        Map<String, String> results = new HashMap<String, String>();
+        for (int i = 0; i < nameAndResults.length; i += 2) {
+            results.put(nameAndResults[i], nameAndResults[i + 1]);
+        }
+        return results;
+    }
+
+    /**
+     * The requests queued while the fabric is locked are sent in one call, and a zone asked for
+     * by two requests is only reported as created to the first one
+     */
+    @Test
+    public void testCoalescedResults() {
+        ZoningRequest first = submit(false, "z1", "z2");
+        ZoningRequest second = submit(false, "z2", "z3");
+        pipeline.open();
+
+        Assert.assertEquals(zoneResults("z1", NetworkSystemDevice.SUCCESS, "z2", NetworkSystemDevice.SUCCESS),
+                getZoneResults(first));
+        Assert.assertEquals(zoneResults("z2", NetworkSystemDevice.NO_CHANGE, "z3", NetworkSystemDevice.SUCCESS),
+                getZoneResults(second));
+        Assert.assertEquals(Collections.singletonList("add z1,z2,z3"), calls);
+    }
+
+    /**
+     * An add passes over an earlier remove, unless they have a zone in common
+     */
+    @Test
+    public void testBatchOrdering() {
+        ZoningRequest add0 = submit(false, "z0");
+        ZoningRequest remove1 = submit(true, "z1");
+        ZoningRequest add2 = submit(false, "z2");
+        ZoningRequest add1 = submit(false, "z1");
+        ZoningRequest add3 = submit(false, "z3");
+        pipeline.open();
+
+        for (ZoningRequest request : Arrays.asList(add0, remove1, add2, add1, add3)) {
+            getZoneResults(request);
+        }
+        Assert.assertEquals(Arrays.asList("add z0,z2", "remove z1", "add z1,z3"), calls);
+    }
+
+    /**
+     * No more requests are added to a call past the zone limit, but a request is never split
+     */
+    @Test
+    public void testMaxZonesPerBatch() {
+        pipeline.setMaxZonesPerBatch(3);
+        ZoningRequest first = submit(false, "a", "b");
+        ZoningRequest second = submit(false, "c", "d");
+        ZoningRequest third = submit(false, "e");
+        ZoningRequest large = submit(false, "f", "g", "h", "i");
+        pipeline.open();
+
+        for (ZoningRequest request : Arrays.asList(first, second, third, large)) {
+            getZoneResults(request);
+        }
+        Assert.assertEquals(Arrays.asList("add a,b", "add c,d,e", "add f,g,h,i"), calls);
+    }
+
+    /**
+     * A failed call is retried request by request, so only the request with the bad zone fails
+     */
+    @Test
+    public void testRetryOneByOne() {
+        ZoningRequest first = submit(false, "z1");
+        ZoningRequest bad = submit(false, BAD_ZONE);
+        ZoningRequest last = submit(false, "z1", "z3");
+        pipeline.open();
+
+        Assert.assertEquals(zoneResults("z1", NetworkSystemDevice.SUCCESS), getZoneResults(first));
+        Assert.assertEquals(zoneResults("z1", NetworkSystemDevice.SUCCESS, "z3", NetworkSystemDevice.SUCCESS),
+                getZoneResults(last));
+        try {
+            bad.getResult();
+            Assert.fail("the request with the bad zone should fail");
+        } catch (IllegalStateException ex) {
+            Assert.assertTrue(ex.getMessage().contains(BAD_ZONE));
+        }
+        Assert.assertEquals(Arrays.asList("add z1,bad,z3", "add z1", "add bad", "add z1,z3"), calls);
+    }
+
+    /**
+     * An Error stopping the drain fails the pending requests, and the next request is run
+     */
+    @Test
+    public void testDrainAborted() {
+        pipeline.lockError = new AssertionError("lock lost");
+        ZoningRequest first = submit(false, "z1");
+        ZoningRequest second = submit(true, "z2");
+        pipeline.open();
+
+        for (ZoningRequest request : Arrays.asList(first, second)) {
+            try {
+                request.getResult();
+                Assert.fail("the request should fail with the drain");
+            } catch (NetworkDeviceControllerException ex) {
+                Assert.assertTrue(ex.getCause() instanceof AssertionError);
+            }
+        }
+        pipeline.lockError = null;
+        Assert.assertEquals(zoneResults("z3", NetworkSystemDevice.SUCCESS), getZoneResults(submit(false, "z3")));
+        Assert.assertEquals(Collections.singletonList("add z3"), calls);
+    }
+
+    /**
+     * A workflow stops waiting for its zones after the timeout
+     */
+    @Test
+    public void testResultTimeout() {
+        pipeline.setResultTimeoutSeconds(1);
+        ZoningRequest request = submit(false, "z1");
+        try {
+            request.getResult();
+            Assert.fail("the request should time out while the fabric is locked");
+        } catch (NetworkDeviceControllerException ex) {
+            Assert.assertTrue(calls.isEmpty());
+        }
+        pipeline.open();
+    }
+}
@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 import org.joda.time.DateTime;
 
@@ -169,6 +170,12 @@ public class DummyDbClient implements DbClient {
 
     }
 
+    @Override
+    public <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize) {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public Integer countObjects(Class<? extends DataObject> type, String columnField, URI uri)
             throws DatabaseException {
@@ -358,6 +365,14 @@ public class DummyDbClient implements DbClient {
 
     }
 
+    @Override
+    public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
+            List<DateTime> timeBuckets, TimeBucket bucket, TimeSeriesQueryResult<T> callback,
+            ExecutorService workerThreads) throws DatabaseException {
+        // TODO Auto-generated method stub
+
+    }
+
     @Override
     public TimeSeriesMetadata queryTimeSeriesMetadata(Class<? extends TimeSeries> tsType)
             throws DatabaseException {
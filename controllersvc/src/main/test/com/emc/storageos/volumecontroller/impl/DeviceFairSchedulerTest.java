@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.volumecontroller.impl.Dispatcher.Priority;
+
+public class DeviceFairSchedulerTest {
+    private static final URI ARRAY1 = URI.create("urn:storageos:StorageSystem:array1:");
+    private static final URI ARRAY2 = URI.create("urn:storageos:StorageSystem:array2:");
+
+    /**
+     * Executor that runs tasks only when asked to, so the test controls concurrency
+     */
+    private static class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> _tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            _tasks.add(task);
+        }
+
+        int pending() {
+            return _tasks.size();
+        }
+
+        void runNext() {
+            _tasks.poll().run();
+        }
+
+        void runAll() {
+            while (!_tasks.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private final ManualExecutor _executor = new ManualExecutor();
+    private final List<String> _ran = new ArrayList<String>();
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                _ran.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void testRoundRobinAcrossDevices() {
+        DeviceFairScheduler scheduler = new DeviceFairScheduler("test", _executor, null, 1);
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.NORMAL, task("a" + i));
+        }
+        scheduler.submit(ARRAY2, Integer.MAX_VALUE, Priority.NORMAL, task("b0"));
+        _executor.runAll();
+
+        // array2 is served before the backlog of array1 is drained
+        Assert.assertEquals("[a0, a1, b0, a2, a3, a4]", _ran.toString());
+    }
+
+    @Test
+    public void testDeviceLimit() {
+        DeviceFairScheduler scheduler = new DeviceFairScheduler("test", _executor, null, 10);
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(ARRAY1, 2, Priority.NORMAL, task("a" + i));
+        }
+        scheduler.submit(ARRAY2, 2, Priority.NORMAL, task("b0"));
+
+        // only two requests of array1 hold threads, array2 is not held up by it
+        Assert.assertEquals(3, _executor.pending());
+        Assert.assertEquals(3, queued(scheduler, ARRAY1));
+
+        _executor.runAll();
+        Assert.assertEquals(6, _ran.size());
+        Assert.assertEquals(0, queued(scheduler, ARRAY1));
+    }
+
+    @Test
+    public void testIdleDevicesDropped() {
+        DeviceFairScheduler scheduler = new DeviceFairScheduler("test", _executor, null, 1);
+        scheduler.submit(ARRAY1, 1, Priority.NORMAL, task("a0"));
+        scheduler.submit(ARRAY2, 1, Priority.NORMAL, task("b0"));
+        Assert.assertEquals(2, scheduler.getStats().size());
+
+        _executor.runNext();
+        // array1 has nothing left to run, array2 has a request queued
+        Assert.assertEquals(1, scheduler.getStats().size());
+        Assert.assertEquals(ARRAY2, scheduler.getStats().get(0).getDevice());
+
+        _executor.runAll();
+        Assert.assertTrue(scheduler.getStats().isEmpty());
+
+        // a device submitting again after it was dropped is scheduled as before
+        scheduler.submit(ARRAY1, 1, Priority.NORMAL, task("a1"));
+        _executor.runAll();
+        Assert.assertEquals("[a0, b0, a1]", _ran.toString());
+        Assert.assertTrue(scheduler.getStats().isEmpty());
+    }
+
+    @Test
+    public void testPriorityLanes() {
+        DeviceFairScheduler scheduler = new DeviceFairScheduler("test", _executor, null, 1);
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.BULK, task("discover"));
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.BULK, task("scan"));
+        scheduler.submit(ARRAY2, Integer.MAX_VALUE, Priority.NORMAL, task("create"));
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.INTERACTIVE, task("rollback"));
+        _executor.runAll();
+
+        // the first bulk request was already running when the others were queued
+        Assert.assertEquals("[discover, rollback, create, scan]", _ran.toString());
+    }
+
+    @Test
+    public void testBulkNotStarved() {
+        DeviceFairScheduler scheduler = new DeviceFairScheduler("test", _executor, null, 1);
+        scheduler.setStarvationLimit(2);
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.NORMAL, task("n0"));
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.BULK, task("discover"));
+        scheduler.submit(ARRAY1, Integer.MAX_VALUE, Priority.BULK, task("scan"));
+        for (int i = 1; i < 6; i++) {
+            scheduler.submit(ARRAY2, Integer.MAX_VALUE, Priority.NORMAL, task("n" + i));
+        }
+        _executor.runAll();
+
+        // the bulk lane gets a request once two normal requests were dispatched while it waited
+        Assert.assertEquals("[n0, n1, n2, discover, n3, n4, scan, n5]", _ran.toString());
+    }
+
+    @Test
+    public void testMethodPriority() {
+        Assert.assertEquals(Priority.INTERACTIVE, Priority.forMethod("rollbackCreateVolumes"));
+        Assert.assertEquals(Priority.BULK, Priority.forMethod("discoverStorageSystem"));
+        Assert.assertEquals(Priority.NORMAL, Priority.forMethod("createVolumes"));
+        Assert.assertEquals(Priority.NORMAL, Priority.forMethod(null));
+    }
+
+    @Test
+    public void testPriorityFromName() {
+        Assert.assertEquals(Priority.BULK, Priority.fromName("BULK"));
+        Assert.assertEquals(Priority.NORMAL, Priority.fromName(null));
+        // queued by a node with other lanes
+        Assert.assertEquals(Priority.NORMAL, Priority.fromName("BACKGROUND"));
+    }
+
+    private static int queued(DeviceFairScheduler scheduler, URI device) {
+        for (DeviceFairScheduler.DeviceQueueStats stats : scheduler.getStats()) {
+            if (stats.getDevice().equals(device)) {
+                return stats.getQueued();
+            }
+        }
+        // the device has no queued or running requests
+        return 0;
+    }
+}
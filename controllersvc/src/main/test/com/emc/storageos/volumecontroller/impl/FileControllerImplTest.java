@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 import org.joda.time.DateTime;
 import org.junit.Assert;
@@ -173,6 +174,11 @@ public class FileControllerImplTest {
                 throws DatabaseException {
         }
 
+        @Override
+        public <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize) {
+            return null;
+        }
+
         @Override
         public <T extends DataObject> void createObject(T object) throws DatabaseException {
         }
@@ -316,6 +322,13 @@ public class FileControllerImplTest {
                 ExecutorService workerThreads) throws DatabaseException {
         }
 
+        @SuppressWarnings("rawtypes")
+        @Override
+        public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
+                List<DateTime> timeBuckets, TimeBucket bucket, TimeSeriesQueryResult<T> callback,
+                ExecutorService workerThreads) throws DatabaseException {
+        }
+
         @SuppressWarnings("rawtypes")
         @Override
         public TimeSeriesMetadata queryTimeSeriesMetadata(Class<? extends TimeSeries> tsType)
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.job;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcessedCallback;
+import com.emc.storageos.volumecontroller.Job;
+import com.emc.storageos.volumecontroller.JobContext;
+import com.emc.storageos.volumecontroller.TaskCompleter;
+import com.emc.storageos.volumecontroller.impl.JobPollResult;
+
+public class QueueJobTrackerTest {
+
+    /**
+     * Job that completes once it has been polled a given number of times
+     */
+    private static class CountingJob extends Job {
+        private final String _deviceJobId;
+        private final int _pollsToComplete;
+        private final AtomicInteger _polls = new AtomicInteger();
+
+        CountingJob(String deviceJobId, int pollsToComplete) {
+            _deviceJobId = deviceJobId;
+            _pollsToComplete = pollsToComplete;
+        }
+
+        @Override
+        public JobPollResult poll(JobContext jobContext, long trackingPeriodInMillis) {
+            JobPollResult result = new JobPollResult();
+            result.setJobId(_deviceJobId);
+            result.setJobName("CountingJob");
+            JobStatus status = _polls.incrementAndGet() >= _pollsToComplete ? JobStatus.SUCCESS : JobStatus.IN_PROGRESS;
+            result.setJobStatus(status);
+            result.setJobPostProcessingStatus(status);
+            return result;
+        }
+
+        @Override
+        public TaskCompleter getTaskCompleter() {
+            return null;
+        }
+
+        @Override
+        public String getDeviceJobId() {
+            return _deviceJobId;
+        }
+    }
+
+    private static class LatchCallback implements DistributedQueueItemProcessedCallback {
+        private final CountDownLatch _done = new CountDownLatch(1);
+
+        @Override
+        public void itemProcessed() throws Exception {
+            _done.countDown();
+        }
+    }
+
+    private static QueueJobTracker createTracker(long minPollInterval, long trackingPeriod) {
+        QueueJobTracker tracker = new QueueJobTracker();
+        tracker.setEventDriven(true);
+        tracker.setMinPollIntervalInMillis(minPollInterval);
+        tracker.setTrackingPeriodInMillis(trackingPeriod);
+        tracker.start();
+        return tracker;
+    }
+
+    @Test
+    public void testPollIntervalBackoff() {
+        Assert.assertEquals(4000, QueueJobTracker.nextPollInterval(2000, 2.0, 15000));
+        Assert.assertEquals(15000, QueueJobTracker.nextPollInterval(8000, 2.0, 15000));
+        Assert.assertEquals(15000, QueueJobTracker.nextPollInterval(15000, 2.0, 15000));
+        // a factor below one never shortens the interval
+        Assert.assertEquals(2000, QueueJobTracker.nextPollInterval(2000, 0.5, 15000));
+    }
+
+    @Test
+    public void testJobTrackedUntilTerminal() throws Exception {
+        QueueJobTracker tracker = createTracker(10, 40);
+        CountingJob job = new CountingJob("job-1", 5);
+        LatchCallback cb = new LatchCallback();
+        tracker.consumeItem(new QueueJob(job), cb);
+
+        Assert.assertTrue(cb._done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(5, job._polls.get());
+        Assert.assertFalse(tracker.jobStatusChanged("job-1"));
+    }
+
+    @Test
+    public void testStatusChangePollsImmediately() throws Exception {
+        // without a notification the job would not be polled for a minute
+        QueueJobTracker tracker = createTracker(60000, 60000);
+        CountingJob job = new CountingJob("job-2", 1);
+        LatchCallback cb = new LatchCallback();
+        tracker.consumeItem(new QueueJob(job), cb);
+
+        Assert.assertFalse(tracker.jobStatusChanged("unknown-job"));
+        Assert.assertTrue(tracker.jobStatusChanged("job-2"));
+        Assert.assertTrue(cb._done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, job._polls.get());
+    }
+}
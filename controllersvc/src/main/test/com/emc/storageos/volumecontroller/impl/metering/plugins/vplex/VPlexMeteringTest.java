@@ -17,6 +17,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.joda.time.DateTime;
 import org.junit.Assert;
@@ -424,6 +425,11 @@ public class VPlexMeteringTest {
 
         }
 
+        @Override
+        public <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize) {
+            return null;
+        }
+
         @Override
         public Integer countObjects(Class<? extends DataObject> type, String columnField, URI uri) {
             return null;
@@ -583,6 +589,13 @@ public class VPlexMeteringTest {
 
         }
 
+        @Override
+        public <T extends TimeSeriesSerializer.DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
+                List<DateTime> timeBuckets, TimeSeriesMetadata.TimeBucket bucket, TimeSeriesQueryResult<T> callback,
+                ExecutorService workerThreads) {
+
+        }
+
         @Override
         public TimeSeriesMetadata queryTimeSeriesMetadata(Class<? extends TimeSeries> tsType) {
             return null;
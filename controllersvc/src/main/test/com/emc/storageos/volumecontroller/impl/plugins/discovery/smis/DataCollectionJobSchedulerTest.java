@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.discovery.smis;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.data.Stat;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.db.client.model.StorageSystem;
+
+/**
+ * Moving the jobs left in the queues of departed controller nodes
+ */
+public class DataCollectionJobSchedulerTest {
+
+    /**
+     * The queue znodes, kept in memory by path
+     */
+    private static class QueueNodes implements DistributedDataManager {
+        private final Map<String, Object> nodes = new TreeMap<String, Object>();
+
+        void add(String path, Object data) {
+            nodes.put(path, data);
+            for (int i = path.lastIndexOf('/'); i > 0; i = path.lastIndexOf('/', i - 1)) {
+                if (!nodes.containsKey(path.substring(0, i))) {
+                    nodes.put(path.substring(0, i), null);
+                }
+            }
+        }
+
+        @Override
+        public List<String> getChildren(String path) {
+            Set<String> children = new LinkedHashSet<String>();
+            for (String node : nodes.keySet()) {
+                if (node.startsWith(path + "/")) {
+                    children.add(node.substring(path.length() + 1).split("/")[0]);
+                }
+            }
+            return new ArrayList<String>(children);
+        }
+
+        @Override
+        public Stat checkExists(String path) {
+            return nodes.containsKey(path) ? new Stat() : null;
+        }
+
+        @Override
+        public Object getData(String path, boolean watch) {
+            return nodes.get(path);
+        }
+
+        @Override
+        public void removeNode(String path) {
+            nodes.remove(path);
+        }
+
+        @Override
+        public void removeNode(String path, boolean recursive) {
+            removeNode(path);
+        }
+
+        @Override
+        public void createNode(String path, boolean watch) {
+            add(path, null);
+        }
+
+        @Override
+        public void putData(String path, Object data) {
+            add(path, data);
+        }
+
+        @Override
+        public Object getData(String path, Stat stat) {
+            return nodes.get(path);
+        }
+
+        @Override
+        public boolean putData(String path, Object data, int version) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setListener(CuratorListener listener) {
+        }
+
+        @Override
+        public void setConnectionStateListener(ConnectionStateListener listener) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Scheduler recording the jobs it moves, by id of the new owner
+     */
+    private static class TestScheduler extends DataCollectionJobScheduler {
+        private final Map<URI, String> moved = new TreeMap<URI, String>();
+
+        @Override
+        void enqueueMovedJob(DataCollectionJob job, String owner) {
+            Assert.assertNull("moved twice", moved.put(job.getCompleter().getId(), owner));
+        }
+    }
+
+    private QueueNodes queues;
+
+    private static URI device(int i) {
+        return URI.create("urn:storageos:StorageSystem:" + i + ":vdc1");
+    }
+
+    private static DataCollectionJob job(URI device) {
+        return new DataCollectionMeteringJob(new MeteringTaskCompleter(StorageSystem.class, device, "task-" + device));
+    }
+
+    private TestScheduler scheduler(String... nodes) {
+        TestScheduler scheduler = new TestScheduler();
+        scheduler.getSharding().setNodes(Arrays.asList(nodes));
+        return scheduler;
+    }
+
+    @Before
+    public void setup() {
+        queues = new QueueNodes();
+        queues.add("/queue/meteringjobqueue-controller-1/queue/queue-0000000001", job(device(1)));
+        queues.add("/queue/meteringjobqueue-controller-1/lock", null);
+        queues.add("/queue/discoverjobqueue-controller-2/queue/queue-0000000001", job(device(2)));
+        queues.add("/queue/discoverjobqueue-controller-2/queue/queue-0000000002", job(device(3)));
+        // being run by the departed node until its zk session expires
+        queues.add("/queue/discoverjobqueue-controller-2/queue/queue-0000000003", job(device(4)));
+        queues.add("/queue/discoverjobqueue-controller-2/lock/queue-0000000003", null);
+        queues.add("/queue/computediscoverjobqueue-controller-2/queue/queue-0000000001", job(device(5)));
+        queues.add("/queue/discoverjobqueue/queue/queue-0000000001", job(device(6)));
+    }
+
+    /**
+     * The jobs of a departed node go to the new owners of their devices and leave its queues,
+     * so that they do not run again when the node comes back
+     */
+    @Test
+    public void testMoveJobsOfDepartedNode() throws Exception {
+        TestScheduler scheduler = scheduler("controller-1", "controller-3");
+        scheduler.moveJobsOfDepartedNodes(queues);
+
+        Assert.assertEquals(Arrays.asList(device(2), device(3), device(5)), new ArrayList<URI>(scheduler.moved.keySet()));
+        for (Map.Entry<URI, String> entry : scheduler.moved.entrySet()) {
+            Assert.assertEquals(scheduler.getSharding().getOwner(entry.getKey()), entry.getValue());
+        }
+        Assert.assertEquals(Arrays.asList("queue-0000000003"),
+                queues.getChildren("/queue/discoverjobqueue-controller-2/queue"));
+        Assert.assertTrue(queues.getChildren("/queue/computediscoverjobqueue-controller-2/queue").isEmpty());
+        // queues of live nodes and shared queues are left alone
+        Assert.assertEquals(1, queues.getChildren("/queue/meteringjobqueue-controller-1/queue").size());
+        Assert.assertEquals(1, queues.getChildren("/queue/discoverjobqueue/queue").size());
+
+        // the running job is moved once its lock is gone
+        queues.removeNode("/queue/discoverjobqueue-controller-2/lock/queue-0000000003");
+        scheduler.moveJobsOfDepartedNodes(queues);
+        Assert.assertTrue(scheduler.moved.containsKey(device(4)));
+        Assert.assertTrue(queues.getChildren("/queue/discoverjobqueue-controller-2/queue").isEmpty());
+    }
+
+    /**
+     * A job a leader could not move is moved by the next leader, which never saw the node leave
+     */
+    @Test
+    public void testMoveAfterLeaderChange() throws Exception {
+        TestScheduler leader = scheduler("controller-1", "controller-3");
+        leader.moveJobsOfDepartedNodes(queues);
+        Assert.assertEquals(3, leader.moved.size());
+
+        queues.removeNode("/queue/discoverjobqueue-controller-2/lock/queue-0000000003");
+        TestScheduler next = scheduler("controller-1", "controller-3");
+        next.moveJobsOfDepartedNodes(queues);
+        Assert.assertEquals(Arrays.asList(device(4)), new ArrayList<URI>(next.moved.keySet()));
+    }
+
+    /**
+     * Nothing is moved while the live nodes are not known
+     */
+    @Test
+    public void testNoNodes() throws Exception {
+        TestScheduler scheduler = scheduler();
+        scheduler.moveJobsOfDepartedNodes(queues);
+        Assert.assertTrue(scheduler.moved.isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.discovery.smis;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Device ownership across controller nodes
+ */
+public class DataCollectionJobShardingTest {
+    private static final int DEVICES = 3000;
+
+    private static List<URI> devices() {
+        List<URI> devices = new ArrayList<URI>();
+        for (int i = 0; i < DEVICES; i++) {
+            devices.add(URI.create("urn:storageos:StorageSystem:" + i + ":vdc1"));
+        }
+        return devices;
+    }
+
+    private static Map<URI, String> owners(DataCollectionJobSharding sharding, List<URI> devices) {
+        Map<URI, String> owners = new HashMap<URI, String>();
+        for (URI device : devices) {
+            owners.put(device, sharding.getOwner(device));
+        }
+        return owners;
+    }
+
+    @Test
+    public void testNoNodes() {
+        Assert.assertNull(new DataCollectionJobSharding().getOwner(URI.create("urn:storageos:StorageSystem:1:vdc1")));
+    }
+
+    @Test
+    public void testBalancedAndDeterministic() {
+        DataCollectionJobSharding sharding = new DataCollectionJobSharding();
+        sharding.setNodes(Arrays.asList("controller-1", "controller-2", "controller-3"));
+        DataCollectionJobSharding other = new DataCollectionJobSharding();
+        other.setNodes(Arrays.asList("controller-3", "controller-1", "controller-2"));
+
+        List<URI> devices = devices();
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (URI device : devices) {
+            String owner = sharding.getOwner(device);
+            Assert.assertEquals(owner, other.getOwner(device));
+            counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+        }
+        Assert.assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            Assert.assertTrue("unbalanced: " + counts, count > DEVICES / 3 * 0.7 && count < DEVICES / 3 * 1.3);
+        }
+    }
+
+    @Test
+    public void testJoinMovesOnlyDevicesOfNewNode() {
+        DataCollectionJobSharding sharding = new DataCollectionJobSharding();
+        sharding.setNodes(Arrays.asList("controller-1", "controller-2", "controller-3"));
+        List<URI> devices = devices();
+        Map<URI, String> before = owners(sharding, devices);
+
+        Assert.assertTrue(sharding.setNodes(Arrays.asList("controller-1", "controller-2", "controller-3", "controller-4")));
+        Assert.assertFalse(sharding.setNodes(Arrays.asList("controller-4", "controller-3", "controller-2", "controller-1")));
+        int moved = 0;
+        for (URI device : devices) {
+            String owner = sharding.getOwner(device);
+            if (!owner.equals(before.get(device))) {
+                Assert.assertEquals("controller-4", owner);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > 0 && moved < DEVICES / 2);
+    }
+
+    @Test
+    public void testLeaveMovesOnlyDevicesOfDepartedNode() {
+        DataCollectionJobSharding sharding = new DataCollectionJobSharding();
+        sharding.setNodes(Arrays.asList("controller-1", "controller-2", "controller-3"));
+        List<URI> devices = devices();
+        Map<URI, String> before = owners(sharding, devices);
+
+        sharding.setNodes(Arrays.asList("controller-1", "controller-3"));
+        for (URI device : devices) {
+            String owner = sharding.getOwner(device);
+            if ("controller-2".equals(before.get(device))) {
+                Assert.assertFalse("controller-2".equals(owner));
+            } else {
+                Assert.assertEquals(before.get(device), owner);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor;
+
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Sliding window averages and port usage counts of the port metrics store
+ */
+public class PortMetricsStoreTest {
+    private static final URI PORT = URI.create("urn:storageos:StoragePort:1:vdc1");
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testWindowDropsOldSamples() {
+        PortMetricsStore store = new PortMetricsStore();
+        Assert.assertEquals(10.0, store.addSample(PORT, 0L, 10.0, 100L, null, 0L), DELTA);
+        Assert.assertEquals(20.0, store.addSample(PORT, 50L, 30.0, 100L, null, 0L), DELTA);
+        // the sample at 0 is older than the window
+        Assert.assertEquals(40.0, store.addSample(PORT, 120L, 50.0, 100L, null, 0L), DELTA);
+        // a lone sample is kept however old the previous ones are
+        Assert.assertEquals(70.0, store.addSample(PORT, 1000L, 70.0, 100L, null, 0L), DELTA);
+    }
+
+    @Test
+    public void testWindowCapacity() {
+        PortMetricsStore store = new PortMetricsStore();
+        int samples = PortMetricsStore.WINDOW_CAPACITY * 3 + 5;
+        double mean = 0.0;
+        for (int i = 0; i < samples; i++) {
+            mean = store.addSample(PORT, i, i, Long.MAX_VALUE, null, 0L);
+        }
+        // mean of the last WINDOW_CAPACITY samples
+        double expected = samples - 1 - (PortMetricsStore.WINDOW_CAPACITY - 1) / 2.0;
+        Assert.assertEquals(expected, mean, DELTA);
+    }
+
+    @Test
+    public void testWindowStartsFromPersistedAverage() {
+        PortMetricsStore store = new PortMetricsStore();
+        Assert.assertEquals(30.0, store.addSample(PORT, 100L, 40.0, 1000L, 20.0, 50L), DELTA);
+        // the persisted average is only used for the first sample
+        Assert.assertEquals(40.0, store.addSample(PORT, 200L, 60.0, 1000L, 90.0, 50L), DELTA);
+    }
+
+    @Test
+    public void testUsage() {
+        PortMetricsStore store = new PortMetricsStore();
+        Assert.assertNull(store.getUsage(PORT));
+        // counts not kept are not raised
+        store.addUsage(PORT, 1, 1);
+        Assert.assertNull(store.getUsage(PORT));
+
+        store.putUsage(PORT, 4, 10);
+        store.addUsage(PORT, 2, 3);
+        Assert.assertEquals(6, store.getUsage(PORT).getInitiatorCount());
+        Assert.assertEquals(13, store.getUsage(PORT).getVolumeCount());
+
+        store.setUsageMaxAgeMsec(-1);
+        Assert.assertNull(store.getUsage(PORT));
+        store.setUsageMaxAgeMsec(60000);
+        store.removeUsage(PORT);
+        Assert.assertNull(store.getUsage(PORT));
+    }
+}
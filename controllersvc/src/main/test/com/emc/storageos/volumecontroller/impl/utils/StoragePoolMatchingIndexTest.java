@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.constraint.URIQueryResultList;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.StringSetMap;
+import com.emc.storageos.db.client.model.VirtualPool;
+import com.emc.storageos.volumecontroller.AttributeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.CoSTypeAttributeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.DeviceTypeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.DriveTypeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.NeighborhoodsMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.ProvisioningTypeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.RaidLevelMatcher;
+
+/**
+ * Candidate pools of the StoragePoolMatchingIndex, checked against the pools the vpool
+ * matchers accept for combinations of the attributes the index partitions the pools by.
+ */
+public class StoragePoolMatchingIndexTest {
+    private static final String[] VARRAYS = { "urn:storageos:VirtualArray:1:vdc1", "urn:storageos:VirtualArray:2:vdc1" };
+
+    private final Map<URI, StorageSystem> systems = new LinkedHashMap<URI, StorageSystem>();
+    private final List<StoragePool> pools = new ArrayList<StoragePool>();
+    private DbClient dbClient;
+    private AttributeMatcherFramework matcherFramework;
+
+    private static StringSet set(String... values) {
+        return values == null ? null : new StringSet(Arrays.asList(values));
+    }
+
+    private void addSystem(int i, String systemType, String provisioningType) {
+        StorageSystem system = new StorageSystem();
+        system.setId(URI.create("urn:storageos:StorageSystem:" + i + ":vdc1"));
+        system.setSystemType(systemType);
+        system.setSupportedProvisioningType(provisioningType);
+        systems.put(system.getId(), system);
+    }
+
+    /**
+     * Pools of each combination of the attributes the index partitions the pools by
+     */
+    private void addPools() {
+        String[][] driveTypes = { null, { "FC" }, { "SATA", "FC" }, { "UNKNOWN" } };
+        String[][] raidLevels = { null, { "RAID5" }, { "RAID1", "RAID6" } };
+        String[][] varrays = { {}, { VARRAYS[0] }, { VARRAYS[1] }, VARRAYS };
+        for (StorageSystem system : systems.values()) {
+            for (StoragePool.PoolServiceType serviceType : Arrays.asList(StoragePool.PoolServiceType.block,
+                    StoragePool.PoolServiceType.file, StoragePool.PoolServiceType.block_file)) {
+                for (StoragePool.SupportedResourceTypes resourceType : StoragePool.SupportedResourceTypes.values()) {
+                    for (String[] driveType : driveTypes) {
+                        for (String[] raidLevel : raidLevels) {
+                            StoragePool pool = new StoragePool();
+                            int i = pools.size();
+                            pool.setId(URI.create("urn:storageos:StoragePool:" + i + ":vdc1"));
+                            pool.setNativeGuid("POOL+" + i);
+                            pool.setStorageDevice(system.getId());
+                            pool.setPoolServiceType(serviceType.name());
+                            pool.setSupportedResourceTypes(resourceType.name());
+                            pool.setSupportedDriveTypes(set(driveType));
+                            pool.setSupportedRaidLevels(set(raidLevel));
+                            pool.setTaggedVirtualArrays(set(varrays[i % varrays.length]));
+                            pools.add(pool);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Before
+    public void setup() {
+        addSystem(1, StorageSystem.Type.vmax.name(), StorageSystem.SupportedProvisioningTypes.THIN_AND_THICK.name());
+        addSystem(2, StorageSystem.Type.vnxblock.name(), StorageSystem.SupportedProvisioningTypes.THICK.name());
+        addSystem(3, StorageSystem.Type.hds.name(), StorageSystem.SupportedProvisioningTypes.THIN_AND_THICK.name());
+        addSystem(4, StorageSystem.Type.xtremio.name(), StorageSystem.SupportedProvisioningTypes.THIN.name());
+        addPools();
+
+        dbClient = (DbClient) Proxy.newProxyInstance(DbClient.class.getClassLoader(), new Class<?>[] { DbClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("queryObject") && args.length == 2 && args[1] instanceof URI) {
+                            return systems.get(args[1]);
+                        }
+                        if (method.getName().equals("queryObject") && args.length == 2 && args[1] instanceof Collection) {
+                            List<StorageSystem> found = new ArrayList<StorageSystem>();
+                            for (Object id : (Collection<?>) args[1]) {
+                                found.add(systems.get(id));
+                            }
+                            return found;
+                        }
+                        if (method.getName().equals("queryByConstraint") && args.length == 2) {
+                            // the tagged virtual array pools constraint
+                            Object varray = ((Constraint) args[0]).toConstraintDescriptor().getArguments().get(0);
+                            List<URI> found = new ArrayList<URI>();
+                            for (StoragePool pool : pools) {
+                                if (pool.getTaggedVirtualArrays() != null && pool.getTaggedVirtualArrays().contains(varray)) {
+                                    found.add(pool.getId());
+                                }
+                            }
+                            ((URIQueryResultList) args[1]).setResult(found.iterator());
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        // the vpool matchers whose rejections the index anticipates, in their order in attr-matcher.xml;
+        // the other vpool matchers only reject more pools
+        List<AttributeMatcher> vpoolMatchers = Arrays.<AttributeMatcher> asList(new CoSTypeAttributeMatcher(),
+                new NeighborhoodsMatcher(), new ProvisioningTypeMatcher(), new DeviceTypeMatcher(),
+                new RaidLevelMatcher(), new DriveTypeMatcher());
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton(AttributeMatcher.VPOOL_MATCHERS, vpoolMatchers);
+        context.getBeanFactory().registerSingleton(AttributeMatcher.BASIC_PLACEMENT_MATCHERS,
+                Collections.<AttributeMatcher> emptyList());
+        context.getBeanFactory().registerSingleton(AttributeMatcher.PLACEMENT_MATCHERS, Collections.<AttributeMatcher> emptyList());
+        context.refresh();
+        matcherFramework = new AttributeMatcherFramework();
+        matcherFramework.setApplicationContext(context);
+    }
+
+    private static VirtualPool vpool(String type, String[] varrays, String provisioningType, String systemType,
+            String driveType, String[] raidLevels, String autoTierPolicyName) {
+        VirtualPool vpool = new VirtualPool();
+        vpool.setType(type);
+        vpool.setVirtualArrays(set(varrays));
+        vpool.setSupportedProvisioningType(provisioningType);
+        vpool.setDriveType(driveType);
+        vpool.setAutoTierPolicyName(autoTierPolicyName);
+        if (systemType != null) {
+            StringSetMap arrayInfo = new StringSetMap();
+            arrayInfo.put(VirtualPoolCapabilityValuesWrapper.SYSTEM_TYPE, systemType);
+            if (raidLevels != null) {
+                for (String raidLevel : raidLevels) {
+                    arrayInfo.put(VirtualPoolCapabilityValuesWrapper.RAID_LEVEL, raidLevel);
+                }
+            }
+            vpool.addArrayInfoDetails(arrayInfo);
+        }
+        return vpool;
+    }
+
+    private static Set<URI> ids(List<StoragePool> pools) {
+        Set<URI> ids = new HashSet<URI>();
+        for (StoragePool pool : pools) {
+            ids.add(pool.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Runs the pools through the matchers and checks the index does not leave out any matched pool
+     *
+     * @return the candidate pools
+     */
+    private Set<URI> checkCandidates(StoragePoolMatchingIndex index, VirtualPool vpool) {
+        Map<String, Object> attributeMap = new VirtualPoolAttributeMapBuilder(vpool, null, null).buildMap();
+        Set<URI> candidates = ids(index.getCandidatePools(attributeMap));
+        Set<URI> matched = ids(matcherFramework.matchAttributes(pools, attributeMap, dbClient, null,
+                AttributeMatcher.VPOOL_MATCHERS));
+
+        Set<URI> missing = new HashSet<URI>(matched);
+        missing.removeAll(candidates);
+        Assert.assertTrue("pools left out for " + attributeMap + ": " + missing, missing.isEmpty());
+        return candidates;
+    }
+
+    /**
+     * The candidates are a superset of the matched pools for every combination of vpool type,
+     * virtual arrays, provisioning type, system type, drive type, RAID levels and auto tiering
+     */
+    @Test
+    public void testCandidatesIncludeMatchedPools() {
+        StoragePoolMatchingIndex index = new StoragePoolMatchingIndex(pools, dbClient);
+        String[][] varrays = { { VARRAYS[0] }, VARRAYS };
+        String[] provisioningTypes = { null, VirtualPool.ProvisioningType.NONE.name(),
+                VirtualPool.ProvisioningType.Thin.name(), VirtualPool.ProvisioningType.Thick.name() };
+        String[] systemTypes = { null, VirtualPool.SystemType.NONE.name(), VirtualPool.SystemType.vmax.name(),
+                VirtualPool.SystemType.vnxblock.name(), VirtualPool.SystemType.hds.name(),
+                VirtualPool.SystemType.xtremio.name() };
+        String[] driveTypes = { null, VirtualPool.SupportedDriveTypes.NONE.name(), VirtualPool.SupportedDriveTypes.FC.name(),
+                VirtualPool.SupportedDriveTypes.SATA.name(), VirtualPool.SupportedDriveTypes.SAS.name() };
+        String[][] raidLevels = { null, { "RAID5" }, { "RAID1", "RAID5" } };
+
+        int vpools = 0;
+        for (VirtualPool.Type type : Arrays.asList(VirtualPool.Type.block, VirtualPool.Type.file)) {
+            for (String[] varray : varrays) {
+                for (String provisioningType : provisioningTypes) {
+                    for (String systemType : systemTypes) {
+                        for (String driveType : driveTypes) {
+                            for (String[] raidLevel : raidLevels) {
+                                if (systemType == null && raidLevel != null) {
+                                    // both come from the array info of the vpool
+                                    continue;
+                                }
+                                checkCandidates(index, vpool(type.name(), varray, provisioningType, systemType, driveType,
+                                        raidLevel, null));
+                                vpools++;
+                                if (systemType != null) {
+                                    checkCandidates(index, vpool(type.name(), varray, provisioningType, systemType,
+                                            driveType, raidLevel, "FAST_GOLD"));
+                                    vpools++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(vpools * (long) pools.size(), index.getPairs());
+        // most pairs never reach the matchers
+        Assert.assertTrue(index.getCandidatePairs() * 4 < index.getPairs());
+    }
+
+    /**
+     * HDS pools with external storage match any drive type, and an auto tiering policy turns
+     * off the drive type and RAID level matching of VMAX vpools
+     */
+    @Test
+    public void testDriveTypeAndAutoTiering() {
+        StoragePoolMatchingIndex index = new StoragePoolMatchingIndex(pools, dbClient);
+        Set<URI> candidates = checkCandidates(index, vpool(VirtualPool.Type.block.name(), VARRAYS, null,
+                VirtualPool.SystemType.hds.name(), VirtualPool.SupportedDriveTypes.SAS.name(), null, null));
+        Assert.assertFalse(candidates.isEmpty());
+        for (StoragePool pool : pools) {
+            if (candidates.contains(pool.getId())) {
+                Assert.assertEquals(StorageSystem.Type.hds.name(), systems.get(pool.getStorageDevice()).getSystemType());
+                Assert.assertTrue(pool.getSupportedDriveTypes().contains(VirtualPool.SupportedDriveTypes.UNKNOWN.name()));
+            }
+        }
+
+        Set<URI> withoutPolicy = checkCandidates(index, vpool(VirtualPool.Type.block.name(), VARRAYS, null,
+                VirtualPool.SystemType.vmax.name(), VirtualPool.SupportedDriveTypes.FC.name(), new String[] { "RAID5" }, null));
+        Set<URI> withPolicy = checkCandidates(index, vpool(VirtualPool.Type.block.name(), VARRAYS, null,
+                VirtualPool.SystemType.vmax.name(), VirtualPool.SupportedDriveTypes.FC.name(), new String[] { "RAID5" },
+                "FAST_GOLD"));
+        Assert.assertTrue(withPolicy.containsAll(withoutPolicy));
+        Assert.assertTrue(withPolicy.size() > withoutPolicy.size());
+    }
+}
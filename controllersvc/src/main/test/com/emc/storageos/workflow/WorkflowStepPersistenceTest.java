@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.coordinator.client.service.impl.GenericSerializer;
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.model.WorkflowStep;
+import com.emc.storageos.workflow.Workflow.Step;
+import com.emc.storageos.workflow.Workflow.StepState;
+import com.emc.storageos.workflow.Workflow.StepStatus;
+
+/**
+ * Batched persistence of workflow steps in ZK and its fallback to step by step writes
+ */
+public class WorkflowStepPersistenceTest {
+    private static final String STEP2WORKFLOW = "/workflow/step2workflow/";
+
+    /**
+     * Data manager keeping the nodes in memory, with the all or nothing semantics of a
+     * ZK transaction, and recording the writes
+     */
+    private static class RecordingDataManager implements DistributedDataManager {
+        private final Map<String, Object> nodes = new HashMap<String, Object>();
+        // number of ops of each committed transaction
+        private final List<Integer> transactions = new ArrayList<Integer>();
+        private int failedTransactions;
+        private int singleWrites;
+
+        @Override
+        public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes)
+                throws Exception {
+            long bytes = 0;
+            for (Map.Entry<String, Object> entry : creates.entrySet()) {
+                if (nodes.containsKey(entry.getKey())) {
+                    failedTransactions++;
+                    throw new KeeperException.NodeExistsException(entry.getKey());
+                }
+                bytes += entry.getKey().length() + GenericSerializer.serialize(entry.getValue()).length;
+            }
+            for (Map.Entry<String, Object> entry : updates.entrySet()) {
+                if (!nodes.containsKey(entry.getKey())) {
+                    failedTransactions++;
+                    throw new KeeperException.NoNodeException(entry.getKey());
+                }
+                bytes += entry.getKey().length() + GenericSerializer.serialize(entry.getValue()).length;
+            }
+            Assert.assertTrue("transaction of " + bytes + " bytes", bytes <= MAX_TRANSACTION_BYTES);
+            nodes.putAll(creates);
+            nodes.putAll(updates);
+            for (String path : removes) {
+                nodes.remove(path);
+            }
+            transactions.add(creates.size() + updates.size() + removes.size());
+        }
+
+        @Override
+        public Stat checkExists(String path) {
+            return nodes.containsKey(path) ? new Stat() : null;
+        }
+
+        @Override
+        public void createNode(String path, boolean watch) {
+            singleWrites++;
+            nodes.put(path, null);
+        }
+
+        @Override
+        public void putData(String path, Object data) {
+            singleWrites++;
+            nodes.put(path, data);
+        }
+
+        @Override
+        public void removeNode(String path) {
+            singleWrites++;
+            nodes.remove(path);
+        }
+
+        @Override
+        public void removeNode(String path, boolean recursive) {
+            removeNode(path);
+        }
+
+        @Override
+        public Object getData(String path, boolean watch) {
+            return nodes.get(path);
+        }
+
+        @Override
+        public Object getData(String path, Stat stat) {
+            return nodes.get(path);
+        }
+
+        @Override
+        public boolean putData(String path, Object data, int version) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> getChildren(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setListener(CuratorListener listener) {
+        }
+
+        @Override
+        public void setConnectionStateListener(ConnectionStateListener listener) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private WorkflowService service;
+    private RecordingDataManager dataManager;
+    private Workflow workflow;
+
+    @Before
+    public void setup() {
+        DbClient dbClient = EasyMock.createNiceMock(DbClient.class);
+        EasyMock.expect(dbClient.queryObject(EasyMock.eq(WorkflowStep.class), EasyMock.anyObject(URI.class)))
+                .andStubReturn(new WorkflowStep());
+        EasyMock.replay(dbClient);
+        dataManager = new RecordingDataManager();
+        service = new WorkflowService();
+        service.setDbClient(dbClient);
+        service.setDataManager(dataManager);
+        service.setStepPersistenceBatchSize(50);
+        workflow = new Workflow(service, "TestController", "testMethod", "task1",
+                URI.create("urn:storageos:Workflow:1:vdc1"));
+    }
+
+    private List<Step> createSteps(int count, int argBytes) {
+        List<Step> steps = new ArrayList<Step>();
+        char[] arg = new char[argBytes];
+        Arrays.fill(arg, 'x');
+        for (int i = 0; i < count; i++) {
+            Step step = new Step();
+            step.stepId = "step" + i;
+            step.description = "step " + i;
+            step.stepGroup = "group";
+            step.executeMethod = new Workflow.Method("execute", new String(arg));
+            step.status = new StepStatus(step.stepId, StepState.CREATED, step.description);
+            workflow.getStepMap().put(step.stepId, step);
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    private String stepPath(Step step) {
+        return "/workflow/workflows/TestController/testMethod/" + workflow.getWorkflowURI() + "/" + step.stepId;
+    }
+
+    private void assertPersisted(List<Step> steps) {
+        for (Step step : steps) {
+            Assert.assertSame(step, dataManager.nodes.get(stepPath(step)));
+            Assert.assertNotNull(dataManager.nodes.get(STEP2WORKFLOW + step.stepId));
+        }
+    }
+
+    @Test
+    public void testBatchesCappedByCount() throws Exception {
+        List<Step> steps = createSteps(120, 10);
+        Assert.assertEquals(237, service.persistWorkflowSteps(workflow, steps, false));
+
+        // a step node and a step2workflow node per step
+        Assert.assertEquals(Arrays.asList(100, 100, 40), dataManager.transactions);
+        Assert.assertEquals(0, dataManager.singleWrites);
+        assertPersisted(steps);
+    }
+
+    /**
+     * The writes of a workflow are counted as committed, over all the transactions of the workflow
+     */
+    @Test
+    public void testBatchedWriteCounts() throws Exception {
+        List<Step> steps = createSteps(60, 10);
+        Assert.assertNull(service.getBatchedWriteCounts(workflow));
+        // left over from an earlier attempt, the second batch is written step by step
+        dataManager.nodes.put(STEP2WORKFLOW + steps.get(55).stepId, "/workflow/workflows/old");
+        Assert.assertEquals(99, service.persistWorkflowSteps(workflow, steps, false));
+
+        steps.get(0).status.updateState(StepState.SUCCESS, null, "");
+        Assert.assertEquals(1, service.persistWorkflowStepUpdates(workflow, steps.subList(0, 1),
+                Collections.singletonList(STEP2WORKFLOW + steps.get(0).stepId)));
+
+        WorkflowService.BatchedWriteCounts counts = service.getBatchedWriteCounts(workflow);
+        Assert.assertEquals(102, counts.operations);
+        Assert.assertEquals(2, counts.transactions);
+        Assert.assertEquals(100, counts.getWritesSaved());
+    }
+
+    @Test
+    public void testBatchesCappedByBytes() throws Exception {
+        // no more than three steps of 150KB fit in a transaction
+        List<Step> steps = createSteps(10, 150 * 1024);
+        service.persistWorkflowSteps(workflow, steps, false);
+
+        Assert.assertTrue(dataManager.transactions.size() >= 4);
+        Assert.assertEquals(0, dataManager.failedTransactions);
+        Assert.assertEquals(0, dataManager.singleWrites);
+        assertPersisted(steps);
+    }
+
+    /**
+     * Retried steps keep their step2workflow node unless it was removed when they completed
+     */
+    @Test
+    public void testRetriedSteps() throws Exception {
+        List<Step> steps = createSteps(4, 10);
+        service.persistWorkflowSteps(workflow, steps, false);
+        dataManager.nodes.remove(STEP2WORKFLOW + steps.get(0).stepId);
+        dataManager.transactions.clear();
+
+        for (Step step : steps) {
+            step.status.updateState(StepState.QUEUED, null, "");
+        }
+        service.persistWorkflowSteps(workflow, steps, true);
+
+        // four step updates and the creation of the removed step2workflow node
+        Assert.assertEquals(Collections.singletonList(5), dataManager.transactions);
+        Assert.assertEquals(0, dataManager.failedTransactions);
+        Assert.assertEquals(0, dataManager.singleWrites);
+        assertPersisted(steps);
+    }
+
+    /**
+     * A batch that can't be committed is written step by step, the other batches are not affected
+     */
+    @Test
+    public void testFallbackToSingleWrites() throws Exception {
+        List<Step> steps = createSteps(60, 10);
+        // left over from an earlier attempt
+        dataManager.nodes.put(STEP2WORKFLOW + steps.get(55).stepId, "/workflow/workflows/old");
+
+        service.persistWorkflowSteps(workflow, steps, false);
+
+        Assert.assertEquals(Collections.singletonList(100), dataManager.transactions);
+        Assert.assertEquals(1, dataManager.failedTransactions);
+        Assert.assertTrue(dataManager.singleWrites >= 20);
+        assertPersisted(steps);
+    }
+
+    /**
+     * Status updates go with the removal of the step2workflow node of the completed step,
+     * and are written step by step if a step node is gone
+     */
+    @Test
+    public void testStepUpdates() throws Exception {
+        List<Step> steps = createSteps(3, 10);
+        service.persistWorkflowSteps(workflow, steps, false);
+        dataManager.transactions.clear();
+
+        steps.get(0).status.updateState(StepState.SUCCESS, null, "");
+        String removed = STEP2WORKFLOW + steps.get(0).stepId;
+        service.persistWorkflowStepUpdates(workflow, steps, Collections.singletonList(removed));
+        Assert.assertEquals(Collections.singletonList(4), dataManager.transactions);
+        Assert.assertFalse(dataManager.nodes.containsKey(removed));
+
+        // the node of a step removed in the meantime is not recreated
+        dataManager.nodes.remove(stepPath(steps.get(2)));
+        service.persistWorkflowStepUpdates(workflow, steps, Collections.<String> emptyList());
+        Assert.assertEquals(1, dataManager.failedTransactions);
+        Assert.assertFalse(dataManager.nodes.containsKey(stepPath(steps.get(2))));
+        Assert.assertSame(steps.get(1), dataManager.nodes.get(stepPath(steps.get(1))));
+    }
+}
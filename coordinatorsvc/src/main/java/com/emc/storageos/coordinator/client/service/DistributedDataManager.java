@@ -5,12 +5,19 @@
 package com.emc.storageos.coordinator.client.service;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.zookeeper.data.Stat;
 import org.apache.curator.framework.api.CuratorListener;
 import org.apache.curator.framework.state.ConnectionStateListener;
 
 public interface DistributedDataManager {
+    /**
+     * Largest size of the data written by putDataInTransaction. A transaction is sent to
+     * zookeeper as a single request, which must stay below its jute.maxbuffer.
+     */
+    public static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+
     /**
      * Sets or removes a Curator Listener. If listener argument is non null,
      * a listener is added. (If there was a previous listener, it is removed).
@@ -86,6 +93,22 @@ public interface DistributedDataManager {
      */
     public void putData(String path, Object data) throws Exception;
 
+    /**
+     * Applies a group of writes in a single zookeeper multi-op transaction, so they
+     * cost one round trip instead of several per node. Either all writes are applied
+     * or none: if one op fails the KeeperException for it is thrown (e.g. NodeExists
+     * for a create, NoNode for an update or removal). Unlike putData, node existence
+     * is not checked and parent nodes are not created. A transaction with more than
+     * MAX_TRANSACTION_BYTES of serialized data is refused without writing anything.
+     * 
+     * @param creates -- paths of nodes to create, with their (Serializable) data
+     * @param updates -- paths of existing nodes, with their new (Serializable) data
+     * @param removes -- paths of existing nodes without children to delete
+     * @throws Exception
+     */
+    public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes)
+            throws Exception;
+
     /**
      * Returns the data in the zookeeper node given by path. If the node does not exist,
      * or there is no data present in the node, null is returned. The data is returned
@@ -99,6 +122,29 @@ public interface DistributedDataManager {
      */
     public Object getData(String path, boolean watch) throws Exception;
 
+    /**
+     * Returns the data in the zookeeper node given by path along with the version it was
+     * read at, for a later putData(path, data, version). The node must exist.
+     * 
+     * @param path -- String zookeeper path.
+     * @param stat -- OUTPUT receives the stat of the node, including its version.
+     * @return a Java object (must be Serializable), or null if there is no data in the node
+     * @throws Exception NoNodeException if the node does not exist
+     */
+    public Object getData(String path, Stat stat) throws Exception;
+
+    /**
+     * Replaces the data of the existing zookeeper node given by path, only if the node was
+     * not modified since its data was read with getData(path, stat).
+     * 
+     * @param path -- String zookeeper path.
+     * @param data -- Any arbitrary Java object as long as it is Serializable
+     * @param version -- the version of the node the data was computed from
+     * @return false if the node was modified in the meantime and the data was not stored
+     * @throws Exception
+     */
+    public boolean putData(String path, Object data, int version) throws Exception;
+
     /**
      * Returns a list of the child node names. For example if called on
      * a path /a/b that has children c1 and c2, returns { c1, c2 }.
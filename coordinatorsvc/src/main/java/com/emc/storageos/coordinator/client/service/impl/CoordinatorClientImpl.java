@@ -119,6 +119,13 @@ public class CoordinatorClientImpl implements CoordinatorClient {
 
     private ZkConnection _zkConnection;
 
+    // watch invalidated cache of service registry and configuration reads
+    private ZkReadCache readCache;
+    private long readCacheMaxStalenessMs = ZkReadCache.DEFAULT_MAX_STALENESS_MS;
+
+    // group commit of distributed queue puts and acks
+    private boolean queueGroupCommit = true;
+
     private int nodeCount = 0;
     private String vdcShortId;
     private String vip;
@@ -160,6 +167,50 @@ public class CoordinatorClientImpl implements CoordinatorClient {
         return _zkConnection;
     }
 
+    /**
+     * Set the maximum age of cached service registry and configuration reads. 0 disables
+     * the cache. Must be called before start().
+     * 
+     * @param maxStalenessMs
+     */
+    public void setReadCacheMaxStalenessMs(long maxStalenessMs) {
+        readCacheMaxStalenessMs = maxStalenessMs;
+    }
+
+    /**
+     * Set whether distributed queues commit the puts and acks of concurrent threads
+     * together in zk transactions. Applies to queues created afterwards.
+     * 
+     * @param groupCommit
+     */
+    public void setQueueGroupCommit(boolean groupCommit) {
+        queueGroupCommit = groupCommit;
+    }
+
+    /**
+     * @return the read cache, null if disabled or the client is not started
+     */
+    public ZkReadCache getReadCache() {
+        return readCache;
+    }
+
+    private byte[] readData(String path) throws Exception {
+        ZkReadCache cache = readCache;
+        return cache != null ? cache.getData(path) : _zkConnection.curator().getData().forPath(path);
+    }
+
+    private List<String> readChildren(String path) throws Exception {
+        ZkReadCache cache = readCache;
+        return cache != null ? cache.getChildren(path) : _zkConnection.curator().getChildren().forPath(path);
+    }
+
+    private void invalidateCachedRead(String path) {
+        ZkReadCache cache = readCache;
+        if (cache != null) {
+            cache.invalidate(path);
+        }
+    }
+
     public void setNodeCount(int count) {
         nodeCount = count;
     }
@@ -415,6 +466,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
                 });
         
         _zkConnection.connect();
+        if (readCacheMaxStalenessMs > 0) {
+            readCache = new ZkReadCache(_zkConnection.curator(), readCacheMaxStalenessMs);
+        }
 
         // writing local node to zk
         initInetAddressEntry();
@@ -440,6 +494,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
 
     @Override
     public void stop() {
+        if (readCache != null) {
+            log.info("zk read cache: {}", readCache);
+        }
         if (_zkConnection.curator().isStarted()) {
             _zkConnection.disconnect();
         }
@@ -601,6 +658,10 @@ public class CoordinatorClientImpl implements CoordinatorClient {
             CuratorTransactionFinal tx = (CuratorTransactionFinal) handler;
             tx.commit();
             zkTransactionHandler.remove();
+            // the watches of the changed nodes fire asynchronously, don't serve the old values meanwhile
+            if (readCache != null) {
+                readCache.invalidateAll();
+            }
         } catch (Exception ex) {
             throw CoordinatorException.fatals.unableToPersistTheConfiguration(ex);
         }
@@ -635,6 +696,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
                         zkTransactionHandler.set(tx);
                     } else {
                         _zkConnection.curator().setData().forPath(servicePath, config.serialize());
+                        invalidateCachedRead(servicePath);
                     }
                 } else {
                     if (handler != null) {
@@ -642,6 +704,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
                         zkTransactionHandler.set(tx);
                     } else {
                         _zkConnection.curator().create().forPath(servicePath, config.serialize());
+                        invalidateCachedRead(configParentPath);
                     }
                 }
             }
@@ -673,6 +736,8 @@ public class CoordinatorClientImpl implements CoordinatorClient {
                     zkTransactionHandler.set(tx);
                 } else {
                     _zkConnection.curator().delete().forPath(servicePath);
+                    invalidateCachedRead(servicePath);
+                    invalidateCachedRead(ZKPaths.getPathAndNode(servicePath).getPath());
                 }
             } catch (KeeperException.NoNodeException ignore) {
                 // Ignore exception, don't re-throw
@@ -693,7 +758,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
         String serviceParentPath = getKindPath(siteId, kind);
         List<String> configPaths;
         try {
-            configPaths = _zkConnection.curator().getChildren().forPath(serviceParentPath);
+            configPaths = readChildren(serviceParentPath);
         } catch (KeeperException.NoNodeException ignore) {
             // Ignore exception, don't re-throw
             log.debug("Caught exception but ignoring it: " + ignore);
@@ -774,7 +839,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     public Configuration queryConfiguration(String siteId, String kind, String id) throws CoordinatorException {
         String servicePath = String.format("%s/%s", getKindPath(siteId, kind), id);
         try {
-            byte[] data = _zkConnection.curator().getData().forPath(servicePath);
+            byte[] data = readData(servicePath);
             return ConfigurationImpl.parse(data);
         } catch (KeeperException.NoNodeException ignore) {
             // Ignore exception, don't re-throw
@@ -865,7 +930,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
         List<String> services = null;
         String fullPath = String.format("%1$s/%2$s", getServicePath(siteId), serviceRoot);
         try {
-            services = _zkConnection.curator().getChildren().forPath(fullPath);
+            services = readChildren(fullPath);
         } catch (KeeperException.NoNodeException e) {
             throw CoordinatorException.retryables.cannotFindNode(fullPath, e);
         } catch (Exception e) {
@@ -894,10 +959,7 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     private byte[] getServiceData(String siteId, String serviceRoot, String id) {
         byte[] data = null;
         try {
-            data = _zkConnection
-                    .curator()
-                    .getData()
-                    .forPath(String.format("%1$s/%2$s/%3$s", getServicePath(siteId), serviceRoot, id));
+            data = readData(String.format("%1$s/%2$s/%3$s", getServicePath(siteId), serviceRoot, id));
             return data;
         } catch (Exception e) {
             log.warn("e=", e);
@@ -997,8 +1059,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     @Override
     public <T> DistributedQueue<T> getQueue(String name, DistributedQueueConsumer<T> consumer,
             QueueSerializer<T> serializer, int maxThreads, int maxItem) throws CoordinatorException {
-        DistributedQueue<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
+        DistributedQueueImpl<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
                 serializer, name, maxThreads, maxItem);
+        queue.setBatched(queueGroupCommit);
         queue.start();
         return queue;
     }
@@ -1006,8 +1069,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     @Override
     public <T> DistributedQueue<T> getQueue(String name, DistributedQueueConsumer<T> consumer,
             QueueSerializer<T> serializer, int maxThreads) throws CoordinatorException {
-        DistributedQueue<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
+        DistributedQueueImpl<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
                 serializer, name, maxThreads);
+        queue.setBatched(queueGroupCommit);
         queue.start();
         return queue;
     }
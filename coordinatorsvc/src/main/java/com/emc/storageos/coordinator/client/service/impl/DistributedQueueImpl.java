@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Comparator;
 
 import org.apache.zookeeper.CreateMode;
@@ -28,6 +29,7 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorEventType;
 import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
 import org.apache.curator.framework.recipes.queue.QueueSerializer;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
@@ -40,6 +42,10 @@ import org.apache.curator.utils.ZKPaths;
  * <p/>
  * 1. Multithreaded queue consumer callbacks 2. Queue item is always processed with lock safety (meaning they are not removed from queue
  * until successfully processed / lock released)
+ * <p/>
+ * In batched mode, items put by concurrent threads are created in one zk transaction
+ * and an item and its lock are deleted in one transaction, with the acks of concurrent
+ * threads committed together (see ZkGroupCommit). Each item keeps its own node and lock.
  */
 public class DistributedQueueImpl<T> implements DistributedQueue<T> {
     private static final Logger _log = LoggerFactory.getLogger(DistributedQueueImpl.class);
@@ -49,6 +55,10 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
 
     // default max of 100K requests
     private static final int DEFAULT_MAX_ITEM = 100000;
+    private static final int MAX_BATCH_OPS = 100;
+    // well below the default zk jute.maxbuffer of 1MB
+    private static final int MAX_BATCH_BYTES = 512 * 1024;
+    private static final long QUEUE_SIZE_CHECK_INTERVAL_MS = 1000;
 
     private final CuratorFramework _zkClient;
     private final DistributedQueueConsumer<T> _consumer;
@@ -61,6 +71,10 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
     private final ThreadPoolExecutor _workers;
     private int _maxItem = DEFAULT_MAX_ITEM;
     private int _maxThreads = 10; // this is for distributed queue consumer threads
+    private ZkGroupCommit _groupCommit;
+    private volatile long _queueSizeCheckedAt;
+    private volatile int _queueSize;
+    private final AtomicInteger _putsSinceSizeCheck = new AtomicInteger();
 
     /**
      * Responds to connection drops / reconnects.
@@ -181,6 +195,19 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
         return _consumer;
     }
 
+    /**
+     * Enables batched mode, must be called before start
+     * 
+     * @param batched true to commit concurrent puts and acks in shared zk transactions
+     */
+    public void setBatched(boolean batched) {
+        _groupCommit = batched ? new ZkGroupCommit(_zkClient, MAX_BATCH_OPS, MAX_BATCH_BYTES) : null;
+    }
+
+    public boolean isBatched() {
+        return _groupCommit != null;
+    }
+
     @Override
     public synchronized void start() {
         if (_workers.isTerminated()) {
@@ -231,14 +258,54 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
 
     @Override
     public void put(T item) throws Exception {
+        final String path = ZKPaths.makePath(_queuePath, _queuePrefix);
+        final byte[] data = _serializer.serialize(item);
+        if (_groupCommit == null) {
+            checkQueueSize();
+            _zkClient.create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data);
+            return;
+        }
+
+        // the queue size is read again once per interval, or when the puts made since the
+        // last read could have reached the max
+        long now = System.currentTimeMillis();
+        int puts = _putsSinceSizeCheck.incrementAndGet();
+        if (now - _queueSizeCheckedAt > QUEUE_SIZE_CHECK_INTERVAL_MS || _queueSize + puts > _maxItem) {
+            _putsSinceSizeCheck.set(0);
+            _queueSize = checkQueueSize();
+            _queueSizeCheckedAt = now;
+        }
+        _groupCommit.execute(new ZkGroupCommit.Op() {
+            @Override
+            int size() {
+                return path.length() + data.length;
+            }
+
+            @Override
+            CuratorTransaction addTo(CuratorTransaction transaction) throws Exception {
+                return transaction.create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data).and();
+            }
+
+            @Override
+            void run() throws Exception {
+                _zkClient.create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data);
+            }
+
+            @Override
+            boolean retryAlone(Exception batchError) {
+                // the creates may have been applied if the outcome of the batch is unknown
+                return ZkGroupCommit.isOperationError(batchError);
+            }
+        });
+    }
+
+    private int checkQueueSize() throws Exception {
         Stat stat = _zkClient.checkExists().forPath(_queuePath);
         if (stat.getNumChildren() > _maxItem) {
             _log.error("Queue is too busy. Found " + stat.getNumChildren() + " items. Max allowed items are " + _maxItem);
             throw CoordinatorException.retryables.queueTooBusy();
         }
-        String path = ZKPaths.makePath(_queuePath, _queuePrefix);
-        byte[] data = _serializer.serialize(item);
-        _zkClient.create().withMode(CreateMode.PERSISTENT_SEQUENTIAL).forPath(path, data);
+        return stat.getNumChildren();
     }
 
     /**
@@ -249,7 +316,41 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
      * 
      * @throws Exception
      */
-    public void remove(String itemName) throws Exception {
+    public void remove(final String itemName) throws Exception {
+        if (_groupCommit == null) {
+            removeItemAndLock(itemName);
+            return;
+        }
+        final String itemPath = ZKPaths.makePath(_queuePath, itemName);
+        final String lockPath = ZKPaths.makePath(_lockPath, itemName);
+        _groupCommit.execute(new ZkGroupCommit.Op() {
+            @Override
+            int size() {
+                return itemPath.length() + lockPath.length();
+            }
+
+            @Override
+            CuratorTransaction addTo(CuratorTransaction transaction) throws Exception {
+                return transaction.delete().forPath(itemPath).and().delete().forPath(lockPath).and();
+            }
+
+            @Override
+            void run() throws Exception {
+                removeItemAndLock(itemName);
+            }
+
+            @Override
+            boolean retryAlone(Exception batchError) {
+                // deletes are safe to repeat, and a lock already gone must not fail other acks
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Deletes an item and its lock one after the other, whether or not the item still exists
+     */
+    private void removeItemAndLock(String itemName) {
         String itemPath = null;
         try {
             itemPath = ZKPaths.makePath(_queuePath, itemName);
@@ -6,16 +6,21 @@
 package com.emc.storageos.coordinator.client.service.impl;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.emc.storageos.coordinator.client.service.DistributedDataManager;
 import com.emc.storageos.coordinator.common.impl.ZkConnection;
+import com.emc.storageos.coordinator.exceptions.CoordinatorException;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.state.ConnectionStateListener;
 
 /**
@@ -94,6 +99,37 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
         }
     }
 
+    @Override
+    public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes)
+            throws Exception {
+        CuratorTransaction tx = _zkClient.inTransaction();
+        boolean empty = true;
+        long bytes = 0;
+        for (Map.Entry<String, Object> entry : creates.entrySet()) {
+            byte[] data = GenericSerializer.serialize(entry.getValue());
+            bytes += entry.getKey().length() + data.length;
+            tx = tx.create().withMode(CreateMode.PERSISTENT).forPath(entry.getKey(), data).and();
+            empty = false;
+        }
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            byte[] data = GenericSerializer.serialize(entry.getValue());
+            bytes += entry.getKey().length() + data.length;
+            tx = tx.setData().forPath(entry.getKey(), data).and();
+            empty = false;
+        }
+        for (String path : removes) {
+            bytes += path.length();
+            tx = tx.delete().forPath(path).and();
+            empty = false;
+        }
+        if (bytes > MAX_TRANSACTION_BYTES) {
+            throw CoordinatorException.fatals.exceedingLimit("transaction size in bytes", MAX_TRANSACTION_BYTES);
+        }
+        if (!empty) {
+            ((CuratorTransactionFinal) tx).commit();
+        }
+    }
+
     @Override
     public Object getData(String path, boolean watch) throws Exception {
         Stat stat = checkExists(path);
@@ -113,6 +149,26 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
         return obj;
     }
 
+    @Override
+    public Object getData(String path, Stat stat) throws Exception {
+        byte[] bytes = _zkClient.getData().storingStatIn(stat).forPath(path);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return GenericSerializer.deserialize(bytes);
+    }
+
+    @Override
+    public boolean putData(String path, Object object, int version) throws Exception {
+        byte[] data = GenericSerializer.serialize(object);
+        try {
+            _zkClient.setData().withVersion(version).forPath(path, data);
+            return true;
+        } catch (KeeperException.BadVersionException e) {
+            return false;
+        }
+    }
+
     @Override
     public void setListener(CuratorListener listener) throws Exception {
         if (_listener != null) {
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.zookeeper.KeeperException;
+
+/**
+ * Group commit of zk writes.
+ *
+ * Threads that write at the same time have their writes committed together in one zk
+ * multi-op transaction. The first thread to arrive commits whatever is pending when it
+ * gets there, and the writes that arrive in the meantime are committed by the next
+ * round, so the batch size follows the load: a lone write goes out on its own with no
+ * added delay, and under load one round trip commits many writes. Each caller blocks
+ * until its own write has been committed and gets its own error.
+ *
+ * A transaction is all or nothing, so when a batch fails each write decides whether it
+ * is retried on its own, e.g. so that one missing node does not fail unrelated writes.
+ */
+class ZkGroupCommit {
+
+    /**
+     * A write that can be committed as part of a transaction or on its own
+     */
+    abstract static class Op {
+        private boolean _done;
+        private Exception _error;
+
+        /**
+         * @return approximate number of bytes the write adds to a transaction
+         */
+        abstract int size();
+
+        /**
+         * Adds the write to a transaction
+         */
+        abstract CuratorTransaction addTo(CuratorTransaction transaction) throws Exception;
+
+        /**
+         * Runs the write on its own
+         */
+        abstract void run() throws Exception;
+
+        /**
+         * @param batchError error of the transaction the write was part of
+         * @return true to retry the write on its own
+         */
+        abstract boolean retryAlone(Exception batchError);
+    }
+
+    private final CuratorFramework _zkClient;
+    private final int _maxOps;
+    private final int _maxBytes;
+
+    // guarded by _pending
+    private final Deque<Op> _pending = new ArrayDeque<Op>();
+    private boolean _committing;
+
+    private final AtomicLong _ops = new AtomicLong();
+    private final AtomicLong _batches = new AtomicLong();
+
+    /**
+     * @param zkClient zk client
+     * @param maxOps maximum number of writes per transaction
+     * @param maxBytes maximum size of a transaction, must stay below the zk jute.maxbuffer
+     */
+    ZkGroupCommit(CuratorFramework zkClient, int maxOps, int maxBytes) {
+        _zkClient = zkClient;
+        _maxOps = Math.max(maxOps, 1);
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * Commits a write, together with the writes of other threads pending at the same time
+     *
+     * @param op the write
+     * @throws Exception error of the write
+     */
+    void execute(Op op) throws Exception {
+        synchronized (_pending) {
+            _pending.add(op);
+            while (!op._done && _committing) {
+                _pending.wait();
+            }
+            if (!op._done) {
+                _committing = true;
+            }
+        }
+        // this thread commits until its own write is done, then hands over to a waiting thread
+        while (!op._done) {
+            List<Op> batch = takeBatch();
+            boolean committed = false;
+            try {
+                commit(batch);
+                committed = true;
+            } finally {
+                synchronized (_pending) {
+                    for (Op batchOp : batch) {
+                        batchOp._done = true;
+                    }
+                    if (op._done || !committed) {
+                        // let a waiting thread commit the rest
+                        _committing = false;
+                        _pending.remove(op);
+                    }
+                    _pending.notifyAll();
+                }
+            }
+        }
+        if (op._error != null) {
+            throw op._error;
+        }
+    }
+
+    private List<Op> takeBatch() {
+        List<Op> batch = new ArrayList<Op>();
+        int bytes = 0;
+        synchronized (_pending) {
+            while (!_pending.isEmpty() && batch.size() < _maxOps) {
+                Op next = _pending.peek();
+                if (!batch.isEmpty() && bytes + next.size() > _maxBytes) {
+                    break;
+                }
+                bytes += next.size();
+                batch.add(_pending.poll());
+            }
+        }
+        return batch;
+    }
+
+    private void commit(List<Op> batch) {
+        _batches.incrementAndGet();
+        _ops.addAndGet(batch.size());
+        try {
+            CuratorTransaction tx = _zkClient.inTransaction();
+            for (Op op : batch) {
+                tx = op.addTo(tx);
+            }
+            ((CuratorTransactionFinal) tx).commit();
+        } catch (Exception e) {
+            for (Op op : batch) {
+                if (op.retryAlone(e)) {
+                    runAlone(op);
+                } else {
+                    op._error = e;
+                }
+            }
+        }
+    }
+
+    private static void runAlone(Op op) {
+        try {
+            op.run();
+        } catch (Exception e) {
+            op._error = e;
+        }
+    }
+
+    /**
+     * @return true if a failed transaction was rejected because of one of its operations,
+     *         rather than because the outcome is unknown or the session is gone
+     */
+    static boolean isOperationError(Exception e) {
+        if (!(e instanceof KeeperException)) {
+            return false;
+        }
+        switch (((KeeperException) e).code()) {
+            case CONNECTIONLOSS:
+            case OPERATIONTIMEOUT:
+            case SESSIONEXPIRED:
+            case SESSIONMOVED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return number of writes committed
+     */
+    long getOps() {
+        return _ops.get();
+    }
+
+    /**
+     * @return number of transactions used to commit them
+     */
+    long getBatches() {
+        return _batches.get();
+    }
+}
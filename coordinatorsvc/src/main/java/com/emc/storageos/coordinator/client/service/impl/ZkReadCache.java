@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local cache of zk node data and children lists, invalidated by zk watches.
+ *
+ * A watch is left on each node read through the cache, and the cached value is dropped
+ * when the watch fires. Entries older than the staleness bound are read again even if
+ * no watch fired, and the whole cache is dropped whenever the zk connection is
+ * suspended, lost or re-established, since watches may be lost with the session.
+ * Only the nodes actually read are cached, so the cache stays small compared to
+ * mirroring whole subtrees.
+ */
+public class ZkReadCache {
+    private static final Logger log = LoggerFactory.getLogger(ZkReadCache.class);
+
+    public static final long DEFAULT_MAX_STALENESS_MS = 30 * 1000;
+
+    private final CuratorFramework curator;
+    private final long maxStalenessMs;
+
+    // path -> Entry, or a Loading marker while the path is being read
+    private final ConcurrentMap<String, Object> dataCache = new ConcurrentHashMap<String, Object>();
+    private final ConcurrentMap<String, Object> childrenCache = new ConcurrentHashMap<String, Object>();
+    // paths with a registered watch that has not fired yet
+    private final Set<String> dataWatched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> childrenWatched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static class Entry {
+        final Object value;
+        final long loadedAt = System.currentTimeMillis();
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Placeholder for a path being read. An invalidation removes it, so a value read
+     * before the invalidation is not cached.
+     */
+    private static class Loading {
+    }
+
+    private interface Loader {
+        Object load(String path, CuratorWatcher watcher) throws Exception;
+    }
+
+    private final CuratorWatcher watcher = new CuratorWatcher() {
+        @Override
+        public void process(WatchedEvent event) throws Exception {
+            String path = event.getPath();
+            if (event.getType() == EventType.None || path == null) {
+                invalidateAll();
+                return;
+            }
+            if (event.getType() == EventType.NodeChildrenChanged || event.getType() == EventType.NodeDeleted) {
+                childrenWatched.remove(path);
+                childrenCache.remove(path);
+            }
+            if (event.getType() != EventType.NodeChildrenChanged) {
+                dataWatched.remove(path);
+                dataCache.remove(path);
+            }
+            invalidations.incrementAndGet();
+        }
+    };
+
+    private final Loader dataLoader = new Loader() {
+        @Override
+        public Object load(String path, CuratorWatcher watcher) throws Exception {
+            return watcher != null ? curator.getData().usingWatcher(watcher).forPath(path)
+                    : curator.getData().forPath(path);
+        }
+    };
+
+    private final Loader childrenLoader = new Loader() {
+        @Override
+        public Object load(String path, CuratorWatcher watcher) throws Exception {
+            List<String> children = watcher != null ? curator.getChildren().usingWatcher(watcher).forPath(path)
+                    : curator.getChildren().forPath(path);
+            return children != null ? Collections.unmodifiableList(new ArrayList<String>(children)) : null;
+        }
+    };
+
+    /**
+     * @param curator zk client
+     * @param maxStalenessMs maximum age of a cached value
+     */
+    public ZkReadCache(CuratorFramework curator, long maxStalenessMs) {
+        this.curator = curator;
+        this.maxStalenessMs = maxStalenessMs;
+        curator.getConnectionStateListenable().addListener(new ConnectionStateListener() {
+            @Override
+            public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                if (newState != ConnectionState.CONNECTED) {
+                    invalidateAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the data of a zk node
+     *
+     * @param path node path
+     * @return a copy of the node data
+     * @throws Exception as thrown by curator, e.g. KeeperException.NoNodeException
+     */
+    public byte[] getData(String path) throws Exception {
+        byte[] data = (byte[]) get(dataCache, dataWatched, path, dataLoader);
+        return data != null ? data.clone() : null;
+    }
+
+    /**
+     * Returns the names of the children of a zk node
+     *
+     * @param path node path
+     * @return a modifiable copy of the children names
+     * @throws Exception as thrown by curator, e.g. KeeperException.NoNodeException
+     */
+    public List<String> getChildren(String path) throws Exception {
+        @SuppressWarnings("unchecked")
+        List<String> children = (List<String>) get(childrenCache, childrenWatched, path, childrenLoader);
+        return children != null ? new ArrayList<String>(children) : null;
+    }
+
+    private Object get(ConcurrentMap<String, Object> cache, Set<String> watched, String path, Loader loader)
+            throws Exception {
+        Object cached = cache.get(path);
+        if (cached instanceof Entry && System.currentTimeMillis() - ((Entry) cached).loadedAt < maxStalenessMs) {
+            hits.incrementAndGet();
+            return ((Entry) cached).value;
+        }
+        misses.incrementAndGet();
+
+        Loading loading = new Loading();
+        cache.put(path, loading);
+        // an expired entry may still have its watch registered, don't add another one
+        boolean watch = watched.add(path);
+        Object value;
+        try {
+            value = loader.load(path, watch ? watcher : null);
+        } catch (Exception e) {
+            // no watch is left when the read fails
+            if (watch) {
+                watched.remove(path);
+            }
+            cache.remove(path, loading);
+            throw e;
+        }
+        cache.replace(path, loading, new Entry(value));
+        return value;
+    }
+
+    /**
+     * Drops the cached data and children of a node, e.g. after this client changed it
+     *
+     * @param path node path
+     */
+    public void invalidate(String path) {
+        dataCache.remove(path);
+        childrenCache.remove(path);
+        invalidations.incrementAndGet();
+    }
+
+    public void invalidateAll() {
+        dataCache.clear();
+        childrenCache.clear();
+        dataWatched.clear();
+        childrenWatched.clear();
+        invalidations.incrementAndGet();
+        log.debug("zk read cache cleared");
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d invalidations=%d cached=%d", hits.get(), misses.get(),
+                invalidations.get(), dataCache.size() + childrenCache.size());
+    }
+}
@@ -26,6 +26,7 @@ public enum ZkPath {
     KVSTORE("/kvstore"),
     SITES("/sites"),
     BARRIER("/barrier"),
+    DBOBJECTCHANGES("/dbObjectChanges"),
 
     // for DR site, under "/sites/{site-id}/config/"
     SITEERROR("/siteError"),
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.coordinator.client.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.recipes.queue.QueueSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.impl.CoordinatorClientImpl;
+import com.emc.storageos.coordinator.client.service.impl.DistributedQueueConsumer;
+
+/**
+ * Throughput and latency of distributed queue puts and acks against the embedded zk,
+ * with and without group commit. Not part of the regular test run, see build.gradle.
+ */
+public class DistributedQueueBenchmark extends CoordinatorTestBase {
+    private static final Logger _logger = LoggerFactory.getLogger(DistributedQueueBenchmark.class);
+
+    private static final int PRODUCERS = 32;
+    private static final int ITEMS_PER_PRODUCER = 500;
+    private static final int CONSUMER_THREADS = 25;
+
+    /**
+     * Items are the time they were put at, so the consumer can measure the end to end latency
+     */
+    private static class TimeSerializer implements QueueSerializer<Long> {
+        @Override
+        public byte[] serialize(Long item) {
+            return item.toString().getBytes();
+        }
+
+        @Override
+        public Long deserialize(byte[] bytes) {
+            return Long.parseLong(new String(bytes));
+        }
+    }
+
+    private static class LatencyConsumer extends DistributedQueueConsumer<Long> {
+        private final CountDownLatch _latch;
+        private final List<Long> _latencies = Collections.synchronizedList(new ArrayList<Long>());
+
+        LatencyConsumer(CountDownLatch latch) {
+            _latch = latch;
+        }
+
+        @Override
+        public void consumeItem(Long putAt, DistributedQueueItemProcessedCallback cb) throws Exception {
+            cb.itemProcessed();
+            _latencies.add(System.nanoTime() - putAt);
+            _latch.countDown();
+        }
+    }
+
+    @Test
+    public void compareGroupCommit() throws Exception {
+        Result unbatched = run("benchUnbatched", false);
+        Result batched = run("benchBatched", true);
+        _logger.info("unbatched: {}", unbatched);
+        _logger.info("batched:   {}", batched);
+        System.out.println("unbatched: " + unbatched);
+        System.out.println("batched:   " + batched);
+    }
+
+    private Result run(String queueName, boolean groupCommit) throws Exception {
+        CoordinatorClientImpl client = (CoordinatorClientImpl) connectClient();
+        client.setQueueGroupCommit(groupCommit);
+        int total = PRODUCERS * ITEMS_PER_PRODUCER;
+        CountDownLatch consumed = new CountDownLatch(total);
+        LatencyConsumer consumer = new LatencyConsumer(consumed);
+        final DistributedQueue<Long> queue = client.getQueue(queueName, consumer, new TimeSerializer(),
+                CONSUMER_THREADS, total * 2);
+
+        final List<Long> putLatencies = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch put = new CountDownLatch(PRODUCERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < PRODUCERS; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < ITEMS_PER_PRODUCER; j++) {
+                            long putAt = System.nanoTime();
+                            queue.put(putAt);
+                            putLatencies.add(System.nanoTime() - putAt);
+                        }
+                    } catch (Exception e) {
+                        _logger.error("put failed", e);
+                    } finally {
+                        put.countDown();
+                    }
+                }
+            }).start();
+        }
+        Assert.assertTrue(put.await(600, TimeUnit.SECONDS));
+        long putNanos = System.nanoTime() - start;
+        Assert.assertTrue(consumed.await(600, TimeUnit.SECONDS));
+        long totalNanos = System.nanoTime() - start;
+        queue.stop(10000);
+
+        Result result = new Result();
+        result.putsPerSec = total * 1e9 / putNanos;
+        result.opsPerSec = total * 1e9 / totalNanos;
+        result.putLatency = percentiles(putLatencies);
+        result.endToEndLatency = percentiles(consumer._latencies);
+        return result;
+    }
+
+    private static String percentiles(List<Long> nanos) {
+        List<Long> sorted = new ArrayList<Long>(nanos);
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            return "-";
+        }
+        return String.format("p50=%.2fms p99=%.2fms", sorted.get(sorted.size() / 2) / 1e6,
+                sorted.get((int) (sorted.size() * 0.99)) / 1e6);
+    }
+
+    private static class Result {
+        double putsPerSec;
+        double opsPerSec;
+        String putLatency;
+        String endToEndLatency;
+
+        @Override
+        public String toString() {
+            return String.format("puts/s=%.0f put+consume+ack/s=%.0f put latency %s, end to end latency %s",
+                    putsPerSec, opsPerSec, putLatency, endToEndLatency);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.coordinator.client.service;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.impl.CoordinatorClientImpl;
+import com.emc.storageos.coordinator.client.service.impl.ZkReadCache;
+import com.emc.storageos.coordinator.common.Configuration;
+import com.emc.storageos.coordinator.common.impl.ConfigurationImpl;
+
+/**
+ * Configuration reads through the zk read cache, with changes made by this client and
+ * by another one
+ */
+public class ZkReadCacheTest extends CoordinatorTestBase {
+    private static final String KIND = "readCacheTest";
+    private static final String KEY = "value";
+
+    private CoordinatorClientImpl client;
+    private CoordinatorClientImpl otherClient;
+
+    @Before
+    public void setUp() throws Exception {
+        client = (CoordinatorClientImpl) connectClient();
+        otherClient = (CoordinatorClientImpl) connectClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        otherClient.stop();
+    }
+
+    private static Configuration config(String id, String value) {
+        ConfigurationImpl config = new ConfigurationImpl();
+        config.setKind(KIND);
+        config.setId(id);
+        config.setConfig(KEY, value);
+        return config;
+    }
+
+    private String query(CoordinatorClient coordinator, String id) {
+        Configuration config = coordinator.queryConfiguration(KIND, id);
+        return config != null ? config.getConfig(KEY) : null;
+    }
+
+    @Test
+    public void testRepeatedReadsHitCache() throws Exception {
+        client.persistServiceConfiguration(config("hit", "1"));
+        ZkReadCache cache = client.getReadCache();
+        Assert.assertEquals("1", query(client, "hit"));
+        long misses = cache.getMisses();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("1", query(client, "hit"));
+        }
+        Assert.assertEquals(misses, cache.getMisses());
+        Assert.assertTrue(cache.getHits() >= 10);
+    }
+
+    @Test
+    public void testOwnWriteVisibleImmediately() throws Exception {
+        client.persistServiceConfiguration(config("own", "1"));
+        Assert.assertEquals("1", query(client, "own"));
+        client.persistServiceConfiguration(config("own", "2"));
+        Assert.assertEquals("2", query(client, "own"));
+
+        int count = client.queryAllConfiguration(KIND).size();
+        client.persistServiceConfiguration(config("own2", "1"));
+        Assert.assertEquals(count + 1, client.queryAllConfiguration(KIND).size());
+        client.removeServiceConfiguration(config("own2", "1"));
+        Assert.assertEquals(count, client.queryAllConfiguration(KIND).size());
+    }
+
+    @Test
+    public void testOtherClientWriteInvalidates() throws Exception {
+        client.persistServiceConfiguration(config("other", "1"));
+        Assert.assertEquals("1", query(client, "other"));
+
+        otherClient.persistServiceConfiguration(config("other", "2"));
+        // the watch fires well before the staleness bound
+        long deadline = System.currentTimeMillis() + ZkReadCache.DEFAULT_MAX_STALENESS_MS / 3;
+        while (!"2".equals(query(client, "other")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals("2", query(client, "other"));
+    }
+}
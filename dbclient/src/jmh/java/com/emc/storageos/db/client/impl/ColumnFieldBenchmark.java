@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.netflix.astyanax.model.Row;
+
+/**
+ * Measures DataObject (de)serialization and the cost of bound versus reflective
+ * property access used by ColumnField.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ColumnFieldBenchmark {
+
+    @Param({ "Volume", "ExportMask", "StoragePort" })
+    public String modelClass;
+
+    private DataObject _object;
+    private DataObjectType _doType;
+    private InMemoryKeyspace _keyspace;
+    private Row<String, CompositeColumnName> _row;
+    private final List<PropertyAccessor> _bound = new ArrayList<PropertyAccessor>();
+    private final List<PropertyAccessor> _reflective = new ArrayList<PropertyAccessor>();
+
+    @Setup
+    public void setup() {
+        _object = SampleObjects.create(modelClass);
+        _doType = TypeMap.getDoType(_object.getClass());
+        _keyspace = new InMemoryKeyspace();
+
+        RowMutator mutator = _keyspace.newRowMutator();
+        _doType.serialize(mutator, _object);
+        _row = _keyspace.getRecordRow(_object.getId().toString());
+
+        for (ColumnField field : _doType.getColumnFields()) {
+            _bound.add(field.getPropertyAccessor());
+            _reflective.add(PropertyAccessor.reflective(field.getPropertyDescriptor()));
+        }
+    }
+
+    @Benchmark
+    public boolean serialize() {
+        return _doType.serialize(_keyspace.newRowMutator(), _object);
+    }
+
+    @Benchmark
+    public DataObject deserialize() {
+        return _doType.deserialize(_doType.getDataObjectClass(), _row, new IndexCleanupList());
+    }
+
+    @Benchmark
+    public void boundGet(Blackhole bh) throws Exception {
+        get(_bound, bh);
+    }
+
+    @Benchmark
+    public void reflectiveGet(Blackhole bh) throws Exception {
+        get(_reflective, bh);
+    }
+
+    @Benchmark
+    public void boundGetSet() throws Exception {
+        getSet(_bound);
+    }
+
+    @Benchmark
+    public void reflectiveGetSet() throws Exception {
+        getSet(_reflective);
+    }
+
+    private void get(List<PropertyAccessor> accessors, Blackhole bh) throws Exception {
+        for (PropertyAccessor accessor : accessors) {
+            bh.consume(accessor.get(_object));
+        }
+    }
+
+    private void getSet(List<PropertyAccessor> accessors) throws Exception {
+        for (PropertyAccessor accessor : accessors) {
+            if (accessor.getPropertyDescriptor().getWriteMethod() != null) {
+                accessor.set(_object, accessor.get(_object));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.Mutation;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.Serializer;
+import com.netflix.astyanax.clock.MicrosecondsSyncClock;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.retry.RunOnce;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.thrift.AbstractThriftMutationBatchImpl;
+import com.netflix.astyanax.thrift.model.ThriftColumnOrSuperColumnListImpl;
+import com.netflix.astyanax.thrift.model.ThriftRowImpl;
+
+/**
+ * Keyspace stand-in for benchmarks: mutation batches are built with the real thrift
+ * implementation but never executed, so the columns written by a RowMutator can be
+ * turned back into rows without a Cassandra cluster.
+ */
+public class InMemoryKeyspace {
+    private final List<AbstractThriftMutationBatchImpl> _batches = new ArrayList<AbstractThriftMutationBatchImpl>();
+    private final Keyspace _keyspace;
+
+    public InMemoryKeyspace() {
+        _keyspace = (Keyspace) Proxy.newProxyInstance(Keyspace.class.getClassLoader(),
+                new Class<?>[] { Keyspace.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("prepareMutationBatch")) {
+                            return newBatch();
+                        }
+                        if (method.getName().equals("getKeyspaceName")) {
+                            return "InMemory";
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    public Keyspace getKeyspace() {
+        return _keyspace;
+    }
+
+    /**
+     * Creates a new row mutator, dropping the mutations of previous ones
+     */
+    public RowMutator newRowMutator() {
+        _batches.clear();
+        return new RowMutator(_keyspace, false);
+    }
+
+    /**
+     * Returns the record row written by the last row mutator. The record batch is
+     * always the first one prepared by RowMutator.
+     */
+    public Row<String, CompositeColumnName> getRecordRow(String key) {
+        return getRow(_batches.get(0), key, CompositeColumnNameSerializer.get());
+    }
+
+    /**
+     * Returns the index row written by the last row mutator for the given index CF
+     */
+    public Row<String, IndexColumnName> getIndexRow(ColumnFamily<String, IndexColumnName> cf, String key) {
+        return getRow(_batches.get(1), key, IndexColumnNameSerializer.get(), cf.getName());
+    }
+
+    /**
+     * Returns all index rows written by the last row mutator for the given index CF
+     */
+    public List<Row<String, IndexColumnName>> getIndexRows(ColumnFamily<String, IndexColumnName> cf) {
+        AbstractThriftMutationBatchImpl batch = _batches.get(1);
+        List<Row<String, IndexColumnName>> rows = new ArrayList<Row<String, IndexColumnName>>();
+        for (Map.Entry<ByteBuffer, Map<String, List<Mutation>>> entry : batch.getMutationMap().entrySet()) {
+            if (entry.getValue().containsKey(cf.getName())) {
+                String key = StringSerializer.get().fromByteBuffer(entry.getKey().duplicate());
+                rows.add(getRow(batch, key, IndexColumnNameSerializer.get(), cf.getName()));
+            }
+        }
+        return rows;
+    }
+
+    private static <C> Row<String, C> getRow(AbstractThriftMutationBatchImpl batch, String key, Serializer<C> colSer) {
+        return getRow(batch, key, colSer, null);
+    }
+
+    private static <C> Row<String, C> getRow(AbstractThriftMutationBatchImpl batch, String key, Serializer<C> colSer,
+            String cfName) {
+        ByteBuffer rowKey = StringSerializer.get().toByteBuffer(key);
+        List<ColumnOrSuperColumn> columns = new ArrayList<ColumnOrSuperColumn>();
+        Map<String, List<Mutation>> cfMutations = batch.getMutationMap().get(rowKey);
+        if (cfMutations != null) {
+            for (Map.Entry<String, List<Mutation>> entry : cfMutations.entrySet()) {
+                if (cfName != null && !cfName.equals(entry.getKey())) {
+                    continue;
+                }
+                for (Mutation mutation : entry.getValue()) {
+                    if (mutation.isSetColumn_or_supercolumn()) {
+                        columns.add(mutation.getColumn_or_supercolumn());
+                    }
+                }
+            }
+        }
+        return new ThriftRowImpl<String, C>(key, rowKey, new ThriftColumnOrSuperColumnListImpl<C>(columns, colSer));
+    }
+
+    private MutationBatch newBatch() {
+        AbstractThriftMutationBatchImpl batch = new AbstractThriftMutationBatchImpl(new MicrosecondsSyncClock(),
+                ConsistencyLevel.CL_ONE, RunOnce.get()) {
+            @Override
+            public OperationResult<Void> execute() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ListenableFuture<OperationResult<Void>> executeAsync() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        _batches.add(batch);
+        return batch;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.constraint.impl.QueryHitIterator;
+import com.emc.storageos.db.client.model.Volume;
+import com.netflix.astyanax.connectionpool.impl.OperationResultImpl;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.query.RowQuery;
+import com.netflix.astyanax.shallows.EmptyColumnList;
+
+/**
+ * Measures index column construction for the AltId, Relation and Prefix indexes,
+ * IndexColumnName (de)serialization and QueryHitIterator decoding of a synthetic
+ * index row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+    /**
+     * Volume fields covering each index type: nativeGuid (AltIdDbIndex),
+     * storageDevice (RelationDbIndex) and label (PrefixDbIndex)
+     */
+    @Param({ "nativeGuid", "storageDevice", "label" })
+    public String field;
+
+    @Param({ "1000" })
+    public int hits;
+
+    private Volume _volume;
+    private String _recordKey;
+    private ColumnField _field;
+    private Object _value;
+    private InMemoryKeyspace _keyspace;
+    private List<ByteBuffer> _encodedNames;
+    private ColumnList<IndexColumnName> _indexColumns;
+
+    @Setup
+    public void setup() throws Exception {
+        _volume = SampleObjects.volume();
+        _volume.setNativeGuid("SYMMETRIX+000196701234+VOLUME+0A1B2");
+        _recordKey = _volume.getId().toString();
+        _field = TypeMap.getDoType(Volume.class).getColumnField(field);
+        _value = _field.getPropertyAccessor().get(_volume);
+        _keyspace = new InMemoryKeyspace();
+
+        // one index row holding a hit for each of a number of volumes
+        RowMutator mutator = _keyspace.newRowMutator();
+        for (int i = 0; i < hits; i++) {
+            addIndexColumn(mutator, URIUtil.createId(Volume.class).toString());
+        }
+        List<Row<String, IndexColumnName>> rows = _keyspace.getIndexRows(_field.getIndexCF());
+        _indexColumns = rows.get(0).getColumns();
+
+        _encodedNames = new ArrayList<ByteBuffer>(hits);
+        for (Column<IndexColumnName> column : _indexColumns) {
+            _encodedNames.add(IndexColumnNameSerializer.get().toByteBuffer(column.getName()));
+        }
+    }
+
+    private boolean addIndexColumn(RowMutator mutator, String recordKey) {
+        return _field.getIndex().addColumn(recordKey, new CompositeColumnName(_field.getName()), _value,
+                Volume.class.getSimpleName(), mutator, null, _volume);
+    }
+
+    @Benchmark
+    public boolean addIndexColumn() {
+        return addIndexColumn(_keyspace.newRowMutator(), _recordKey);
+    }
+
+    @Benchmark
+    public void encodeIndexColumnNames(Blackhole bh) {
+        for (Column<IndexColumnName> column : _indexColumns) {
+            bh.consume(IndexColumnNameSerializer.get().toByteBuffer(column.getName()));
+        }
+    }
+
+    @Benchmark
+    public void decodeIndexColumnNames(Blackhole bh) {
+        for (ByteBuffer name : _encodedNames) {
+            bh.consume(IndexColumnNameSerializer.get().fromByteBuffer(name.duplicate()));
+        }
+    }
+
+    @Benchmark
+    public void queryHitIterator(Blackhole bh) {
+        QueryHitIterator<URI> it = new QueryHitIterator<URI>(singlePageQuery(_indexColumns)) {
+            @Override
+            protected URI createQueryHit(Column<IndexColumnName> column) {
+                return URI.create(column.getName().getTwo());
+            }
+        };
+        it.prime();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+
+    /**
+     * Row query returning the given columns as its first page and nothing after that
+     */
+    @SuppressWarnings("unchecked")
+    private static RowQuery<String, IndexColumnName> singlePageQuery(final ColumnList<IndexColumnName> page) {
+        return (RowQuery<String, IndexColumnName>) Proxy.newProxyInstance(RowQuery.class.getClassLoader(),
+                new Class<?>[] { RowQuery.class }, new InvocationHandler() {
+                    private boolean _done;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("execute")) {
+                            ColumnList<IndexColumnName> result = _done ? new EmptyColumnList<IndexColumnName>() : page;
+                            _done = true;
+                            return new OperationResultImpl<ColumnList<IndexColumnName>>(null, result, 0);
+                        }
+                        if (method.getReturnType().isInstance(proxy)) {
+                            return proxy;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.ExportMask;
+import com.emc.storageos.db.client.model.Initiator;
+import com.emc.storageos.db.client.model.NamedURI;
+import com.emc.storageos.db.client.model.Project;
+import com.emc.storageos.db.client.model.StorageHADomain;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StoragePort;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StringMap;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.TenantOrg;
+import com.emc.storageos.db.client.model.VirtualPool;
+import com.emc.storageos.db.client.model.Volume;
+
+/**
+ * Populated model objects of a realistic shape for the dbclient benchmarks
+ */
+public final class SampleObjects {
+
+    private SampleObjects() {
+    }
+
+    public static DataObject create(String modelClass) {
+        if (Volume.class.getSimpleName().equals(modelClass)) {
+            return volume();
+        } else if (ExportMask.class.getSimpleName().equals(modelClass)) {
+            return exportMask(64, 8);
+        } else if (StoragePort.class.getSimpleName().equals(modelClass)) {
+            return storagePort();
+        }
+        throw new IllegalArgumentException(modelClass);
+    }
+
+    public static Volume volume() {
+        Volume volume = new Volume();
+        volume.setId(URIUtil.createId(Volume.class));
+        volume.setLabel("benchmark-volume-0001");
+        volume.setCapacity(10737418240L);
+        volume.setProvisionedCapacity(10737418240L);
+        volume.setAllocatedCapacity(1073741824L);
+        volume.setThinlyProvisioned(true);
+        volume.setStorageController(URIUtil.createId(StorageSystem.class));
+        volume.setPool(URIUtil.createId(StoragePool.class));
+        volume.setVirtualPool(URIUtil.createId(VirtualPool.class));
+        volume.setProject(new NamedURI(URIUtil.createId(Project.class), "project"));
+        volume.setTenant(new NamedURI(URIUtil.createId(TenantOrg.class), "tenant"));
+        volume.setNativeId("0A1B2");
+        volume.setWWN("60000970000196701234533030413142");
+        volume.setPersonality("SOURCE");
+        StringSet protocols = new StringSet();
+        protocols.add("FC");
+        volume.setProtocol(protocols);
+        volume.setInactive(false);
+        return volume;
+    }
+
+    public static ExportMask exportMask(int volumes, int initiators) {
+        ExportMask mask = new ExportMask();
+        mask.setId(URIUtil.createId(ExportMask.class));
+        mask.setLabel("benchmark-mask");
+        mask.setMaskName("benchmark-mask");
+        mask.setNativeId("benchmark-mask");
+        mask.setStorageDevice(URIUtil.createId(StorageSystem.class));
+        StringMap volumeMap = new StringMap();
+        for (int i = 0; i < volumes; i++) {
+            volumeMap.put(URIUtil.createId(Volume.class).toString(), Integer.toString(i));
+        }
+        mask.setVolumes(volumeMap);
+        StringSet initiatorSet = new StringSet();
+        for (int i = 0; i < initiators; i++) {
+            initiatorSet.add(URIUtil.createId(Initiator.class).toString());
+        }
+        mask.setInitiators(initiatorSet);
+        StringSet ports = new StringSet();
+        for (int i = 0; i < 4; i++) {
+            ports.add(URIUtil.createId(StoragePort.class).toString());
+        }
+        mask.setStoragePorts(ports);
+        mask.setCreatedBySystem(true);
+        mask.setInactive(false);
+        return mask;
+    }
+
+    public static StoragePort storagePort() {
+        StoragePort port = new StoragePort();
+        port.setId(URIUtil.createId(StoragePort.class));
+        port.setLabel("FA-1D:4");
+        port.setPortName("FA-1D:4");
+        port.setNativeId("FA-1D:4");
+        port.setPortNetworkId("50:00:09:73:00:12:34:56");
+        port.setPortEndPointID("50:00:09:73:00:12:34:56");
+        port.setTransportType("FC");
+        port.setPortSpeed(8L);
+        port.setPortGroup("FA-1D");
+        port.setStorageDevice(URIUtil.createId(StorageSystem.class));
+        port.setStorageHADomain(URIUtil.createId(StorageHADomain.class));
+        port.setRegistrationStatus("REGISTERED");
+        port.setOperationalStatus("OK");
+        port.setCompatibilityStatus("COMPATIBLE");
+        port.setDiscoveryStatus("VISIBLE");
+        StringMap metrics = new StringMap();
+        metrics.put("portPercentBusy", "12.5");
+        metrics.put("cpuPercentBusy", "20.1");
+        metrics.put("lastProcessingTime", "1451606400000");
+        port.setMetrics(metrics);
+        port.setInactive(false);
+        return port;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the size and (de)serialization throughput of metering stats written with
+ * StatCodec and with java serialization. The encoded sizes are printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StatSerializerBenchmark {
+
+    private Stat _stat;
+    private byte[] _encoded;
+    private byte[] _legacy;
+    private final StatTimeSeries.StatSerializer _serializer = new StatTimeSeries.StatSerializer();
+
+    @Setup
+    public void setup() throws IOException {
+        _stat = createVolumeStat();
+        _encoded = StatCodec.encode(_stat);
+        _legacy = serializeLegacy(_stat);
+        System.out.printf("%nbytes per stat: codec=%d java serialization=%d%n", _encoded.length, _legacy.length);
+    }
+
+    static Stat createVolumeStat() {
+        Stat stat = new Stat();
+        stat.setResourceId(URI.create("urn:storageos:Volume:3c1b6d3c-8a1e-4f57-a3a5-6fa6a5f0b3c2:vdc1"));
+        stat.setVirtualPool(URI.create("urn:storageos:VirtualPool:0f0b6a1c-52a4-4f0c-9b0e-3d7c7f0f5e11:vdc1"));
+        stat.setProject(URI.create("urn:storageos:Project:6b8bd4c1-6a46-4c8b-a3e5-3b7cb2a5f1d0:global"));
+        stat.setTenant(URI.create("urn:storageos:TenantOrg:a8f3d1f4-5d1b-4a7e-8f0e-2c8a3e6b9c17:global"));
+        stat.setServiceType("block");
+        stat.setNativeGuid("SYMMETRIX+000195701234+VOLUME+01A2B");
+        stat.setTimeCollected(1460000000000L);
+        stat.setTimeInMillis(1460000000000L);
+        stat.setProvisionedCapacity(107374182400L);
+        stat.setAllocatedCapacity(53687091200L);
+        stat.setSnapshotCapacity(0);
+        stat.setSnapshotCount(2);
+        stat.setBandwidthIn(123456789L);
+        stat.setBandwidthOut(98765432L);
+        stat.setTotalIOs(987654321L);
+        stat.setReadIOs(600000000L);
+        stat.setWriteIOs(387654321L);
+        stat.setKbytesTransferred(4567890123L);
+        stat.setIdleTimeCounter(1234567L);
+        stat.setIoTimeCounter(7654321L);
+        stat.setQueueLength(4);
+        stat.setReadHitIOs(500000000L);
+        stat.setWriteHitIOs(380000000L);
+        return stat;
+    }
+
+    static byte[] serializeLegacy(Stat stat) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(stat);
+        }
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return StatCodec.encode(_stat);
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() throws IOException {
+        return serializeLegacy(_stat);
+    }
+
+    @Benchmark
+    public Stat decode() {
+        return _serializer.deserialize(_encoded);
+    }
+
+    @Benchmark
+    public Stat decodeLegacy() {
+        return _serializer.deserialize(_legacy);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.model.DataObject;
+
+/**
+ * Non-blocking facade over {@link DbClient}. Every call is issued immediately and returns a
+ * future that completes once the database round trip is done, so a caller that needs many
+ * independent lookups (e.g. during export or placement) can have them in flight together
+ * instead of paying the latency of each one in turn.
+ *
+ * The number of outstanding requests per keyspace is bounded; once the bound is reached the
+ * calling thread blocks until a slot frees up.
+ */
+public interface AsyncDbClient {
+
+    /**
+     * Asynchronous version of {@link DbClient#queryObject(Class, URI)}
+     *
+     * @param clazz object type
+     * @param id object id
+     * @return future of the deserialized object, completed with null if the record does not exist
+     */
+    <T extends DataObject> CompletableFuture<T> queryObject(Class<T> clazz, URI id);
+
+    /**
+     * Asynchronous version of {@link DbClient#queryObject(Class, Collection)}
+     *
+     * @param clazz object type
+     * @param ids object ids
+     * @return future of the deserialized object list. non matching records are not returned
+     */
+    <T extends DataObject> CompletableFuture<List<T>> queryObject(Class<T> clazz, Collection<URI> ids);
+
+    /**
+     * Asynchronous version of {@link DbClient#queryObject(Class, Collection, boolean)}
+     *
+     * @param clazz object type
+     * @param ids object ids
+     * @param activeOnly
+     * @return future of the deserialized object list
+     */
+    <T extends DataObject> CompletableFuture<List<T>> queryObject(Class<T> clazz, Collection<URI> ids, boolean activeOnly);
+
+    /**
+     * Asynchronous version of {@link DbClient#queryByConstraint(Constraint, com.emc.storageos.db.client.constraint.QueryResultList)}
+     * that collects the matching ids.
+     *
+     * @param constraint
+     * @return future of the matching ids
+     */
+    CompletableFuture<List<URI>> queryByConstraint(Constraint constraint);
+
+    /**
+     * Asynchronous version of {@link DbClient#updateObject(DataObject)}
+     *
+     * @param object
+     * @return future completed once the object has been persisted
+     */
+    <T extends DataObject> CompletableFuture<Void> updateObject(T object);
+
+    /**
+     * Asynchronous version of {@link DbClient#updateObject(Collection)}
+     *
+     * @param objects
+     * @return future completed once all objects have been persisted
+     */
+    <T extends DataObject> CompletableFuture<Void> updateObject(Collection<T> objects);
+
+    /**
+     * Asynchronous version of {@link DbClient#createObject(Collection)}
+     *
+     * @param objects
+     * @return future completed once all objects have been created
+     */
+    <T extends DataObject> CompletableFuture<Void> createObject(Collection<T> objects);
+}
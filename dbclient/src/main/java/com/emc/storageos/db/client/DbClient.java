@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 import org.joda.time.DateTime;
 
@@ -62,7 +63,8 @@ public interface DbClient {
 
     /**
      * Queries for objects with given URI's. Deserializes into a data object of given
-     * class. Please use queryIterativeObjects instead if too many records in db
+     * class. Large id sets are fetched as concurrent row slices, but the whole result is
+     * held in memory; please use queryIterativeObjects instead if too many records in db
      * 
      *
      * @param clazz object type
@@ -237,6 +239,19 @@ public interface DbClient {
      */
     <T> void queryByConstraint(Constraint constraint, QueryResultList<T> result, URI startId, int maxCount);
 
+    /**
+     * Streams the hits of a constraint query. Nothing is read until the stream is
+     * consumed; index columns are then fetched pageSize at a time as hits are pulled,
+     * so arbitrarily large result sets can be processed in constant memory, and
+     * short-circuiting operations (findFirst, anyMatch, limit ...) stop further reads.
+     * 
+     * @param constraint one of available constraints from constraint package
+     * @param result query result used to create the hits
+     * @param pageSize number of index columns fetched per Cassandra request
+     * @return sequential stream of query hits
+     */
+    <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize);
+
     /**
      * Returns the count of objects with the given type which have the given URI in the specified
      * columnField.
@@ -607,6 +622,24 @@ public interface DbClient {
             TimeSeriesMetadata.TimeBucket bucket, TimeSeriesQueryResult<T> callback,
             ExecutorService workerThreads);
 
+    /**
+     * Overload of queryTimeSeries(TimeSeries, DateTime, TimeBucket, TimeSeriesQueryResult,
+     * ExecutorService) that reads several time buckets, e.g. every hour of a day.
+     * The rows of all buckets are read concurrently, up to a window of rows at a time,
+     * and TimeSeriesQueryResult#data is called on the calling thread for each record
+     * in insertion time order.
+     * 
+     * @param tsType time series class
+     * @param timeBuckets time buckets to read
+     * @param bucket granularity of each time bucket
+     * @param callback result callback
+     * @param workerThreads executor service to use for running parallel queries
+     */
+    <T extends TimeSeriesSerializer.DataPoint> void queryTimeSeries(
+            Class<? extends TimeSeries> tsType, List<DateTime> timeBuckets,
+            TimeSeriesMetadata.TimeBucket bucket, TimeSeriesQueryResult<T> callback,
+            ExecutorService workerThreads);
+
     /**
      * Queries metadata for give time series data type
      * 
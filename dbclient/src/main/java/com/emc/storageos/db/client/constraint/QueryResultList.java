@@ -10,6 +10,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
 
 /**
@@ -38,6 +40,15 @@ public abstract class QueryResultList<T> implements List<T>, Constraint.QueryRes
         return _resultIt;
     }
 
+    /**
+     * The size of a query result is unknown until it has been iterated, so the
+     * spliterator (and List.stream()) only walks the result iterator
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(_resultIt, Spliterator.ORDERED);
+    }
+
     @Override
     public Object[] toArray() {
         throw new UnsupportedOperationException();
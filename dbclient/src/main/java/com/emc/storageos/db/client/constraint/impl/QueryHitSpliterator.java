@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.constraint.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.constraint.QueryResultList;
+
+/**
+ * Pull based spliterator over the hits of a constraint query.
+ *
+ * The query is only executed when the first hit is requested, and index columns are
+ * then read from Cassandra a page at a time as hits are consumed, so only the current
+ * page is held in memory. A consumer that stops pulling (e.g. Stream.findFirst or
+ * limit) never causes the remaining pages to be read.
+ */
+public class QueryHitSpliterator<T> implements Spliterator<T> {
+    private final Constraint _constraint;
+    private final QueryResultList<T> _result;
+    private Iterator<T> _hits;
+
+    /**
+     * @param constraint constraint to execute, with its keyspace already set
+     * @param result query result used to create the hits
+     */
+    public QueryHitSpliterator(Constraint constraint, QueryResultList<T> result) {
+        _constraint = constraint;
+        _result = result;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (_hits == null) {
+            _constraint.execute(_result);
+            _hits = _result.iterator() != null ? _result.iterator() : Collections.<T> emptyIterator();
+        }
+        if (!_hits.hasNext()) {
+            return false;
+        }
+        action.accept(_hits.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        // index pages are read sequentially
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.AsyncDbClient;
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.constraint.URIQueryResultList;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.exceptions.DatabaseException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.Rows;
+
+/**
+ * AsyncDbClient implementation on top of DbClientImpl.
+ *
+ * Object reads are issued through Astyanax executeAsync() and deserialized on a worker pool once the
+ * rows arrive. Constraint queries and writes have no async path in the underlying client, so they are
+ * run on the same worker pool. In both cases a per-keyspace semaphore caps the number of requests in
+ * flight so that a burst of futures cannot exhaust the Cassandra connection pool.
+ */
+public class AsyncDbClientImpl implements AsyncDbClient {
+    private static final Logger _log = LoggerFactory.getLogger(AsyncDbClientImpl.class);
+    private static final int DEFAULT_MAX_IN_FLIGHT_PER_KEYSPACE = 32;
+    private static final int DEFAULT_WORKER_POOL_SIZE = 10;
+
+    private DbClientImpl _dbClient;
+    private int _maxInFlightPerKeyspace = DEFAULT_MAX_IN_FLIGHT_PER_KEYSPACE;
+    private int _workerPoolSize = DEFAULT_WORKER_POOL_SIZE;
+
+    private final ConcurrentMap<String, Semaphore> _inFlight = new ConcurrentHashMap<String, Semaphore>();
+    private ExecutorService _workers;
+
+    public void setDbClient(DbClientImpl dbClient) {
+        _dbClient = dbClient;
+    }
+
+    /**
+     * Sets the maximum number of outstanding requests per keyspace
+     *
+     * @param maxInFlightPerKeyspace
+     */
+    public void setMaxInFlightPerKeyspace(int maxInFlightPerKeyspace) {
+        _maxInFlightPerKeyspace = maxInFlightPerKeyspace;
+    }
+
+    /**
+     * Sets the size of the pool used for deserialization, constraint queries and writes
+     *
+     * @param workerPoolSize
+     */
+    public void setWorkerPoolSize(int workerPoolSize) {
+        _workerPoolSize = workerPoolSize;
+    }
+
+    public synchronized void start() {
+        if (_workers != null) {
+            return;
+        }
+        _workers = Executors.newFixedThreadPool(_workerPoolSize, new ThreadFactory() {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AsyncDbClient-" + _count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public synchronized void stop() {
+        if (_workers == null) {
+            return;
+        }
+        _workers.shutdown();
+        try {
+            if (!_workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                _workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            _workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        _workers = null;
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<T> queryObject(Class<T> clazz, URI id) {
+        return queryObject(clazz, Arrays.asList(id), false).thenApply(objs -> objs.isEmpty() ? null : objs.get(0));
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<List<T>> queryObject(Class<T> clazz, Collection<URI> ids) {
+        return queryObject(clazz, ids, false);
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<List<T>> queryObject(final Class<T> clazz, Collection<URI> ids,
+            final boolean activeOnly) {
+        final DataObjectType doType = TypeMap.getDoType(clazz);
+        if (doType == null) {
+            throw new IllegalArgumentException();
+        }
+
+        final CompletableFuture<List<T>> result = new CompletableFuture<List<T>>();
+        if (!ids.iterator().hasNext()) {
+            result.complete(new ArrayList<T>());
+            return result;
+        }
+
+        final Keyspace ks = _dbClient.getKeyspace(clazz);
+        final Semaphore permits = acquire(ks);
+        ListenableFuture<OperationResult<Rows<String, CompositeColumnName>>> query;
+        try {
+            query = ks.prepareQuery(doType.getCF())
+                    .getKeySlice(_dbClient.convertUriCollection(ids))
+                    .executeAsync();
+        } catch (ConnectionException e) {
+            permits.release();
+            result.completeExceptionally(DatabaseException.retryables.connectionFailed(e));
+            return result;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        Futures.addCallback(query, new FutureCallback<OperationResult<Rows<String, CompositeColumnName>>>() {
+            @Override
+            public void onSuccess(OperationResult<Rows<String, CompositeColumnName>> rows) {
+                permits.release();
+                try {
+                    result.complete(_dbClient.deserializeObjects(clazz, doType, ks, rows.getResult(), activeOnly));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                permits.release();
+                if (t instanceof ConnectionException) {
+                    t = DatabaseException.retryables.connectionFailed((ConnectionException) t);
+                }
+                result.completeExceptionally(t);
+            }
+        }, _workers);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<List<URI>> queryByConstraint(final Constraint constraint) {
+        return submit(_dbClient.getKeyspace(constraint.getDataObjectType()), new Callable<List<URI>>() {
+            @Override
+            public List<URI> call() {
+                URIQueryResultList result = new URIQueryResultList();
+                _dbClient.queryByConstraint(constraint, result);
+                List<URI> ids = new ArrayList<URI>();
+                for (URI id : result) {
+                    ids.add(id);
+                }
+                return ids;
+            }
+        });
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<Void> updateObject(T object) {
+        return updateObject(Collections.singletonList(object));
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<Void> updateObject(final Collection<T> objects) {
+        if (objects.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(_dbClient.getKeyspace(objects.iterator().next()), new Callable<Void>() {
+            @Override
+            public Void call() {
+                _dbClient.updateObject(objects);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public <T extends DataObject> CompletableFuture<Void> createObject(final Collection<T> objects) {
+        if (objects.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(_dbClient.getKeyspace(objects.iterator().next()), new Callable<Void>() {
+            @Override
+            public Void call() {
+                _dbClient.createObject(objects);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs a blocking DbClient call on the worker pool while holding one of the keyspace permits
+     */
+    private <R> CompletableFuture<R> submit(Keyspace ks, final Callable<R> call) {
+        final Semaphore permits = acquire(ks);
+        final CompletableFuture<R> result = new CompletableFuture<R>();
+        try {
+            _workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.complete(call.call());
+                    } catch (Exception e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Blocks until a request slot is available for the given keyspace
+     */
+    private Semaphore acquire(Keyspace ks) {
+        if (_workers == null) {
+            throw new IllegalStateException("AsyncDbClient is not started");
+        }
+        String name = ks.getKeyspaceName();
+        Semaphore permits = _inFlight.get(name);
+        if (permits == null) {
+            Semaphore newPermits = new Semaphore(_maxInFlightPerKeyspace);
+            permits = _inFlight.putIfAbsent(name, newPermits);
+            if (permits == null) {
+                permits = newPermits;
+            }
+        }
+        if (!permits.tryAcquire()) {
+            _log.debug("Max in-flight requests reached for keyspace {}, waiting", name);
+            permits.acquireUninterruptibly();
+        }
+        return permits;
+    }
+}
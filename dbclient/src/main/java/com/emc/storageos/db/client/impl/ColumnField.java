@@ -84,6 +84,7 @@ public class ColumnField {
 
     private final DataObjectType _parentType;
     private final PropertyDescriptor _property;
+    private final PropertyAccessor _accessor;
     private String _name;
     private ColumnType _colType;
     private final Class _valueType;
@@ -136,6 +137,7 @@ public class ColumnField {
     public ColumnField(DataObjectType doType, PropertyDescriptor pd) {
         _parentType = doType;
         _property = pd;
+        _accessor = PropertyAccessor.create(pd);
         _valueType = _property.getPropertyType();
         processProperty();
     }
@@ -149,6 +151,15 @@ public class ColumnField {
         return _property;
     }
 
+    /**
+     * Get the bound getter/setter for this field
+     * 
+     * @return
+     */
+    public PropertyAccessor getPropertyAccessor() {
+        return _accessor;
+    }
+
     /**
      * Column type
      * 
@@ -303,7 +314,7 @@ public class ColumnField {
         if (_encrypt && _parentType.getEncryptionProvider() != null) {
             deserializeEncryptedColumn(column, obj, _parentType.getEncryptionProvider());
         } else {
-            ColumnValue.setField(column, _property, obj);
+            ColumnValue.setField(column, _accessor, obj);
         }
     }
 
@@ -324,7 +335,7 @@ public class ColumnField {
         if (encryptionProvider == null) {
             throw new IllegalArgumentException("null encryption provider");
         }
-        ColumnValue.setEncryptedStringField(column, _property, obj, encryptionProvider);
+        ColumnValue.setEncryptedStringField(column, _accessor, obj, encryptionProvider);
     }
 
     /**
@@ -429,7 +440,7 @@ public class ColumnField {
                 return false;
             }
 
-            Object val = _property.getReadMethod().invoke(obj);
+            Object val = _accessor.get(obj);
             if (val == null) {
                 return false;
             }
@@ -644,7 +655,7 @@ public class ColumnField {
      */
     public void setChanged(DataObject obj) {
         try {
-            Object val = _property.getReadMethod().invoke(obj);
+            Object val = _accessor.get(obj);
             if (val == null) {
                 return;
             }
@@ -825,7 +836,7 @@ public class ColumnField {
 
     private Object getFieldValue(DataObject obj) {
         try {
-            return _property.getReadMethod().invoke(obj);
+            return _accessor.get(obj);
         } catch (final InvocationTargetException e) {
             throw DatabaseException.fatals.serializationFailedId(obj.getId(), e);
         } catch (final IllegalAccessException e) {
@@ -889,10 +900,10 @@ public class ColumnField {
             try {
                 if (java.util.List.class.isAssignableFrom(_valueType)) {
                     LazyLoadedList list = new LazyLoadedList(_name, obj, lazyLoader, mappedBy);
-                    _property.getWriteMethod().invoke(obj, list);
+                    _accessor.set(obj, list);
                 } else if (java.util.Set.class.isAssignableFrom(_valueType)) {
                     LazyLoadedSet list = new LazyLoadedSet(_name, obj, lazyLoader, mappedBy);
-                    _property.getWriteMethod().invoke(obj, list);
+                    _accessor.set(obj, list);
                 }
             } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                 _log.error(e.getMessage(), e);
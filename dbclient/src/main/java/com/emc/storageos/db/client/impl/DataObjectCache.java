@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.coordinator.common.impl.ZkPath;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.management.jmx.cache.DataObjectCacheMBean;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.netflix.astyanax.model.Row;
+
+/**
+ * Process wide read-through cache of data object rows, used by DbClientImpl.queryObject for the
+ * model classes it is enabled for.
+ *
+ * Raw rows are cached rather than deserialized objects, so every caller still gets its own
+ * private instance to modify. Entries are dropped when this node persists the object, and the ids
+ * of the persisted objects are appended to a per-class change log kept in coordinator
+ * (/dbObjectChanges/<class>), so that the other nodes drop their copies of these objects too.
+ * The log is appended with a versioned compare and set, by a background thread which publishes
+ * the ids of all the objects persisted since its last append at once, so writers never wait for
+ * coordinator. The log keeps the ids of the last changes only: a node which missed changes that
+ * were already dropped from the log drops all its entries of the class. Entries also expire after
+ * a fixed staleness bound, which covers changes made by other VDCs to geo replicated classes.
+ */
+public class DataObjectCache implements DataObjectCacheMBean {
+    private static final Logger _log = LoggerFactory.getLogger(DataObjectCache.class);
+
+    private static final int DEFAULT_MAX_ENTRIES_PER_CLASS = 10000;
+    private static final int DEFAULT_MAX_STALENESS_SECONDS = 300;
+    private static final int DEFAULT_MAX_LOGGED_IDS = 1000;
+    private static final int MAX_PUBLISH_ATTEMPTS = 10;
+
+    private CoordinatorClient _coordinator;
+    private DistributedDataManager _changeLog;
+    private boolean _closeChangeLog;
+    private List<String> _cachedClasses = new ArrayList<String>();
+    private int _maxEntriesPerClass = DEFAULT_MAX_ENTRIES_PER_CLASS;
+    private int _maxStalenessSeconds = DEFAULT_MAX_STALENESS_SECONDS;
+    private int _maxLoggedIds = DEFAULT_MAX_LOGGED_IDS;
+
+    // tells the changes of this cache apart from the changes of the other nodes in the change log
+    private final String _writerId = UUID.randomUUID().toString();
+    private final Map<Class<? extends DataObject>, ClassCache> _caches = new ConcurrentHashMap<Class<? extends DataObject>, ClassCache>();
+    private final AtomicLong _invalidations = new AtomicLong();
+    private final AtomicBoolean _publishScheduled = new AtomicBoolean();
+    private final Object _publishLock = new Object();
+    private ExecutorService _publisher;
+
+    /**
+     * A change to objects of a class, as published to the change log
+     */
+    static class Change implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final long seq;
+        final String writer;
+        // null if all the objects of the class may have changed
+        final String[] ids;
+
+        Change(long seq, String writer, String[] ids) {
+            this.seq = seq;
+            this.writer = writer;
+            this.ids = ids;
+        }
+
+        int size() {
+            return ids == null ? 1 : ids.length;
+        }
+    }
+
+    /**
+     * The last changes to objects of a class, stored as data of the class node in coordinator
+     */
+    static class ChangeLog implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // sequence number of the last change
+        long seq;
+        final LinkedList<Change> changes = new LinkedList<Change>();
+        int size;
+
+        /**
+         * Appends a change, dropping the oldest changes once more than maxIds ids are logged
+         */
+        void add(String writer, Collection<String> ids, int maxIds) {
+            Change change = new Change(++seq, writer, ids.size() > maxIds ? null : ids.toArray(new String[ids.size()]));
+            changes.addLast(change);
+            size += change.size();
+            while (size > maxIds && changes.size() > 1) {
+                size -= changes.removeFirst().size();
+            }
+        }
+
+        /**
+         * @return sequence number of the oldest change still logged
+         */
+        long firstSeq() {
+            return changes.isEmpty() ? seq + 1 : changes.getFirst().seq;
+        }
+    }
+
+    /**
+     * Per class cache along with the generation used to discard rows that were read
+     * while a write to the same class was in progress.
+     */
+    private class ClassCache implements NodeListener {
+        private final Class<? extends DataObject> _clazz;
+        private final Cache<String, Row<String, CompositeColumnName>> _rows;
+        private final AtomicLong _generation = new AtomicLong();
+        // ids of objects persisted by this node and not published yet
+        private final Set<String> _pending = new HashSet<String>();
+        // sequence number of the last change read from the change log
+        private long _lastSeen;
+
+        ClassCache(Class<? extends DataObject> clazz) {
+            _clazz = clazz;
+            _rows = CacheBuilder.newBuilder()
+                    .maximumSize(_maxEntriesPerClass)
+                    .expireAfterWrite(_maxStalenessSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+        }
+
+        void invalidateAll() {
+            _generation.incrementAndGet();
+            _rows.invalidateAll();
+            _invalidations.incrementAndGet();
+        }
+
+        void invalidate(Collection<String> rowKeys) {
+            _generation.incrementAndGet();
+            _rows.invalidateAll(rowKeys);
+            _invalidations.incrementAndGet();
+        }
+
+        /**
+         * Drops the entries of the objects changed by other nodes since the log was last read
+         */
+        synchronized void applyChanges(ChangeLog changeLog) {
+            if (changeLog == null || changeLog.seq == _lastSeen) {
+                return;
+            }
+            if (changeLog.seq < _lastSeen || changeLog.firstSeq() > _lastSeen + 1) {
+                _log.info("Missed changes of {}, dropping all cached entries", _clazz.getSimpleName());
+                invalidateAll();
+            } else {
+                Set<String> changed = new HashSet<String>();
+                for (Change change : changeLog.changes) {
+                    if (change.seq <= _lastSeen || _writerId.equals(change.writer)) {
+                        // already read, or our own change already invalidated locally
+                        continue;
+                    }
+                    if (change.ids == null) {
+                        invalidateAll();
+                        changed.clear();
+                        break;
+                    }
+                    for (String id : change.ids) {
+                        changed.add(id);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    _log.debug("{} objects of {} changed on another node", changed.size(), _clazz.getSimpleName());
+                    invalidate(changed);
+                }
+            }
+            _lastSeen = changeLog.seq;
+        }
+
+        /**
+         * Reads the change log and drops the entries changed by other nodes
+         */
+        void readChanges() {
+            try {
+                applyChanges((ChangeLog) _changeLog.getData(getPath(), false));
+            } catch (Exception e) {
+                _log.warn("Failed to read changes of {}, dropping all cached entries", _clazz.getSimpleName(), e);
+                invalidateAll();
+            }
+        }
+
+        void addPending(Collection<URI> ids) {
+            synchronized (_pending) {
+                for (URI id : ids) {
+                    _pending.add(id.toString());
+                }
+            }
+        }
+
+        List<String> takePending() {
+            synchronized (_pending) {
+                List<String> ids = new ArrayList<String>(_pending);
+                _pending.clear();
+                return ids;
+            }
+        }
+
+        @Override
+        public String getPath() {
+            return String.format("%s/%s", ZkPath.DBOBJECTCHANGES, _clazz.getSimpleName());
+        }
+
+        /**
+         * called when a node changed objects of this class
+         */
+        @Override
+        public void nodeChanged() {
+            readChanges();
+        }
+
+        /**
+         * called when connection state changed, notifications may have been missed
+         */
+        @Override
+        public void connectionStateChanged(State state) {
+            _log.info("connection state changed to {}, dropping cached {} entries", state, _clazz.getSimpleName());
+            invalidateAll();
+        }
+    }
+
+    public void setCoordinator(CoordinatorClient coordinator) {
+        _coordinator = coordinator;
+    }
+
+    /**
+     * Sets the model classes to cache, either simple names (e.g. StoragePort) or fully qualified
+     *
+     * @param cachedClasses
+     */
+    public void setCachedClasses(List<String> cachedClasses) {
+        _cachedClasses = cachedClasses;
+    }
+
+    public void setMaxEntriesPerClass(int maxEntriesPerClass) {
+        _maxEntriesPerClass = maxEntriesPerClass;
+    }
+
+    /**
+     * Sets the longest time an entry is served without being re-read from the database
+     *
+     * @param maxStalenessSeconds
+     */
+    public void setMaxStalenessSeconds(int maxStalenessSeconds) {
+        _maxStalenessSeconds = maxStalenessSeconds;
+    }
+
+    /**
+     * Sets the number of object ids kept in the change log of a class. Nodes which fall
+     * further behind drop all their entries of the class.
+     *
+     * @param maxLoggedIds
+     */
+    public void setMaxLoggedIds(int maxLoggedIds) {
+        _maxLoggedIds = maxLoggedIds;
+    }
+
+    /**
+     * Sets the change log shared with the other nodes, created from the coordinator by default
+     *
+     * @param changeLog
+     */
+    public void setChangeLog(DistributedDataManager changeLog) {
+        _changeLog = changeLog;
+    }
+
+    /**
+     * Resolves the configured classes, registers the coordinator listeners and the MBean.
+     * Called from DbClientImpl.start().
+     */
+    public void start() {
+        if (_changeLog == null && _coordinator != null) {
+            _changeLog = _coordinator.createDistributedDataManager(ZkPath.DBOBJECTCHANGES.toString());
+            _closeChangeLog = true;
+        }
+        for (String name : _cachedClasses) {
+            Class<? extends DataObject> clazz = resolveClass(name);
+            if (clazz == null) {
+                _log.warn("Unknown model class {} configured for caching, ignored", name);
+                continue;
+            }
+            ClassCache cache = new ClassCache(clazz);
+            if (_changeLog != null) {
+                try {
+                    try {
+                        _changeLog.createNode(cache.getPath(), false);
+                    } catch (KeeperException.NodeExistsException e) {
+                        _log.debug("Change log of {} created by another node", name);
+                    }
+                    cache.applyChanges((ChangeLog) _changeLog.getData(cache.getPath(), false));
+                    if (_coordinator != null) {
+                        _coordinator.addNodeListener(cache);
+                    }
+                } catch (Exception e) {
+                    // without change notifications we could serve stale data for too long
+                    _log.error("Failed to listen for changes of {}, caching disabled for it", name, e);
+                    continue;
+                }
+            }
+            _caches.put(clazz, cache);
+        }
+        if (_changeLog != null) {
+            _publisher = new NamedThreadPoolExecutor(DataObjectCache.class.getSimpleName(), 1);
+        }
+        _log.info("Caching enabled for {}", _caches.keySet());
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbs.registerMBean(new StandardMBean(this, DataObjectCacheMBean.class), new ObjectName(MBEAN_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            _log.info("{} already registered by another db client in this process", MBEAN_NAME);
+        } catch (JMException e) {
+            _log.warn("Failed to register {}", MBEAN_NAME, e);
+        }
+    }
+
+    private Class<? extends DataObject> resolveClass(String name) {
+        String className = name.contains(".") ? name : DataObject.class.getPackage().getName() + "." + name;
+        try {
+            Class<?> clazz = Class.forName(className);
+            return DataObject.class.isAssignableFrom(clazz) ? clazz.asSubclass(DataObject.class) : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the cache for a class, mapping lazy loading instrumented subclasses to their model class
+     */
+    private ClassCache getCache(Class<? extends DataObject> clazz) {
+        if (_caches.isEmpty()) {
+            return null;
+        }
+        ClassCache cache = _caches.get(clazz);
+        if (cache == null) {
+            DataObjectType doType = TypeMap.getDoType(clazz);
+            if (doType != null && doType.getDataObjectClass() != clazz) {
+                cache = _caches.get(doType.getDataObjectClass());
+            }
+        }
+        return cache;
+    }
+
+    public void stop() {
+        if (_publisher != null) {
+            _publisher.shutdown();
+            try {
+                _publisher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _publisher = null;
+        }
+        for (ClassCache cache : _caches.values()) {
+            if (_coordinator != null) {
+                _coordinator.removeNodeListener(cache);
+            }
+        }
+        _caches.clear();
+        if (_closeChangeLog) {
+            _changeLog.close();
+            _changeLog = null;
+            _closeChangeLog = false;
+        }
+    }
+
+    public boolean isCached(Class<? extends DataObject> clazz) {
+        return getCache(clazz) != null;
+    }
+
+    /**
+     * Gets the current generation for the class. It has to be read before querying the database and
+     * passed back to put(), which drops the row if a write happened in the meantime.
+     */
+    public long getGeneration(Class<? extends DataObject> clazz) {
+        ClassCache cache = getCache(clazz);
+        return cache == null ? 0 : cache._generation.get();
+    }
+
+    public Row<String, CompositeColumnName> get(Class<? extends DataObject> clazz, URI id) {
+        ClassCache cache = getCache(clazz);
+        return cache == null ? null : cache._rows.getIfPresent(id.toString());
+    }
+
+    public void put(Class<? extends DataObject> clazz, long generation, Row<String, CompositeColumnName> row) {
+        ClassCache cache = getCache(clazz);
+        if (cache == null || row.getColumns().isEmpty()) {
+            return;
+        }
+        if (cache._generation.get() != generation) {
+            return;
+        }
+        String rowKey = row.getKey();
+        cache._rows.put(rowKey, row);
+        // a write between the check and the put bumped the generation before dropping the
+        // rows, and may have dropped this one before it was put
+        if (cache._generation.get() != generation) {
+            cache._rows.invalidate(rowKey);
+        }
+    }
+
+    /**
+     * Drops the rows of locally modified objects and notifies the other nodes.
+     *
+     * @param clazz object type
+     * @param ids ids of modified objects
+     */
+    public void invalidate(Class<? extends DataObject> clazz, Collection<URI> ids) {
+        ClassCache cache = getCache(clazz);
+        if (cache == null) {
+            return;
+        }
+        cache._generation.incrementAndGet();
+        for (URI id : ids) {
+            cache._rows.invalidate(id.toString());
+        }
+        _invalidations.incrementAndGet();
+        if (_publisher != null) {
+            cache.addPending(ids);
+            schedulePublish();
+        }
+    }
+
+    /**
+     * Drops cached rows without notifying other nodes, for rows this node found stale by itself
+     */
+    public void invalidateLocal(Class<? extends DataObject> clazz, Collection<String> rowKeys) {
+        ClassCache cache = getCache(clazz);
+        if (cache == null) {
+            return;
+        }
+        cache._generation.incrementAndGet();
+        cache._rows.invalidateAll(rowKeys);
+    }
+
+    private void schedulePublish() {
+        if (!_publishScheduled.compareAndSet(false, true)) {
+            // ids persisted in the meantime are published by the scheduled run
+            return;
+        }
+        try {
+            _publisher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    _publishScheduled.set(false);
+                    publishChanges();
+                }
+            });
+        } catch (RuntimeException e) {
+            // stopping, the other nodes will catch up once their entries expire
+            _publishScheduled.set(false);
+            _log.warn("Failed to schedule publishing of changes", e);
+        }
+    }
+
+    /**
+     * Appends the ids of the objects persisted since the last call to the change logs
+     */
+    void publishChanges() {
+        synchronized (_publishLock) {
+            for (ClassCache cache : _caches.values()) {
+                List<String> ids = cache.takePending();
+                if (!ids.isEmpty()) {
+                    publishChange(cache, ids);
+                }
+            }
+        }
+    }
+
+    private void publishChange(ClassCache cache, List<String> ids) {
+        String path = cache.getPath();
+        try {
+            for (int attempt = 0; attempt < MAX_PUBLISH_ATTEMPTS; attempt++) {
+                Stat stat = new Stat();
+                ChangeLog changeLog = (ChangeLog) _changeLog.getData(path, stat);
+                if (changeLog == null) {
+                    changeLog = new ChangeLog();
+                }
+                changeLog.add(_writerId, ids, _maxLoggedIds);
+                if (_changeLog.putData(path, changeLog, stat.getVersion())) {
+                    return;
+                }
+                // another node appended in the meantime
+            }
+            _log.warn("Too many concurrent changes, failed to publish change of {} to other nodes",
+                    cache._clazz.getSimpleName());
+        } catch (Exception e) {
+            // the other nodes will catch up once their entries expire
+            _log.warn("Failed to publish change of {} to other nodes", cache._clazz.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Reads the change log of a class, as done when notified of a change
+     */
+    void readChanges(Class<? extends DataObject> clazz) {
+        ClassCache cache = getCache(clazz);
+        if (cache != null && _changeLog != null) {
+            cache.readChanges();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        long hits = 0;
+        for (ClassCache cache : _caches.values()) {
+            hits += cache._rows.stats().hitCount();
+        }
+        return hits;
+    }
+
+    @Override
+    public long getMissCount() {
+        long misses = 0;
+        for (ClassCache cache : _caches.values()) {
+            misses += cache._rows.stats().missCount();
+        }
+        return misses;
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return _invalidations.get();
+    }
+
+    @Override
+    public Map<String, String> getClassStats() {
+        Map<String, String> stats = new TreeMap<String, String>();
+        for (ClassCache cache : _caches.values()) {
+            CacheStats s = cache._rows.stats();
+            stats.put(cache._clazz.getSimpleName(), String.format("size=%d hits=%d misses=%d hitRate=%.3f evictions=%d",
+                    cache._rows.size(), s.hitCount(), s.missCount(), s.hitRate(), s.evictionCount()));
+        }
+        return stats;
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (ClassCache cache : _caches.values()) {
+            cache.invalidateAll();
+        }
+    }
+}
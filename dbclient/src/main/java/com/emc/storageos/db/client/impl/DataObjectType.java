@@ -292,7 +292,7 @@ public class DataObjectType {
         }
         try {
             boolean indexFieldsModified = false;
-            URI id = (URI) _idField.getPropertyDescriptor().getReadMethod().invoke(val);
+            URI id = (URI) _idField.getPropertyAccessor().get(val);
             if (id == null) {
                 throw new IllegalArgumentException();
             }
@@ -519,10 +519,10 @@ public class DataObjectType {
             if (mappedByField != null) {
                 try {
                     if (StringSet.class.isAssignableFrom(mappedByField.getPropertyDescriptor().getPropertyType())) {
-                        Object mappedByFieldValue = mappedByField.getPropertyDescriptor().getReadMethod().invoke(obj);
+                        Object mappedByFieldValue = mappedByField.getPropertyAccessor().get(obj);
                         if (mappedByFieldValue == null) {
                             mappedBy = (StringSet) mappedByField.getPropertyDescriptor().getPropertyType().newInstance();
-                            mappedByField.getPropertyDescriptor().getWriteMethod().invoke(obj, mappedBy);
+                            mappedByField.getPropertyAccessor().set(obj, mappedBy);
                         } else {
                             mappedBy = (StringSet) mappedByFieldValue;
                         }
@@ -565,14 +565,14 @@ public class DataObjectType {
             return;
         }
         try {
-            Object mappedByValue = mappedByField.getPropertyDescriptor().getReadMethod().invoke(obj);
-            Object lazyLoadedValue = lazyLoadedField.getPropertyDescriptor().getReadMethod().invoke(obj);
+            Object mappedByValue = mappedByField.getPropertyAccessor().get(obj);
+            Object lazyLoadedValue = lazyLoadedField.getPropertyAccessor().get(obj);
 
             if (null == mappedByValue && null != lazyLoadedValue) {
                 if (DataObject.class.isAssignableFrom(lazyLoadedValue.getClass()) &&
                         URI.class.isAssignableFrom(mappedByField.getPropertyDescriptor().getPropertyType())) {
                     DataObject lazyLoadedDbObj = (DataObject) lazyLoadedValue;
-                    mappedByField.getPropertyDescriptor().getWriteMethod().invoke(obj, lazyLoadedDbObj.getId());
+                    mappedByField.getPropertyAccessor().set(obj, lazyLoadedDbObj.getId());
                 } else if (Collection.class.isAssignableFrom(lazyLoadedValue.getClass()) &&
                         StringSet.class.isAssignableFrom(mappedByField.getPropertyDescriptor().getPropertyType())) {
                     StringSet stringSet = new StringSet();
@@ -581,7 +581,7 @@ public class DataObjectType {
                             stringSet.add(((DataObject) listElem).getId().toString());
                         }
                     }
-                    mappedByField.getPropertyDescriptor().getWriteMethod().invoke(obj, stringSet);
+                    mappedByField.getPropertyAccessor().set(obj, stringSet);
                 }
             }
         } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -22,9 +23,12 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
@@ -46,6 +50,7 @@ import com.emc.storageos.db.client.constraint.DecommissionedConstraint;
 import com.emc.storageos.db.client.constraint.QueryResultList;
 import com.emc.storageos.db.client.constraint.URIQueryResultList;
 import com.emc.storageos.db.client.constraint.impl.ConstraintImpl;
+import com.emc.storageos.db.client.constraint.impl.QueryHitSpliterator;
 import com.emc.storageos.db.client.model.AllowedGeoVersion;
 import com.emc.storageos.db.client.model.CustomConfig;
 import com.emc.storageos.db.client.model.DataObject;
@@ -77,9 +82,11 @@ import com.emc.storageos.db.common.VdcUtil;
 import com.emc.storageos.db.exceptions.DatabaseException;
 import com.emc.storageos.db.exceptions.FatalDatabaseException;
 import com.emc.storageos.model.ResourceOperationTypeEnum;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.model.ServiceCoded;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
+import com.google.common.collect.Iterators;
 import com.netflix.astyanax.ColumnListMutation;
 import com.netflix.astyanax.ColumnMutation;
 import com.netflix.astyanax.Execution;
@@ -116,6 +123,10 @@ public class DbClientImpl implements DbClient {
     private static final int DEFAULT_TS_PAGE_SIZE = 100;
     private static final int DEFAULT_BATCH_SIZE = 1000;
     protected static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_BULK_QUERY_POOL_SIZE = 10;
+    private static final int DEFAULT_BULK_QUERY_WINDOW = 4;
+    private static final long BULK_QUERY_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final int DEFAULT_TIME_SERIES_QUERY_WINDOW = 20;
     
     static private final List<Class<? extends DataObject>> excludeClasses = Arrays.asList(
             Token.class, StorageOSUserDAO.class, VirtualDataCenter.class,
@@ -142,6 +153,11 @@ public class DbClientImpl implements DbClient {
     private boolean initDone = false;
     private String _geoVersion;
     private DrUtil drUtil;
+    private DataObjectCache _objectCache;
+    private int _bulkQueryPoolSize = DEFAULT_BULK_QUERY_POOL_SIZE;
+    private int _bulkQueryWindow = DEFAULT_BULK_QUERY_WINDOW;
+    private int _timeSeriesQueryWindow = DEFAULT_TIME_SERIES_QUERY_WINDOW;
+    private NamedThreadPoolExecutor _bulkQueryExecutor;
     
     public String getGeoVersion() {
         if (this._geoVersion == null) {
@@ -238,6 +254,42 @@ public class DbClientImpl implements DbClient {
         this.drUtil = drUtil;
     }
 
+    /**
+     * Sets the read cache used by queryObject for the classes it is enabled for
+     * 
+     * @param objectCache
+     */
+    public void setObjectCache(DataObjectCache objectCache) {
+        _objectCache = objectCache;
+    }
+
+    /**
+     * Sets the number of threads shared by all bulk queries that span more than one page of ids
+     * 
+     * @param bulkQueryPoolSize
+     */
+    public void setBulkQueryPoolSize(int bulkQueryPoolSize) {
+        _bulkQueryPoolSize = bulkQueryPoolSize;
+    }
+
+    /**
+     * Sets how many pages of ids a single bulk query may have in flight at once
+     * 
+     * @param bulkQueryWindow
+     */
+    public void setBulkQueryWindow(int bulkQueryWindow) {
+        _bulkQueryWindow = bulkQueryWindow;
+    }
+
+    /**
+     * Sets how many time series rows a single time series query may read at once
+     * 
+     * @param timeSeriesQueryWindow
+     */
+    public void setTimeSeriesQueryWindow(int timeSeriesQueryWindow) {
+        _timeSeriesQueryWindow = timeSeriesQueryWindow;
+    }
+
     @Override
     public synchronized void start() {
         if (initDone) {
@@ -262,7 +314,12 @@ public class DbClientImpl implements DbClient {
         setupContext();
 
         _indexCleaner = new IndexCleaner();
-        
+
+        if (_objectCache != null) {
+            _objectCache.setCoordinator(_coordinator);
+            _objectCache.start();
+        }
+
         initDone = true;
     }
 
@@ -378,6 +435,15 @@ public class DbClientImpl implements DbClient {
             geoContext = null;
         }
 
+        if (_objectCache != null) {
+            _objectCache.stop();
+        }
+
+        if (_bulkQueryExecutor != null) {
+            _bulkQueryExecutor.shutdownNow();
+            _bulkQueryExecutor = null;
+        }
+
         _log.info("stop coordinator");
         _coordinator.stop();
         initDone = false;
@@ -432,9 +498,117 @@ public class DbClientImpl implements DbClient {
             return new ArrayList<T>();
         }
 
+        Iterator<URI> idIt = ids.iterator();
+        List<URI> firstSlice = new ArrayList<URI>(DEFAULT_PAGE_SIZE);
+        while (firstSlice.size() < DEFAULT_PAGE_SIZE && idIt.hasNext()) {
+            firstSlice.add(idIt.next());
+        }
+        if (!idIt.hasNext()) {
+            return queryObjectSlice(clazz, doType, firstSlice, activeOnly);
+        }
+
+        // more than a page of ids, fetch the row slices concurrently
+        return queryObjectSlices(clazz, doType, Iterators.concat(firstSlice.iterator(), idIt), activeOnly).toList();
+    }
+
+    /**
+     * Queries a single slice of at most DEFAULT_PAGE_SIZE row keys
+     */
+    private <T extends DataObject> List<T> queryObjectSlice(Class<T> clazz, DataObjectType doType,
+            List<URI> ids, boolean activeOnly) {
         Keyspace ks = getKeyspace(clazz);
+        if (_objectCache != null && _objectCache.isCached(clazz)) {
+            return queryCachedObjects(clazz, doType, ks, ids, activeOnly);
+        }
         Rows<String, CompositeColumnName> rows = queryRowsWithAllColumns(ks, ids, doType.getCF());
-        List<T> objects = new ArrayList<T>(rows.size());
+        return deserializeObjects(clazz, doType, ks, rows, activeOnly);
+    }
+
+    /**
+     * Splits the ids into row key slices that are queried concurrently, up to bulkQueryWindow
+     * slices ahead of the caller. Results are returned in the order of the ids.
+     */
+    private <T extends DataObject> ParallelQueryResultIterator<T> queryObjectSlices(final Class<T> clazz,
+            final DataObjectType doType, Iterator<URI> ids, final boolean activeOnly) {
+        return new ParallelQueryResultIterator<T>(ids, DEFAULT_PAGE_SIZE, _bulkQueryWindow, getBulkQueryExecutor(),
+                new ParallelQueryResultIterator.SliceQuery<T>() {
+                    @Override
+                    public List<T> query(List<URI> slice) {
+                        return queryObjectSlice(clazz, doType, slice, activeOnly);
+                    }
+                });
+    }
+
+    private synchronized ExecutorService getBulkQueryExecutor() {
+        if (_bulkQueryExecutor == null) {
+            _bulkQueryExecutor = new NamedThreadPoolExecutor("DbClientBulkQuery", _bulkQueryPoolSize, _bulkQueryPoolSize,
+                    BULK_QUERY_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            // does not keep a process from exiting that did not stop the client
+                            Thread t = new Thread(r);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            _bulkQueryExecutor.allowCoreThreadTimeOut(true);
+        }
+        return _bulkQueryExecutor;
+    }
+
+    /**
+     * Same as queryObject, serving the rows found in the object cache and reading only
+     * the missing ones from the database.
+     */
+    private <T extends DataObject> List<T> queryCachedObjects(Class<T> clazz, DataObjectType doType, Keyspace ks,
+            List<URI> ids, boolean activeOnly) {
+        long generation = _objectCache.getGeneration(clazz);
+        Map<String, Row<String, CompositeColumnName>> found = new HashMap<String, Row<String, CompositeColumnName>>();
+        List<URI> missing = new ArrayList<URI>();
+        for (URI id : ids) {
+            Row<String, CompositeColumnName> row = _objectCache.get(clazz, id);
+            if (row != null) {
+                found.put(row.getKey(), row);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Row<String, CompositeColumnName> row : queryRowsWithAllColumns(ks, missing, doType.getCF())) {
+                if (row == null || row.getColumns().size() == 0) {
+                    continue;
+                }
+                _objectCache.put(clazz, generation, row);
+                found.put(row.getKey(), row);
+            }
+        }
+
+        // keep the order of the ids passed in
+        List<Row<String, CompositeColumnName>> rows = new ArrayList<Row<String, CompositeColumnName>>(found.size());
+        for (URI id : ids) {
+            Row<String, CompositeColumnName> row = found.remove(id.toString());
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return deserializeObjects(clazz, doType, ks, rows, activeOnly);
+    }
+
+    /**
+     * Deserializes the rows returned for a queryObject call, filtering on activeOnly if requested
+     * and scheduling cleanup of stale index columns found along the way.
+     * 
+     * @param clazz object type
+     * @param doType data object type of clazz
+     * @param ks keyspace the rows were read from
+     * @param rows rows returned by the row slice query
+     * @param activeOnly
+     * @return deserialized object list
+     */
+    protected <T extends DataObject> List<T> deserializeObjects(Class<T> clazz, DataObjectType doType, Keyspace ks,
+            Iterable<Row<String, CompositeColumnName>> rows, boolean activeOnly) {
+        List<T> objects = new ArrayList<T>();
         IndexCleanupList cleanList = new IndexCleanupList();
 
         Iterator<Row<String, CompositeColumnName>> it = rows.iterator();
@@ -456,6 +630,10 @@ public class DbClientImpl implements DbClient {
             }
         }
         if (!cleanList.isEmpty()) {
+            if (_objectCache != null) {
+                // the rows still carry the columns about to be cleaned up, don't serve them again
+                _objectCache.invalidateLocal(clazz, cleanList.getColumnsToClean().keySet());
+            }
             boolean retryFailedWriteWithLocalQuorum = shouldRetryFailedWriteWithLocalQuorum(clazz);
             RowMutator mutator = new RowMutator(ks, retryFailedWriteWithLocalQuorum);
             SoftReference<IndexCleanupList> indexCleanUpRef = new SoftReference<IndexCleanupList>(cleanList);
@@ -481,26 +659,7 @@ public class DbClientImpl implements DbClient {
             // nothing to do, just an empty list
             return new ArrayList<T>().iterator();
         }
-        BulkDataObjQueryResultIterator<T> bulkQueryIterator = new
-                BulkDataObjQueryResultIterator<T>(ids.iterator()) {
-
-                    @Override
-                    protected void run() {
-                        currentIt = null;
-                        getNextBatch();
-                        while (!nextBatch.isEmpty()) {
-                            List<T> currBatchResults = queryObject(clazz, nextBatch, activeOnly);
-                            if (!currBatchResults.isEmpty()) {
-                                currentIt = currBatchResults.iterator();
-                                break;
-                            }
-
-                            getNextBatch();
-                        }
-                    }
-                };
-
-        return bulkQueryIterator;
+        return queryObjectSlices(clazz, doType, ids.iterator(), activeOnly);
     }
 
     @Override
@@ -991,6 +1150,18 @@ public class DbClientImpl implements DbClient {
         constraint.execute(result);
     }
 
+    @Override
+    public <T> Stream<T> streamByConstraint(Constraint constraint, QueryResultList<T> result, int pageSize) {
+        ConstraintImpl constraintImpl = (ConstraintImpl) constraint;
+        if (!constraintImpl.isValid()) {
+            throw new IllegalArgumentException("invalid constraint: the key can't be null or empty");
+        }
+        constraintImpl.setPageCount(pageSize);
+
+        constraint.setKeyspace(getKeyspace(constraint.getDataObjectType()));
+        return StreamSupport.stream(new QueryHitSpliterator<T>(constraint, result), false);
+    }
+
     // This is used to count the number of volumes or fileshares in a storagepool,
     // and the number of volumes or fileshares in a storage system
     @Override
@@ -1120,6 +1291,18 @@ public class DbClientImpl implements DbClient {
             Rows<String, CompositeColumnName> rows = fetchNewest(clazz, ks, objectsToCleanup);
             cleanupOldColumns(clazz, ks, rows);
         }
+        invalidateCachedObjects(clazz, dataobjects);
+    }
+
+    private void invalidateCachedObjects(Class<? extends DataObject> clazz, Collection<? extends DataObject> dataobjects) {
+        if (_objectCache == null || !_objectCache.isCached(clazz)) {
+            return;
+        }
+        List<URI> ids = new ArrayList<URI>(dataobjects.size());
+        for (DataObject object : dataobjects) {
+            ids.add(object.getId());
+        }
+        _objectCache.invalidate(clazz, ids);
     }
 
     protected <T extends DataObject> List<URI> insertNewColumns(Keyspace ks, Collection<T> dataobjects) {
@@ -1356,6 +1539,7 @@ public class DbClientImpl implements DbClient {
             RowMutator mutator = new RowMutator(ks, retryFailedWriteWithLocalQuorum);
             _indexCleaner.removeColumnAndIndex(mutator, doType, removedList);
         }
+        invalidateCachedObjects(clazz, allObjects);
     }
 
     @Override
@@ -1369,14 +1553,17 @@ public class DbClientImpl implements DbClient {
             // for reads, clients should expect read-after-write is
             // not guaranteed for time series data.
             TimeSeriesType<T> type = TypeMap.getTimeSeriesType(tsType);
-            String rowId = type.getRowId();
+            DateTime now = new DateTime(DateTimeZone.UTC);
+            String rowId = type.getRowId(now);
             batch.setConsistencyLevel(ConsistencyLevel.CL_ONE);
             ColumnListMutation<UUID> columns = batch.withRow(type.getCf(), rowId);
 
             for (int i = 0; i < data.length; i++) {
+                byte[] value = type.getSerializer().serialize(data[i]);
                 columns.putColumn(TimeUUIDUtils.getUniqueTimeUUIDinMillis(),
-                        type.getSerializer().serialize(data[i]),
+                        value,
                         type.getTtl());
+                putRollups(batch, type, now, data[i], value);
             }
             batch.execute();
             return rowId;
@@ -1396,21 +1583,58 @@ public class DbClientImpl implements DbClient {
             TimeSeriesType<T> type = TypeMap.getTimeSeriesType(tsType);
             String rowId = type.getRowId(time);
             UUID columnName = TimeUUIDUtils.getTimeUUID(time.getMillis());
-            // time series are always in the local keyspace
-            ColumnMutation mutation = getLocalKeyspace().prepareColumnMutation(type.getCf(),
-                    rowId,
-                    columnName);
-            // quorum is not required since there should be no duplicates
-            // for reads, clients should expect read-after-write is
-            // not guaranteed for time series data.
-            mutation.setConsistencyLevel(ConsistencyLevel.CL_ONE);
-            mutation.putValue(type.getSerializer().serialize(data), type.getTtl()).execute();
+            byte[] value = type.getSerializer().serialize(data);
+            if (type.getRollups().isEmpty()) {
+                // time series are always in the local keyspace
+                ColumnMutation mutation = getLocalKeyspace().prepareColumnMutation(type.getCf(),
+                        rowId,
+                        columnName);
+                // quorum is not required since there should be no duplicates
+                // for reads, clients should expect read-after-write is
+                // not guaranteed for time series data.
+                mutation.setConsistencyLevel(ConsistencyLevel.CL_ONE);
+                mutation.putValue(value, type.getTtl()).execute();
+            } else {
+                MutationBatch batch = getLocalKeyspace().prepareMutationBatch();
+                batch.setConsistencyLevel(ConsistencyLevel.CL_ONE);
+                batch.withRow(type.getCf(), rowId).putColumn(columnName, value, type.getTtl());
+                putRollups(batch, type, time, data, value);
+                batch.execute();
+            }
             return rowId;
         } catch (ConnectionException e) {
             throw DatabaseException.retryables.connectionFailed(e);
         }
     }
 
+    /**
+     * Adds the rollup columns of a data point to a time series batch. The rollup column of
+     * a key is the same for the whole rollup period, so the last point inserted in the
+     * period is kept without reading the rollup first.
+     * 
+     * @param batch batch the data point is written with
+     * @param type time series of the data point
+     * @param time insertion time
+     * @param data data point
+     * @param value serialized data point
+     */
+    private <T extends TimeSeriesSerializer.DataPoint> void putRollups(MutationBatch batch, TimeSeriesType<T> type,
+            DateTime time, T data, byte[] value) {
+        List<Class<? extends TimeSeries>> rollups = type.getRollups();
+        if (rollups.isEmpty()) {
+            return;
+        }
+        String key = type.getRollupKey(data);
+        if (key == null) {
+            return;
+        }
+        for (Class<? extends TimeSeries> rollup : rollups) {
+            TimeSeriesType<T> rollupType = TypeMap.getTimeSeriesType(rollup);
+            batch.withRow(rollupType.getCf(), rollupType.getRollupRowId(time, key))
+                    .putColumn(rollupType.getRollupColumnName(time, key), value, rollupType.getTtl());
+        }
+    }
+
     @Override
     public <T extends TimeSeriesSerializer.DataPoint>
             void queryTimeSeries(Class<? extends TimeSeries> tsType,
@@ -1425,43 +1649,61 @@ public class DbClientImpl implements DbClient {
             void queryTimeSeries(final Class<? extends TimeSeries> tsType, final DateTime timeBucket,
                     TimeSeriesMetadata.TimeBucket bucket, final TimeSeriesQueryResult<T> result,
                     ExecutorService workerThreads) {
-        final TimeSeriesType<T> type = TypeMap.getTimeSeriesType(tsType);
-        final TimeSeriesMetadata.TimeBucket granularity = (bucket == null ? type.getBucketConfig() : bucket);
-        final List<String> rows = type.getRows(timeBucket);
-        final List<Future<Object>> queries = new ArrayList<Future<Object>>(rows.size());
-        for (int index = 0; index < rows.size(); index++) {
-            final String rowKey = rows.get(index);
-            queries.add(workerThreads.submit(new Callable<Object>() {
-                @Override
-                public Object call() throws Exception {
-                    ColumnList<UUID> columns;
-                    // time series are always in the local keyspace
-                    RowQuery<String, UUID> query = getLocalKeyspace()
-                            .prepareQuery(type.getCf())
-                            .setConsistencyLevel(ConsistencyLevel.CL_ONE)
-                            .getKey(rowKey)
-                            .autoPaginate(true)
-                            .withColumnRange(type.getColumnRange(timeBucket, granularity, DEFAULT_TS_PAGE_SIZE));
-                    do {
-                        columns = query.execute().getResult();
-                        for (Column<UUID> c : columns) {
-                            result.data(type.getSerializer().deserialize(c.getByteArrayValue()),
-                                    TimeUUIDUtils.getTimeFromUUID(c.getName()));
-                        }
-                    } while (!columns.isEmpty());
-                    return null;
-                }
-            }));
-        }
-        for (int i = 0; i < queries.size(); i++) {
-            Future<Object> objectFuture = queries.get(i);
-            try {
-                objectFuture.get();
-            } catch (Exception t) {
-                result.error(t);
+        queryTimeSeries(tsType, Collections.singletonList(timeBucket), bucket, result, workerThreads);
+    }
+
+    @Override
+    public <T extends TimeSeriesSerializer.DataPoint>
+            void queryTimeSeries(Class<? extends TimeSeries> tsType, List<DateTime> timeBuckets,
+                    TimeSeriesMetadata.TimeBucket bucket, TimeSeriesQueryResult<T> result,
+                    ExecutorService workerThreads) {
+        TimeSeriesType<T> type = TypeMap.getTimeSeriesType(tsType);
+        TimeSeriesMetadata.TimeBucket granularity = (bucket == null ? type.getBucketConfig() : bucket);
+        List<DateTime> sorted = new ArrayList<DateTime>(timeBuckets);
+        Collections.sort(sorted);
+        List<List<TimeSeriesMergeReader.RowPager<T>>> pagers = new ArrayList<List<TimeSeriesMergeReader.RowPager<T>>>();
+        for (DateTime timeBucket : sorted) {
+            List<String> rows = type.getRows(timeBucket);
+            List<TimeSeriesMergeReader.RowPager<T>> bucketPagers = new ArrayList<TimeSeriesMergeReader.RowPager<T>>(rows.size());
+            for (String rowKey : rows) {
+                bucketPagers.add(newRowPager(type, rowKey, timeBucket, granularity));
             }
+            pagers.add(bucketPagers);
         }
-        result.done();
+        new TimeSeriesMergeReader<T>(pagers, _timeSeriesQueryWindow, workerThreads).read(result);
+    }
+
+    /**
+     * Returns a pager over the columns of a time series row that fall in a time bucket
+     */
+    private <T extends TimeSeriesSerializer.DataPoint> TimeSeriesMergeReader.RowPager<T> newRowPager(
+            final TimeSeriesType<T> type, String rowKey, DateTime timeBucket, TimeSeriesMetadata.TimeBucket granularity) {
+        // time series are always in the local keyspace
+        final RowQuery<String, UUID> query = getLocalKeyspace()
+                .prepareQuery(type.getCf())
+                .setConsistencyLevel(ConsistencyLevel.CL_ONE)
+                .getKey(rowKey)
+                .autoPaginate(true)
+                .withColumnRange(type.getColumnRange(timeBucket, granularity, DEFAULT_TS_PAGE_SIZE));
+        return new TimeSeriesMergeReader.RowPager<T>() {
+            private boolean _done;
+
+            @Override
+            public List<TimeSeriesMergeReader.Point<T>> nextPage() throws Exception {
+                if (_done) {
+                    return Collections.emptyList();
+                }
+                ColumnList<UUID> columns = query.execute().getResult();
+                // a short page is the last one, no need to ask for an empty page
+                _done = columns.size() < DEFAULT_TS_PAGE_SIZE;
+                List<TimeSeriesMergeReader.Point<T>> page = new ArrayList<TimeSeriesMergeReader.Point<T>>(columns.size());
+                for (Column<UUID> c : columns) {
+                    page.add(new TimeSeriesMergeReader.Point<T>(type.getSerializer().deserialize(c.getByteArrayValue()),
+                            TimeUUIDUtils.getTimeFromUUID(c.getName())));
+                }
+                return page;
+            }
+        };
     }
 
     @Override
@@ -1545,7 +1787,7 @@ public class DbClientImpl implements DbClient {
      * @param uriList
      * @return
      */
-    private Collection<String> convertUriCollection(Collection<URI> uriList) {
+    protected Collection<String> convertUriCollection(Collection<URI> uriList) {
         List<String> idList = new ArrayList<String>();
         Iterator<URI> it = uriList.iterator();
         while (it.hasNext()) {
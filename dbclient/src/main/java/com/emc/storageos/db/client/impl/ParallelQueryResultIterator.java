@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Query result iterator that splits the ids into row key slices and keeps up to
+ * a window of slices in flight on an executor. Results are handed back in the
+ * order of the ids, one slice at a time, so memory use is bounded by the window.
+ *
+ * The slices read ahead start at one and grow by one each time the caller moves on
+ * to the next slice, up to the window. A caller that stops iterating early therefore
+ * leaves at most as many slices queried for nothing as it has read.
+ */
+class ParallelQueryResultIterator<T> implements Iterator<T> {
+
+    /**
+     * Query run for a single slice of ids
+     */
+    interface SliceQuery<T> {
+        List<T> query(List<URI> ids);
+    }
+
+    private final Iterator<URI> _ids;
+    private final int _sliceSize;
+    private final int _window;
+    private final ExecutorService _executor;
+    private final SliceQuery<T> _query;
+    private final Deque<Future<List<T>>> _pending = new ArrayDeque<Future<List<T>>>();
+    private int _readAhead = 1;
+    private Iterator<T> _current;
+
+    ParallelQueryResultIterator(Iterator<URI> ids, int sliceSize, int window,
+            ExecutorService executor, SliceQuery<T> query) {
+        _ids = ids;
+        _sliceSize = sliceSize;
+        _window = window;
+        _executor = executor;
+        _query = query;
+        fill();
+    }
+
+    private void fill() {
+        while (_pending.size() < _readAhead && _ids.hasNext()) {
+            final List<URI> slice = new ArrayList<URI>(_sliceSize);
+            for (int i = 0; i < _sliceSize && _ids.hasNext(); i++) {
+                slice.add(_ids.next());
+            }
+            _pending.add(_executor.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    return _query.query(slice);
+                }
+            }));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (_current == null || !_current.hasNext()) {
+            Future<List<T>> next = _pending.poll();
+            if (next == null) {
+                return false;
+            }
+            _current = get(next).iterator();
+            fill();
+            _readAhead = Math.min(_readAhead + 1, _window);
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return _current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Waits for the remaining slices and returns all results in order
+     */
+    List<T> toList() {
+        // every slice is needed, query the whole window at once
+        _readAhead = _window;
+        fill();
+        List<T> results = new ArrayList<T>();
+        while (hasNext()) {
+            results.add(next());
+        }
+        return results;
+    }
+
+    private List<T> get(Future<List<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelPending();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            cancelPending();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void cancelPending() {
+        for (Future<List<T>> future : _pending) {
+            future.cancel(true);
+        }
+        _pending.clear();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Getter/setter pair of a data object property.
+ *
+ * The accessors are bound once, when the DataObjectType is built, through LambdaMetafactory,
+ * which spins a small class per property calling the getter/setter directly. Column
+ * (de)serialization then avoids the per call access checks and argument boxing of
+ * Method.invoke. Properties that can't be bound this way (e.g. primitive or non-public
+ * accessors) fall back to reflection.
+ *
+ * Errors thrown by the model accessors are reported as InvocationTargetException, same as
+ * with Method.invoke, so callers keep their existing error handling.
+ */
+public class PropertyAccessor {
+    private static final Logger _log = LoggerFactory.getLogger(PropertyAccessor.class);
+
+    private final PropertyDescriptor _property;
+    private final Function<Object, Object> _getter;
+    private final BiConsumer<Object, Object> _setter;
+
+    private PropertyAccessor(PropertyDescriptor pd, Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+        _property = pd;
+        _getter = getter;
+        _setter = setter;
+    }
+
+    /**
+     * Binds the read and write methods of the property
+     *
+     * @param pd property
+     * @return accessor for the property
+     */
+    public static PropertyAccessor create(PropertyDescriptor pd) {
+        return new PropertyAccessor(pd, bindGetter(pd.getReadMethod()), bindSetter(pd.getWriteMethod()));
+    }
+
+    /**
+     * Creates an accessor that always goes through reflection
+     *
+     * @param pd property
+     * @return accessor for the property
+     */
+    public static PropertyAccessor reflective(PropertyDescriptor pd) {
+        return new PropertyAccessor(pd, null, null);
+    }
+
+    public PropertyDescriptor getPropertyDescriptor() {
+        return _property;
+    }
+
+    /**
+     * Reads the property value of obj
+     */
+    public Object get(Object obj) throws InvocationTargetException, IllegalAccessException {
+        if (_getter == null) {
+            return _property.getReadMethod().invoke(obj);
+        }
+        try {
+            return _getter.apply(obj);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Sets the property value of obj
+     */
+    public void set(Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
+        if (_setter == null) {
+            _property.getWriteMethod().invoke(obj, val);
+            return;
+        }
+        try {
+            _setter.accept(obj, val);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> bindGetter(Method method) {
+        if (!isBindable(method)) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    handle, handle.type());
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            _log.debug("Failed to bind {}, using reflection", method, t);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> bindSetter(Method method) {
+        if (!isBindable(method)) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle, handle.type().changeReturnType(void.class));
+            return (BiConsumer<Object, Object>) site.getTarget().invoke();
+        } catch (Throwable t) {
+            _log.debug("Failed to bind {}, using reflection", method, t);
+            return null;
+        }
+    }
+
+    private static boolean isBindable(Method method) {
+        if (method == null || !Modifier.isPublic(method.getModifiers())
+                || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return false;
+        }
+        if (method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (type.isPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
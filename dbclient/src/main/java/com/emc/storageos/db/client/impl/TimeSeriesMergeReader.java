@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.emc.storageos.db.client.TimeSeriesQueryResult;
+import com.emc.storageos.db.client.model.TimeSeriesSerializer;
+
+/**
+ * Reads the shard rows of one or more time buckets of a time series and hands the data
+ * points to the query result in insertion time order, on the calling thread.
+ *
+ * Pages of up to a window of rows are read (and deserialized) concurrently on an
+ * executor. Each row being read has at most the page being merged and the next page in
+ * memory, so memory use is bounded by the window whatever the size of the range. The
+ * rows of a bucket are merged by time; buckets are handed out one after another, since
+ * a row only holds data points inserted in its bucket. Rows of later buckets are read
+ * ahead as the window allows.
+ */
+class TimeSeriesMergeReader<T extends TimeSeriesSerializer.DataPoint> {
+
+    /**
+     * Data point with its insertion time
+     */
+    static class Point<T> {
+        final T _data;
+        final long _time;
+
+        Point(T data, long time) {
+            _data = data;
+            _time = time;
+        }
+    }
+
+    /**
+     * Reads one row page by page
+     */
+    interface RowPager<T> {
+        /**
+         * @return next page of the row in time order, empty once the row has been read
+         */
+        List<Point<T>> nextPage() throws Exception;
+    }
+
+    private static final Comparator<RowCursor<?>> HEAD_TIME = new Comparator<RowCursor<?>>() {
+        @Override
+        public int compare(RowCursor<?> c1, RowCursor<?> c2) {
+            return Long.compare(c1._head._time, c2._head._time);
+        }
+    };
+
+    /**
+     * Read position in a row, with the next page being fetched in the background
+     */
+    private static class RowCursor<T> {
+        private final RowPager<T> _pager;
+        private final ExecutorService _executor;
+        private Future<List<Point<T>>> _nextPage;
+        private Iterator<Point<T>> _page = Collections.<Point<T>> emptyList().iterator();
+        private Point<T> _head;
+
+        RowCursor(RowPager<T> pager, ExecutorService executor) {
+            _pager = pager;
+            _executor = executor;
+        }
+
+        void fetch() {
+            _nextPage = _executor.submit(new Callable<List<Point<T>>>() {
+                @Override
+                public List<Point<T>> call() throws Exception {
+                    return _pager.nextPage();
+                }
+            });
+        }
+
+        /**
+         * Moves to the next data point, waiting for the page being fetched if needed
+         *
+         * @return false at the end of the row
+         */
+        boolean advance() throws Exception {
+            while (!_page.hasNext()) {
+                if (_nextPage == null) {
+                    _head = null;
+                    return false;
+                }
+                List<Point<T>> page = get(_nextPage);
+                _nextPage = null;
+                if (page.isEmpty()) {
+                    _head = null;
+                    return false;
+                }
+                _page = page.iterator();
+                // read ahead while this page is merged
+                fetch();
+            }
+            _head = _page.next();
+            return true;
+        }
+
+        void cancel() {
+            if (_nextPage != null) {
+                _nextPage.cancel(true);
+                _nextPage = null;
+            }
+        }
+
+        private static <T> T get(Future<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private final List<List<RowCursor<T>>> _buckets = new ArrayList<List<RowCursor<T>>>();
+    private final Deque<RowCursor<T>> _notStarted = new ArrayDeque<RowCursor<T>>();
+    private final List<RowCursor<T>> _active = new ArrayList<RowCursor<T>>();
+    private final int _window;
+
+    /**
+     * @param buckets row pagers of each bucket, buckets in time order
+     * @param window maximum number of rows read at the same time, raised to the rows of
+     *            the largest bucket since all rows of a bucket are merged together
+     * @param executor executor reading the pages
+     */
+    TimeSeriesMergeReader(List<List<RowPager<T>>> buckets, int window, ExecutorService executor) {
+        int maxRows = 1;
+        for (List<RowPager<T>> bucket : buckets) {
+            List<RowCursor<T>> cursors = new ArrayList<RowCursor<T>>(bucket.size());
+            for (RowPager<T> pager : bucket) {
+                RowCursor<T> cursor = new RowCursor<T>(pager, executor);
+                cursors.add(cursor);
+                _notStarted.add(cursor);
+            }
+            _buckets.add(cursors);
+            maxRows = Math.max(maxRows, bucket.size());
+        }
+        _window = Math.max(window, maxRows);
+    }
+
+    /**
+     * Reads all rows, calling result.data for each data point in time order, result.error
+     * for each row that could not be read completely and result.done at the end.
+     *
+     * @param result query result
+     */
+    void read(TimeSeriesQueryResult<T> result) {
+        try {
+            for (List<RowCursor<T>> bucket : _buckets) {
+                startRows();
+                PriorityQueue<RowCursor<T>> heads = new PriorityQueue<RowCursor<T>>(Math.max(bucket.size(), 1), HEAD_TIME);
+                for (RowCursor<T> cursor : bucket) {
+                    if (advance(cursor, result)) {
+                        heads.add(cursor);
+                    }
+                }
+                while (!heads.isEmpty()) {
+                    RowCursor<T> cursor = heads.poll();
+                    result.data(cursor._head._data, cursor._head._time);
+                    if (advance(cursor, result)) {
+                        heads.add(cursor);
+                    }
+                }
+            }
+        } finally {
+            for (RowCursor<T> cursor : _active) {
+                cursor.cancel();
+            }
+            _active.clear();
+        }
+        result.done();
+    }
+
+    /**
+     * Starts reading rows in bucket order while the window allows
+     */
+    private void startRows() {
+        while (_active.size() < _window && !_notStarted.isEmpty()) {
+            RowCursor<T> cursor = _notStarted.poll();
+            _active.add(cursor);
+            cursor.fetch();
+        }
+    }
+
+    private boolean advance(RowCursor<T> cursor, TimeSeriesQueryResult<T> result) {
+        boolean more;
+        try {
+            more = cursor.advance();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (Exception e) {
+            // as with a sequential read, the rest of the row is skipped
+            result.error(e);
+            more = false;
+        }
+        if (!more) {
+            _active.remove(cursor);
+            startRows();
+        }
+        return more;
+    }
+}
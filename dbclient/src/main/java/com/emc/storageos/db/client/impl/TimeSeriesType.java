@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -36,6 +37,7 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
     private String _cfName;
     private DateTimeFormatter _prefixFormatter;
     private TimeBucket _bucketGranularity;
+    private TimeBucket _rollupGranularity;
     private ColumnFamily<String, UUID> _cf;
     private Integer _ttl;
     private AtomicLong _bucketIndex = new AtomicLong();
@@ -124,6 +126,72 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         return rowId.toString();
     }
 
+    /**
+     * Rollup granularity, if this time series is a rollup
+     * 
+     * @return rollup period, null for a raw time series
+     */
+    public TimeBucket getRollupConfig() {
+        return _rollupGranularity;
+    }
+
+    /**
+     * Rollup time series this time series is written to
+     * 
+     * @return rollup time series classes, empty if there are none
+     */
+    @SuppressWarnings("unchecked")
+    public List<Class<? extends TimeSeries>> getRollups() {
+        if (_timeSeries instanceof RolledUpTimeSeries) {
+            return ((RolledUpTimeSeries<T>) _timeSeries).getRollups();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Key a data point is rolled up by
+     * 
+     * @param data data point
+     * @return rollup key, null if the data point is not rolled up
+     */
+    @SuppressWarnings("unchecked")
+    public String getRollupKey(T data) {
+        if (_timeSeries instanceof RolledUpTimeSeries) {
+            return ((RolledUpTimeSeries<T>) _timeSeries).getRollupKey(data);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the rollup row for a key. Unlike {@link #getRowId(DateTime)} the shard is
+     * derived from the key, so later points of the key overwrite the same column.
+     * 
+     * @param time insertion time
+     * @param key rollup key
+     * @return row id
+     */
+    public String getRollupRowId(DateTime time, String key) {
+        StringBuilder rowId = new StringBuilder(_prefixFormatter.print(time));
+        rowId.append(Math.floorMod(key.hashCode(), _shardCount));
+        return rowId.toString();
+    }
+
+    /**
+     * Returns the rollup column for a key: a time UUID one tick after the start of the
+     * rollup period, with the clock sequence and node replaced by a hash of the key. Any
+     * point of the key inserted in the same period has the same column name, and the
+     * column sorts inside the column range of the period whatever the key hash is.
+     * 
+     * @param time insertion time
+     * @param key rollup key
+     * @return column name
+     */
+    public UUID getRollupColumnName(DateTime time, String key) {
+        DateTime start = truncate(time, _rollupGranularity);
+        UUID keyUuid = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+        return new UUID(createTimeBits(start.getMillis(), 1), keyUuid.getLeastSignificantBits());
+    }
+
     /**
      * Returns rows to query for given time bucket
      * 
@@ -157,30 +225,22 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         builder.setLimit(pageSize);
         if (granularity.ordinal() < _bucketGranularity.ordinal()) {
             // finer than specified granularity
-            DateTime start = DateTime.now();
-            DateTime end = DateTime.now();
+            DateTime start = truncate(time, granularity);
+            DateTime end = start;
             switch (granularity) {
                 case MONTH:
-                    start = new DateTime(time.getYear(), time.getMonthOfYear(), 1, 0, 0, DateTimeZone.UTC);
                     end = start.plusMonths(1);
                     break;
                 case DAY:
-                    start = new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(), 0, 0, DateTimeZone.UTC);
                     end = start.plusDays(1);
                     break;
                 case HOUR:
-                    start = new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
-                            time.getHourOfDay(), 0, DateTimeZone.UTC);
                     end = start.plusHours(1);
                     break;
                 case MINUTE:
-                    start = new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
-                            time.getHourOfDay(), time.getMinuteOfHour(), DateTimeZone.UTC);
                     end = start.plusMinutes(1);
                     break;
                 case SECOND:
-                    start = new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
-                            time.getHourOfDay(), time.getMinuteOfHour(), time.getSecondOfMinute(), DateTimeZone.UTC);
                     end = start.plusSeconds(1);
                     break;
             }
@@ -190,6 +250,33 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         return builder.build();
     }
 
+    /**
+     * Returns the start of the period of given granularity that contains a time
+     * 
+     * @param time UTC time
+     * @param granularity period
+     * @return period start
+     */
+    private static DateTime truncate(DateTime time, TimeBucket granularity) {
+        switch (granularity) {
+            case YEAR:
+                return new DateTime(time.getYear(), 1, 1, 0, 0, DateTimeZone.UTC);
+            case MONTH:
+                return new DateTime(time.getYear(), time.getMonthOfYear(), 1, 0, 0, DateTimeZone.UTC);
+            case DAY:
+                return new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(), 0, 0, DateTimeZone.UTC);
+            case HOUR:
+                return new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
+                        time.getHourOfDay(), 0, DateTimeZone.UTC);
+            case MINUTE:
+                return new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
+                        time.getHourOfDay(), time.getMinuteOfHour(), DateTimeZone.UTC);
+            default:
+                return new DateTime(time.getYear(), time.getMonthOfYear(), time.getDayOfMonth(),
+                        time.getHourOfDay(), time.getMinuteOfHour(), time.getSecondOfMinute(), DateTimeZone.UTC);
+        }
+    }
+
     /**
      * Serializer for data points
      * 
@@ -263,6 +350,8 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
                     _supportedGranularity.add(bucket);
                 }
                 _supportedGranularity = Collections.unmodifiableList(_supportedGranularity);
+            } else if (a instanceof RollupGranularity) {
+                _rollupGranularity = ((RollupGranularity) a).value();
             } else if (a instanceof Ttl) {
                 _ttl = ((Ttl) a).value();
             } else {
@@ -296,9 +385,21 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
      * @return
      */
     private UUID createMaxTimeUUID(long maxTime) {
+        return new UUID(createTimeBits(maxTime, 9999), 0xffffffffffffffffL);
+    }
+
+    /**
+     * Returns the most significant bits of a version 1 UUID for given millisecond and
+     * 100ns ticks within it - see UUIDGen for algorithm/source.
+     * 
+     * @param millis UTC time
+     * @param ticks 0 to 9999
+     * @return
+     */
+    private static long createTimeBits(long millis, int ticks) {
         long time;
         // UTC time
-        long timeToUse = (maxTime * 10000) + 0x01b21dd213814000L + 9999;
+        long timeToUse = (millis * 10000) + 0x01b21dd213814000L + ticks;
         // time low
         time = timeToUse << 32;
         // time mid
@@ -306,6 +407,6 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         // time hi and version
         time |= 0x1000 | ((timeToUse >> 48) & 0x0FFF); // version 1
 
-        return new UUID(time, 0xffffffffffffffffL);
+        return time;
     }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.util.List;
+
+/**
+ * Time series whose data points are also written to rollup time series at insert time.
+ *
+ * A rollup keeps the last data point inserted for each rollup key in each period of its
+ * {@link RollupGranularity}, so a query over a long range reads one point per key and
+ * period instead of every raw point. This suits data points that carry cumulative
+ * counters and current gauges, where the last point of a period describes the period.
+ */
+public interface RolledUpTimeSeries<T extends TimeSeriesSerializer.DataPoint> extends TimeSeries<T> {
+    /**
+     * Rollup time series written along with this one. They store the serialized data
+     * points of this time series, so they must use the same serializer.
+     *
+     * @return rollup time series classes
+     */
+    public List<Class<? extends TimeSeries>> getRollups();
+
+    /**
+     * Key a data point is rolled up by, e.g. the id of the resource it describes
+     *
+     * @param data data point
+     * @return rollup key, or null if the data point is not rolled up
+     */
+    public String getRollupKey(T data);
+}
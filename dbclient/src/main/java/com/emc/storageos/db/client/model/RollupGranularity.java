@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a time series as a rollup of a {@link RolledUpTimeSeries}, keeping one data point
+ * per rollup key and period of the given granularity. Must be finer than the bucket
+ * granularity of the rollup.
+ */
+@Documented
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RollupGranularity {
+    /**
+     * Rollup period
+     * 
+     * @return
+     */
+    TimeSeriesMetadata.TimeBucket value() default TimeSeriesMetadata.TimeBucket.HOUR;
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of metering statistics.
+ *
+ * An encoded stat starts with a magic byte and a format version, followed by one
+ * (tag, value) pair per field that is set. The tag holds the field number and the wire
+ * type of the value, numbers are zigzag varints and strings are length prefixed UTF-8,
+ * as in protocol buffers. Null fields are not written at all, counters are always written,
+ * negative ones included, and fields with unknown numbers are skipped when decoding, so
+ * fields can be added without a format change. Field numbers must never be reused.
+ *
+ * The magic byte differs from the first byte of a java serialization stream, see
+ * {@link #isEncoded(byte[])}, so both formats can be read from the same column family.
+ */
+public final class StatCodec {
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 1;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_BYTES = 2;
+
+    // field numbers
+    private static final int RESOURCE_ID = 1;
+    private static final int TIME_MEASURED = 2;
+    private static final int TIME_COLLECTED = 3;
+    private static final int SERVICE_TYPE = 4;
+    private static final int NATIVE_GUID = 5;
+    private static final int VIRTUAL_POOL = 6;
+    private static final int PROJECT = 7;
+    private static final int TENANT = 8;
+    private static final int USER = 9;
+    private static final int PROVISIONED_CAPACITY = 10;
+    private static final int ALLOCATED_CAPACITY = 11;
+    private static final int SNAPSHOT_CAPACITY = 12;
+    private static final int SNAPSHOT_COUNT = 13;
+    private static final int BANDWIDTH_IN = 14;
+    private static final int BANDWIDTH_OUT = 15;
+    private static final int TOTAL_IOS = 16;
+    private static final int READ_IOS = 17;
+    private static final int WRITE_IOS = 18;
+    private static final int KBYTES_TRANSFERRED = 19;
+    private static final int IDLE_TIME_COUNTER = 20;
+    private static final int IO_TIME_COUNTER = 21;
+    private static final int QUEUE_LENGTH = 22;
+    private static final int READ_HIT_IOS = 23;
+    private static final int WRITE_HIT_IOS = 24;
+    private static final int OBJ_COUNT = 25;
+    private static final int USER_SIZE = 26;
+    private static final int REAL_SIZE = 27;
+    private static final int UMD_SIZE = 28;
+    private static final int SMD_SIZE = 29;
+
+    private StatCodec() {
+    }
+
+    /**
+     * @param data serialized stat
+     * @return true if the data is in this format, false for a java serialized stat
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Stat stat) {
+        Writer out = new Writer();
+        out.write(RESOURCE_ID, stat.getResourceId());
+        out.write(TIME_MEASURED, stat.getTimeInMillis());
+        out.write(TIME_COLLECTED, stat.getTimeCollected());
+        out.write(SERVICE_TYPE, stat.getServiceType());
+        out.write(NATIVE_GUID, stat.getNativeGuid());
+        out.write(VIRTUAL_POOL, stat.getVirtualPool());
+        out.write(PROJECT, stat.getProject());
+        out.write(TENANT, stat.getTenant());
+        out.write(USER, stat.getUser());
+        out.write(PROVISIONED_CAPACITY, stat.getProvisionedCapacity());
+        out.write(ALLOCATED_CAPACITY, stat.getAllocatedCapacity());
+        out.write(SNAPSHOT_CAPACITY, stat.getSnapshotCapacity());
+        Integer snapshotCount = stat.getSnapshotCount();
+        out.write(SNAPSHOT_COUNT, snapshotCount != null ? Long.valueOf(snapshotCount) : null);
+        out.write(BANDWIDTH_IN, stat.getBandwidthIn());
+        out.write(BANDWIDTH_OUT, stat.getBandwidthOut());
+        out.write(TOTAL_IOS, stat.getTotalIOs());
+        out.write(READ_IOS, stat.getReadIOs());
+        out.write(WRITE_IOS, stat.getWriteIOs());
+        out.write(KBYTES_TRANSFERRED, stat.getKbytesTransferred());
+        out.write(IDLE_TIME_COUNTER, stat.getIdleTimeCounter());
+        out.write(IO_TIME_COUNTER, stat.getIoTimeCounter());
+        out.write(QUEUE_LENGTH, stat.getQueueLength());
+        out.write(READ_HIT_IOS, stat.getReadHitIOs());
+        out.write(WRITE_HIT_IOS, stat.getWriteHitIOs());
+        out.write(OBJ_COUNT, stat.getObjCount());
+        out.write(USER_SIZE, stat.getUserSize());
+        out.write(REAL_SIZE, stat.getRealSize());
+        out.write(UMD_SIZE, stat.getUmdSize());
+        out.write(SMD_SIZE, stat.getSmdSize());
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data stat encoded by {@link #encode(Stat)}
+     * @return decoded stat
+     * @throws IllegalArgumentException if the data is not in this format or is truncated
+     */
+    public static Stat decode(byte[] data) {
+        if (!isEncoded(data) || data.length < 2) {
+            throw new IllegalArgumentException("Not an encoded stat");
+        }
+        // versions only add fields, so any version can be read field by field
+        Reader in = new Reader(data, 2);
+        Stat stat = new Stat();
+        while (in.hasMore()) {
+            long tag = in.readVarint();
+            int field = (int) (tag >>> 3);
+            int wireType = (int) (tag & 0x7);
+            if (wireType == WIRE_BYTES) {
+                String value = in.readString();
+                switch (field) {
+                    case RESOURCE_ID:
+                        stat.setResourceId(URI.create(value));
+                        break;
+                    case SERVICE_TYPE:
+                        stat.setServiceType(value);
+                        break;
+                    case NATIVE_GUID:
+                        stat.setNativeGuid(value);
+                        break;
+                    case VIRTUAL_POOL:
+                        stat.setVirtualPool(URI.create(value));
+                        break;
+                    case PROJECT:
+                        stat.setProject(URI.create(value));
+                        break;
+                    case TENANT:
+                        stat.setTenant(URI.create(value));
+                        break;
+                    case USER:
+                        stat.setUser(URI.create(value));
+                        break;
+                    default:
+                        // field added by a later version
+                        break;
+                }
+            } else if (wireType == WIRE_VARINT) {
+                long value = in.readSignedVarint();
+                switch (field) {
+                    case TIME_MEASURED:
+                        stat.setTimeInMillis(value);
+                        break;
+                    case TIME_COLLECTED:
+                        stat.setTimeCollected(value);
+                        break;
+                    case PROVISIONED_CAPACITY:
+                        stat.setProvisionedCapacity(value);
+                        break;
+                    case ALLOCATED_CAPACITY:
+                        stat.setAllocatedCapacity(value);
+                        break;
+                    case SNAPSHOT_CAPACITY:
+                        stat.setSnapshotCapacity(value);
+                        break;
+                    case SNAPSHOT_COUNT:
+                        stat.setSnapshotCount((int) value);
+                        break;
+                    case BANDWIDTH_IN:
+                        stat.setBandwidthIn(value);
+                        break;
+                    case BANDWIDTH_OUT:
+                        stat.setBandwidthOut(value);
+                        break;
+                    case TOTAL_IOS:
+                        stat.setTotalIOs(value);
+                        break;
+                    case READ_IOS:
+                        stat.setReadIOs(value);
+                        break;
+                    case WRITE_IOS:
+                        stat.setWriteIOs(value);
+                        break;
+                    case KBYTES_TRANSFERRED:
+                        stat.setKbytesTransferred(value);
+                        break;
+                    case IDLE_TIME_COUNTER:
+                        stat.setIdleTimeCounter(value);
+                        break;
+                    case IO_TIME_COUNTER:
+                        stat.setIoTimeCounter(value);
+                        break;
+                    case QUEUE_LENGTH:
+                        stat.setQueueLength(value);
+                        break;
+                    case READ_HIT_IOS:
+                        stat.setReadHitIOs(value);
+                        break;
+                    case WRITE_HIT_IOS:
+                        stat.setWriteHitIOs(value);
+                        break;
+                    case OBJ_COUNT:
+                        stat.setObjCount(value);
+                        break;
+                    case USER_SIZE:
+                        stat.setUserSize(value);
+                        break;
+                    case REAL_SIZE:
+                        stat.setRealSize(value);
+                        break;
+                    case UMD_SIZE:
+                        stat.setUmdSize(value);
+                        break;
+                    case SMD_SIZE:
+                        stat.setSmdSize(value);
+                        break;
+                    default:
+                        break;
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported wire type " + wireType + " for field " + field);
+            }
+        }
+        return stat;
+    }
+
+    private static class Writer extends ByteArrayOutputStream {
+        Writer() {
+            super(128);
+            write(MAGIC);
+            write(VERSION);
+        }
+
+        void write(int field, Long value) {
+            if (value != null) {
+                writeVarint((field << 3) | WIRE_VARINT);
+                // zigzag, so that small negative numbers stay short
+                writeVarint((value << 1) ^ (value >> 63));
+            }
+        }
+
+        void write(int field, long value) {
+            write(field, Long.valueOf(value));
+        }
+
+        void write(int field, URI value) {
+            if (value != null) {
+                write(field, value.toString());
+            }
+        }
+
+        void write(int field, String value) {
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint((field << 3) | WIRE_BYTES);
+                writeVarint(bytes.length);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] _data;
+        private int _pos;
+
+        Reader(byte[] data, int pos) {
+            _data = data;
+            _pos = pos;
+        }
+
+        boolean hasMore() {
+            return _pos < _data.length;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (_pos >= _data.length) {
+                    throw new IllegalArgumentException("Truncated stat");
+                }
+                byte b = _data[_pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readSignedVarint() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length < 0 || length > _data.length - _pos) {
+                throw new IllegalArgumentException("Truncated stat");
+            }
+            String value = new String(_data, _pos, (int) length, StandardCharsets.UTF_8);
+            _pos += (int) length;
+            return value;
+        }
+    }
+}
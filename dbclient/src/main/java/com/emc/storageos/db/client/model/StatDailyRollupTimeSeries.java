@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata;
+
+/**
+ * CF definition for the last statistics of each resource per day, one row per month
+ */
+@Cf("StatDailyRollups")
+@Shards(10)
+@BucketGranularity(TimeSeriesMetadata.TimeBucket.MONTH)
+@RollupGranularity(TimeSeriesMetadata.TimeBucket.DAY)
+@Ttl(60 * 60 * 24 * 400 /* 400 days */)
+public class StatDailyRollupTimeSeries implements TimeSeries<Stat> {
+    private StatTimeSeries.StatSerializer _serializer = new StatTimeSeries.StatSerializer();
+
+    @Override
+    public StatTimeSeries.StatSerializer getSerializer() {
+        return _serializer;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata;
+
+/**
+ * CF definition for the last statistics of each resource per hour, one row per day
+ */
+@Cf("StatHourlyRollups")
+@Shards(10)
+@BucketGranularity(TimeSeriesMetadata.TimeBucket.DAY)
+@RollupGranularity(TimeSeriesMetadata.TimeBucket.HOUR)
+@Ttl(60 * 60 * 24 * 90 /* 90 days */)
+public class StatHourlyRollupTimeSeries implements TimeSeries<Stat> {
+    private StatTimeSeries.StatSerializer _serializer = new StatTimeSeries.StatSerializer();
+
+    @Override
+    public StatTimeSeries.StatSerializer getSerializer() {
+        return _serializer;
+    }
+}
@@ -5,12 +5,12 @@
 package com.emc.storageos.db.client.model;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import org.slf4j.Logger;
@@ -24,9 +24,11 @@ import org.slf4j.LoggerFactory;
 @Shards(10)
 @BucketGranularity(TimeSeriesMetadata.TimeBucket.HOUR)
 @Ttl(60 * 60 * 24 * 7 /* 7 days */)
-public class StatTimeSeries implements TimeSeries<Stat> {
+public class StatTimeSeries implements RolledUpTimeSeries<Stat> {
     private static final Logger _logger = LoggerFactory
             .getLogger(StatTimeSeries.class);
+    private static final List<Class<? extends TimeSeries>> ROLLUPS = Collections.unmodifiableList(
+            Arrays.<Class<? extends TimeSeries>> asList(StatHourlyRollupTimeSeries.class, StatDailyRollupTimeSeries.class));
     private StatSerializer _serializer = new StatSerializer();
 
     @Override
@@ -34,37 +36,47 @@ public class StatTimeSeries implements TimeSeries<Stat> {
         return _serializer;
     }
 
+    @Override
+    public List<Class<? extends TimeSeries>> getRollups() {
+        return ROLLUPS;
+    }
+
+    /**
+     * Stats carry cumulative counters and current capacities, so the last stat of a
+     * resource in a period stands for the period.
+     */
+    @Override
+    public String getRollupKey(Stat data) {
+        return data.getResourceId() != null ? data.getResourceId().toString() : null;
+    }
+
     /**
-     * Stat serializer implementation ;Default Serialization is not efficient (version problems),
-     * but till we finalize Serializer Implementation, this code remains.
-     * For demo purpose, will use Default Serialization
-     * To-Do: use Protocol Buffers
+     * Stat serializer. Stats are written with {@link StatCodec}; stats written by
+     * earlier releases with java serialization are still read until their TTL expires.
      */
     public static class StatSerializer implements TimeSeriesSerializer<Stat> {
         @Override
         public byte[] serialize(Stat data) {
-            byte[] Objbytes = null;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutput out = null;
-            try {
-                out = new ObjectOutputStream(bos);
-                out.writeObject(data);
-                Objbytes = bos.toByteArray();
-            } catch (Exception e) {
-                _logger.error("Serializing Object to byte Array Exception  :" + e);
-            } finally {
+            return StatCodec.encode(data);
+        }
+
+        @Override
+        public Stat deserialize(byte[] data) {
+            if (StatCodec.isEncoded(data)) {
                 try {
-                    out.close();
-                    bos.close();
-                } catch (IOException e) {
-                    _logger.error("Error while closing Streams " + e);
+                    return StatCodec.decode(data);
+                } catch (IllegalArgumentException e) {
+                    _logger.error("Decoding stat failed: " + e);
+                    return null;
                 }
             }
-            return Objbytes;
+            return deserializeLegacy(data);
         }
 
-        @Override
-        public Stat deserialize(byte[] data) {
+        /**
+         * Reads a stat written with java serialization
+         */
+        static Stat deserializeLegacy(byte[] data) {
             Object statsObj = null;
             ByteArrayInputStream bis = null;
             ObjectInput in = null;
@@ -76,7 +88,9 @@ public class StatTimeSeries implements TimeSeries<Stat> {
                 _logger.error("DeSerializing Object to byte Array Exception  :" + e1);
             } finally {
                 try {
-                    in.close();
+                    if (in != null) {
+                        in.close();
+                    }
                     bis.close();
                 } catch (IOException e1) {
                     _logger.error("Error while closing Streams " + e1);
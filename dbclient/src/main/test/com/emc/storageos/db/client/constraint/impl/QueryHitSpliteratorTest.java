@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.constraint.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.constraint.ConstraintDescriptor;
+import com.emc.storageos.db.client.constraint.URIQueryResultList;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.Volume;
+import com.netflix.astyanax.Keyspace;
+
+public class QueryHitSpliteratorTest {
+
+    /**
+     * Constraint handing out a fixed list of hits, counting executions and hits read
+     */
+    private static class ListConstraint implements Constraint {
+        private final List<URI> _hits;
+        private int _executions;
+        private int _read;
+
+        ListConstraint(List<URI> hits) {
+            _hits = hits;
+        }
+
+        @Override
+        public void setKeyspace(Keyspace keyspace) {
+        }
+
+        @Override
+        public <T> void execute(final QueryResult<T> result) {
+            _executions++;
+            final Iterator<URI> it = _hits.iterator();
+            result.setResult(new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    _read++;
+                    return result.createQueryHit(it.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+
+        @Override
+        public Class<? extends DataObject> getDataObjectType() {
+            return Volume.class;
+        }
+
+        @Override
+        public ConstraintDescriptor toConstraintDescriptor() {
+            return null;
+        }
+    }
+
+    private static List<URI> createIds(int count) {
+        List<URI> ids = new ArrayList<URI>();
+        for (int i = 0; i < count; i++) {
+            ids.add(URIUtil.createId(Volume.class));
+        }
+        return ids;
+    }
+
+    private static Stream<URI> stream(Constraint constraint) {
+        return StreamSupport.stream(new QueryHitSpliterator<URI>(constraint, new URIQueryResultList()), false);
+    }
+
+    @Test
+    public void testQueryRunsOnlyWhenConsumed() {
+        ListConstraint constraint = new ListConstraint(createIds(10));
+        Stream<URI> hits = stream(constraint);
+        Assert.assertEquals(0, constraint._executions);
+
+        Assert.assertEquals(10, hits.count());
+        Assert.assertEquals(1, constraint._executions);
+    }
+
+    @Test
+    public void testHitsKeepIndexOrder() {
+        List<URI> ids = createIds(250);
+        Assert.assertEquals(ids, stream(new ListConstraint(ids)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEarlyTermination() {
+        List<URI> ids = createIds(1000);
+        ListConstraint constraint = new ListConstraint(ids);
+        Assert.assertEquals(ids.subList(0, 5), stream(constraint).limit(5).collect(Collectors.toList()));
+        Assert.assertEquals(5, constraint._read);
+    }
+
+    @Test
+    public void testNoHits() {
+        ListConstraint constraint = new ListConstraint(new ArrayList<URI>());
+        Assert.assertFalse(stream(constraint).findFirst().isPresent());
+        Assert.assertEquals(1, constraint._executions);
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.data.Stat;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StoragePort;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+
+/**
+ * Invalidation of the entries cached by several nodes sharing a change log
+ */
+public class DataObjectCacheTest {
+    private static final URI PORT1 = URI.create("urn:storageos:StoragePort:1:vdc1");
+    private static final URI PORT2 = URI.create("urn:storageos:StoragePort:2:vdc1");
+    private static final URI PORT3 = URI.create("urn:storageos:StoragePort:3:vdc1");
+    private static final URI POOL1 = URI.create("urn:storageos:StoragePool:1:vdc1");
+
+    /**
+     * Change log kept in memory, storing serialized data with a version as zookeeper does
+     */
+    private static class MemoryChangeLog implements DistributedDataManager {
+        private final Map<String, byte[]> data = new HashMap<String, byte[]>();
+        private final Map<String, Integer> versions = new HashMap<String, Integer>();
+        // run once before the next versioned put, to simulate a concurrent change
+        private Runnable beforePut;
+        private int conflicts;
+
+        @Override
+        public synchronized void createNode(String path, boolean watch) {
+            if (!versions.containsKey(path)) {
+                versions.put(path, 0);
+            }
+        }
+
+        @Override
+        public synchronized Object getData(String path, boolean watch) throws Exception {
+            return deserialize(data.get(path));
+        }
+
+        @Override
+        public synchronized Object getData(String path, Stat stat) throws Exception {
+            stat.setVersion(versions.get(path));
+            return deserialize(data.get(path));
+        }
+
+        @Override
+        public boolean putData(String path, Object object, int version) throws Exception {
+            Runnable hook;
+            synchronized (this) {
+                hook = beforePut;
+                beforePut = null;
+            }
+            if (hook != null) {
+                hook.run();
+            }
+            synchronized (this) {
+                if (versions.get(path) != version) {
+                    conflicts++;
+                    return false;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(object);
+                out.close();
+                data.put(path, bytes.toByteArray());
+                versions.put(path, version + 1);
+                return true;
+            }
+        }
+
+        private static Object deserialize(byte[] bytes) throws Exception {
+            return bytes == null ? null : new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        }
+
+        @Override
+        public void setListener(CuratorListener listener) {
+        }
+
+        @Override
+        public void setConnectionStateListener(ConnectionStateListener listener) {
+        }
+
+        @Override
+        public Stat checkExists(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeNode(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeNode(String path, boolean recursive) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putData(String path, Object data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putDataInTransaction(Map<String, Object> creates, Map<String, Object> updates, List<String> removes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> getChildren(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final MemoryChangeLog changeLog = new MemoryChangeLog();
+    private final List<DataObjectCache> nodes = new ArrayList<DataObjectCache>();
+
+    private DataObjectCache startNode(int maxLoggedIds) {
+        DataObjectCache cache = new DataObjectCache();
+        cache.setCachedClasses(Arrays.asList("StoragePort", "StoragePool"));
+        cache.setMaxLoggedIds(maxLoggedIds);
+        cache.setChangeLog(changeLog);
+        cache.start();
+        nodes.add(cache);
+        return cache;
+    }
+
+    @After
+    public void stopNodes() {
+        for (DataObjectCache cache : nodes) {
+            cache.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Row<String, CompositeColumnName> row(URI id) {
+        ColumnList<CompositeColumnName> columns = EasyMock.createMock(ColumnList.class);
+        EasyMock.expect(columns.isEmpty()).andStubReturn(false);
+        Row<String, CompositeColumnName> row = EasyMock.createMock(Row.class);
+        EasyMock.expect(row.getKey()).andStubReturn(id.toString());
+        EasyMock.expect(row.getColumns()).andStubReturn(columns);
+        EasyMock.replay(columns, row);
+        return row;
+    }
+
+    private static void cache(DataObjectCache cache, Class<? extends DataObject> clazz, URI... ids) {
+        for (URI id : ids) {
+            cache.put(clazz, cache.getGeneration(clazz), row(id));
+        }
+    }
+
+    /**
+     * Only the entries of the objects persisted on another node are dropped
+     */
+    @Test
+    public void testRemoteInvalidation() {
+        DataObjectCache node1 = startNode(1000);
+        DataObjectCache node2 = startNode(1000);
+        cache(node1, StoragePort.class, PORT1, PORT2);
+        cache(node2, StoragePort.class, PORT1, PORT2);
+        cache(node2, StoragePool.class, POOL1);
+
+        node1.invalidate(StoragePort.class, Collections.singletonList(PORT1));
+        node1.publishChanges();
+        long generation = node2.getGeneration(StoragePort.class);
+        node2.readChanges(StoragePort.class);
+        node2.readChanges(StoragePool.class);
+
+        Assert.assertNull(node2.get(StoragePort.class, PORT1));
+        Assert.assertNotNull(node2.get(StoragePort.class, PORT2));
+        Assert.assertNotNull(node2.get(StoragePool.class, POOL1));
+
+        // a row read before the change was seen is not cached
+        node2.put(StoragePort.class, generation, row(PORT1));
+        Assert.assertNull(node2.get(StoragePort.class, PORT1));
+
+        // the node which persisted the object does not drop anything more reading its own change
+        node1.readChanges(StoragePort.class);
+        Assert.assertNull(node1.get(StoragePort.class, PORT1));
+        Assert.assertNotNull(node1.get(StoragePort.class, PORT2));
+    }
+
+    /**
+     * A row read before a local write is not cached, even when the write happens while it is put
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInvalidateDuringPut() {
+        final DataObjectCache node = startNode(1000);
+        long generation = node.getGeneration(StoragePort.class);
+
+        ColumnList<CompositeColumnName> columns = EasyMock.createMock(ColumnList.class);
+        EasyMock.expect(columns.isEmpty()).andStubReturn(false);
+        Row<String, CompositeColumnName> row = EasyMock.createMock(Row.class);
+        EasyMock.expect(row.getColumns()).andStubReturn(columns);
+        // the key is read after the generation was checked, the object is persisted right then
+        EasyMock.expect(row.getKey()).andAnswer(new IAnswer<String>() {
+            @Override
+            public String answer() {
+                node.invalidate(StoragePort.class, Collections.singletonList(PORT1));
+                return PORT1.toString();
+            }
+        }).once();
+        EasyMock.expect(row.getKey()).andStubReturn(PORT1.toString());
+        EasyMock.replay(columns, row);
+
+        node.put(StoragePort.class, generation, row);
+        Assert.assertNull(node.get(StoragePort.class, PORT1));
+
+        // a row read after the write is cached
+        cache(node, StoragePort.class, PORT1);
+        Assert.assertNotNull(node.get(StoragePort.class, PORT1));
+
+        // as is a row put while another class is written
+        long portGeneration = node.getGeneration(StoragePort.class);
+        node.invalidate(StoragePool.class, Collections.singletonList(POOL1));
+        node.put(StoragePort.class, portGeneration, row(PORT2));
+        Assert.assertNotNull(node.get(StoragePort.class, PORT2));
+    }
+
+    /**
+     * Changes published by two nodes at the same time are both seen by a third node
+     */
+    @Test
+    public void testConcurrentPublish() {
+        DataObjectCache node1 = startNode(1000);
+        final DataObjectCache node2 = startNode(1000);
+        DataObjectCache node3 = startNode(1000);
+        cache(node3, StoragePort.class, PORT1, PORT2, PORT3);
+
+        synchronized (changeLog) {
+            changeLog.beforePut = new Runnable() {
+                @Override
+                public void run() {
+                    // another node appends between the read and the write of node1
+                    node2.invalidate(StoragePort.class, Collections.singletonList(PORT2));
+                    node2.publishChanges();
+                }
+            };
+        }
+        node1.invalidate(StoragePort.class, Collections.singletonList(PORT1));
+        node1.publishChanges();
+        Assert.assertEquals(1, changeLog.conflicts);
+
+        node3.readChanges(StoragePort.class);
+        Assert.assertNull(node3.get(StoragePort.class, PORT1));
+        Assert.assertNull(node3.get(StoragePort.class, PORT2));
+        Assert.assertNotNull(node3.get(StoragePort.class, PORT3));
+    }
+
+    /**
+     * A node missing changes already dropped from the log drops all its entries of the class
+     */
+    @Test
+    public void testMissedChanges() {
+        DataObjectCache node1 = startNode(2);
+        DataObjectCache node2 = startNode(2);
+        cache(node2, StoragePort.class, PORT1, PORT2, PORT3);
+        cache(node2, StoragePool.class, POOL1);
+
+        for (URI id : Arrays.asList(PORT1, PORT2, PORT1)) {
+            node1.invalidate(StoragePort.class, Collections.singletonList(id));
+            node1.publishChanges();
+        }
+        node2.readChanges(StoragePort.class);
+        Assert.assertNull(node2.get(StoragePort.class, PORT3));
+        Assert.assertNotNull(node2.get(StoragePool.class, POOL1));
+
+        // up to date again, later changes are applied per object
+        cache(node2, StoragePort.class, PORT1, PORT3);
+        node1.invalidate(StoragePort.class, Collections.singletonList(PORT1));
+        node1.publishChanges();
+        node2.readChanges(StoragePort.class);
+        Assert.assertNull(node2.get(StoragePort.class, PORT1));
+        Assert.assertNotNull(node2.get(StoragePort.class, PORT3));
+    }
+
+    /**
+     * More objects persisted at once than the log keeps are published as a change of the whole class
+     */
+    @Test
+    public void testLargeChange() {
+        DataObjectCache node1 = startNode(2);
+        DataObjectCache node2 = startNode(2);
+        cache(node2, StoragePort.class, PORT1, PORT2, PORT3);
+
+        node1.invalidate(StoragePort.class, Arrays.asList(PORT1, PORT2, PORT3));
+        node1.publishChanges();
+        node2.readChanges(StoragePort.class);
+        Assert.assertNull(node2.get(StoragePort.class, PORT3));
+
+        DataObjectCache.ChangeLog log = null;
+        try {
+            log = (DataObjectCache.ChangeLog) changeLog.getData("/dbObjectChanges/StoragePort", false);
+        } catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+        Assert.assertEquals(1, log.changes.size());
+        Assert.assertNull(log.changes.getFirst().ids);
+    }
+}
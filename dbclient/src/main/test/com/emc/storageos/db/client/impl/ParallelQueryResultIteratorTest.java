@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelQueryResultIteratorTest {
+    private static final int SLICE_SIZE = 3;
+    private static final int WINDOW = 4;
+
+    private final ExecutorService _executor = Executors.newFixedThreadPool(WINDOW);
+    private final List<List<URI>> _queried = Collections.synchronizedList(new ArrayList<List<URI>>());
+
+    @After
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    private static List<URI> ids(int count) {
+        List<URI> ids = new ArrayList<URI>();
+        for (int i = 0; i < count; i++) {
+            ids.add(URI.create("urn:storageos:Volume:" + i + ":vdc1"));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the slice, the earlier slices taking longer so they complete out of order
+     */
+    private class EchoQuery implements ParallelQueryResultIterator.SliceQuery<URI> {
+        @Override
+        public List<URI> query(List<URI> ids) {
+            _queried.add(ids);
+            try {
+                Thread.sleep(Math.max(0, 20 - 5 * _queried.size()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }
+    }
+
+    private ParallelQueryResultIterator<URI> iterator(List<URI> ids, ParallelQueryResultIterator.SliceQuery<URI> query) {
+        return new ParallelQueryResultIterator<URI>(ids.iterator(), SLICE_SIZE, WINDOW, _executor, query);
+    }
+
+    @Test
+    public void testOrder() {
+        List<URI> ids = ids(40);
+        Assert.assertEquals(ids, iterator(ids, new EchoQuery()).toList());
+
+        _queried.clear();
+        List<URI> results = new ArrayList<URI>();
+        for (ParallelQueryResultIterator<URI> it = iterator(ids, new EchoQuery()); it.hasNext();) {
+            results.add(it.next());
+        }
+        Assert.assertEquals(ids, results);
+    }
+
+    @Test
+    public void testSliceBoundaries() {
+        for (int count : new int[] { 0, 1, SLICE_SIZE - 1, SLICE_SIZE, SLICE_SIZE + 1, 2 * SLICE_SIZE,
+                WINDOW * SLICE_SIZE, WINDOW * SLICE_SIZE + 1 }) {
+            _queried.clear();
+            List<URI> ids = ids(count);
+            Assert.assertEquals(ids, iterator(ids, new EchoQuery()).toList());
+
+            // every id is queried once, in full slices but for the last one
+            Assert.assertEquals((count + SLICE_SIZE - 1) / SLICE_SIZE, _queried.size());
+            int queried = 0;
+            for (List<URI> slice : _queried) {
+                Assert.assertTrue(slice.size() <= SLICE_SIZE);
+                queried += slice.size();
+            }
+            Assert.assertEquals(count, queried);
+        }
+    }
+
+    /**
+     * The slice results can be empty, e.g. when all objects of a slice are inactive
+     */
+    @Test
+    public void testEmptySlices() {
+        List<URI> ids = ids(10);
+        final List<URI> kept = new ArrayList<URI>(ids.subList(SLICE_SIZE * 2, SLICE_SIZE * 2 + 1));
+        List<URI> results = iterator(ids, new ParallelQueryResultIterator.SliceQuery<URI>() {
+            @Override
+            public List<URI> query(List<URI> slice) {
+                List<URI> found = new ArrayList<URI>(slice);
+                found.retainAll(kept);
+                return found;
+            }
+        }).toList();
+        Assert.assertEquals(kept, results);
+    }
+
+    /**
+     * The error of a slice query is thrown to the caller, and the slices not yet started are not queried
+     */
+    @Test
+    public void testErrorPropagated() throws Exception {
+        final List<URI> ids = ids(100);
+        final AtomicInteger started = new AtomicInteger();
+        ParallelQueryResultIterator<URI> it = iterator(ids, new ParallelQueryResultIterator.SliceQuery<URI>() {
+            @Override
+            public List<URI> query(List<URI> slice) {
+                started.incrementAndGet();
+                if (slice.contains(ids.get(0))) {
+                    throw new IllegalStateException("slice failed");
+                }
+                try {
+                    // still running when the error is thrown to the caller
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return slice;
+            }
+        });
+        try {
+            it.toList();
+            Assert.fail("the error of the slice should be thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("slice failed", e.getMessage());
+        }
+        _executor.shutdown();
+        Assert.assertTrue(_executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(started.get() <= WINDOW);
+    }
+
+    /**
+     * A caller that stops reading early leaves no more slices queried than it has read
+     */
+    @Test
+    public void testReadAhead() throws Exception {
+        ParallelQueryResultIterator<URI> it = iterator(ids(100), new EchoQuery());
+        it.next();
+        Thread.sleep(100);
+        Assert.assertEquals(2, _queried.size());
+
+        for (int i = 1; i < 2 * SLICE_SIZE; i++) {
+            it.next();
+        }
+        Thread.sleep(100);
+        Assert.assertEquals(4, _queried.size());
+    }
+}
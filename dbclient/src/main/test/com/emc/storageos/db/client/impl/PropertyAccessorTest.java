@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.Volume;
+
+public class PropertyAccessorTest {
+
+    private static PropertyDescriptor getProperty(Class<?> clazz, String name) throws IntrospectionException {
+        for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+            if (pd.getName().equals(name)) {
+                return pd;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    public void testBoundAccessorsMatchReflection() throws Exception {
+        for (String name : new String[] { "label", "capacity", "protocol", "inactive" }) {
+            PropertyDescriptor pd = getProperty(Volume.class, name);
+            PropertyAccessor bound = PropertyAccessor.create(pd);
+            PropertyAccessor reflective = PropertyAccessor.reflective(pd);
+
+            Volume volume = new Volume();
+            Object value = pd.getPropertyType() == StringSet.class ? new StringSet() :
+                    pd.getPropertyType() == Long.class ? Long.valueOf(1024) :
+                            pd.getPropertyType() == Boolean.class ? Boolean.TRUE : "value";
+            bound.set(volume, value);
+            Assert.assertEquals(value, reflective.get(volume));
+            Assert.assertEquals(value, bound.get(volume));
+        }
+    }
+
+    @Test
+    public void testSubclassOverrideIsCalled() throws Exception {
+        PropertyAccessor accessor = PropertyAccessor.create(getProperty(Volume.class, "label"));
+        Volume volume = new Volume() {
+            @Override
+            public String getLabel() {
+                return "overridden";
+            }
+        };
+        Assert.assertEquals("overridden", accessor.get(volume));
+    }
+
+    @Test(expected = InvocationTargetException.class)
+    public void testWrongTypeIsReported() throws Exception {
+        PropertyAccessor accessor = PropertyAccessor.create(getProperty(Volume.class, "capacity"));
+        accessor.set(new Volume(), "not a number");
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.TimeSeriesQueryResult;
+import com.emc.storageos.db.client.model.Stat;
+
+public class TimeSeriesMergeReaderTest {
+    private static final int PAGE_SIZE = 2;
+
+    private final ExecutorService _executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger _open = new AtomicInteger();
+    private final AtomicInteger _maxOpen = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        _executor.shutdownNow();
+    }
+
+    /**
+     * Row of stats with the given insertion times, read PAGE_SIZE at a time
+     */
+    private class ListPager implements TimeSeriesMergeReader.RowPager<Stat> {
+        private final List<Long> _times;
+        private final Long _failAt;
+        private int _next;
+
+        ListPager(Long failAt, Long... times) {
+            _times = Arrays.asList(times);
+            _failAt = failAt;
+        }
+
+        @Override
+        public List<TimeSeriesMergeReader.Point<Stat>> nextPage() throws Exception {
+            if (_next == 0) {
+                _maxOpen.accumulateAndGet(_open.incrementAndGet(), Math::max);
+            }
+            List<TimeSeriesMergeReader.Point<Stat>> page = new ArrayList<TimeSeriesMergeReader.Point<Stat>>();
+            for (; _next < _times.size() && page.size() < PAGE_SIZE; _next++) {
+                long time = _times.get(_next);
+                if (_failAt != null && time == _failAt) {
+                    _open.decrementAndGet();
+                    throw new IllegalStateException("read failed");
+                }
+                Stat stat = new Stat();
+                stat.setTimeInMillis(time);
+                page.add(new TimeSeriesMergeReader.Point<Stat>(stat, time));
+            }
+            if (page.isEmpty()) {
+                _open.decrementAndGet();
+            }
+            return page;
+        }
+    }
+
+    private static class CollectingResult implements TimeSeriesQueryResult<Stat> {
+        final List<Long> _times = new ArrayList<Long>();
+        final Thread _caller = Thread.currentThread();
+        int _errors;
+        boolean _done;
+
+        @Override
+        public void data(Stat data, long insertionTimeMs) {
+            Assert.assertSame(_caller, Thread.currentThread());
+            _times.add(insertionTimeMs);
+        }
+
+        @Override
+        public void done() {
+            _done = true;
+        }
+
+        @Override
+        public void error(Throwable e) {
+            _errors++;
+        }
+    }
+
+    private List<TimeSeriesMergeReader.RowPager<Stat>> bucket(ListPager... rows) {
+        return Arrays.<TimeSeriesMergeReader.RowPager<Stat>> asList(rows);
+    }
+
+    @Test
+    public void testMergesInTimeOrder() {
+        List<List<TimeSeriesMergeReader.RowPager<Stat>>> buckets = new ArrayList<List<TimeSeriesMergeReader.RowPager<Stat>>>();
+        buckets.add(bucket(new ListPager(null, 1L, 4L, 5L, 9L), new ListPager(null, 2L, 3L), new ListPager(null, 6L, 7L, 8L)));
+        buckets.add(bucket(new ListPager(null, 12L, 13L), new ListPager(null), new ListPager(null, 10L, 11L, 14L)));
+        buckets.add(bucket(new ListPager(null, 15L), new ListPager(null, 16L)));
+        CollectingResult result = new CollectingResult();
+        new TimeSeriesMergeReader<Stat>(buckets, 4, _executor).read(result);
+
+        List<Long> expected = new ArrayList<Long>();
+        for (long i = 1; i <= 16; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, result._times);
+        Assert.assertEquals(0, result._errors);
+        Assert.assertTrue(result._done);
+        // the window is raised to the rows of a bucket, never beyond
+        Assert.assertTrue(_maxOpen.get() <= 4);
+    }
+
+    @Test
+    public void testFailedRowIsSkipped() {
+        List<List<TimeSeriesMergeReader.RowPager<Stat>>> buckets = new ArrayList<List<TimeSeriesMergeReader.RowPager<Stat>>>();
+        buckets.add(bucket(new ListPager(5L, 1L, 2L, 5L, 6L), new ListPager(null, 3L, 4L, 7L)));
+        CollectingResult result = new CollectingResult();
+        new TimeSeriesMergeReader<Stat>(buckets, 1, _executor).read(result);
+
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 7L), result._times);
+        Assert.assertEquals(1, result._errors);
+        Assert.assertTrue(result._done);
+    }
+
+    @Test
+    public void testNoBuckets() {
+        CollectingResult result = new CollectingResult();
+        new TimeSeriesMergeReader<Stat>(Collections.<List<TimeSeriesMergeReader.RowPager<Stat>>> emptyList(), 4,
+                _executor).read(result);
+        Assert.assertTrue(result._times.isEmpty());
+        Assert.assertTrue(result._done);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the StatCodec encoding and reading of java serialized stats
+ */
+public class StatCodecTest {
+    private StatTimeSeries.StatSerializer serializer = new StatTimeSeries.StatSerializer();
+
+    private static Stat createStat() {
+        Stat stat = new Stat();
+        stat.setResourceId(URI.create("urn:storageos:Volume:a8f3d1f4-5d1b-4a7e-8f0e-2c8a3e6b9c17:vdc1"));
+        stat.setProject(URI.create("urn:storageos:Project:6b8bd4c1-6a46-4c8b-a3e5-3b7cb2a5f1d0:global"));
+        stat.setServiceType("block");
+        stat.setNativeGuid("SYMMETRIX+000195701234+VOLUME+01A2B");
+        stat.setTimeCollected(1460000000000L);
+        stat.setTimeInMillis(1459999999000L);
+        stat.setProvisionedCapacity(107374182400L);
+        stat.setAllocatedCapacity(0);
+        stat.setSnapshotCount(3);
+        stat.setTotalIOs(Long.MAX_VALUE);
+        return stat;
+    }
+
+    private static void assertStatEquals(Stat expected, Stat actual) {
+        Assert.assertEquals(expected.getResourceId(), actual.getResourceId());
+        Assert.assertEquals(expected.getProject(), actual.getProject());
+        Assert.assertEquals(expected.getTenant(), actual.getTenant());
+        Assert.assertEquals(expected.getServiceType(), actual.getServiceType());
+        Assert.assertEquals(expected.getNativeGuid(), actual.getNativeGuid());
+        Assert.assertEquals(expected.getTimeCollected(), actual.getTimeCollected());
+        Assert.assertEquals(expected.getTimeInMillis(), actual.getTimeInMillis());
+        Assert.assertEquals(expected.getProvisionedCapacity(), actual.getProvisionedCapacity());
+        Assert.assertEquals(expected.getAllocatedCapacity(), actual.getAllocatedCapacity());
+        Assert.assertEquals(expected.getSnapshotCapacity(), actual.getSnapshotCapacity());
+        Assert.assertEquals(expected.getSnapshotCount(), actual.getSnapshotCount());
+        Assert.assertEquals(expected.getTotalIOs(), actual.getTotalIOs());
+        Assert.assertEquals(expected.getReadIOs(), actual.getReadIOs());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Stat stat = createStat();
+        byte[] data = serializer.serialize(stat);
+        Assert.assertTrue(StatCodec.isEncoded(data));
+        Stat decoded = serializer.deserialize(data);
+        assertStatEquals(stat, decoded);
+        // unset counters stay unset
+        Assert.assertNull(decoded.getSnapshotCapacity());
+        Assert.assertNull(decoded.getReadIOs());
+        Assert.assertNull(decoded.getTenant());
+    }
+
+    @Test
+    public void testReadsJavaSerializedStat() throws Exception {
+        Stat stat = createStat();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(stat);
+        }
+        byte[] legacy = bos.toByteArray();
+        Assert.assertFalse(StatCodec.isEncoded(legacy));
+        assertStatEquals(stat, serializer.deserialize(legacy));
+        Assert.assertTrue(serializer.serialize(stat).length < legacy.length);
+    }
+
+    @Test
+    public void testSkipsUnknownFields() {
+        Stat stat = createStat();
+        byte[] data = StatCodec.encode(stat);
+        // a varint field 100 and a string field 101 as written by a later version
+        byte[] extra = { (byte) 0xA0, 0x06, 0x54, (byte) 0xAA, 0x06, 0x02, 'o', 'k' };
+        byte[] newer = Arrays.copyOf(data, data.length + extra.length);
+        System.arraycopy(extra, 0, newer, data.length, extra.length);
+        assertStatEquals(stat, StatCodec.decode(newer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedStat() {
+        byte[] data = StatCodec.encode(createStat());
+        StatCodec.decode(Arrays.copyOf(data, data.length - 3));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.constraint.AlternateIdConstraint;
+import com.emc.storageos.db.client.constraint.ContainmentConstraint;
+import com.emc.storageos.db.client.constraint.PrefixConstraint;
+import com.emc.storageos.db.client.constraint.URIQueryResultList;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.Volume;
+
+/**
+ * End to end constraint query latency against the embedded Cassandra started by
+ * DbsvcTestBase. Each query type returns all of the volumes created in setup, so
+ * the numbers can be compared across releases for the same volume count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConstraintQueryBenchmark extends DbsvcTestBase {
+    private static final String LABEL_PREFIX = "jmhvolume";
+    private static final String NATIVE_GUID = "SYMMETRIX+000196701234+VOLUME+JMH";
+
+    @Param({ "100", "1000" })
+    public int volumes;
+
+    private DbClient _client;
+    private URI _storageSystem;
+
+    @Setup(Level.Trial)
+    public void startDb() throws IOException {
+        setup();
+        _client = getDbClient();
+
+        _storageSystem = URIUtil.createId(StorageSystem.class);
+        List<Volume> batch = new ArrayList<Volume>();
+        for (int i = 0; i < volumes; i++) {
+            Volume volume = new Volume();
+            volume.setId(URIUtil.createId(Volume.class));
+            volume.setLabel(LABEL_PREFIX + i);
+            volume.setStorageController(_storageSystem);
+            volume.setNativeGuid(NATIVE_GUID);
+            batch.add(volume);
+            if (batch.size() == 100) {
+                _client.createObject(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            _client.createObject(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDb() {
+        _client.stop();
+        stop();
+    }
+
+    @Benchmark
+    public int alternateIdQuery() {
+        URIQueryResultList result = new URIQueryResultList();
+        _client.queryByConstraint(AlternateIdConstraint.Factory.getVolumeNativeGuidConstraint(NATIVE_GUID), result);
+        return count(result);
+    }
+
+    @Benchmark
+    public int relationQuery() {
+        URIQueryResultList result = new URIQueryResultList();
+        _client.queryByConstraint(ContainmentConstraint.Factory.getStorageDeviceVolumeConstraint(_storageSystem), result);
+        return count(result);
+    }
+
+    @Benchmark
+    public int prefixQuery() {
+        URIQueryResultList result = new URIQueryResultList();
+        _client.queryByConstraint(PrefixConstraint.Factory.getLabelPrefixConstraint(Volume.class, LABEL_PREFIX), result);
+        return count(result);
+    }
+
+    @Benchmark
+    public int relationQueryAndFetch() {
+        URIQueryResultList result = new URIQueryResultList();
+        _client.queryByConstraint(ContainmentConstraint.Factory.getStorageDeviceVolumeConstraint(_storageSystem), result);
+        return _client.queryObject(Volume.class, result).size();
+    }
+
+    private static int count(URIQueryResultList result) {
+        int count = 0;
+        for (URI ignored : result) {
+            count++;
+        }
+        return count;
+    }
+}
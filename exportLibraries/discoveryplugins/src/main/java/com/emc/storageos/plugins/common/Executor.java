@@ -18,17 +18,50 @@ import org.slf4j.LoggerFactory;
 
 import javax.cim.CIMArgument;
 import javax.cim.CIMProperty;
+import javax.wbem.CloseableIterator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
  * SMIExecutor- responsible for executing SMICommands
  * 
+ * Operations of a namespace run one after another in their listed order. A namespace
+ * whose parallelism is set above 1 runs its operations as a dependency graph instead:
+ * an operation starts once every earlier operation writing a keyMap key it reads or
+ * writes, or sharing its processor, is done. Operations that do not declare the keys
+ * they write keep their place in the listed order. The operations running at the same
+ * time against one provider, across all executors, are limited by the provider
+ * concurrency.
+ * 
+ * An operation with a probe is skipped when the result of its probe and the
+ * instances it is executed against have the fingerprint they had the last time the
+ * operation was executed for the same system, at most for the probe max age. The
+ * fingerprints are kept in memory, on the node discovering the system.
+ * 
  */
 public abstract class Executor {
     /**
@@ -38,14 +71,22 @@ public abstract class Executor {
     private static final String NEWLINE = "\n";
     private static final String SEMICOLON = "; ";
     private static final String TAB = "\t";
+    private static final int DEFAULT_THREAD_POOL_SIZE = 10;
+    private static final int DEFAULT_PROVIDER_CONCURRENCY = 4;
+    private static final long DEFAULT_PROBE_MAX_AGE = TimeUnit.HOURS.toMillis(6);
     /**
-     * Discover Util.
+     * Permits of the operations running in parallel against each provider.
      */
-    protected Util _util;
+    private static final ConcurrentMap<String, Semaphore> _providerPermits = new ConcurrentHashMap<String, Semaphore>();
     /**
-     * Command Objects.
+     * Fingerprints of the probed operations last executed, by system and operation.
      */
-    protected List<Command> _commandObjects;
+    private static final ConcurrentMap<String, ProbeFingerprint> _probeFingerprints =
+            new ConcurrentHashMap<String, ProbeFingerprint>();
+    /**
+     * Discover Util.
+     */
+    protected Util _util;
     protected CommandGenerator _generator;
 
     /**
@@ -57,6 +98,84 @@ public abstract class Executor {
      */
     protected Map<String, Object> _keyMap;
 
+    private int _threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+    private int _providerConcurrency = DEFAULT_PROVIDER_CONCURRENCY;
+    private long _probeMaxAge = DEFAULT_PROBE_MAX_AGE;
+    /**
+     * Timings of the operations of the last namespace executed.
+     */
+    private final List<OperationTiming> _timings = Collections.synchronizedList(new ArrayList<OperationTiming>());
+
+    /**
+     * Time spent in an operation
+     */
+    public static class OperationTiming {
+        private final String _name;
+        private int _commands;
+        private long _waitMillis;
+        private long _callMillis;
+        private long _processMillis;
+
+        OperationTiming(Operation operation) {
+            _name = null == operation.getMessage() ? operation.getMethod() : operation.getMessage();
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        /**
+         * @return number of commands executed
+         */
+        public int getCommands() {
+            return _commands;
+        }
+
+        /**
+         * @return time waited for a provider permit
+         */
+        public long getWaitMillis() {
+            return _waitMillis;
+        }
+
+        /**
+         * @return time spent in the calls to the provider
+         */
+        public long getCallMillis() {
+            return _callMillis;
+        }
+
+        /**
+         * @return time spent in the processor
+         */
+        public long getProcessMillis() {
+            return _processMillis;
+        }
+
+        public long getTotalMillis() {
+            return _waitMillis + _callMillis + _processMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d ms (%d commands, wait %d ms, calls %d ms, processing %d ms)",
+                    _name, getTotalMillis(), _commands, _waitMillis, _callMillis, _processMillis);
+        }
+    }
+
+    /**
+     * Fingerprint of a probed operation, with the time it was executed
+     */
+    private static class ProbeFingerprint {
+        private final long _fingerprint;
+        private final long _time;
+
+        ProbeFingerprint(long fingerprint, long time) {
+            _fingerprint = fingerprint;
+            _time = time;
+        }
+    }
+
     public void setUtil(Util _util) {
         this._util = _util;
     }
@@ -81,8 +200,57 @@ public abstract class Executor {
         return _generator;
     }
 
+    /**
+     * @param threadPoolSize number of threads executing the operations of a namespace in
+     *            parallel, which also bounds the parallelism of the namespaces
+     */
+    public void setThreadPoolSize(int threadPoolSize) {
+        ExecutorService previous = execService;
+        _threadPoolSize = Math.max(threadPoolSize, 1);
+        execService = Executors.newFixedThreadPool(_threadPoolSize);
+        previous.shutdown();
+    }
+
+    public int getThreadPoolSize() {
+        return _threadPoolSize;
+    }
+
+    /**
+     * @param providerConcurrency maximum number of operations executed in parallel
+     *            against one provider
+     */
+    public void setProviderConcurrency(int providerConcurrency) {
+        _providerConcurrency = providerConcurrency;
+    }
+
+    public int getProviderConcurrency() {
+        return _providerConcurrency;
+    }
+
+    /**
+     * @param probeMaxAge time in milliseconds after which a probed operation is executed
+     *            even if its probe found nothing changed, 0 to never skip operations
+     */
+    public void setProbeMaxAge(long probeMaxAge) {
+        _probeMaxAge = probeMaxAge;
+    }
+
+    public long getProbeMaxAge() {
+        return _probeMaxAge;
+    }
+
+    /**
+     * @return timings of the operations of the last namespace executed, in the order
+     *         they completed
+     */
+    public List<OperationTiming> getOperationTimings() {
+        synchronized (_timings) {
+            return new ArrayList<OperationTiming>(_timings);
+        }
+    }
+
     public Executor() {
-        execService = Executors.newFixedThreadPool(10);
+        execService = Executors.newFixedThreadPool(_threadPoolSize);
     }
 
     public ExecutorService getExecService() {
@@ -102,12 +270,280 @@ public abstract class Executor {
      */
     public void execute(Namespace ns) throws BaseCollectionException {
         assert ns != null;
+        _timings.clear();
+        long start = System.currentTimeMillis();
+        try {
+            if (ns.getParallelism() > 1) {
+                executeInParallel(ns);
+            } else {
+                for (Object operationobj : ns.getOperations()) {
+                    Operation operation = (Operation) operationobj;
+                    executeOperation(operation, null);
+                }
+            }
+        } finally {
+            logTimings(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Executes the operations of a namespace as a dependency graph, at most
+     * parallelism of them at the same time.
+     * 
+     * @param ns namespace
+     * @throws BaseCollectionException error of the first operation failing, the
+     *             operations not started yet are skipped
+     */
+    private void executeInParallel(Namespace ns) throws BaseCollectionException {
+        final List<Operation> operations = new ArrayList<Operation>();
         for (Object operationobj : ns.getOperations()) {
-            Operation operation = (Operation) operationobj;
-            executeOperation(operation);
+            operations.add((Operation) operationobj);
+        }
+        int parallelism = Math.min(ns.getParallelism(), _threadPoolSize);
+        List<Set<Integer>> dependencies = getDependencies(operations);
+        String provider = getProviderKey();
+        final Semaphore permits = null == provider ? null : getProviderPermits(provider);
+        _LOGGER.info("Executing {} operations with parallelism {} against provider {}",
+                operations.size(), parallelism, provider);
+
+        CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(execService);
+        Set<Integer> notStarted = new HashSet<Integer>();
+        for (int i = 0; i < operations.size(); i++) {
+            notStarted.add(i);
+        }
+        Set<Integer> done = new HashSet<Integer>();
+        Map<Future<Integer>, Integer> running = new HashMap<Future<Integer>, Integer>();
+        Exception error = null;
+        Operation failed = null;
+        try {
+            while (!notStarted.isEmpty() || !running.isEmpty()) {
+                // start the operations whose dependencies are done, in listed order
+                for (int i = 0; error == null && running.size() < parallelism && i < operations.size(); i++) {
+                    if (notStarted.contains(i) && done.containsAll(dependencies.get(i))) {
+                        notStarted.remove(i);
+                        final int index = i;
+                        Future<Integer> future = completion.submit(new Callable<Integer>() {
+                            @Override
+                            public Integer call() throws Exception {
+                                executeOperation(operations.get(index), permits);
+                                return index;
+                            }
+                        });
+                        running.put(future, index);
+                    }
+                }
+                if (running.isEmpty()) {
+                    // skipping the rest after an error
+                    break;
+                }
+                Future<Integer> completed = completion.take();
+                Integer index = running.remove(completed);
+                try {
+                    done.add(completed.get());
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        failed = operations.get(index);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<Integer> future : running.keySet()) {
+                future.cancel(true);
+            }
+            error = e;
+        }
+        if (error instanceof BaseCollectionException) {
+            throw (BaseCollectionException) error;
+        } else if (error != null) {
+            _LOGGER.error("Parallel execution failed : ", error);
+            customizeException(error, failed);
         }
     }
 
+    /**
+     * Finds the earlier operations each operation has to wait for: those writing a
+     * keyMap key it reads or writes, reading a key it writes, or sharing its
+     * processor. An operation that does not declare its outputs waits for all
+     * earlier operations, and all later operations wait for it.
+     * 
+     * @param operations operations in listed order
+     * @return indexes of the operations each operation depends on
+     */
+    static List<Set<Integer>> getDependencies(List<Operation> operations) {
+        List<Set<Integer>> dependencies = new ArrayList<Set<Integer>>(operations.size());
+        int barrier = -1;
+        for (int j = 0; j < operations.size(); j++) {
+            Operation operation = operations.get(j);
+            Set<Integer> depends = new HashSet<Integer>();
+            boolean declared = null != operation.getOutputs();
+            for (int i = 0; i < j; i++) {
+                Operation earlier = operations.get(i);
+                if (!declared || i <= barrier || conflicts(operation, earlier)) {
+                    depends.add(i);
+                }
+            }
+            if (!declared) {
+                barrier = j;
+            }
+            dependencies.add(depends);
+        }
+        return dependencies;
+    }
+
+    private static boolean conflicts(Operation operation, Operation earlier) {
+        if (null != operation.getProcessor() && operation.getProcessor() == earlier.getProcessor()) {
+            // processors keep the arguments of the current result
+            return true;
+        }
+        Set<String> earlierKeys = keys(earlier.getInputs());
+        earlierKeys.addAll(keys(earlier.getOutputs()));
+        Set<String> keys = keys(operation.getOutputs());
+        if (!Collections.disjoint(keys, earlierKeys)) {
+            return true;
+        }
+        return !Collections.disjoint(keys(operation.getInputs()), keys(earlier.getOutputs()));
+    }
+
+    private static Set<String> keys(List<String> keys) {
+        return null == keys ? new HashSet<String>() : new HashSet<String>(keys);
+    }
+
+    /**
+     * Identifies a probed operation of the system the operations are executed for.
+     * 
+     * @return key of the fingerprint of the operation, null if the system is unknown
+     */
+    protected String getProbeKey(Operation operation) {
+        Object profile = null == _keyMap ? null : _keyMap.get(Constants.ACCESSPROFILE);
+        if (!(profile instanceof AccessProfile) || null == ((AccessProfile) profile).getSystemId()) {
+            return null;
+        }
+        return ((AccessProfile) profile).getSystemId() + "/"
+                + (null == operation.getMessage() ? operation.getMethod() : operation.getMessage());
+    }
+
+    /**
+     * Fingerprints the arguments of the commands of an operation, which identify the
+     * instances it is executed against, and the result of its probe, sorted as the order
+     * of the instances returned may change from call to call.
+     * 
+     * @return the fingerprint, null if the probe failed
+     */
+    private Long probe(Operation operation, List<Command> commandObjects) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        try {
+            for (Command commandObj : commandObjects) {
+                hasher.putString(toFingerprintString(commandObj.retreiveArguments()), Charsets.UTF_8);
+            }
+            for (Command probeObj : _generator.returnCommandObjects(operation.getProbe(), _keyMap)) {
+                List<String> instances = getProbedInstances(probeObj.execute());
+                Collections.sort(instances);
+                hasher.putInt(instances.size());
+                for (String instance : instances) {
+                    hasher.putString(instance, Charsets.UTF_8);
+                }
+            }
+        } catch (Exception e) {
+            _LOGGER.warn("Probe failed, executing the operation {}", operation.getMessage(), e);
+            return null;
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static List<String> getProbedInstances(Object result) {
+        List<String> instances = new ArrayList<String>();
+        if (result instanceof Iterator<?>) {
+            Iterator<?> iterator = (Iterator<?>) result;
+            try {
+                while (iterator.hasNext()) {
+                    instances.add(toFingerprintString(iterator.next()));
+                }
+            } finally {
+                if (result instanceof CloseableIterator<?>) {
+                    ((CloseableIterator<?>) result).close();
+                }
+            }
+        } else if (result instanceof Iterable<?>) {
+            for (Object instance : (Iterable<?>) result) {
+                instances.add(toFingerprintString(instance));
+            }
+        } else if (result instanceof Object[]) {
+            for (Object instance : (Object[]) result) {
+                instances.add(toFingerprintString(instance));
+            }
+        } else if (null != result) {
+            instances.add(toFingerprintString(result));
+        }
+        return instances;
+    }
+
+    private static String toFingerprintString(Object object) {
+        return Arrays.deepToString(new Object[] { object });
+    }
+
+    /**
+     * @return true if the fingerprint is the one recorded the last time the operation
+     *         was executed, less than the probe max age ago
+     */
+    private boolean isUnchanged(String probeKey, Long fingerprint) {
+        if (null == probeKey || null == fingerprint) {
+            return false;
+        }
+        ProbeFingerprint last = _probeFingerprints.get(probeKey);
+        return null != last && last._fingerprint == fingerprint
+                && System.currentTimeMillis() - last._time < _probeMaxAge;
+    }
+
+    private Semaphore getProviderPermits(String provider) {
+        Semaphore permits = _providerPermits.get(provider);
+        if (null == permits) {
+            Semaphore created = new Semaphore(Math.max(_providerConcurrency, 1), true);
+            permits = _providerPermits.putIfAbsent(provider, created);
+            if (null == permits) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Identifies the provider the operations are executed against, so that the
+     * operations executed in parallel against it can be limited.
+     * 
+     * @return provider address and port, null if unknown
+     */
+    protected String getProviderKey() {
+        Object profile = null == _keyMap ? null : _keyMap.get(Constants.ACCESSPROFILE);
+        if (!(profile instanceof AccessProfile)) {
+            return null;
+        }
+        AccessProfile accessProfile = (AccessProfile) profile;
+        String port = null == accessProfile.getProviderPort() ? String.valueOf(accessProfile.getPortNumber())
+                : accessProfile.getProviderPort();
+        return accessProfile.getIpAddress() + ":" + port;
+    }
+
+    private void logTimings(long elapsed) {
+        List<OperationTiming> timings = getOperationTimings();
+        if (timings.isEmpty()) {
+            return;
+        }
+        Collections.sort(timings, new Comparator<OperationTiming>() {
+            @Override
+            public int compare(OperationTiming t1, OperationTiming t2) {
+                return Long.compare(t2.getTotalMillis(), t1.getTotalMillis());
+            }
+        });
+        StringBuilder logMessage = new StringBuilder();
+        logMessage.append("Executed ").append(timings.size()).append(" operations in ").append(elapsed).append(" ms");
+        for (OperationTiming timing : timings) {
+            logMessage.append(NEWLINE).append(TAB).append(timing);
+        }
+        _LOGGER.info(logMessage.toString());
+    }
+
     /**
      * Move the result to Processor. Processor can be of type CIMProcessor,
      * DirectorMetrics Apply different types of Decorators above the processed
@@ -159,26 +595,55 @@ public abstract class Executor {
      * multi-threaded fashion or singleThreaded.
      * 
      * @param operation
+     * @param permits provider permits to hold while executing, null if not limited
      * @throws BaseCollectionException
      */
-    private void executeOperation(Operation operation) throws BaseCollectionException {
+    private void executeOperation(Operation operation, Semaphore permits) throws BaseCollectionException {
+        OperationTiming timing = null;
+        boolean acquired = false;
+        String probeKey = null;
+        Long fingerprint = null;
+        boolean failed = false;
         try {
             if (!isSupportedOperation(operation)) {
                 _LOGGER.info("Filtered the operation {} as per instructions", operation.getMessage());
                 return;
             }
+            timing = new OperationTiming(operation);
+            if (null != permits) {
+                long waitStart = System.currentTimeMillis();
+                permits.acquire();
+                acquired = true;
+                timing._waitMillis = System.currentTimeMillis() - waitStart;
+            }
             _LOGGER.info(null == operation.getMessage() ? "START Executing operation"
                     : "START :" + operation.getMessage());
-            _commandObjects = _generator.returnCommandObjects(operation, _keyMap);
-            // only sequential processing allowed. also avoiding too many calls to the Provider at
+            List<Command> commandObjects = _generator.returnCommandObjects(operation, _keyMap);
+            if (null != operation.getProbe()) {
+                probeKey = getProbeKey(operation);
+                long probeStart = System.currentTimeMillis();
+                fingerprint = probe(operation, commandObjects);
+                timing._callMillis += System.currentTimeMillis() - probeStart;
+                if (isUnchanged(probeKey, fingerprint)) {
+                    _LOGGER.info("Skipped the operation {}, its probe found nothing changed", timing.getName());
+                    return;
+                }
+            }
+            // the commands of an operation run sequentially, also avoiding too many calls to the Provider at
             // the same time.
-            for (Command commandObj : _commandObjects) {
+            for (Command commandObj : commandObjects) {
                 printArgs(commandObj);
                 Object resultObj = null;
                 try {
+                    long callStart = System.currentTimeMillis();
+                    timing._commands++;
                     resultObj = commandObj.execute();
+                    long processStart = System.currentTimeMillis();
+                    timing._callMillis += processStart - callStart;
                     processResult(operation, resultObj, commandObj);
+                    timing._processMillis += System.currentTimeMillis() - processStart;
                 } catch (Exception e) {
+                    failed = true;
                     _LOGGER.error("Execution failed for :", e);
                     // We do not want 'Provider/Firmware Not Supported Error' to get suppressed. check and throw again.
                     if (e instanceof SMIPluginException) {
@@ -191,9 +656,26 @@ public abstract class Executor {
                     }
                 }
             }
+            if (null != probeKey) {
+                if (failed || null == fingerprint) {
+                    _probeFingerprints.remove(probeKey);
+                } else {
+                    _probeFingerprints.put(probeKey, new ProbeFingerprint(fingerprint, System.currentTimeMillis()));
+                }
+            }
         } catch (final Exception e) {
+            if (null != probeKey) {
+                _probeFingerprints.remove(probeKey);
+            }
             _LOGGER.error("Operation Execution failed : ", e);
             customizeException(e, operation);
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+            if (null != timing) {
+                _timings.add(timing);
+            }
         }
         _LOGGER.debug(null == operation.getMessage() ? "END Executing operation" : "END :" + operation.getMessage());
     }
@@ -4,23 +4,83 @@
  */
 package com.emc.storageos.plugins.common;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.impl.ColumnField;
+import com.emc.storageos.db.client.impl.DataObjectType;
+import com.emc.storageos.db.client.impl.TypeMap;
 import com.emc.storageos.db.client.model.DataObject;
 import com.emc.storageos.db.client.model.Stat;
 import com.emc.storageos.db.client.model.StatTimeSeries;
 import com.emc.storageos.db.exceptions.DatabaseException;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 public class PartitionManager {
 
     private Logger _log = LoggerFactory
             .getLogger(PartitionManager.class);
 
+    private static final long DEFAULT_MAX_FINGERPRINTS = 1000000;
+
+    private boolean _skipUnchanged = true;
+    private long _fingerprintMaxAge = 0;
+    private long _maxFingerprints = DEFAULT_MAX_FINGERPRINTS;
+    /**
+     * Fingerprints of the values of the records last written, by id.
+     */
+    private Cache<URI, Long> _fingerprints = createFingerprints();
+
+    /**
+     * Set whether updates skip the records whose values are all equal to the stored ones.
+     * Rediscovering an array mostly finds the objects as they were, and rewriting them
+     * only adds columns and index entries for compaction to clean up.
+     * 
+     * @param skipUnchanged
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        _skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Set how long the fingerprint of a record written is used to skip updates writing
+     * the same values again, without reading the stored record. Off by default: the API
+     * and ingestion also change these objects, and a record changed by them is not
+     * overwritten by discovery until its fingerprint expired.
+     * 
+     * @param fingerprintMaxAge time in milliseconds, 0 to compare with the stored records
+     */
+    public void setFingerprintMaxAge(long fingerprintMaxAge) {
+        _fingerprintMaxAge = fingerprintMaxAge;
+        _fingerprints = createFingerprints();
+    }
+
+    /**
+     * @param maxFingerprints maximum number of fingerprints kept, the oldest are dropped first
+     */
+    public void setMaxFingerprints(long maxFingerprints) {
+        _maxFingerprints = maxFingerprints;
+        _fingerprints = createFingerprints();
+    }
+
+    private Cache<URI, Long> createFingerprints() {
+        return CacheBuilder.newBuilder().maximumSize(_maxFingerprints)
+                .expireAfterWrite(Math.max(_fingerprintMaxAge, 0), TimeUnit.MILLISECONDS).build();
+    }
+
     /**
      * insert in batches
      * 
@@ -75,10 +135,14 @@ public class PartitionManager {
             DbClient dbClient, String type) {
         List<List<T>> volume_partitions = Lists.partition(records, partitionSize);
         for (List<T> partition : volume_partitions) {
+            Map<URI, Long> fingerprints = new HashMap<URI, Long>();
             try {
+                partition = removeUnchanged(partition, dbClient, fingerprints, type);
                 dbClient.updateObject(partition);
+                putFingerprints(fingerprints);
                 _log.info("{} {} Records updated to DB", partition.size(), type);
             } catch (DatabaseException e) {
+                removeFingerprints(fingerprints);
                 _log.error("Error updating {} records into the database:", type, e);
             }
 
@@ -96,13 +160,166 @@ public class PartitionManager {
             DbClient dbClient, String type) {
         List<List<T>> volume_partitions = Lists.partition(records, partitionSize);
         for (List<T> partition : volume_partitions) {
+            Map<URI, Long> fingerprints = new HashMap<URI, Long>();
             try {
+                partition = removeUnchanged(partition, dbClient, fingerprints, type);
                 dbClient.updateObject(partition);
+                putFingerprints(fingerprints);
                 _log.info("{} {} Records updated and reindexed to DB", partition.size(), type);
             } catch (DatabaseException e) {
+                removeFingerprints(fingerprints);
                 _log.error("Error updating {} records into the database:", type, e);
             }
 
         }
     }
+
+    /**
+     * Removes the records whose column values are all equal to the values stored in the
+     * db. The stored records are read in one query per type, which is much cheaper than
+     * rewriting unchanged columns and their index entries. When fingerprints are enabled,
+     * the records with the fingerprint recorded when they were last written are removed
+     * first, without reading them.
+     * 
+     * @param records records to update
+     * @param dbClient
+     * @param fingerprints fingerprints of the records, filled for the records not removed
+     *            by their fingerprint
+     * @param type record type for logging
+     * @return the records to update
+     */
+    private <T extends DataObject> List<T> removeUnchanged(List<T> records, DbClient dbClient,
+            Map<URI, Long> fingerprints, String type) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        List<T> changed = records;
+        if (_fingerprintMaxAge > 0) {
+            changed = new ArrayList<T>(records.size());
+            for (T record : records) {
+                Long fingerprint = getFingerprint(record);
+                if (null == fingerprint || null == record.getId()) {
+                    changed.add(record);
+                } else if (!fingerprint.equals(_fingerprints.getIfPresent(record.getId()))) {
+                    fingerprints.put(record.getId(), fingerprint);
+                    changed.add(record);
+                }
+            }
+        }
+        if (_skipUnchanged) {
+            changed = removeStored(changed, dbClient, type);
+        }
+        if (changed.size() < records.size()) {
+            _log.info("{} of {} {} Records unchanged, skipping their update", records.size() - changed.size(),
+                    records.size(), type);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the records whose column values are all equal to the values stored in the db.
+     * 
+     * @return the records to update, all of them if the stored records can't be read
+     */
+    private <T extends DataObject> List<T> removeStored(List<T> records, DbClient dbClient, String type) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        Map<Class<? extends DataObject>, List<URI>> idsByClass = new HashMap<Class<? extends DataObject>, List<URI>>();
+        for (T record : records) {
+            List<URI> ids = idsByClass.get(record.getClass());
+            if (ids == null) {
+                ids = new ArrayList<URI>();
+                idsByClass.put(record.getClass(), ids);
+            }
+            ids.add(record.getId());
+        }
+        Map<URI, DataObject> stored = new HashMap<URI, DataObject>();
+        try {
+            for (Map.Entry<Class<? extends DataObject>, List<URI>> entry : idsByClass.entrySet()) {
+                for (DataObject object : dbClient.queryObject(entry.getKey(), entry.getValue())) {
+                    stored.put(object.getId(), object);
+                }
+            }
+        } catch (DatabaseException e) {
+            _log.warn("Failed to read stored {} records, updating all of them", type, e);
+            return records;
+        }
+
+        List<T> changed = new ArrayList<T>(records.size());
+        for (T record : records) {
+            DataObject current = stored.get(record.getId());
+            if (current == null || !hasStoredValues(record, current)) {
+                changed.add(record);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if updating the record would not change any stored value. Null values
+     *         are not written and lazy loaded fields are not written by an update.
+     */
+    private boolean hasStoredValues(DataObject record, DataObject stored) {
+        try {
+            DataObjectType doType = TypeMap.getDoType(record.getClass());
+            for (ColumnField field : doType.getColumnFields()) {
+                if (field.isLazyLoaded()) {
+                    continue;
+                }
+                Object value = ColumnField.getFieldValue(field, record);
+                if (value != null && !value.equals(ColumnField.getFieldValue(field, stored))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (DatabaseException e) {
+            _log.debug("Failed to compare record {}, updating it", record.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Records the fingerprints of the records written.
+     */
+    private void putFingerprints(Map<URI, Long> fingerprints) {
+        if (_fingerprintMaxAge > 0) {
+            _fingerprints.putAll(fingerprints);
+        }
+    }
+
+    /**
+     * Drops the fingerprints of records whose update failed, as a part of them may have
+     * been written.
+     */
+    private void removeFingerprints(Map<URI, Long> fingerprints) {
+        _fingerprints.invalidateAll(fingerprints.keySet());
+    }
+
+    /**
+     * Computes the fingerprint of the values an update of the record writes. Null values
+     * are not written and lazy loaded fields are not written by an update.
+     * 
+     * @return the fingerprint, null if it can't be computed
+     */
+    static Long getFingerprint(DataObject record) {
+        try {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            hasher.putString(record.getClass().getName(), Charsets.UTF_8);
+            DataObjectType doType = TypeMap.getDoType(record.getClass());
+            for (ColumnField field : doType.getColumnFields()) {
+                if (field.isLazyLoaded()) {
+                    continue;
+                }
+                Object value = ColumnField.getFieldValue(field, record);
+                if (value != null) {
+                    hasher.putString(field.getName(), Charsets.UTF_8);
+                    hasher.putString(value.toString(), Charsets.UTF_8);
+                }
+            }
+            return hasher.hash().asLong();
+        } catch (DatabaseException e) {
+            return null;
+        }
+    }
 }
@@ -8,6 +8,11 @@ import java.util.List;
 
 public class Namespace {
     private List<Object> _operations;
+    /**
+     * Maximum number of operations executed at the same time. Operations run one
+     * after another in their listed order unless this is set above 1.
+     */
+    private int _parallelism = 1;
 
     public void setOperations(List<Object> _operations) {
         this._operations = _operations;
@@ -17,4 +22,11 @@ public class Namespace {
         return _operations;
     }
 
+    public void setParallelism(int parallelism) {
+        _parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return _parallelism;
+    }
 }
@@ -23,6 +23,20 @@ public class Operation {
     private Object _instance;
 
     private String _type;
+    /**
+     * keyMap keys read and written by the operation, used to order operations
+     * when a namespace is executed in parallel. Null if not declared.
+     */
+    private List<String> _inputs;
+    private List<String> _outputs;
+    /**
+     * cheap operation, like an enumeration of instance names, whose result changes
+     * when the result of the operation may have changed. The operation is skipped
+     * while its probe and the instances it is executed against are unchanged, so it
+     * may only be set on operations whose processor, finding nothing changed, writes
+     * no keyMap entry read by later operations.
+     */
+    private Operation _probe;
 
     public void setArguments(List<Object> _arguments) {
         this._arguments = _arguments;
@@ -124,4 +138,41 @@ public class Operation {
     public void setSupportedVersion(String supportedVersion) {
         this.supportedVersion = supportedVersion;
     }
+
+    /**
+     * keyMap keys the operation reads, including the keys its arguments are
+     * built from.
+     * 
+     * @return the keys, null if not declared
+     */
+    public List<String> getInputs() {
+        return _inputs;
+    }
+
+    public void setInputs(List<String> inputs) {
+        _inputs = inputs;
+    }
+
+    /**
+     * keyMap keys the operation, or its processor, adds or updates.
+     * An operation declaring no outputs is run on its own, after all operations
+     * before it and before all operations after it.
+     * 
+     * @return the keys, null if not declared
+     */
+    public List<String> getOutputs() {
+        return _outputs;
+    }
+
+    public void setOutputs(List<String> outputs) {
+        _outputs = outputs;
+    }
+
+    public Operation getProbe() {
+        return _probe;
+    }
+
+    public void setProbe(Operation probe) {
+        _probe = probe;
+    }
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.plugins.common;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.plugins.AccessProfile;
+import com.emc.storageos.plugins.BaseCollectionException;
+import com.emc.storageos.plugins.common.commandgenerator.Command;
+import com.emc.storageos.plugins.common.commandgenerator.CommandGenerator;
+import com.emc.storageos.plugins.common.domainmodel.Namespace;
+import com.emc.storageos.plugins.common.domainmodel.Operation;
+import com.emc.storageos.plugins.metering.smis.SMIPluginException;
+
+/**
+ * Execution of the operations of a namespace by the Executor
+ */
+public class ExecutorTest {
+
+    private static class TestExecutor extends Executor {
+        @Override
+        protected void customizeException(Exception e, Operation operation) throws BaseCollectionException {
+            throw new SMIPluginException(e.getMessage());
+        }
+    }
+
+    /**
+     * Command of an operation executed against one instance
+     */
+    private class TestCommand implements Command {
+        private final Operation operation;
+        private final String instance;
+        private final int index;
+
+        TestCommand(Operation operation, String instance, int index) {
+            this.operation = operation;
+            this.instance = instance;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute() {
+            synchronized (executed) {
+                executed.add(operation.getMessage() + " " + instance);
+            }
+            try {
+                if (actions.containsKey(instance)) {
+                    actions.get(instance).run();
+                }
+                if (failing.contains(instance)) {
+                    throw new IllegalArgumentException(instance + " failed");
+                }
+                List<String> result = results.get(instance);
+                return null == result ? null : new ArrayList<String>(result).iterator();
+            } finally {
+                synchronized (executed) {
+                    finished.add(operation.getMessage() + " " + instance);
+                }
+            }
+        }
+
+        @Override
+        public Object[] retreiveArguments() {
+            return new Object[] { instance };
+        }
+
+        @Override
+        public int getCommandIndex() {
+            return index;
+        }
+    }
+
+    /**
+     * Generator creating a command for each instance an operation is executed against
+     */
+    private class TestGenerator extends CommandGenerator {
+        @Override
+        public List<Command> returnCommandObjects(Operation operation, Map<String, Object> keyMap) {
+            if (failing.contains(operation.getMessage())) {
+                throw new IllegalStateException(operation.getMessage() + " failed");
+            }
+            List<Command> commands = new ArrayList<Command>();
+            for (String instance : instances.get(operation)) {
+                commands.add(new TestCommand(operation, instance, commands.size()));
+            }
+            return commands;
+        }
+    }
+
+    /**
+     * Processor counting the results processed
+     */
+    private static class CountingProcessor extends Processor {
+        private int processed;
+
+        @Override
+        public synchronized void processResult(Operation operation, Object resultObj, Map<String, Object> keyMap) {
+            processed++;
+        }
+    }
+
+    // commands executed, as "<operation> <instance>"
+    private final List<String> executed = new ArrayList<String>();
+    // commands finished, in the same form
+    private final List<String> finished = new ArrayList<String>();
+    // run by the command executed against an instance
+    private final Map<String, Runnable> actions = new HashMap<String, Runnable>();
+    // instances each operation is executed against
+    private final Map<Operation, List<String>> instances = new HashMap<Operation, List<String>>();
+    // instances returned by the probe executed against an instance
+    private final Map<String, List<String>> results = new HashMap<String, List<String>>();
+    private final List<String> failing = new ArrayList<String>();
+
+    private TestExecutor executor;
+    private Map<String, Object> keyMap;
+    private CountingProcessor processor;
+    private Operation operation;
+    private Operation probe;
+    private Namespace namespace;
+
+    private Operation operation(String message, String... operationInstances) {
+        Operation op = new Operation();
+        op.setMessage(message);
+        instances.put(op, new ArrayList<String>(Arrays.asList(operationInstances)));
+        return op;
+    }
+
+    @Before
+    public void setup() {
+        executor = new TestExecutor();
+        executor.setGenerator(new TestGenerator());
+        AccessProfile profile = new AccessProfile();
+        // fingerprints are kept across executors, by system
+        profile.setSystemId(URI.create("urn:storageos:StorageSystem:" + UUID.randomUUID() + ":vdc1"));
+        keyMap = new HashMap<String, Object>();
+        keyMap.put(Constants.ACCESSPROFILE, profile);
+        executor.setKeyMap(keyMap);
+
+        processor = new CountingProcessor();
+        operation = operation("copyTypes", "pool1", "pool2");
+        operation.setProcessor(processor);
+        probe = operation("probe", "capabilities");
+        results.put("capabilities", Arrays.asList("cap1", "cap2"));
+        operation.setProbe(probe);
+        namespace = new Namespace();
+        namespace.setOperations(new ArrayList<Object>(Arrays.asList(operation("system", "array"), operation)));
+    }
+
+    /**
+     * Operation executed against one instance named as the operation, reading and
+     * writing the keyMap keys given
+     */
+    private Operation declared(String message, List<String> inputs, List<String> outputs) {
+        Operation op = operation(message, message);
+        op.setInputs(inputs);
+        op.setOutputs(outputs);
+        return op;
+    }
+
+    private static List<String> keys(String... keys) {
+        return Arrays.asList(keys);
+    }
+
+    private static Set<Integer> indexes(Integer... indexes) {
+        return new HashSet<Integer>(Arrays.asList(indexes));
+    }
+
+    /**
+     * The operations of the HDS metering namespace, with the keys they declare
+     */
+    private List<Operation> meteringOperations() {
+        return Arrays.asList(
+                declared("system", keys("ComputerSystem"), keys("ComputerSystem")),
+                declared("systemStats", keys("ComputerSystem"), keys("Stats")),
+                declared("getStorageProcessor", keys("ComputerSystem"), keys("storageProcessors")),
+                declared("getStoragePorts", keys("storageProcessors"), keys("storagePorts")),
+                declared("frontendPortStats", keys("storagePorts"), keys("Stats")));
+    }
+
+    private List<String> execute() throws BaseCollectionException {
+        executed.clear();
+        finished.clear();
+        executor.execute(namespace);
+        return new ArrayList<String>(executed);
+    }
+
+    /**
+     * An operation is skipped while its probe finds the same instances, in any order
+     */
+    @Test
+    public void testProbeSkipsUnchangedOperation() throws Exception {
+        Assert.assertEquals(Arrays.asList("system array", "probe capabilities", "copyTypes pool1", "copyTypes pool2"),
+                execute());
+        Assert.assertEquals(2, processor.processed);
+
+        Assert.assertEquals(Arrays.asList("system array", "probe capabilities"), execute());
+        Assert.assertEquals(2, processor.processed);
+
+        results.put("capabilities", Arrays.asList("cap2", "cap1"));
+        Assert.assertEquals(2, execute().size());
+
+        // an instance added
+        results.put("capabilities", Arrays.asList("cap1", "cap2", "cap3"));
+        Assert.assertEquals(4, execute().size());
+        Assert.assertEquals(4, processor.processed);
+        Assert.assertEquals(2, execute().size());
+    }
+
+    /**
+     * An operation executed against other instances is not skipped
+     */
+    @Test
+    public void testOperationInstancesChanged() throws Exception {
+        execute();
+        instances.get(operation).add("pool3");
+        Assert.assertEquals(5, execute().size());
+        Assert.assertEquals(2, execute().size());
+    }
+
+    /**
+     * An operation that failed is executed again, even if nothing changed
+     */
+    @Test
+    public void testFailedOperationNotSkipped() throws Exception {
+        failing.add("pool2");
+        Assert.assertEquals(4, execute().size());
+        failing.clear();
+        Assert.assertEquals(4, execute().size());
+        Assert.assertEquals(2, execute().size());
+
+        // the operation is not skipped if its probe fails
+        failing.add("capabilities");
+        Assert.assertEquals(4, execute().size());
+    }
+
+    /**
+     * Operations are not skipped once the fingerprint is older than the probe max age,
+     * nor for an unknown system
+     */
+    @Test
+    public void testProbeMaxAge() throws Exception {
+        executor.setProbeMaxAge(0);
+        execute();
+        Assert.assertEquals(4, execute().size());
+
+        executor.setProbeMaxAge(60000);
+        execute();
+        Assert.assertEquals(2, execute().size());
+
+        keyMap.remove(Constants.ACCESSPROFILE);
+        execute();
+        Assert.assertEquals(4, execute().size());
+    }
+
+    /**
+     * Operations without a probe are always executed
+     */
+    @Test
+    public void testNoProbe() throws Exception {
+        operation.setProbe(null);
+        execute();
+        Assert.assertEquals(Arrays.asList("system array", "copyTypes pool1", "copyTypes pool2"), execute());
+    }
+
+    /**
+     * An operation waits for the earlier operations writing the keys it reads, and for those
+     * writing the keys it writes
+     */
+    @Test
+    public void testDependencies() {
+        List<Set<Integer>> dependencies = Executor.getDependencies(meteringOperations());
+        Assert.assertEquals(Arrays.asList(indexes(), indexes(0), indexes(0), indexes(2), indexes(1, 3)), dependencies);
+    }
+
+    /**
+     * Operations sharing a processor, or writing a key read by an earlier operation, are not
+     * executed at the same time, and operations not declaring their outputs keep their place
+     */
+    @Test
+    public void testConflicts() {
+        Operation first = declared("first", keys("A"), keys("B"));
+        Operation sharedProcessor = declared("sharedProcessor", keys(), keys("C"));
+        first.setProcessor(processor);
+        sharedProcessor.setProcessor(processor);
+        Operation writesRead = declared("writesRead", keys(), keys("A"));
+        Operation independent = declared("independent", keys("D"), keys());
+        Assert.assertEquals(Arrays.asList(indexes(), indexes(0), indexes(0), indexes()),
+                Executor.getDependencies(Arrays.asList(first, sharedProcessor, writesRead, independent)));
+
+        Operation undeclared = declared("undeclared", null, null);
+        Operation last = declared("last", keys(), keys("E"));
+        Assert.assertEquals(Arrays.asList(indexes(), indexes(), indexes(0, 1), indexes(0, 1, 2)),
+                Executor.getDependencies(Arrays.asList(independent, last, undeclared, declared("after", keys(), keys("F")))));
+    }
+
+    /**
+     * Independent operations are executed at the same time, each operation once all the
+     * operations it depends on are finished
+     */
+    @Test
+    public void testParallelExecution() throws Exception {
+        final List<Operation> operations = meteringOperations();
+        final CountDownLatch statsStarted = new CountDownLatch(1);
+        final CountDownLatch processorsStarted = new CountDownLatch(1);
+        final AtomicInteger overlapping = new AtomicInteger();
+        actions.put("systemStats", new Runnable() {
+            @Override
+            public void run() {
+                statsStarted.countDown();
+                await(processorsStarted, overlapping);
+            }
+        });
+        actions.put("getStorageProcessor", new Runnable() {
+            @Override
+            public void run() {
+                processorsStarted.countDown();
+                await(statsStarted, overlapping);
+            }
+        });
+        namespace.setOperations(new ArrayList<Object>(operations));
+        namespace.setParallelism(2);
+
+        execute();
+        Assert.assertEquals(2, overlapping.get());
+        List<Set<Integer>> dependencies = Executor.getDependencies(operations);
+        for (int i = 0; i < operations.size(); i++) {
+            String name = operations.get(i).getMessage();
+            for (int dependency : dependencies.get(i)) {
+                String dependencyName = operations.get(dependency).getMessage();
+                Assert.assertTrue(name + " started after " + dependencyName, finished.contains(dependencyName + " "
+                        + dependencyName));
+            }
+        }
+        Assert.assertEquals("system system", executed.get(0));
+        Assert.assertEquals("frontendPortStats frontendPortStats", executed.get(operations.size() - 1));
+        Assert.assertEquals(operations.size(), executor.getOperationTimings().size());
+    }
+
+    private static void await(CountDownLatch latch, AtomicInteger overlapping) {
+        try {
+            if (latch.await(10, TimeUnit.SECONDS)) {
+                overlapping.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * No more operations are executed at the same time than the parallelism of the namespace
+     * and the thread pool size allow
+     */
+    @Test
+    public void testParallelismLimits() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Object> operations = new ArrayList<Object>();
+        for (int i = 0; i < 6; i++) {
+            operations.add(declared("op" + i, keys(), keys("key" + i)));
+            actions.put("op" + i, new Runnable() {
+                @Override
+                public void run() {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+            });
+        }
+        namespace.setOperations(operations);
+        namespace.setParallelism(6);
+        executor.setThreadPoolSize(2);
+        Assert.assertEquals(6, execute().size());
+        Assert.assertTrue(maxRunning.get() <= 2);
+
+        maxRunning.set(0);
+        executor.setThreadPoolSize(10);
+        namespace.setParallelism(3);
+        Assert.assertEquals(6, execute().size());
+        Assert.assertTrue(maxRunning.get() <= 3);
+    }
+
+    /**
+     * The operations depending on a failed operation are not executed, and its error is thrown
+     */
+    @Test
+    public void testParallelFailure() throws Exception {
+        List<Object> operations = new ArrayList<Object>();
+        operations.add(declared("a", keys(), keys("A")));
+        operations.add(declared("b", keys("A"), keys("B")));
+        operations.add(declared("c", keys(), keys("C")));
+        namespace.setOperations(operations);
+        namespace.setParallelism(2);
+        failing.add("a");
+        try {
+            execute();
+            Assert.fail("the failure of a should be thrown");
+        } catch (SMIPluginException e) {
+            Assert.assertTrue(e.getMessage().contains("a failed"));
+        }
+        Assert.assertFalse(executed.contains("b b"));
+    }
+}
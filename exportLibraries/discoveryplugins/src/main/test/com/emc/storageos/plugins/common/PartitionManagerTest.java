@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.plugins.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.Volume;
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+/**
+ * Updates of discovered objects skipping the objects stored with the same values
+ */
+public class PartitionManagerTest {
+
+    private PartitionManager partitionManager;
+    private DbClient dbClient;
+    // objects as last written, by id
+    private final Map<URI, DataObject> stored = new HashMap<URI, DataObject>();
+    // ids of the objects of each update call
+    private final List<List<URI>> updates = new ArrayList<List<URI>>();
+    private int queries;
+    private boolean failing;
+
+    @Before
+    public void setup() {
+        partitionManager = new PartitionManager();
+        dbClient = (DbClient) Proxy.newProxyInstance(DbClient.class.getClassLoader(), new Class<?>[] { DbClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("queryObject") && args.length == 2 && args[1] instanceof Collection) {
+                            queries++;
+                            List<DataObject> objects = new ArrayList<DataObject>();
+                            for (Object id : (Collection<?>) args[1]) {
+                                if (stored.containsKey(id)) {
+                                    objects.add(stored.get(id));
+                                }
+                            }
+                            return objects;
+                        }
+                        if (!method.getName().equals("updateObject")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        if (failing) {
+                            throw DatabaseException.retryables.connectionFailed(new Exception("down"));
+                        }
+                        List<URI> ids = new ArrayList<URI>();
+                        for (Object object : (Collection<?>) args[0]) {
+                            ids.add(((DataObject) object).getId());
+                            stored.put(((DataObject) object).getId(), (DataObject) object);
+                        }
+                        updates.add(ids);
+                        return null;
+                    }
+                });
+    }
+
+    private static Volume volume(int i, long capacity) {
+        Volume volume = new Volume();
+        volume.setId(URI.create("urn:storageos:Volume:" + i + ":vdc1"));
+        volume.setNativeId(String.format("%05d", i));
+        volume.setProvisionedCapacity(capacity);
+        return volume;
+    }
+
+    private static List<URI> ids(Volume... volumes) {
+        List<URI> ids = new ArrayList<URI>();
+        for (Volume volume : volumes) {
+            ids.add(volume.getId());
+        }
+        return ids;
+    }
+
+    private List<URI> update(Volume... volumes) {
+        updates.clear();
+        partitionManager.updateInBatches(Arrays.asList(volumes), 100, dbClient, "Volume");
+        return updates.isEmpty() ? Collections.<URI> emptyList() : updates.get(0);
+    }
+
+    /**
+     * Only the objects with values other than the stored ones are updated
+     */
+    @Test
+    public void testUnchangedSkipped() {
+        Assert.assertEquals(ids(volume(1, 10), volume(2, 20)), update(volume(1, 10), volume(2, 20)));
+        Assert.assertEquals(Collections.emptyList(), update(volume(1, 10), volume(2, 20)));
+
+        Assert.assertEquals(ids(volume(2, 25), volume(3, 30)), update(volume(1, 10), volume(2, 25), volume(3, 30)));
+        Assert.assertEquals(Collections.emptyList(), update(volume(1, 10), volume(2, 25), volume(3, 30)));
+
+        // a value set in addition
+        Volume volume = volume(1, 10);
+        volume.setLabel("vol1");
+        Assert.assertEquals(ids(volume), update(volume));
+    }
+
+    /**
+     * An object changed by another path since discovery last wrote it is written again
+     */
+    @Test
+    public void testChangedElsewhere() {
+        update(volume(1, 10), volume(2, 20));
+        stored.put(volume(1, 10).getId(), volume(1, 15));
+
+        Assert.assertEquals(ids(volume(1, 10)), update(volume(1, 10), volume(2, 20)));
+    }
+
+    /**
+     * The objects of a failed update are written again by the next update
+     */
+    @Test
+    public void testFailedUpdate() {
+        update(volume(1, 10), volume(2, 20));
+        failing = true;
+        update(volume(1, 11), volume(2, 20));
+        failing = false;
+
+        Assert.assertEquals(ids(volume(1, 11)), update(volume(1, 11), volume(2, 20)));
+    }
+
+    /**
+     * All objects are written when skipping is turned off
+     */
+    @Test
+    public void testSkipUnchangedOff() {
+        partitionManager.setSkipUnchanged(false);
+        update(volume(1, 10), volume(2, 20));
+        Assert.assertEquals(ids(volume(1, 10), volume(2, 20)), update(volume(1, 10), volume(2, 20)));
+        Assert.assertEquals(0, queries);
+    }
+
+    /**
+     * With fingerprints enabled, the objects written with the same values are skipped without reading them
+     */
+    @Test
+    public void testFingerprints() {
+        partitionManager.setFingerprintMaxAge(60000);
+        update(volume(1, 10), volume(2, 20));
+        queries = 0;
+        Assert.assertEquals(Collections.emptyList(), update(volume(1, 10), volume(2, 20)));
+        Assert.assertEquals(0, queries);
+
+        // the changed object is still compared with the stored one
+        Assert.assertEquals(ids(volume(2, 25)), update(volume(1, 10), volume(2, 25)));
+        Assert.assertEquals(1, queries);
+    }
+
+    /**
+     * The objects whose fingerprint was dropped to keep the maximum number of fingerprints are read
+     */
+    @Test
+    public void testMaxFingerprints() {
+        partitionManager.setFingerprintMaxAge(60000);
+        partitionManager.setMaxFingerprints(1);
+        update(volume(1, 10));
+        update(volume(2, 20));
+        queries = 0;
+        Assert.assertEquals(Collections.emptyList(), update(volume(1, 10)));
+        Assert.assertEquals(1, queries);
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.commons.httpclient.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.apache.ApacheHttpClient;
@@ -45,6 +46,7 @@ public class ECSApiFactory {
     private ApacheHttpClientHandler _clientHandler;
     private ConcurrentMap<String, ECSApi> _clientMap;
     private MultiThreadedHttpConnectionManager _connectionManager;
+    private PooledHttpTransport _httpTransport;
 
     /**
      * Maximum number of outstanding connections
@@ -89,32 +91,47 @@ public class ECSApiFactory {
         this.connManagerTimeout = connManagerTimeout;
     }
 
+    /**
+     * Shared HTTP transport to use instead of connections of this factory's own
+     *
+     * @param httpTransport
+     */
+    public void setHttpTransport(PooledHttpTransport httpTransport) {
+        _httpTransport = httpTransport;
+    }
+
     /**
      * Initialize
      */
     public void init() {
         _log.info(" ECSApiFactory:init ECSApi factory initialization");
         _clientMap = new ConcurrentHashMap<String, ECSApi>();
-
-        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
-        params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
-        params.setMaxTotalConnections(_maxConn);
-        params.setTcpNoDelay(true);
-        params.setConnectionTimeout(_connTimeout);
-        params.setSoTimeout(_socketConnTimeout);
-
-        _connectionManager = new MultiThreadedHttpConnectionManager();
-        _connectionManager.setParams(params);
-        _connectionManager.closeIdleConnections(0);  // close idle connections immediately
-
-        HttpClient client = new HttpClient(_connectionManager);
-        client.getParams().setConnectionManagerTimeout(connManagerTimeout);
-        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
-            @Override
-            public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
-                return false;
-            }
-        });
+        HttpClient client;
+        if (_httpTransport != null) {
+            _log.info(" ECSApiFactory:init using the shared HTTP transport");
+            _httpTransport.logOverriddenSettings("ECSApiFactory", _maxConn, _maxConnPerHost, _connTimeout);
+            client = _httpTransport.createHttpClient(_socketConnTimeout, connManagerTimeout);
+        } else {
+            HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+            params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
+            params.setMaxTotalConnections(_maxConn);
+            params.setTcpNoDelay(true);
+            params.setConnectionTimeout(_connTimeout);
+            params.setSoTimeout(_socketConnTimeout);
+
+            _connectionManager = new MultiThreadedHttpConnectionManager();
+            _connectionManager.setParams(params);
+            _connectionManager.closeIdleConnections(0);  // close idle connections immediately
+
+            client = new HttpClient(_connectionManager);
+            client.getParams().setConnectionManagerTimeout(connManagerTimeout);
+            client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
+                @Override
+                public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
+                    return false;
+                }
+            });
+        }
         _clientHandler = new ApacheHttpClientHandler(client);
 
         Protocol.registerProtocol("https", new Protocol("https", new NonValidatingSocketFactory(), 4443));
@@ -124,7 +141,14 @@ public class ECSApiFactory {
      * shutdown http connection manager.
      */
     protected void shutdown() {
-        _connectionManager.shutdown();
+        // the shared HTTP transport is shut down by its owner
+        if (_connectionManager != null) {
+            _connectionManager.shutdown();
+        }
+    }
+
+    private Client createJerseyClient() {
+        return _httpTransport != null ? _httpTransport.createClient(_clientHandler) : new ApacheHttpClient(_clientHandler);
     }
 
     /**
@@ -136,7 +160,7 @@ public class ECSApiFactory {
     public ECSApi getRESTClient(URI endpoint) {
         ECSApi ecsApi = _clientMap.get(endpoint.toString() + ":" + ":");
         if (ecsApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             RESTClient restClient = new RESTClient(jerseyClient);
             ecsApi = new ECSApi(endpoint, restClient);
             _clientMap.putIfAbsent(endpoint.toString() + ":" + ":", ecsApi);
@@ -153,7 +177,7 @@ public class ECSApiFactory {
     public ECSApi getRESTClient(URI endpoint, String username, String password) {
         ECSApi ecsApi = _clientMap.get(endpoint.toString() + ":" + username + ":" + password);
         if (ecsApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             jerseyClient.addFilter(new HTTPBasicAuthFilter(username, password));
             RESTClient restClient = new RESTClient(jerseyClient);
             ecsApi = new ECSApi(endpoint, restClient);
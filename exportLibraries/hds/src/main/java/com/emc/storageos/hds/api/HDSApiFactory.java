@@ -17,6 +17,7 @@ import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.httpclient.protocol.Protocol;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.client.apache.ApacheHttpClient;
 import com.sun.jersey.client.apache.ApacheHttpClientHandler;
@@ -60,6 +61,9 @@ public class HDSApiFactory {
     // The root HTTP client handler.
     private ApacheHttpClientHandler _clientHandler;
 
+    // The shared HTTP transport, when used instead of the connections of this factory.
+    private PooledHttpTransport _httpTransport;
+
     /**
      * Setter for the maximum number of outstanding connections.
      * 
@@ -101,37 +105,53 @@ public class HDSApiFactory {
         this.socketConnectionTimeoutMs = socketConnectionTimeoutMs;
     }
 
+    /**
+     * Setter for the shared HTTP transport to use instead of the connections
+     * of this factory.
+     * 
+     * @param httpTransport The shared HTTP transport.
+     */
+    public void setHttpTransport(PooledHttpTransport httpTransport) {
+        _httpTransport = httpTransport;
+    }
+
     /**
      * Initialize HTTP client
      */
     public void init() {
         // Create the VPlex API client map.
         _clientMap = new ConcurrentHashMap<String, HDSApiClient>();
-
-        // Setup the connection parameters.
-        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
-        params.setMaxTotalConnections(_maxConn);
-        params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
-        params.setConnectionTimeout(_connTimeoutMs);
-        params.setTcpNoDelay(true);
-
-        // Create the HTTP connection manager for managing the set of HTTP
-        // connections.
-        MultiThreadedHttpConnectionManager mgr = new MultiThreadedHttpConnectionManager();
-        mgr.setParams(params);
-
-        // Create the HTTP client and set the handler for determining if an
-        // HttpMethod should be retried after a recoverable exception during
-        // execution.
-        HttpClient client = new HttpClient(mgr);
-        client.getParams().setConnectionManagerTimeout(connManagerTimeout);
-        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
-                new HttpMethodRetryHandler() {
-                    @Override
-                    public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
-                        return false;
-                    }
-                });
+        HttpClient client;
+        if (_httpTransport != null) {
+            // Use the shared connections, with the timeouts of this factory.
+            _httpTransport.logOverriddenSettings("HDSApiFactory", _maxConn, _maxConnPerHost, _connTimeoutMs);
+            client = _httpTransport.createHttpClient(socketConnectionTimeoutMs, connManagerTimeout);
+        } else {
+            // Setup the connection parameters.
+            HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+            params.setMaxTotalConnections(_maxConn);
+            params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
+            params.setConnectionTimeout(_connTimeoutMs);
+            params.setTcpNoDelay(true);
+
+            // Create the HTTP connection manager for managing the set of HTTP
+            // connections.
+            MultiThreadedHttpConnectionManager mgr = new MultiThreadedHttpConnectionManager();
+            mgr.setParams(params);
+
+            // Create the HTTP client and set the handler for determining if an
+            // HttpMethod should be retried after a recoverable exception during
+            // execution.
+            client = new HttpClient(mgr);
+            client.getParams().setConnectionManagerTimeout(connManagerTimeout);
+            client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
+                    new HttpMethodRetryHandler() {
+                        @Override
+                        public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
+                            return false;
+                        }
+                    });
+        }
 
         // Create the client handler.
         _clientHandler = new ApacheHttpClientHandler(client);
@@ -164,7 +184,8 @@ public class HDSApiFactory {
         String clientKey = clientKeyBuilder.toString();
         HDSApiClient hdsApiClient = _clientMap.get(clientKey);
         if (hdsApiClient == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = _httpTransport != null ? _httpTransport.createClient(_clientHandler)
+                    : new ApacheHttpClient(_clientHandler);
             RESTClient restClient = new RESTClient(jerseyClient, username, password);
             hdsApiClient = new HDSApiClient(endpoint, restClient);
             _clientMap.putIfAbsent(clientKey, hdsApiClient);
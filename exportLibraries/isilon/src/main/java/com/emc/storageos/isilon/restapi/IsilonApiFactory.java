@@ -20,6 +20,7 @@ import org.apache.commons.httpclient.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.apache.ApacheHttpClient;
@@ -45,6 +46,7 @@ public class IsilonApiFactory {
     private ApacheHttpClientHandler _clientHandler;
     private ConcurrentMap<String, IsilonApi> _clientMap;
     private MultiThreadedHttpConnectionManager _connectionManager;
+    private PooledHttpTransport _httpTransport;
 
     /**
      * Maximum number of outstanding connections
@@ -89,31 +91,46 @@ public class IsilonApiFactory {
         this.connManagerTimeout = connManagerTimeout;
     }
 
+    /**
+     * Shared HTTP transport to use instead of connections of this factory's own
+     * 
+     * @param httpTransport
+     */
+    public void setHttpTransport(PooledHttpTransport httpTransport) {
+        _httpTransport = httpTransport;
+    }
+
     /**
      * Initialize HTTP client
      */
     public void init() {
         _clientMap = new ConcurrentHashMap<String, IsilonApi>();
-
-        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
-        params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
-        params.setMaxTotalConnections(_maxConn);
-        params.setTcpNoDelay(true);
-        params.setConnectionTimeout(_connTimeout);
-        params.setSoTimeout(_socketConnTimeout);
-
-        _connectionManager = new MultiThreadedHttpConnectionManager();
-        _connectionManager.setParams(params);
-        _connectionManager.closeIdleConnections(0);  // close idle connections immediately
-
-        HttpClient client = new HttpClient(_connectionManager);
-        client.getParams().setConnectionManagerTimeout(connManagerTimeout);
-        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
-            @Override
-            public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
-                return false;
-            }
-        });
+        HttpClient client;
+        if (_httpTransport != null) {
+            _log.info("Using the shared HTTP transport");
+            _httpTransport.logOverriddenSettings("IsilonApiFactory", _maxConn, _maxConnPerHost, _connTimeout);
+            client = _httpTransport.createHttpClient(_socketConnTimeout, connManagerTimeout);
+        } else {
+            HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+            params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
+            params.setMaxTotalConnections(_maxConn);
+            params.setTcpNoDelay(true);
+            params.setConnectionTimeout(_connTimeout);
+            params.setSoTimeout(_socketConnTimeout);
+
+            _connectionManager = new MultiThreadedHttpConnectionManager();
+            _connectionManager.setParams(params);
+            _connectionManager.closeIdleConnections(0);  // close idle connections immediately
+
+            client = new HttpClient(_connectionManager);
+            client.getParams().setConnectionManagerTimeout(connManagerTimeout);
+            client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
+                @Override
+                public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
+                    return false;
+                }
+            });
+        }
         _clientHandler = new ApacheHttpClientHandler(client);
 
         Protocol.registerProtocol("https", new Protocol("https", new NonValidatingSocketFactory(), 443));
@@ -123,7 +140,14 @@ public class IsilonApiFactory {
      * shutdown http connection manager.
      */
     protected void shutdown() {
-        _connectionManager.shutdown();
+        // the shared HTTP transport is shut down by its owner
+        if (_connectionManager != null) {
+            _connectionManager.shutdown();
+        }
+    }
+
+    private Client createJerseyClient() {
+        return _httpTransport != null ? _httpTransport.createClient(_clientHandler) : new ApacheHttpClient(_clientHandler);
     }
 
     /**
@@ -135,7 +159,7 @@ public class IsilonApiFactory {
     public IsilonApi getRESTClient(URI endpoint) {
         IsilonApi isilonApi = _clientMap.get(endpoint.toString() + ":" + ":");
         if (isilonApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             RESTClient restClient = new RESTClient(jerseyClient);
             isilonApi = new IsilonApi(endpoint, restClient);
             _clientMap.putIfAbsent(endpoint.toString() + ":" + ":", isilonApi);
@@ -152,7 +176,7 @@ public class IsilonApiFactory {
     public IsilonApi getRESTClient(URI endpoint, String username, String password) {
         IsilonApi isilonApi = _clientMap.get(endpoint.toString() + ":" + username + ":" + password);
         if (isilonApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             jerseyClient.addFilter(new HTTPBasicAuthFilter(username, password));
             RESTClient restClient = new RESTClient(jerseyClient);
             isilonApi = new IsilonApi(endpoint, restClient);
@@ -8,6 +8,7 @@ package com.emc.storageos.vnxe;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.emc.storageos.vnxe.requests.KHClient;
 
 /*
@@ -16,6 +17,12 @@ import com.emc.storageos.vnxe.requests.KHClient;
 public class VNXeApiClientFactory {
     // client map
     private ConcurrentMap<String, VNXeApiClient> clientMap;
+    // shared HTTP transport, null for connections of each client's own
+    private PooledHttpTransport httpTransport;
+
+    public void setHttpTransport(PooledHttpTransport httpTransport) {
+        this.httpTransport = httpTransport;
+    }
 
     public void init() {
         clientMap = new ConcurrentHashMap<String, VNXeApiClient>();
@@ -38,7 +45,7 @@ public class VNXeApiClientFactory {
         if (clientMap.get(key) != null) {
             apiClient = clientMap.get(key);
         } else {
-            KHClient client = new KHClient(host, port, user, password);
+            KHClient client = new KHClient(host, port, user, password, false, httpTransport);
             apiClient = new VNXeApiClient(client);
             clientMap.putIfAbsent(key, apiClient);
         }
@@ -59,7 +66,7 @@ public class VNXeApiClientFactory {
         if (clientMap.get(key) != null) {
             apiClient = clientMap.get(key);
         } else {
-            KHClient client = new KHClient(host, port, user, password, true);
+            KHClient client = new KHClient(host, port, user, password, true, httpTransport);
             apiClient = new VNXeApiClient(client);
             clientMap.putIfAbsent(key, apiClient);
         }
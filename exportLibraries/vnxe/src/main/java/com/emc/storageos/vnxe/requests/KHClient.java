@@ -16,6 +16,7 @@ import org.apache.commons.httpclient.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.filter.LoggingFilter;
 import com.sun.jersey.client.apache.ApacheHttpClient;
@@ -37,12 +38,21 @@ public class KHClient {
     private String _emcCsrfToken = null;
 
     public KHClient(String host, int port, String username, String password) {
+        this(host, port, username, password, false, null);
+    }
 
+    /**
+     * @param httpTransport shared HTTP transport, null for connections of this client's own
+     */
+    public KHClient(String host, int port, String username, String password, boolean isUnity,
+            PooledHttpTransport httpTransport) {
+        this.isUnity = isUnity;
         DefaultApacheHttpClientConfig config = new DefaultApacheHttpClientConfig();
         config.getProperties().put(ApacheHttpClientConfig.PROPERTY_FOLLOW_REDIRECTS, Boolean.FALSE);
         config.getProperties().put(ApacheHttpClientConfig.PROPERTY_HANDLE_COOKIES, Boolean.TRUE);
         config.getState().setCredentials(null, host, port, username, password);
-        _client = ApacheHttpClient.create(config);
+        // the credentials and cookies stay with this client when the connections are shared
+        _client = httpTransport != null ? httpTransport.createClient(config) : ApacheHttpClient.create(config);
         //_client.addFilter(new LoggingFilter(System.out));
         Protocol.registerProtocol("https", new Protocol("https", new NonValidatingSocketFactory(), port));
 
@@ -61,8 +71,7 @@ public class KHClient {
     }
    
     public KHClient(String host, int port, String username, String password, boolean isUnity) {
-        this(host, port, username, password);
-        this.isUnity = isUnity;
+        this(host, port, username, password, isUnity, null);
     }
     public boolean isUnity(){
         return this.isUnity;
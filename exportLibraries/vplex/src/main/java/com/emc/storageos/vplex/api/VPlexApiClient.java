@@ -77,6 +77,9 @@ public class VPlexApiClient {
     // A reference to the consistency group manager manager.
     private VPlexApiConsistencyGroupManager _cgMgr;
 
+    // The snapshot of the exports and device structure of the VPlex.
+    private VPlexInventorySnapshot _inventory;
+
     // The ID of the VPLEX session to pass in requests to the
     // VPLEX management server associated with this client. Is
     // set on the first request and updated on every response
@@ -97,6 +100,7 @@ public class VPlexApiClient {
         _exportMgr = new VPlexApiExportManager(this);
         _migrationMgr = new VPlexApiMigrationManager(this);
         _cgMgr = new VPlexApiConsistencyGroupManager(this);
+        _inventory = new VPlexInventorySnapshot(_discoveryMgr);
     }
 
     /**
@@ -1234,15 +1238,20 @@ public class VPlexApiClient {
      * 
      * @param clusterName indicates which VPlex cluster to perform the operation on
      * @return a map of port WWNs to initiator names. Note the keys (WWNs) have
-     *         no colons.
+     *         no colons. The map comes from the inventory snapshot, so an initiator
+     *         registered since the snapshot was loaded may be missing, call
+     *         invalidateInventory() first to read it from the VPlex.
      */
     public Map<String, String> getInitiatorWwnToNameMap(String clusterName) {
-        return _discoveryMgr.getInitiatorWwnToNameMap(clusterName);
+        return _inventory.getInitiatorWwnToNameMap(clusterName);
     }
 
     /**
      * Returns a list of VPlexStorageViewInfo objects representing
-     * storage views that contain the given initiator names.
+     * storage views that contain the given initiator names. The storage
+     * views are read from the VPlex, so that the decision to reuse or to
+     * create a storage view is not made on a stale snapshot, and they update
+     * the inventory snapshot. They must not be modified.
      * 
      * @param clusterName the VPLEX cluster to look in
      * @param initiatorNames the initiator names to look for
@@ -1250,10 +1259,18 @@ public class VPlexApiClient {
      */
     public List<VPlexStorageViewInfo> getStorageViewsContainingInitiators(
             String clusterName, List<String> initiatorNames) {
-        return _discoveryMgr.getStorageViewsContainingInitiators(clusterName,
+        return _inventory.getStorageViewsContainingInitiators(clusterName,
                 initiatorNames);
     }
 
+    /**
+     * Drops the inventory snapshot of the VPlex, for when the VPlex is known
+     * to have been changed other than through this client.
+     */
+    public void invalidateInventory() {
+        _inventory.invalidate();
+    }
+
     /**
      * Finds the cluster name for a given cluster id.
      * 
@@ -1403,7 +1420,11 @@ public class VPlexApiClient {
      * @return The client response.
      */
     ClientResponse post(URI resourceURI, String postData, String jsonFormat) {
+        // Dropped before and after the command, so that a snapshot loaded
+        // while the command runs is not used.
+        _inventory.invalidateForCommand(resourceURI);
         ClientResponse response = _client.post(resourceURI, postData, _vplexSessionId, jsonFormat);
+        _inventory.invalidateForCommand(resourceURI);
         updateVPLEXSessionId(response);
         return response;
     }
@@ -1428,7 +1449,9 @@ public class VPlexApiClient {
      * @return The client response.
      */
     ClientResponse put(URI resourceURI, String jsonFormat) {
+        _inventory.invalidate();
         ClientResponse response = _client.put(resourceURI, _vplexSessionId, jsonFormat);
+        _inventory.invalidate();
         updateVPLEXSessionId(response);
         return response;
     }
@@ -1480,11 +1503,14 @@ public class VPlexApiClient {
             int taskStatus = taskResponse.getStatus();
             taskResponse.close();
             if (taskStatus == VPlexApiConstants.SUCCESS_STATUS) {
-                // Task completed successfully
+                // Task completed successfully, the inventory snapshot
+                // may have been loaded while the command was running.
                 s_logger.info("Task {} completed successfully", taskResourceStr);
+                _inventory.invalidate();
                 return responseStr;
             } else if (taskStatus != VPlexApiConstants.TASK_PENDING_STATUS) {
                 // Task failed.
+                _inventory.invalidate();
                 throw new VPlexApiException(String.format(
                         "Task %s did not complete successfully", taskResourceStr));
             } else {
@@ -1637,8 +1663,12 @@ public class VPlexApiClient {
         s_logger.info("Request to find device name for storage volume {} on VPLEX at {}",
                 volumeNativeId, _baseURI);
 
-        String deviceName = getDiscoveryManager()
-                .getDeviceForStorageVolume(volumeNativeId, wwn, backendArraySerialNum);
+        String deviceName = _inventory.getDeviceForStorageVolume(volumeNativeId, wwn, backendArraySerialNum);
+        if (deviceName == null) {
+            s_logger.info("Storage volume {} not found in the inventory snapshot, asking the VPLEX", volumeNativeId);
+            deviceName = getDiscoveryManager()
+                    .getDeviceForStorageVolume(volumeNativeId, wwn, backendArraySerialNum);
+        }
 
         return deviceName;
     }
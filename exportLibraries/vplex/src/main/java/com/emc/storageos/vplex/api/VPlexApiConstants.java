@@ -310,6 +310,10 @@ public class VPlexApiConstants {
     public static final int FIND_NEW_ARTIFACT_MAX_TRIES = 60;
     public static final int FIND_NEW_ARTIFACT_SLEEP_TIME_MS = 10000;
 
+    // How long the inventory snapshot of a VPLEX is used before it is loaded again,
+    // in case the VPLEX was changed other than through the API client.
+    public static final long INVENTORY_SNAPSHOT_MAX_AGE_MS = 60000;
+
     // VPLEX API error response fragment used to check if
     // the failure were due to duplicate storage view
     public static final String DUPLICATE_STORAGE_VIEW_ERROR_FRAGMENT = "failed with Status 537: Duplicate view";
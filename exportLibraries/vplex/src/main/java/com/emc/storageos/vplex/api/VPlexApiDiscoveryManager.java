@@ -2107,6 +2107,21 @@ public class VPlexApiDiscoveryManager {
      * @throws VPlexApiException
      */
     List<VPlexStorageViewInfo> getStorageViewsForCluster(String clusterName) throws VPlexApiException {
+        return getStorageViewsForCluster(clusterName, null);
+    }
+
+    /**
+     * Gets all the detailed Storage View infos for the give VPLEX cluster.
+     * 
+     * @param clusterName name of the VPLEX cluster to look at, or you can send
+     *            a wildcard (*) to get info from both clusters.
+     * @param initiatorNameToWwnMap map of the initiator names to WWNs of the cluster,
+     *            or null to get them from the VPLEX.
+     * @return list of all Storage View infos for a given VPLEX instance
+     * @throws VPlexApiException
+     */
+    List<VPlexStorageViewInfo> getStorageViewsForCluster(String clusterName,
+            Map<String, String> initiatorNameToWwnMap) throws VPlexApiException {
 
         s_logger.info("Getting all storage view information from VPLEX at " + _vplexApiClient.getBaseURI().toString());
         StringBuilder uriBuilder = new StringBuilder();
@@ -2128,7 +2143,8 @@ public class VPlexApiDiscoveryManager {
                                 VPlexStorageViewInfo.class);
 
                 // update storage views with wwpn info
-                Map<String, String> initInfoMap = getInitiatorNameToWwnMap(clusterName);
+                Map<String, String> initInfoMap = initiatorNameToWwnMap != null ? initiatorNameToWwnMap
+                        : getInitiatorNameToWwnMap(clusterName);
                 for (VPlexStorageViewInfo sv : storageViews) {
                     for (String initName : sv.getInitiators()) {
                         String initWwn = initInfoMap.get(initName);
@@ -3319,6 +3335,36 @@ public class VPlexApiDiscoveryManager {
         return result;
     }
 
+    /**
+     * Gets the resources of a context path, which may include wildcards to get
+     * the resources of many contexts with a single request.
+     * 
+     * @param contextPath the context path, e.g. the extents of all clusters
+     *            with a wildcard for the cluster and extent names
+     * @param clazz the VPlexResourceInfo resource object class
+     * @return the resources, or an empty list when the context is not found
+     * @throws VPlexApiException When an error occurs getting the resources.
+     */
+    <T extends VPlexResourceInfo> List<T> getResourcesForContext(String contextPath, Class<T> clazz)
+            throws VPlexApiException {
+        URI requestURI = _vplexApiClient.getBaseURI().resolve(URI.create(contextPath));
+        s_logger.info("Resources request URI is {}", requestURI.toString());
+        ClientResponse response = _vplexApiClient.get(requestURI, VPlexApiConstants.ACCEPT_JSON_FORMAT_1);
+        String responseStr = response.getEntity(String.class);
+        int status = response.getStatus();
+        response.close();
+
+        if (status == VPlexApiConstants.SUCCESS_STATUS) {
+            return VPlexApiUtils.getResourcesFromResponseContext(contextPath, responseStr, clazz);
+        } else if (status == VPlexApiConstants.NOT_FOUND_STATUS) {
+            // return an empty list rather than an error
+            s_logger.info("VPLEX returned a 404 Not Found for this context, returning an empty list instead.");
+            return new ArrayList<T>();
+        } else {
+            throw VPlexApiException.exceptions.failedGettingResourcesForContext(contextPath, String.valueOf(status));
+        }
+    }
+
     /**
      * Attempts to refresh the given VPLEX contexts.
      * 
@@ -800,4 +800,7 @@ public interface VPlexApiExceptions {
 
     @DeclareServiceCode(ServiceCode.VPLEX_API_ERROR)
     public VPlexApiException vplexVolumeExpansionBlockCountNotUpdated(final String volumeName);
+
+    @DeclareServiceCode(ServiceCode.VPLEX_API_ERROR)
+    public VPlexApiException failedGettingResourcesForContext(final String contextPath, final String status);
 }
@@ -19,6 +19,7 @@ import org.apache.commons.httpclient.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.restutil.PooledHttpTransport;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.client.apache.ApacheHttpClient;
 import com.sun.jersey.client.apache.ApacheHttpClientHandler;
@@ -68,6 +69,12 @@ public class VPlexApiFactory {
     // The root HTTP client handler.
     private ApacheHttpClientHandler _clientHandler;
 
+    // The shared HTTP transport, when used instead of the connections of this factory.
+    private PooledHttpTransport _httpTransport;
+
+    // The client handler using the shared HTTP transport.
+    private ApacheHttpClientHandler _sharedClientHandler;
+
     // The singleton VPLEX client factory.
     private static VPlexApiFactory _instance = null;
 
@@ -137,6 +144,18 @@ public class VPlexApiFactory {
         this.socketConnectionTimeoutMs = socketConnectionTimeoutMs;
     }
     
+    /**
+     * Setter for the shared HTTP transport to use instead of the connections
+     * of this factory. Clients created before are dropped.
+     * 
+     * @param httpTransport The shared HTTP transport.
+     */
+    public synchronized void setHttpTransport(PooledHttpTransport httpTransport) {
+        _httpTransport = httpTransport;
+        _sharedClientHandler = null;
+        _clientMap.clear();
+    }
+
     /**
      * Initialize HTTP client
      */
@@ -205,11 +224,31 @@ public class VPlexApiFactory {
         VPlexApiClient vplexApiClient = _clientMap.get(clientKey);
         if (vplexApiClient == null) {
             s_logger.info("Creating new VPLEX client for the management server {}", endpoint);
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = _httpTransport != null ? _httpTransport.createClient(getSharedClientHandler())
+                    : new ApacheHttpClient(_clientHandler);
             RESTClient restClient = new RESTClient(jerseyClient, username, password);
             vplexApiClient = new VPlexApiClient(endpoint, restClient);
             _clientMap.putIfAbsent(clientKey, vplexApiClient);
         }
         return vplexApiClient;
     }
+
+    /**
+     * Get the client handler using the shared HTTP transport with the timeouts
+     * of this factory. It is created when first used, as the settings of the
+     * singleton factory are set after its initialization.
+     * 
+     * @return The client handler using the shared HTTP transport.
+     */
+    private ApacheHttpClientHandler getSharedClientHandler() {
+        if (_sharedClientHandler == null) {
+            _httpTransport.logOverriddenSettings("VPlexApiFactory", _maxConn, _maxConnPerHost, _connTimeoutMs);
+            // The socket connection timeout is left at the connection timeout
+            // when not configured, the default socket timeout applies then.
+            int socketTimeoutMs = Math.max(_socketTimeoutMs, socketConnectionTimeoutMs);
+            _sharedClientHandler = new ApacheHttpClientHandler(
+                    _httpTransport.createHttpClient(socketTimeoutMs, connManagerTimeout));
+        }
+        return _sharedClientHandler;
+    }
 }
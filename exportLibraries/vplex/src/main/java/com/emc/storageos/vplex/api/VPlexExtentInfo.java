@@ -15,6 +15,9 @@ public class VPlexExtentInfo extends VPlexResourceInfo {
     // The cluster id.
     private String clusterId = null;
 
+    // The name of the storage volume of the extent.
+    private String storageVolume = null;
+
     /**
      * Getter for the storage volume info for the extent.
      * 
@@ -51,6 +54,24 @@ public class VPlexExtentInfo extends VPlexResourceInfo {
         clusterId = id;
     }
 
+    /**
+     * Getter for the name of the storage volume of the extent.
+     * 
+     * @return The name of the storage volume of the extent.
+     */
+    public String getStorageVolume() {
+        return storageVolume;
+    }
+
+    /**
+     * Setter for the name of the storage volume of the extent.
+     * 
+     * @param volumeName The name of the storage volume of the extent.
+     */
+    public void setStorageVolume(String volumeName) {
+        storageVolume = volumeName;
+    }
+
     /**
      * {@inheritDoc}
      */
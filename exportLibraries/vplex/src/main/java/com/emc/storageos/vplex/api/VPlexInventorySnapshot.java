@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.vplex.api;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of the exports and the device structure of a VPlex, loaded with
+ * wildcard requests and indexed in memory, so that the lookups repeated by the
+ * steps of an export or ingestion workflow do not walk the VPlex contexts with
+ * many small requests on every call.
+ *
+ * The snapshot belongs to the API client of the VPlex, which the
+ * {@link VPlexApiFactory} shares across the steps of the workflows. Each part of
+ * the snapshot is loaded the first time it is looked up. The snapshot is dropped
+ * whenever the client sends a request which may change the VPlex configuration,
+ * and a part older than the maximum age is loaded again, as the VPlex may also
+ * be changed from outside ViPR or by the client of another controller node.
+ * For that reason the storage views looked up to decide whether to reuse an
+ * existing storage view or to create one are always read from the VPlex.
+ *
+ * The storage views returned are shared by the callers and must not be modified.
+ */
+public class VPlexInventorySnapshot {
+
+    // Logger reference.
+    private static Logger s_logger = LoggerFactory.getLogger(VPlexInventorySnapshot.class);
+
+    // The paths of the commands which do not change the VPlex configuration.
+    private static final Set<String> READ_ONLY_COMMANDS = new HashSet<String>(Arrays.asList(
+            VPlexApiConstants.URI_VERSION_INFO.getPath(),
+            VPlexApiConstants.URI_FIND_STORAGE_VIEW.getPath(),
+            VPlexApiConstants.URI_STORAGE_VOLUME_USED_BY.getPath(),
+            VPlexApiConstants.URI_REFRESH_CONTEXT.getPath(),
+            VPlexApiConstants.URI_DRILL_DOWN.getPath(),
+            VPlexApiConstants.URI_INVALIDATE_VOLUME_CACHE_STATUS.getPath()));
+
+    // Bounds the walk up from an extent to its top level device.
+    private static final int MAX_DEVICE_DEPTH = 8;
+
+    private static volatile long s_maxAgeMs = VPlexApiConstants.INVENTORY_SNAPSHOT_MAX_AGE_MS;
+
+    /**
+     * A part of the snapshot, valid until the snapshot is dropped or it gets
+     * older than the maximum age.
+     */
+    private static class Part {
+        private final long _generation;
+        private final long _loadedAt = System.currentTimeMillis();
+
+        Part(long generation) {
+            _generation = generation;
+        }
+    }
+
+    /**
+     * The initiators and storage views of a cluster.
+     */
+    private static class ClusterExports extends Part {
+        private final Map<String, String> _initiatorWwnToName = new HashMap<String, String>();
+        private final Map<String, List<VPlexStorageViewInfo>> _viewsByInitiatorName =
+                new HashMap<String, List<VPlexStorageViewInfo>>();
+
+        ClusterExports(long generation) {
+            super(generation);
+        }
+    }
+
+    /**
+     * The storage volumes of all clusters and the top level device of each.
+     */
+    private static class DeviceIndex extends Part {
+        private final List<VPlexStorageVolumeInfo> _storageVolumes = new ArrayList<VPlexStorageVolumeInfo>();
+        // storage volumes keyed by upper case WWN
+        private final Map<String, VPlexStorageVolumeInfo> _storageVolumesByWwn =
+                new HashMap<String, VPlexStorageVolumeInfo>();
+        // top level device names keyed by storage volume name
+        private final Map<String, String> _topLevelDevices = new HashMap<String, String>();
+
+        DeviceIndex(long generation) {
+            super(generation);
+        }
+    }
+
+    // A reference to the discovery manager.
+    private VPlexApiDiscoveryManager _discoveryMgr;
+
+    // Incremented when the snapshot is dropped, so that a part loaded
+    // while the VPlex was being changed is not used.
+    private final AtomicLong _generation = new AtomicLong();
+
+    private final ConcurrentMap<String, ClusterExports> _clusterExports = new ConcurrentHashMap<String, ClusterExports>();
+    private final Object _clusterExportsLock = new Object();
+
+    private volatile DeviceIndex _deviceIndex;
+    private final Object _deviceIndexLock = new Object();
+
+    /**
+     * Package protected constructor.
+     *
+     * @param discoveryMgr A reference to the discovery manager of the API client.
+     */
+    VPlexInventorySnapshot(VPlexApiDiscoveryManager discoveryMgr) {
+        _discoveryMgr = discoveryMgr;
+    }
+
+    /**
+     * Drops the snapshot, so that it is loaded again on the next lookup.
+     */
+    public void invalidate() {
+        _generation.incrementAndGet();
+        _clusterExports.clear();
+        _deviceIndex = null;
+    }
+
+    /**
+     * Drops the snapshot unless the passed command does not change the
+     * VPlex configuration.
+     *
+     * @param commandURI The URI of the command sent in a POST request.
+     */
+    void invalidateForCommand(URI commandURI) {
+        if (!READ_ONLY_COMMANDS.contains(commandURI.getPath())) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns a map of the port WWNs of all initiators to the initiator name
+     * on the passed cluster.
+     *
+     * @param clusterName The name of the cluster.
+     *
+     * @return A map of port WWNs to initiator names.
+     */
+    Map<String, String> getInitiatorWwnToNameMap(String clusterName) {
+        return new HashMap<String, String>(getClusterExports(clusterName)._initiatorWwnToName);
+    }
+
+    /**
+     * Returns the storage views on the passed cluster which contain any of
+     * the passed initiators. The initiators and storage views of the cluster
+     * are read from the VPlex, as a storage view missing from the snapshot
+     * would be created again, and the snapshot is updated with them.
+     *
+     * @param clusterName The name of the cluster.
+     * @param initiatorNames The names of the initiators.
+     *
+     * @return A list of the detailed storage views containing the initiators.
+     */
+    List<VPlexStorageViewInfo> getStorageViewsContainingInitiators(String clusterName,
+            List<String> initiatorNames) {
+        ClusterExports exports;
+        synchronized (_clusterExportsLock) {
+            exports = loadClusterExports(clusterName);
+            _clusterExports.put(clusterName, exports);
+        }
+        Set<VPlexStorageViewInfo> storageViews = new LinkedHashSet<VPlexStorageViewInfo>();
+        for (String initiatorName : initiatorNames) {
+            List<VPlexStorageViewInfo> initiatorViews = exports._viewsByInitiatorName.get(initiatorName);
+            if (initiatorViews != null) {
+                storageViews.addAll(initiatorViews);
+            }
+        }
+        return new ArrayList<VPlexStorageViewInfo>(storageViews);
+    }
+
+    /**
+     * Returns the name of the top level device built on the storage volume
+     * with the passed native id, WWN, and backend array serial number. The
+     * storage volume is looked up by WWN, then by the same name patterns as
+     * the storage-volume used-by command is tried with.
+     *
+     * @param volumeNativeId The storage volume's native id.
+     * @param wwn The storage volume's WWN.
+     * @param backendArraySerialNum The serial number of the backend array.
+     *
+     * @return The name of the top level device, or null when the storage volume
+     *         or a device built on it is not found.
+     */
+    String getDeviceForStorageVolume(String volumeNativeId, String wwn,
+            String backendArraySerialNum) {
+        DeviceIndex index = getDeviceIndex();
+        VPlexStorageVolumeInfo storageVolume = null;
+        if (wwn != null) {
+            storageVolume = index._storageVolumesByWwn.get(wwn.replaceAll("[^A-Fa-f0-9]", "").toUpperCase());
+        }
+        for (int i = 0; storageVolume == null && i < 4; i++) {
+            for (VPlexStorageVolumeInfo candidate : index._storageVolumes) {
+                if (matchesVolumeNamePattern(i, candidate.getName(), volumeNativeId, wwn, backendArraySerialNum)) {
+                    storageVolume = candidate;
+                    break;
+                }
+            }
+        }
+        if (storageVolume == null) {
+            return null;
+        }
+        return index._topLevelDevices.get(storageVolume.getName());
+    }
+
+    /**
+     * Matches a storage volume name against the name patterns of
+     * VPlexApiDiscoveryManager.getVolumeNamePattern.
+     */
+    static boolean matchesVolumeNamePattern(int i, String name, String volumeNativeId,
+            String wwn, String backendArraySerialNum) {
+        if (name == null) {
+            return false;
+        }
+        switch (i) {
+            case 0:
+                // *[serialnum]*[deviceid]
+                if (volumeNativeId == null || backendArraySerialNum == null) {
+                    return false;
+                }
+                int serialIndex = name.indexOf(backendArraySerialNum);
+                return serialIndex >= 0 && name.endsWith(volumeNativeId)
+                        && name.length() - volumeNativeId.length() >= serialIndex + backendArraySerialNum.length();
+            case 1:
+                // *[wwn]*
+                return wwn != null && name.contains(wwn);
+            case 2:
+                // *[wwn].toLowerCase*
+                return wwn != null && name.contains(wwn.toLowerCase());
+            case 3:
+                // *[wwn].substring(5).toLowerCase*
+                return wwn != null && wwn.length() > 5 && name.contains(wwn.substring(5).toLowerCase());
+            default:
+                return false;
+        }
+    }
+
+    private boolean isCurrent(Part part) {
+        return part != null && part._generation == _generation.get()
+                && System.currentTimeMillis() - part._loadedAt <= s_maxAgeMs;
+    }
+
+    private ClusterExports getClusterExports(String clusterName) {
+        ClusterExports exports = _clusterExports.get(clusterName);
+        if (isCurrent(exports)) {
+            return exports;
+        }
+        synchronized (_clusterExportsLock) {
+            exports = _clusterExports.get(clusterName);
+            if (!isCurrent(exports)) {
+                exports = loadClusterExports(clusterName);
+                _clusterExports.put(clusterName, exports);
+            }
+            return exports;
+        }
+    }
+
+    private ClusterExports loadClusterExports(String clusterName) {
+        long start = System.currentTimeMillis();
+        ClusterExports exports = new ClusterExports(_generation.get());
+
+        Map<String, String> initiatorNameToWwn = new HashMap<String, String>();
+        for (VPlexInitiatorInfo initiatorInfo : _discoveryMgr.getInitiatorInfoForCluster(clusterName)) {
+            if (initiatorInfo.getName() != null && initiatorInfo.getPortWwn() != null) {
+                exports._initiatorWwnToName.put(initiatorInfo.getPortWwn(), initiatorInfo.getName());
+                initiatorNameToWwn.put(initiatorInfo.getName(), initiatorInfo.getPortWwn());
+            }
+        }
+
+        List<VPlexStorageViewInfo> storageViews = _discoveryMgr.getStorageViewsForCluster(clusterName,
+                initiatorNameToWwn);
+        for (VPlexStorageViewInfo storageView : storageViews) {
+            if (storageView.getClusterId() == null) {
+                storageView.setClusterId(clusterName);
+            }
+            for (String initiatorName : storageView.getInitiators()) {
+                List<VPlexStorageViewInfo> initiatorViews = exports._viewsByInitiatorName.get(initiatorName);
+                if (initiatorViews == null) {
+                    initiatorViews = new ArrayList<VPlexStorageViewInfo>();
+                    exports._viewsByInitiatorName.put(initiatorName, initiatorViews);
+                }
+                initiatorViews.add(storageView);
+            }
+        }
+
+        s_logger.info("TIMER: loading {} initiators and {} storage views of cluster {} took {}ms",
+                exports._initiatorWwnToName.size(), storageViews.size(), clusterName,
+                System.currentTimeMillis() - start);
+        return exports;
+    }
+
+    private DeviceIndex getDeviceIndex() {
+        DeviceIndex index = _deviceIndex;
+        if (isCurrent(index)) {
+            return index;
+        }
+        synchronized (_deviceIndexLock) {
+            index = _deviceIndex;
+            if (!isCurrent(index)) {
+                index = loadDeviceIndex();
+                _deviceIndex = index;
+            }
+            return index;
+        }
+    }
+
+    private DeviceIndex loadDeviceIndex() {
+        long start = System.currentTimeMillis();
+        DeviceIndex index = new DeviceIndex(_generation.get());
+
+        // format /vplex/clusters/*
+        String clustersPath = VPlexApiConstants.URI_CLUSTERS.toString() + VPlexApiConstants.WILDCARD;
+
+        // format /vplex/clusters/*/storage-elements/storage-volumes/*
+        index._storageVolumes.addAll(_discoveryMgr.getResourcesForContext(
+                clustersPath + VPlexApiConstants.URI_STORAGE_VOLUMES_DETAILS.toString(),
+                VPlexStorageVolumeInfo.class));
+        for (VPlexStorageVolumeInfo storageVolume : index._storageVolumes) {
+            String wwn = storageVolume.getWwn();
+            if (wwn != null && !wwn.isEmpty()) {
+                index._storageVolumesByWwn.put(wwn.replaceAll("[^A-Fa-f0-9]", "").toUpperCase(), storageVolume);
+            }
+        }
+
+        // format /vplex/clusters/*/storage-elements/extents/*
+        List<VPlexExtentInfo> extents = _discoveryMgr.getResourcesForContext(
+                clustersPath + VPlexApiConstants.URI_EXTENTS.toString() + VPlexApiConstants.WILDCARD,
+                VPlexExtentInfo.class);
+
+        // The parent of each device component, either a local device for an extent
+        // or a local device, or a distributed device for a local device.
+        Map<String, String> parents = new HashMap<String, String>();
+
+        // format /vplex/clusters/*/devices/*/components/*
+        List<VPlexLocalDeviceComponentInfo> localComponents = _discoveryMgr.getResourcesForContext(
+                clustersPath + VPlexApiConstants.URI_DEVICES.toString() + VPlexApiConstants.WILDCARD
+                        + VPlexApiConstants.URI_COMPONENTS.toString() + VPlexApiConstants.WILDCARD,
+                VPlexLocalDeviceComponentInfo.class);
+        for (VPlexLocalDeviceComponentInfo component : localComponents) {
+            putParent(parents, component);
+        }
+
+        // format /vplex/distributed-storage/distributed-devices/*/distributed-device-components/*
+        List<VPlexDistributedDeviceComponentInfo> distributedComponents = _discoveryMgr.getResourcesForContext(
+                VPlexApiConstants.URI_DISTRIBUTED_DEVICES.toString() + VPlexApiConstants.WILDCARD
+                        + VPlexApiConstants.URI_DISTRIBUTED_DEVICE_COMP.toString() + VPlexApiConstants.WILDCARD,
+                VPlexDistributedDeviceComponentInfo.class);
+        for (VPlexDistributedDeviceComponentInfo component : distributedComponents) {
+            putParent(parents, component);
+        }
+
+        for (VPlexExtentInfo extent : extents) {
+            String storageVolumeName = extent.getStorageVolume();
+            if (storageVolumeName == null || index._topLevelDevices.containsKey(storageVolumeName)) {
+                continue;
+            }
+            String deviceName = getTopLevelDevice(parents, extent.getName());
+            if (deviceName != null) {
+                index._topLevelDevices.put(storageVolumeName, deviceName);
+            }
+        }
+
+        s_logger.info("TIMER: loading {} storage volumes, {} extents and {} device components took {}ms",
+                index._storageVolumes.size(), extents.size(), localComponents.size() + distributedComponents.size(),
+                System.currentTimeMillis() - start);
+        return index;
+    }
+
+    /**
+     * Returns the top level device built on an extent, walking up the
+     * parent devices of the extent.
+     *
+     * @param parents The parent device of each device component.
+     * @param extentName The name of the extent.
+     *
+     * @return The name of the top level device, or null when the extent
+     *         is not used by a device.
+     */
+    static String getTopLevelDevice(Map<String, String> parents, String extentName) {
+        String deviceName = parents.get(extentName);
+        for (int depth = 0; deviceName != null && depth < MAX_DEVICE_DEPTH && parents.containsKey(deviceName); depth++) {
+            deviceName = parents.get(deviceName);
+        }
+        return deviceName;
+    }
+
+    /**
+     * Records the parent device of a component, whose path is the path of
+     * its parent device, then the components context, then its name.
+     */
+    static void putParent(Map<String, String> parents, VPlexResourceInfo component) {
+        if (component.getName() == null || component.getPath() == null) {
+            return;
+        }
+        String[] pathNames = component.getPath().split(VPlexApiConstants.SLASH);
+        if (pathNames.length >= 3) {
+            parents.put(component.getName(), pathNames[pathNames.length - 3]);
+        }
+    }
+
+    /**
+     * Gets how long a part of the snapshot is used before it is loaded again.
+     *
+     * @return The maximum age in milliseconds.
+     */
+    static public long getMaxAgeMs() {
+        return s_maxAgeMs;
+    }
+
+    /**
+     * Sets how long a part of the snapshot is used before it is loaded again.
+     *
+     * @param maxAgeMs The maximum age in milliseconds, 0 to load it on every lookup.
+     */
+    static public void setMaxAgeMs(long maxAgeMs) {
+        s_maxAgeMs = maxAgeMs;
+    }
+}
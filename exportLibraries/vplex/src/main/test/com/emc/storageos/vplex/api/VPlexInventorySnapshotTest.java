@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.vplex.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Lookups of the VPlex inventory snapshot, checked against the results of the
+ * storage-volume used-by command the snapshot replaces.
+ */
+public class VPlexInventorySnapshotTest {
+
+    private static final String SERIAL_NUM = "APM00140844981";
+    private static final String NATIVE_ID = "01735";
+    private static final String WWN = "6006016018C03A00C6F8F7A2B4E5E511";
+    private static final String XIO_WWN = "514F0C5C8A400001514F0C5C8A40000104A";
+
+    /**
+     * Discovery manager returning the initiators and storage views set by the
+     * test, and counting the times they are read from the VPlex.
+     */
+    private static class TestDiscoveryManager extends VPlexApiDiscoveryManager {
+        private final List<VPlexInitiatorInfo> initiators = new ArrayList<VPlexInitiatorInfo>();
+        private final List<VPlexStorageViewInfo> storageViews = new ArrayList<VPlexStorageViewInfo>();
+        private int reads;
+
+        TestDiscoveryManager() {
+            super(null);
+        }
+
+        @Override
+        List<VPlexInitiatorInfo> getInitiatorInfoForCluster(String clusterName) {
+            reads++;
+            return new ArrayList<VPlexInitiatorInfo>(initiators);
+        }
+
+        @Override
+        List<VPlexStorageViewInfo> getStorageViewsForCluster(String clusterName,
+                Map<String, String> initiatorNameToWwnMap) {
+            return new ArrayList<VPlexStorageViewInfo>(storageViews);
+        }
+
+        void addInitiator(String name, String portWwn) {
+            VPlexInitiatorInfo initiator = new VPlexInitiatorInfo();
+            initiator.setName(name);
+            initiator.setPortWwn(portWwn);
+            initiators.add(initiator);
+        }
+
+        void addStorageView(String name, String... initiatorNames) {
+            VPlexStorageViewInfo storageView = new VPlexStorageViewInfo();
+            storageView.setName(name);
+            storageView.setInitiators(Arrays.asList(initiatorNames));
+            storageViews.add(storageView);
+        }
+    }
+
+    /**
+     * The name pattern the used-by command is tried with, as built by
+     * VPlexApiDiscoveryManager.getVolumeNamePattern.
+     */
+    private static String usedByPattern(int i, String volumeNativeId, String wwn, String backendArraySerialNum) {
+        switch (i) {
+            case 0:
+                return "*" + backendArraySerialNum + "*" + volumeNativeId;
+            case 1:
+                return "*" + wwn + "*";
+            case 2:
+                return "*" + wwn.toLowerCase() + "*";
+            default:
+                return "*" + wwn.substring(5).toLowerCase() + "*";
+        }
+    }
+
+    /**
+     * Whether the VPlex matches the storage volume name with the case sensitive
+     * wildcard pattern of the used-by command.
+     */
+    private static boolean usedByMatches(String pattern, String name) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            regex.append(regex.length() == 0 ? "" : ".*").append(Pattern.quote(part));
+        }
+        return Pattern.matches(regex.toString(), name);
+    }
+
+    /**
+     * The storage volume names are matched as the used-by command matches them
+     */
+    @Test
+    public void testVolumeNamePatterns() {
+        List<String> names = Arrays.asList(
+                // claimed by ViPR
+                "V" + SERIAL_NUM + "-" + NATIVE_ID,
+                "V" + SERIAL_NUM + "-" + NATIVE_ID + "_1",
+                NATIVE_ID + "_" + SERIAL_NUM,
+                "V" + SERIAL_NUM + NATIVE_ID,
+                // default names given by the VPlex
+                "VPD83T3:" + WWN,
+                "VPD83T3:" + WWN.toLowerCase(),
+                "VPD83T3:" + WWN.toLowerCase() + "_1",
+                // XtremIO volumes claimed by ViPR, cut to 63 characters
+                "XtremIO_" + XIO_WWN.substring(5).toLowerCase(),
+                "XtremIO_" + XIO_WWN.substring(5),
+                "unrelated");
+
+        String[][] volumes = new String[][] {
+                { NATIVE_ID, WWN, SERIAL_NUM },
+                { "00001", XIO_WWN, "XIO00001" } };
+        for (String[] volume : volumes) {
+            for (int i = 0; i < 4; i++) {
+                String pattern = usedByPattern(i, volume[0], volume[1], volume[2]);
+                for (String name : names) {
+                    Assert.assertEquals(pattern + " matching " + name, usedByMatches(pattern, name),
+                            VPlexInventorySnapshot.matchesVolumeNamePattern(i, name, volume[0], volume[1], volume[2]));
+                }
+            }
+        }
+
+        Assert.assertTrue(VPlexInventorySnapshot.matchesVolumeNamePattern(0, "V" + SERIAL_NUM + "-" + NATIVE_ID,
+                NATIVE_ID, WWN, SERIAL_NUM));
+        Assert.assertFalse(VPlexInventorySnapshot.matchesVolumeNamePattern(1, "VPD83T3:" + WWN.toLowerCase(),
+                NATIVE_ID, WWN, SERIAL_NUM));
+        Assert.assertTrue(VPlexInventorySnapshot.matchesVolumeNamePattern(2, "VPD83T3:" + WWN.toLowerCase(),
+                NATIVE_ID, WWN, SERIAL_NUM));
+        Assert.assertFalse(VPlexInventorySnapshot.matchesVolumeNamePattern(0, null, NATIVE_ID, WWN, SERIAL_NUM));
+        Assert.assertFalse(VPlexInventorySnapshot.matchesVolumeNamePattern(1, "VPD83T3:" + WWN, NATIVE_ID, null, SERIAL_NUM));
+    }
+
+    private static VPlexResourceInfo component(String parentPath, String name) {
+        VPlexResourceInfo component = new VPlexResourceInfo();
+        component.setName(name);
+        component.setPath(parentPath + VPlexApiConstants.SLASH + name);
+        return component;
+    }
+
+    /**
+     * The device found walking up from an extent is the one on the first line
+     * of the custom data returned by the used-by command
+     */
+    @Test
+    public void testTopLevelDevice() {
+        Map<String, String> parents = new HashMap<String, String>();
+        // local RAID-1 device on two extents, leg of a distributed device
+        VPlexInventorySnapshot.putParent(parents,
+                component("/clusters/cluster-1/devices/device_VAPM00140844981-01735/components",
+                        "extent_VAPM00140844981-01735_1"));
+        VPlexInventorySnapshot.putParent(parents,
+                component("/clusters/cluster-1/devices/device_VAPM00140844981-01735/components",
+                        "extent_VAPM00140844981-01736_1"));
+        VPlexInventorySnapshot.putParent(parents,
+                component("/distributed-storage/distributed-devices/dd_VAPM00140844981-01735/"
+                        + "distributed-device-components", "device_VAPM00140844981-01735"));
+        // local device on a single extent
+        VPlexInventorySnapshot.putParent(parents,
+                component("/clusters/cluster-2/devices/device_VAPM00140801303-00543/components",
+                        "extent_VAPM00140801303-00543_1"));
+        // components without a path are not recorded
+        VPlexResourceInfo noPath = new VPlexResourceInfo();
+        noPath.setName("extent_orphan_1");
+        VPlexInventorySnapshot.putParent(parents, noPath);
+
+        Map<String, String> usedBy = new HashMap<String, String>();
+        usedBy.put("extent_VAPM00140844981-01735_1",
+                "/distributed-storage/distributed-devices/dd_VAPM00140844981-01735:\n"
+                        + "/clusters/cluster-1/devices/device_VAPM00140844981-01735:\n"
+                        + "extent_VAPM00140844981-01735_1\nVAPM00140844981-01735\n\n");
+        usedBy.put("extent_VAPM00140844981-01736_1",
+                "/distributed-storage/distributed-devices/dd_VAPM00140844981-01735:\n"
+                        + "/clusters/cluster-1/devices/device_VAPM00140844981-01735:\n"
+                        + "extent_VAPM00140844981-01736_1\nVAPM00140844981-01736\n\n");
+        usedBy.put("extent_VAPM00140801303-00543_1",
+                "/clusters/cluster-2/devices/device_VAPM00140801303-00543:\n"
+                        + "extent_VAPM00140801303-00543_1\nVAPM00140801303-00543\n\n");
+        for (Map.Entry<String, String> entry : usedBy.entrySet()) {
+            // as parsed by VPlexApiDiscoveryManager.getDeviceForStorageVolume
+            String[] subLines = entry.getValue().split(":\n")[0].split("/");
+            Assert.assertEquals(subLines[subLines.length - 1],
+                    VPlexInventorySnapshot.getTopLevelDevice(parents, entry.getKey()));
+        }
+
+        Assert.assertNull(VPlexInventorySnapshot.getTopLevelDevice(parents, "extent_unused_1"));
+        Assert.assertNull(VPlexInventorySnapshot.getTopLevelDevice(parents, "extent_orphan_1"));
+    }
+
+    /**
+     * The storage views looked up to reuse or create a storage view are read from
+     * the VPlex, even if the snapshot of the cluster is not yet dropped
+     */
+    @Test
+    public void testStorageViewsReadLive() {
+        TestDiscoveryManager discoveryMgr = new TestDiscoveryManager();
+        discoveryMgr.addInitiator("host1_hba1", "0x10000000c9a1b2c1");
+        VPlexInventorySnapshot snapshot = new VPlexInventorySnapshot(discoveryMgr);
+
+        Assert.assertEquals(1, snapshot.getInitiatorWwnToNameMap("cluster-1").size());
+        Assert.assertTrue(snapshot.getStorageViewsContainingInitiators("cluster-1",
+                Collections.singletonList("host1_hba1")).isEmpty());
+
+        // changed by the client of another node
+        discoveryMgr.addInitiator("host1_hba2", "0x10000000c9a1b2c2");
+        discoveryMgr.addStorageView("V1_host1", "host1_hba1", "host1_hba2");
+        int reads = discoveryMgr.reads;
+
+        List<VPlexStorageViewInfo> storageViews = snapshot.getStorageViewsContainingInitiators("cluster-1",
+                Collections.singletonList("host1_hba2"));
+        Assert.assertEquals(1, storageViews.size());
+        Assert.assertEquals("V1_host1", storageViews.get(0).getName());
+        Assert.assertEquals("cluster-1", storageViews.get(0).getClusterId());
+        Assert.assertEquals(reads + 1, discoveryMgr.reads);
+
+        // the other lookups use what was just read
+        Assert.assertEquals(2, snapshot.getInitiatorWwnToNameMap("cluster-1").size());
+        Assert.assertEquals(reads + 1, discoveryMgr.reads);
+    }
+}
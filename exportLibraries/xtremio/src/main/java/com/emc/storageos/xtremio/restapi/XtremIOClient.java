@@ -5,12 +5,19 @@
 package com.emc.storageos.xtremio.restapi;
 
 import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.ws.rs.core.MediaType;
 import org.apache.commons.httpclient.util.URIUtil;
 import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.emc.storageos.services.restutil.LatencyHistogram;
 import com.emc.storageos.services.restutil.StandardRestClient;
+import com.emc.storageos.svcs.errorhandling.resources.InternalException;
 import com.emc.storageos.xtremio.restapi.errorhandling.XtremIOApiException;
 import com.emc.storageos.xtremio.restapi.model.XtremIOAuthInfo;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOObjectInfo;
@@ -23,6 +30,11 @@ public abstract class XtremIOClient extends StandardRestClient implements XtremI
 
     private static Logger log = LoggerFactory.getLogger(XtremIOClient.class);
 
+    private static final String TYPES_PATH = "/types/";
+
+    // latencies of the GET requests sent by this client, by object type, see getRequestLatencies
+    private final ConcurrentMap<String, LatencyHistogram> requestLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
     /**
      * Constructor
      * 
@@ -75,6 +87,43 @@ public abstract class XtremIOClient extends StandardRestClient implements XtremI
         return isV2;
     }
 
+    @Override
+    public ClientResponse get(URI uri) throws InternalException {
+        long start = System.currentTimeMillis();
+        try {
+            return super.get(uri);
+        } finally {
+            getLatencyHistogram(uri).record(System.currentTimeMillis() - start);
+        }
+    }
+
+    private LatencyHistogram getLatencyHistogram(URI uri) {
+        // listings are told apart from the requests of a single object, e.g. volumes and volumes/*
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        int types = path.indexOf(TYPES_PATH);
+        String kind = types < 0 ? path : path.substring(types + TYPES_PATH.length());
+        int slash = kind.indexOf('/');
+        if (slash >= 0) {
+            kind = kind.substring(0, slash) + "/*";
+        }
+        LatencyHistogram histogram = requestLatencies.get(kind);
+        if (histogram == null) {
+            requestLatencies.putIfAbsent(kind, new LatencyHistogram());
+            histogram = requestLatencies.get(kind);
+        }
+        return histogram;
+    }
+
+    /**
+     * Latency histograms of the GET requests sent by this client so far, by XtremIO object type.
+     * Requests for a single object are under the type followed by "/*".
+     * 
+     * @return histograms sorted by object type
+     */
+    public Map<String, LatencyHistogram> getRequestLatencies() {
+        return new TreeMap<String, LatencyHistogram>(requestLatencies);
+    }
+
     @Override
     protected int checkResponse(URI uri, ClientResponse response) throws XtremIOApiException {
         ClientResponse.Status status = response.getClientResponseStatus();
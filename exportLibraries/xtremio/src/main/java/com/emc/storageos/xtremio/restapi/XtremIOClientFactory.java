@@ -10,7 +10,6 @@ import com.emc.storageos.services.restutil.RestClientFactory;
 import com.emc.storageos.services.restutil.RestClientItf;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
-import com.sun.jersey.client.apache.ApacheHttpClient;
 
 public class XtremIOClientFactory extends RestClientFactory {
 
@@ -42,7 +41,7 @@ public class XtremIOClientFactory extends RestClientFactory {
         // removed caching RestClient session as it is not actually a session, just a java RestClient object
         // RestClientItf clientApi = _clientMap.get(endpoint.toString() + ":" + username + ":" + password + ":" + model);
 
-        Client jerseyClient = new ApacheHttpClient(_clientHandler);
+        Client jerseyClient = createJerseyClient();
         if (authFilter) {
             jerseyClient.addFilter(new HTTPBasicAuthFilter(username, password));
         }
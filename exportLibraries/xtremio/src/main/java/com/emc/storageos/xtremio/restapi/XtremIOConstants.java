@@ -84,6 +84,10 @@ public class XtremIOConstants {
     public static final String XTREMIO_INPUT_NAME_CLUSTER_STR = "?name=%s&cluster-name=%s";
     public static final String XTREMIO_XMS_FILTER_STR = "?prop=restapi-protocol-version";
     public static final String XTREMIO_CLUSTER_FILTER_STR = "?filter=sys-psnt-serial-number:eq:%s";
+    // all the volumes with their details in one listing, only with the properties of XtremIOVolume
+    public static final String XTREMIO_VOLUMES_FULL_STR = "?full=1&prop=vol-id&prop=naa-name&prop=vol-size"
+            + "&prop=lun-mapping-list&prop=dest-snap-list&prop=related-consistency-groups&prop=snapset-list"
+            + "&prop=ancestor-vol-id&prop=snapshot-type";
     public static final String XTREMIO_REGULAR_TYPE = "regular";
     public static final String XTREMIO_READ_ONLY_TYPE = "readonly";
     public static final int XTREMIO_MAX_VOL_LENGTH = 55;
@@ -113,6 +117,14 @@ public class XtremIOConstants {
         return EMPTY_STRING;
     }
 
+    public static String getVolumesFullString(String clusterName) throws Exception {
+        if (clusterName != null && !clusterName.isEmpty()) {
+            return XTREMIO_VOLUMES_FULL_STR.concat("&cluster-name=").concat(URLEncoder.encode(clusterName, "UTF-8"));
+        }
+
+        return XTREMIO_VOLUMES_FULL_STR;
+    }
+
     public static String getInputNameForClusterString(String name, String clusterName) throws Exception {
         if (clusterName != null && !clusterName.isEmpty()) {
             return String.format(XTREMIO_INPUT_NAME_CLUSTER_STR, URLEncoder.encode(name, "UTF-8"),
@@ -8,11 +8,15 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.httpclient.util.URIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.resources.InternalException;
 import com.emc.storageos.xtremio.restapi.errorhandling.XtremIOApiException;
 import com.emc.storageos.xtremio.restapi.model.request.XtremIOConsistencyGroupRequest;
@@ -48,6 +52,7 @@ import com.emc.storageos.xtremio.restapi.model.response.XtremIOTags;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOTagsInfo;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOVolume;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOVolumes;
+import com.emc.storageos.xtremio.restapi.model.response.XtremIOVolumesFull;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOVolumesInfo;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOXMSResponse;
 import com.emc.storageos.xtremio.restapi.model.response.XtremIOXMSsInfo;
@@ -58,6 +63,9 @@ public class XtremIOV2Client extends XtremIOClient {
 
     private static Logger log = LoggerFactory.getLogger(XtremIOV2Client.class);
 
+    // volume requests sent at once when the volumes are got one by one
+    private static final int VOLUME_FETCH_THREADS = 10;
+
     public XtremIOV2Client(URI baseURI, String username, String password, Client client) {
         super(baseURI, username, password, client);
     }
@@ -125,6 +133,20 @@ public class XtremIOV2Client extends XtremIOClient {
 
     @Override
     public List<XtremIOVolume> getXtremIOVolumes(String clusterName) throws Exception {
+        try {
+            URI volumesURI = URI.create(XtremIOConstants.XTREMIO_V2_VOLUMES_STR.concat(
+                    XtremIOConstants.getVolumesFullString(clusterName)));
+            ClientResponse response = get(volumesURI);
+            XtremIOVolumesFull volumes = getResponseObject(XtremIOVolumesFull.class, response);
+            if (hasDetails(volumes.getVolumes())) {
+                log.info("Returned Volumes size : {}", volumes.getVolumes().length);
+                return new ArrayList<XtremIOVolume>(Arrays.asList(volumes.getVolumes()));
+            }
+            log.warn("Volume listing returned no volume details, getting the volumes one by one");
+        } catch (InternalException ex) {
+            log.warn("Exception while trying to list xtremio volumes with details, getting the volumes one by one", ex);
+        }
+
         String uriString = XtremIOConstants.XTREMIO_V2_VOLUMES_STR.concat(XtremIOConstants.getInputClusterString(clusterName));
         ClientResponse response = get(URI.create(uriString));
         XtremIOVolumesInfo volumeLinks = getResponseObject(XtremIOVolumesInfo.class, response);
@@ -134,27 +156,84 @@ public class XtremIOV2Client extends XtremIOClient {
         return volumeList;
     }
 
+    /**
+     * Whether the volumes of a listing have their details, an XMS not supporting
+     * the full listing returns the volume links instead.
+     */
+    private boolean hasDetails(XtremIOVolume[] volumes) {
+        if (volumes == null) {
+            return false;
+        }
+        for (XtremIOVolume volume : volumes) {
+            if (volume == null || volume.getVolInfo() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the volumes of the links with up to VOLUME_FETCH_THREADS requests at once.
+     * The connections to the XMS are kept alive and reused by the client connection manager.
+     */
     @Override
-    public List<XtremIOVolume> getXtremIOVolumesForLinks(List<XtremIOObjectInfo> volumeLinks, String clusterName) throws Exception {
+    public List<XtremIOVolume> getXtremIOVolumesForLinks(List<XtremIOObjectInfo> volumeLinks, final String clusterName)
+            throws Exception {
         List<XtremIOVolume> volumeList = new ArrayList<XtremIOVolume>();
-        for (XtremIOObjectInfo volumeInfo : volumeLinks) {
-            try {
-                URI volumeURI = URI.create(URIUtil.getFromPath(volumeInfo.getHref().concat(
-                        XtremIOConstants.getInputClusterString(clusterName))));
-                log.debug("Trying to get volume details for {}", volumeURI.toString());
-                ClientResponse response = get(volumeURI);
-                XtremIOVolumes volumes = getResponseObject(XtremIOVolumes.class, response);
-                log.info("Volume {}", volumes.getContent().getVolInfo().get(1) + "-"
-                        + volumes.getContent().getVolInfo().get(2));
-                volumeList.add(volumes.getContent());
-            } catch (InternalException ex) {
-                log.warn("Exception while trying to retrieve xtremio volume link {}", volumeInfo.getHref());
+        if (volumeLinks.isEmpty()) {
+            return volumeList;
+        }
+        NamedThreadPoolExecutor executor = new NamedThreadPoolExecutor("XtremIOVolumeFetch",
+                Math.min(VOLUME_FETCH_THREADS, volumeLinks.size()));
+        try {
+            List<Future<XtremIOVolume>> futures = new ArrayList<Future<XtremIOVolume>>();
+            for (final XtremIOObjectInfo volumeInfo : volumeLinks) {
+                futures.add(executor.submit(new Callable<XtremIOVolume>() {
+                    @Override
+                    public XtremIOVolume call() throws Exception {
+                        return getXtremIOVolumeForLink(volumeInfo, clusterName);
+                    }
+                }));
             }
+            // volumes are returned in the order of their links
+            for (Future<XtremIOVolume> future : futures) {
+                XtremIOVolume volume;
+                try {
+                    volume = future.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+                    throw ex;
+                }
+                if (volume != null) {
+                    volumeList.add(volume);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
+        log.info("Volume request latencies : {}", getRequestLatencies());
 
         return volumeList;
     }
 
+    private XtremIOVolume getXtremIOVolumeForLink(XtremIOObjectInfo volumeInfo, String clusterName) throws Exception {
+        try {
+            URI volumeURI = URI.create(URIUtil.getFromPath(volumeInfo.getHref().concat(
+                    XtremIOConstants.getInputClusterString(clusterName))));
+            log.debug("Trying to get volume details for {}", volumeURI.toString());
+            ClientResponse response = get(volumeURI);
+            XtremIOVolumes volumes = getResponseObject(XtremIOVolumes.class, response);
+            log.info("Volume {}", volumes.getContent().getVolInfo().get(1) + "-"
+                    + volumes.getContent().getVolInfo().get(2));
+            return volumes.getContent();
+        } catch (InternalException ex) {
+            log.warn("Exception while trying to retrieve xtremio volume link {}", volumeInfo.getHref());
+            return null;
+        }
+    }
+
     @Override
     public XtremIOConsistencyGroupVolInfo getXtremIOConsistencyGroupInfo(XtremIOObjectInfo cgVolume, String clusterName) throws Exception {
         log.debug("Trying to get ConsistencyGroup details for {}", cgVolume.getHref());
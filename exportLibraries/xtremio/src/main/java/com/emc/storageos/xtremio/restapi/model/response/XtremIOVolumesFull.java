@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.xtremio.restapi.model.response;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonRootName;
+
+import com.google.gson.annotations.SerializedName;
+
+@JsonRootName(value = "xtremio_volumes_full")
+public class XtremIOVolumesFull {
+
+    @SerializedName("volumes")
+    @JsonProperty(value = "volumes")
+    private XtremIOVolume[] volumes;
+
+    public XtremIOVolume[] getVolumes() {
+        return volumes != null ? volumes.clone() : volumes;
+    }
+
+    public void setVolumes(XtremIOVolume[] volumes) {
+        if (volumes != null) {
+            this.volumes = volumes.clone();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.management.jmx.cache;
+
+import java.util.Map;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+
+public interface DataObjectCacheMBean {
+    public static final String MBEAN_NAME = "com.emc.storageos.db.client.impl:name=DataObjectCache";
+
+    /**
+     * Get the number of lookups served from the cache, over all cached classes
+     */
+    @ManagedAttribute(description = "Number of lookups served from the cache")
+    long getHitCount();
+
+    /**
+     * Get the number of lookups that had to go to the database, over all cached classes
+     */
+    @ManagedAttribute(description = "Number of lookups that went to the database")
+    long getMissCount();
+
+    /**
+     * Get the ratio of hits to lookups, 1.0 if there were no lookups yet
+     */
+    @ManagedAttribute(description = "Ratio of hits to lookups")
+    double getHitRate();
+
+    /**
+     * Get the number of entries dropped because of invalidation from this or other nodes
+     */
+    @ManagedAttribute(description = "Number of invalidations received")
+    long getInvalidationCount();
+
+    /**
+     * Get per class statistics.
+     *
+     * @return Map from model class name to a summary of its size, hits, misses and evictions
+     */
+    @ManagedAttribute(description = "Per class cache statistics")
+    Map<String, String> getClassStats();
+
+    /**
+     * Drop every cached entry on this node
+     */
+    @ManagedOperation(description = "Drop every cached entry on this node")
+    void invalidateAll();
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.services.restutil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with power of two millisecond buckets, e.g. of the requests of one
+ * kind sent to a device. Latencies may be recorded from several threads.
+ */
+public class LatencyHistogram {
+    // bucket i counts latencies below 2^i msec, the last bucket counts the longer ones
+    private static final int BUCKETS = 18;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalMsec = new AtomicLong();
+    private final AtomicLong maxMsec = new AtomicLong();
+
+    /**
+     * @param msec a latency
+     */
+    public void record(long msec) {
+        int bucket = 0;
+        while (bucket < BUCKETS - 1 && msec >= (1L << bucket)) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalMsec.addAndGet(msec);
+        long max;
+        while ((max = maxMsec.get()) < msec && !maxMsec.compareAndSet(max, msec)) {
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMaxMsec() {
+        return maxMsec.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket the percentile falls in, the maximum latency for the last bucket
+     */
+    public long getPercentileMsec(double percentile) {
+        long count = getCount();
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(1L << i, getMaxMsec());
+            }
+        }
+        return getMaxMsec();
+    }
+
+    @Override
+    public String toString() {
+        long count = getCount();
+        return String.format("count=%d avg=%dms p50<=%dms p90<=%dms p99<=%dms max=%dms", count,
+                count == 0 ? 0 : totalMsec.get() / count, getPercentileMsec(50), getPercentileMsec(90),
+                getPercentileMsec(99), getMaxMsec());
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.services.restutil;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodRetryHandler;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.client.apache.ApacheHttpClientHandler;
+
+/**
+ * HTTP transport shared by the REST clients of the device API factories which opt in for it,
+ * see setHttpTransport of RestClientFactory, VPlexApiFactory, IsilonApiFactory, HDSApiFactory,
+ * ECSApiFactory and VNXeApiClientFactory.
+ *
+ * Connections are kept alive and reused across the clients of all the factories sharing the
+ * transport, so that TLS handshakes are not paid again on every request. Connections idle for
+ * longer than the idle timeout are closed by a background thread, which keeps connections the
+ * device has closed from piling up in CLOSE_WAIT. The number of connections to a device is
+ * capped per host and port, and gzip responses are asked for and decoded when enabled.
+ *
+ * A factory keeps its socket and connection pool timeouts, set on the HTTP client of its own, see
+ * createHttpClient. Its connection timeout and maximum numbers of connections are replaced by the
+ * ones of the shared pool, which is logged at init of the factory.
+ *
+ * The latency of the requests and the time spent waiting for a pooled connection are recorded
+ * per device host and port, see getEndpointMetrics.
+ */
+public class PooledHttpTransport {
+    private static final Logger _log = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    private static final int DEFAULT_MAX_CONN = 300;
+    private static final int DEFAULT_MAX_CONN_PER_HOST = 100;
+    private static final int DEFAULT_CONN_TIMEOUT = 1000 * 30;
+    private static final int DEFAULT_SOCKET_CONN_TIMEOUT = 1000 * 60 * 60;
+    private static final int DEFAULT_CONN_MGR_TIMEOUT = 1000 * 60;
+    private static final int DEFAULT_IDLE_CONN_TIMEOUT = 1000 * 60;
+    private static final int DEFAULT_EVICTION_INTERVAL = 1000 * 10;
+
+    private int _maxConn = DEFAULT_MAX_CONN;
+    private int _maxConnPerHost = DEFAULT_MAX_CONN_PER_HOST;
+    private Map<String, Integer> _maxConnPerEndpoint = new HashMap<String, Integer>();
+    private int _connTimeout = DEFAULT_CONN_TIMEOUT;
+    private int _socketConnTimeout = DEFAULT_SOCKET_CONN_TIMEOUT;
+    private int _connManagerTimeout = DEFAULT_CONN_MGR_TIMEOUT;
+    private int _idleConnTimeout = DEFAULT_IDLE_CONN_TIMEOUT;
+    private int _evictionInterval = DEFAULT_EVICTION_INTERVAL;
+    private boolean _gzipEnabled = true;
+
+    private MultiThreadedHttpConnectionManager _connectionManager;
+    private IdleConnectionTimeoutThread _idleConnectionEvictor;
+    private ApacheHttpClientHandler _clientHandler;
+    private final ConcurrentMap<String, EndpointMetrics> _endpointMetrics = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    /**
+     * Latencies of the requests sent to a device host and port
+     */
+    public static class EndpointMetrics {
+        private final LatencyHistogram _requestLatency = new LatencyHistogram();
+        private final LatencyHistogram _poolWait = new LatencyHistogram();
+
+        /**
+         * @return time from sending a request to receiving the response status and headers
+         */
+        public LatencyHistogram getRequestLatency() {
+            return _requestLatency;
+        }
+
+        /**
+         * @return time waiting for a pooled connection, included in the request latency
+         */
+        public LatencyHistogram getPoolWait() {
+            return _poolWait;
+        }
+
+        @Override
+        public String toString() {
+            return "requests: " + _requestLatency + ", pool wait: " + _poolWait;
+        }
+    }
+
+    /**
+     * Maximum number of outstanding connections
+     *
+     * @param maxConn
+     */
+    public void setMaxConnections(int maxConn) {
+        _maxConn = maxConn;
+    }
+
+    /**
+     * Maximum number of outstanding connections per device host and port
+     *
+     * @param maxConnPerHost
+     */
+    public void setMaxConnectionsPerHost(int maxConnPerHost) {
+        _maxConnPerHost = maxConnPerHost;
+    }
+
+    /**
+     * Maximum number of outstanding connections of given devices, overriding maxConnectionsPerHost
+     *
+     * @param maxConnPerEndpoint maximum number of connections keyed by host:port
+     */
+    public void setMaxConnectionsPerEndpoint(Map<String, Integer> maxConnPerEndpoint) {
+        _maxConnPerEndpoint = new HashMap<String, Integer>(maxConnPerEndpoint);
+    }
+
+    /**
+     * Connection timeout
+     *
+     * @param connectionTimeoutMs
+     */
+    public void setConnectionTimeoutMs(int connectionTimeoutMs) {
+        _connTimeout = connectionTimeoutMs;
+    }
+
+    /**
+     * Socket connection timeout
+     *
+     * @param connectionTimeoutMs
+     */
+    public void setSocketConnectionTimeoutMs(int connectionTimeoutMs) {
+        _socketConnTimeout = connectionTimeoutMs;
+    }
+
+    /**
+     * Timeout to get a connection from the pool
+     *
+     * @param connManagerTimeout
+     */
+    public void setConnManagerTimeout(int connManagerTimeout) {
+        _connManagerTimeout = connManagerTimeout;
+    }
+
+    /**
+     * Connections idle for longer are closed
+     *
+     * @param idleConnectionTimeoutMs
+     */
+    public void setIdleConnectionTimeoutMs(int idleConnectionTimeoutMs) {
+        _idleConnTimeout = idleConnectionTimeoutMs;
+    }
+
+    /**
+     * How often idle connections are looked for
+     *
+     * @param evictionIntervalMs
+     */
+    public void setEvictionIntervalMs(int evictionIntervalMs) {
+        _evictionInterval = evictionIntervalMs;
+    }
+
+    /**
+     * If gzip encoded responses are asked for
+     *
+     * @param gzipEnabled
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        _gzipEnabled = gzipEnabled;
+    }
+
+    /**
+     * Initialize the connection pool
+     */
+    public void init() {
+        _log.info("Init");
+
+        HttpConnectionManagerParams params = new HttpConnectionManagerParams() {
+            @Override
+            public int getMaxConnectionsPerHost(HostConfiguration hostConfiguration) {
+                Integer max = _maxConnPerEndpoint.get(getEndpoint(hostConfiguration));
+                return max != null ? max : super.getMaxConnectionsPerHost(hostConfiguration);
+            }
+        };
+        params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
+        params.setMaxTotalConnections(_maxConn);
+        params.setTcpNoDelay(true);
+        params.setConnectionTimeout(_connTimeout);
+        params.setSoTimeout(_socketConnTimeout);
+        // a connection the device closed while idle is not used for a request
+        params.setStaleCheckingEnabled(true);
+
+        _connectionManager = new MultiThreadedHttpConnectionManager() {
+            @Override
+            public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+                    throws ConnectionPoolTimeoutException {
+                long start = System.currentTimeMillis();
+                try {
+                    return super.getConnectionWithTimeout(hostConfiguration, timeout);
+                } finally {
+                    getMetrics(getEndpoint(hostConfiguration)).getPoolWait().record(System.currentTimeMillis() - start);
+                }
+            }
+        };
+        _connectionManager.setParams(params);
+
+        _idleConnectionEvictor = new IdleConnectionTimeoutThread();
+        _idleConnectionEvictor.setName("PooledHttpTransportEvictor");
+        _idleConnectionEvictor.setConnectionTimeout(_idleConnTimeout);
+        _idleConnectionEvictor.setTimeoutInterval(_evictionInterval);
+        _idleConnectionEvictor.addConnectionManager(_connectionManager);
+        _idleConnectionEvictor.start();
+
+        _clientHandler = new ApacheHttpClientHandler(createHttpClient());
+
+        Protocol.registerProtocol("https", new Protocol("https", new NonValidatingSocketFactory(), 443));
+    }
+
+    /**
+     * Close the pooled connections
+     */
+    public void shutdown() {
+        _idleConnectionEvictor.shutdown();
+        _connectionManager.shutdown();
+    }
+
+    MultiThreadedHttpConnectionManager getConnectionManager() {
+        return _connectionManager;
+    }
+
+    /**
+     * Get a HTTP client of its own, e.g. for its own credentials or cookies, using the shared connections
+     *
+     * @return the HTTP client
+     */
+    public HttpClient createHttpClient() {
+        return createHttpClient(_socketConnTimeout, _connManagerTimeout);
+    }
+
+    /**
+     * Get a HTTP client of its own with the timeouts of the factory using it, using the shared connections.
+     * The socket timeout is applied to each request of the client, the connection timeout and the maximum
+     * numbers of connections are those of the shared pool, see logOverriddenSettings.
+     *
+     * @param socketTimeoutMs socket timeout of the requests
+     * @param connManagerTimeoutMs timeout to get a connection from the pool
+     * @return the HTTP client
+     */
+    public HttpClient createHttpClient(int socketTimeoutMs, int connManagerTimeoutMs) {
+        HttpClient client = new HttpClient(_connectionManager);
+        client.getParams().setSoTimeout(socketTimeoutMs);
+        client.getParams().setConnectionManagerTimeout(connManagerTimeoutMs);
+        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
+            @Override
+            public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
+                return false;
+            }
+        });
+        return client;
+    }
+
+    /**
+     * Log the settings of a factory which the settings of the shared pool replace, as they apply to all
+     * the connections of the pool. Settings not set by the factory, 0 or less, are skipped.
+     *
+     * @param factory name of the factory
+     * @param maxConn maximum number of outstanding connections of the factory
+     * @param maxConnPerHost maximum number of outstanding connections per host of the factory
+     * @param connTimeoutMs connection timeout of the factory
+     */
+    public void logOverriddenSettings(String factory, int maxConn, int maxConnPerHost, int connTimeoutMs) {
+        logOverridden(factory, "maxConnections", maxConn, _maxConn);
+        logOverridden(factory, "maxConnectionsPerHost", maxConnPerHost, _maxConnPerHost);
+        logOverridden(factory, "connectionTimeoutMs", connTimeoutMs, _connTimeout);
+    }
+
+    private static void logOverridden(String factory, String setting, int value, int sharedValue) {
+        if (value > 0 && value != sharedValue) {
+            _log.warn("{} {} {} is overridden by {} of the shared HTTP transport",
+                    new Object[] { factory, setting, value, sharedValue });
+        }
+    }
+
+    /**
+     * Get the client handler sharing the HTTP state of the clients which do not need one of their own
+     *
+     * @return the client handler
+     */
+    public ApacheHttpClientHandler getClientHandler() {
+        return _clientHandler;
+    }
+
+    /**
+     * Create a Jersey client using the shared connections
+     *
+     * @return the Jersey client
+     */
+    public Client createClient() {
+        return addFilters(new ApacheHttpClient(_clientHandler));
+    }
+
+    /**
+     * Create a Jersey client with its own configuration and HTTP state, using the shared connections
+     *
+     * @param config client configuration
+     * @return the Jersey client
+     */
+    public ApacheHttpClient createClient(ClientConfig config) {
+        return addFilters(new ApacheHttpClient(new ApacheHttpClientHandler(createHttpClient(), config), config));
+    }
+
+    /**
+     * Create a Jersey client with a client handler of its factory's own, see createHttpClient
+     *
+     * @param clientHandler client handler using the shared connections
+     * @return the Jersey client
+     */
+    public Client createClient(ApacheHttpClientHandler clientHandler) {
+        return addFilters(new ApacheHttpClient(clientHandler));
+    }
+
+    private <T extends Client> T addFilters(T client) {
+        if (_gzipEnabled) {
+            // responses only, devices may not accept gzip request bodies
+            client.addFilter(new GZIPContentEncodingFilter(false));
+        }
+        client.addFilter(new ClientFilter() {
+            @Override
+            public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+                long start = System.currentTimeMillis();
+                try {
+                    return getNext().handle(request);
+                } finally {
+                    getMetrics(getEndpoint(request.getURI())).getRequestLatency().record(System.currentTimeMillis() - start);
+                }
+            }
+        });
+        return client;
+    }
+
+    private static String getEndpoint(HostConfiguration hostConfiguration) {
+        return hostConfiguration.getHost() + ":" + hostConfiguration.getPort();
+    }
+
+    private static String getEndpoint(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getHost() + ":" + port;
+    }
+
+    private EndpointMetrics getMetrics(String endpoint) {
+        EndpointMetrics metrics = _endpointMetrics.get(endpoint);
+        if (metrics == null) {
+            _endpointMetrics.putIfAbsent(endpoint, new EndpointMetrics());
+            metrics = _endpointMetrics.get(endpoint);
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the request latencies and pool waits of the devices requests were sent to
+     *
+     * @return metrics keyed by host:port
+     */
+    public Map<String, EndpointMetrics> getEndpointMetrics() {
+        return new TreeMap<String, EndpointMetrics>(_endpointMetrics);
+    }
+}
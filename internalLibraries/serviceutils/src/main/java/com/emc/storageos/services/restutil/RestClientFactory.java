@@ -46,6 +46,7 @@ abstract public class RestClientFactory {
     protected ApacheHttpClientHandler _clientHandler;
     protected ConcurrentMap<String, RestClientItf> _clientMap;
     private MultiThreadedHttpConnectionManager _connectionManager;
+    private PooledHttpTransport _httpTransport;
 
     /**
      * Maximum number of outstanding connections
@@ -126,6 +127,15 @@ abstract public class RestClientFactory {
         return _needCertificateManager;
     }
 
+    /**
+     * Shared HTTP transport to use instead of connections of this factory's own
+     *
+     * @param httpTransport
+     */
+    public void setHttpTransport(PooledHttpTransport httpTransport) {
+        _httpTransport = httpTransport;
+    }
+
     /**
      * Initialize HTTP client
      */
@@ -133,26 +143,32 @@ abstract public class RestClientFactory {
         _clientMap = new ConcurrentHashMap<String, RestClientItf>();
 
         _log.info("Init");
-
-        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
-        params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
-        params.setMaxTotalConnections(_maxConn);
-        params.setTcpNoDelay(true);
-        params.setConnectionTimeout(_connTimeout);
-        params.setSoTimeout(_socketConnTimeout);
-
-        _connectionManager = new MultiThreadedHttpConnectionManager();
-        _connectionManager.setParams(params);
-        _connectionManager.closeIdleConnections(0);  // close idle connections immediately
-
-        HttpClient client = new HttpClient(_connectionManager);
-        client.getParams().setConnectionManagerTimeout(connManagerTimeout);
-        client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
-            @Override
-            public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
-                return false;
-            }
-        });
+        HttpClient client;
+        if (_httpTransport != null) {
+            _log.info("Using the shared HTTP transport");
+            _httpTransport.logOverriddenSettings(getClass().getSimpleName(), _maxConn, _maxConnPerHost, _connTimeout);
+            client = _httpTransport.createHttpClient(_socketConnTimeout, connManagerTimeout);
+        } else {
+            HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+            params.setDefaultMaxConnectionsPerHost(_maxConnPerHost);
+            params.setMaxTotalConnections(_maxConn);
+            params.setTcpNoDelay(true);
+            params.setConnectionTimeout(_connTimeout);
+            params.setSoTimeout(_socketConnTimeout);
+
+            _connectionManager = new MultiThreadedHttpConnectionManager();
+            _connectionManager.setParams(params);
+            _connectionManager.closeIdleConnections(0);  // close idle connections immediately
+
+            client = new HttpClient(_connectionManager);
+            client.getParams().setConnectionManagerTimeout(connManagerTimeout);
+            client.getParams().setParameter(HttpMethodParams.RETRY_HANDLER, new HttpMethodRetryHandler() {
+                @Override
+                public boolean retryMethod(HttpMethod httpMethod, IOException e, int i) {
+                    return false;
+                }
+            });
+        }
         // client.
 
         if (_needCertificateManager) {
@@ -202,13 +218,16 @@ abstract public class RestClientFactory {
      * shutdown http connection manager.
      */
     protected void shutdown() {
-        _connectionManager.shutdown();
+        // the shared HTTP transport is shut down by its owner
+        if (_connectionManager != null) {
+            _connectionManager.shutdown();
+        }
     }
 
     public RestClientItf getRESTClient(URI endpoint, String username, String password, boolean authFilter) {
         RestClientItf clientApi = _clientMap.get(endpoint.toString() + ":" + username + ":" + password);
         if (clientApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             if (authFilter) {
                 jerseyClient.addFilter(new HTTPBasicAuthFilter(username, password));
             }
@@ -237,18 +256,27 @@ abstract public class RestClientFactory {
     public RestClientItf getRESTClient(URI endpoint, String username, String password) {
         RestClientItf clientApi = _clientMap.get(endpoint.toString() + ":" + username + ":" + password);
         if (clientApi == null) {
-            Client jerseyClient = new ApacheHttpClient(_clientHandler);
+            Client jerseyClient = createJerseyClient();
             clientApi = createNewRestClient(endpoint, username, password, jerseyClient);
             _clientMap.putIfAbsent(endpoint.toString() + ":" + username + ":" + password, clientApi);
         }
         return clientApi;
     }
 
+    /**
+     * Create a Jersey client, using the shared HTTP transport if any
+     *
+     * @return the Jersey client
+     */
+    protected Client createJerseyClient() {
+        return _httpTransport != null ? _httpTransport.createClient(_clientHandler) : new ApacheHttpClient(_clientHandler);
+    }
+
     abstract protected RestClientItf createNewRestClient(URI endpoint, String username, String password,
             com.sun.jersey.api.client.Client client);
 
     protected Client getBaseClient(URI endpoint, String username, String password, boolean authFilter) {
-        Client jerseyClient = new ApacheHttpClient(_clientHandler);
+        Client jerseyClient = createJerseyClient();
         if (authFilter) {
             jerseyClient.addFilter(new HTTPBasicAuthFilter(username, password));
         }
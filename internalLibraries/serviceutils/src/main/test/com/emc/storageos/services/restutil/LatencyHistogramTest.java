@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.services.restutil;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentileMsec(99));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(200);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(200, histogram.getMaxMsec());
+        // upper bound of the bucket
+        Assert.assertEquals(4, histogram.getPercentileMsec(50));
+        Assert.assertEquals(4, histogram.getPercentileMsec(90));
+        Assert.assertEquals(200, histogram.getPercentileMsec(99));
+    }
+
+    @Test
+    public void testLongLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(10L * 60 * 60 * 1000);
+        Assert.assertEquals(1, histogram.getPercentileMsec(50));
+        Assert.assertEquals(10L * 60 * 60 * 1000, histogram.getPercentileMsec(100));
+    }
+
+    @Test
+    public void testConcurrentRecords() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final int max = 1000 * (t + 1);
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < max; i++) {
+                        histogram.record(i);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(3999, histogram.getMaxMsec());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.services.restutil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sun.jersey.client.apache.ApacheHttpClientHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledHttpTransportTest {
+
+    private PooledHttpTransport _transport = new PooledHttpTransport();
+
+    @After
+    public void tearDown() {
+        _transport.shutdown();
+    }
+
+    private static HostConfiguration host(int port) {
+        HostConfiguration hostConfiguration = new HostConfiguration();
+        hostConfiguration.setHost("localhost", port, "http");
+        return hostConfiguration;
+    }
+
+    /**
+     * The maximum number of connections of an endpoint overrides the maximum per host
+     */
+    @Test
+    public void testMaxConnectionsPerEndpoint() throws Exception {
+        _transport.setMaxConnectionsPerHost(2);
+        _transport.setMaxConnectionsPerEndpoint(Collections.singletonMap("localhost:8081", 1));
+        _transport.init();
+        MultiThreadedHttpConnectionManager manager = _transport.getConnectionManager();
+
+        Assert.assertEquals(1, manager.getParams().getMaxConnectionsPerHost(host(8081)));
+        Assert.assertEquals(2, manager.getParams().getMaxConnectionsPerHost(host(8082)));
+
+        manager.getConnectionWithTimeout(host(8081), 100);
+        try {
+            manager.getConnectionWithTimeout(host(8081), 100);
+            Assert.fail("the second connection to the endpoint should not be given");
+        } catch (ConnectionPoolTimeoutException e) {
+            // expected
+        }
+        manager.getConnectionWithTimeout(host(8082), 100);
+        manager.getConnectionWithTimeout(host(8082), 100);
+
+        Assert.assertEquals(2, _transport.getEndpointMetrics().get("localhost:8081").getPoolWait().getCount());
+    }
+
+    /**
+     * A connection idle for longer than the idle timeout is closed while in the pool
+     */
+    @Test
+    public void testIdleConnectionsClosed() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            _transport.setIdleConnectionTimeoutMs(50);
+            _transport.setEvictionIntervalMs(10);
+            _transport.init();
+            Assert.assertFalse(openAndRelease(host(server.getLocalPort()), 500));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * A connection idle for shorter than the idle timeout is kept open for reuse
+     */
+    @Test
+    public void testConnectionsKept() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            _transport.setEvictionIntervalMs(10);
+            _transport.init();
+            Assert.assertTrue(openAndRelease(host(server.getLocalPort()), 100));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Open a pooled connection, give it back to the pool and get it again after being idle
+     *
+     * @return if the connection got again is still open
+     */
+    private boolean openAndRelease(HostConfiguration hostConfiguration, long idleMs) throws Exception {
+        MultiThreadedHttpConnectionManager manager = _transport.getConnectionManager();
+        HttpConnection connection = manager.getConnectionWithTimeout(hostConfiguration, 100);
+        connection.open();
+        connection.releaseConnection();
+        Thread.sleep(idleMs);
+        return manager.getConnectionWithTimeout(hostConfiguration, 100).isOpen();
+    }
+
+    /**
+     * The clients of the factories share the connections, with the timeouts of their factory
+     */
+    @Test
+    public void testFactoryTimeouts() {
+        _transport.init();
+        HttpClient client = _transport.createHttpClient(1000, 2000);
+        Assert.assertSame(_transport.getConnectionManager(), client.getHttpConnectionManager());
+        Assert.assertEquals(1000, client.getParams().getSoTimeout());
+        Assert.assertEquals(2000, client.getParams().getConnectionManagerTimeout());
+
+        HttpClient other = _transport.createHttpClient(3000, 4000);
+        Assert.assertSame(_transport.getConnectionManager(), other.getHttpConnectionManager());
+        Assert.assertEquals(3000, other.getParams().getSoTimeout());
+        Assert.assertEquals(1000, client.getParams().getSoTimeout());
+    }
+
+    /**
+     * The requests of the clients are recorded per endpoint, and gzip responses are asked for
+     */
+    @Test
+    public void testRequestMetrics() throws Exception {
+        final Map<String, String> encodings = Collections.synchronizedMap(new HashMap<String, String>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                encodings.put(exchange.getRequestURI().getPath(), exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        try {
+            _transport.init();
+            String url = "http://localhost:" + server.getAddress().getPort();
+            Assert.assertEquals("ok", _transport.createClient().resource(url + "/shared").get(String.class));
+            ApacheHttpClientHandler clientHandler = new ApacheHttpClientHandler(_transport.createHttpClient(1000, 1000));
+            Assert.assertEquals("ok", _transport.createClient(clientHandler).resource(url + "/own").get(String.class));
+
+            PooledHttpTransport.EndpointMetrics metrics = _transport.getEndpointMetrics()
+                    .get("localhost:" + server.getAddress().getPort());
+            Assert.assertEquals(2, metrics.getRequestLatency().getCount());
+            Assert.assertEquals(2, metrics.getPoolWait().getCount());
+            Assert.assertTrue(encodings.get("/shared").contains("gzip"));
+            Assert.assertTrue(encodings.get("/own").contains("gzip"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
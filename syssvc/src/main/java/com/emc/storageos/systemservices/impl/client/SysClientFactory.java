@@ -35,6 +35,7 @@ public class SysClientFactory {
     public static final URI URI_WAKEUP_VDC_MANAGER = URI.create("/upgrade/internal/wakeup?type=vdc");
     public static final URI URI_GET_INTERNAL_NODE_HARDWARE = URI.create("/monitor/internal/node-hardware-info");
     public static final URI URI_NODE_LOGS = URI.create("/logs/internal/node-logs");
+    public static final URI URI_NODE_LOGS_COMPRESSED = URI.create("/logs/internal/node-logs-compressed");
     public static final URI URI_LOG_LEVELS = URI.create("/logs/internal/log-level");
     public static final URI URI_RESTART_SERVICE = URI.create("/control/internal/service/restart");
     public static final URI URI_POWEROFF_NODE = URI.create("/control/internal/node/poweroff");
@@ -162,6 +163,26 @@ public class SysClientFactory {
         public <T> T post(URI postUri, Class<T> returnType,
                 Object requestBody) throws
                 SysClientException {
+            return post(postUri, returnType, requestBody, false);
+        }
+
+        /**
+         * Call this method to perform POST action on a URI the node may not serve,
+         * e.g. one added in a later version.
+         * 
+         * @param postUri URI on which POST action is invoked.
+         * @param returnType Response return type
+         * @return response of the type passed, or null if the node answered 404 or 405.
+         * @throws SysClientException
+         */
+        public <T> T postIfSupported(URI postUri, Class<T> returnType,
+                Object requestBody) throws SysClientException {
+            return post(postUri, returnType, requestBody, true);
+        }
+
+        private <T> T post(URI postUri, Class<T> returnType,
+                Object requestBody, boolean nullIfUnsupported) throws
+                SysClientException {
             final WebResource webResource = createRequest(postUri);
             ClientResponse response;
             final WebResource.Builder resourceBuilder = addSignature(webResource);
@@ -182,6 +203,12 @@ public class SysClientFactory {
             }
             final int status = response.getStatus();
 
+            if (nullIfUnsupported && (status == 404 || status == 405)) {
+                _log.info("POST request on URI {} not supported by node {}, status {}",
+                        new Object[] { postUri, _endpoint.toString(), status });
+                response.close();
+                return null;
+            }
             if (!isSuccess(status)) {
                 _log.info("response={}", response);
                 throw SyssvcException.syssvcExceptions.sysClientError(
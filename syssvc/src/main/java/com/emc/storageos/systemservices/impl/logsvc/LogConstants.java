@@ -8,4 +8,8 @@ public class LogConstants {
     public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss,SSS";
     public static final int BUFFER_SIZE = 64 * 1024;// buffer for log
     public static final int MAXCOUNT_OVERFLOW = 5;
+    // approximate size of the blocks of a log file index, in uncompressed bytes
+    public static final int INDEX_BLOCK_SIZE = 64 * 1024;
+    // number of log files whose index is cached
+    public static final int INDEX_CACHE_SIZE = 4096;
 }
@@ -157,6 +157,13 @@ public class LogMessage {
         this.level = level;
     }
 
+    /**
+     * @return ordinal of the LogSeverity of the log, -1 if not known
+     */
+    public int getLevelValue() {
+        return level;
+    }
+
     public void setFileName(int offset, int len) {
         fileNameOffset = offset;
         fileNameLen = len;
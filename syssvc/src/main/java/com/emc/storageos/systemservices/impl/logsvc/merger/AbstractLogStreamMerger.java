@@ -32,12 +32,16 @@ public abstract class AbstractLogStreamMerger {
 
     private boolean finished = false;
     private AtomicLong logCounter = new AtomicLong(0);
-    private int finishedCount = 0; // finished streams
     private long prevLogTime; // defaults to 0
 
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(AbstractLogStreamMerger.class);
 
+    // indexes of the streams whose next log has been read, ordered by the time of that log
+    private PriorityQueue<Integer> heads;
+    // stream whose log was returned last, its next log is read on the next call
+    private int pendingIndex = -1;
+
     /**
      * This is the routine handles the request, sends back the response(outputstream)
      * 
@@ -46,44 +50,55 @@ public abstract class AbstractLogStreamMerger {
      */
     public LogMessage readNextMergedLogMessage() throws IOException, CompressorException {
         LogMessage oldestResult = null;
-        LogMessage oldest = null;
-        int index = -1;
-        if (finishedCount == logStreamList.length) {
-            setFinished(true);
-            return null;
-        }
-        // poll the streams to get the oldest log message
-        for (int i = 0; i < logStreamList.length; i++) {
-            if (finishedList.contains(i)) {
-                continue;
-            }
-            if (logHeads[i] == null) {
-                logHeads[i] = logStreamList[i].readNextLogMessage();
-                if (logHeads[i] == null) { // finished
-                    addFinishedStream(i);
-                    finishedCount++;
-                    logger.debug("merger counter={}", logCounter);
-                    continue;
+        if (heads == null) {
+            // the oldest log is taken from the stream with the lowest index among equal times
+            heads = new PriorityQueue<>(Math.max(1, logStreamList.length), new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i, Integer j) {
+                    long ti = logHeads[i].getTime();
+                    long tj = logHeads[j].getTime();
+                    return ti < tj ? -1 : ti > tj ? 1 : Integer.compare(i, j);
                 }
+            });
+            for (int i = 0; i < logStreamList.length; i++) {
+                readHead(i);
             }
-            // logs[i] should not be null now
-            if (oldest == null || logHeads[i].getTime() < oldest.getTime()) {
-                oldest = logHeads[i];
-                index = i;
-            }
+        } else if (pendingIndex >= 0) {
+            readHead(pendingIndex);
+            pendingIndex = -1;
         }
-        if (oldest != null) {
-            logHeads[index] = null;
-            logCounter.addAndGet(1);
-            if (LogUtil.permitCurrentLog(request.getMaxCount(), logCounter.get(),
-                    oldest.getTime(), prevLogTime)) {
-                oldestResult = oldest;
-            }
-            prevLogTime = oldest.getTime();
+        if (heads.isEmpty()) {
+            setFinished(true);
+            return null;
+        }
+        int index = heads.poll();
+        LogMessage oldest = logHeads[index];
+        logHeads[index] = null;
+        pendingIndex = index;
+        logCounter.addAndGet(1);
+        if (LogUtil.permitCurrentLog(request.getMaxCount(), logCounter.get(),
+                oldest.getTime(), prevLogTime)) {
+            oldestResult = oldest;
         }
+        prevLogTime = oldest.getTime();
         return oldestResult;
     }
 
+    private void readHead(int i) {
+        if (finishedList.contains(i)) {
+            return;
+        }
+        if (logHeads[i] == null) {
+            logHeads[i] = logStreamList[i].readNextLogMessage();
+        }
+        if (logHeads[i] == null) { // finished
+            addFinishedStream(i);
+            logger.debug("merger counter={}", logCounter);
+        } else {
+            heads.add(i);
+        }
+    }
+
     protected void addFinishedStream(int i) {
         finishedList.add(i);
     }
@@ -10,7 +10,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 
 import javax.ws.rs.core.MediaType;
 
@@ -19,6 +24,7 @@ import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 import com.emc.storageos.systemservices.impl.client.SysClientFactory;
 import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
@@ -27,6 +33,7 @@ import com.emc.storageos.systemservices.impl.logsvc.LogSvcPropertiesLoader;
 import com.emc.storageos.systemservices.impl.logsvc.marshaller.Marshaller;
 import com.emc.storageos.systemservices.impl.logsvc.marshaller.MarshallerFactory;
 import com.emc.storageos.systemservices.impl.logsvc.stream.LogNetworkReader;
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogStream;
 import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
 import com.emc.storageos.systemservices.impl.resource.util.ClusterNodesUtil;
 import com.emc.storageos.systemservices.impl.resource.util.NodeInfo;
@@ -111,6 +118,8 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
             marshaller.flush();
         } catch (Exception e) {
             logger.error("Exception in streamLogs:", e);
+        } finally {
+            close();
         }
     }
 
@@ -162,38 +171,87 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
             logger.error("Cannot collect logs from unavailable nodes: {}", failedNodes.toString());
         }
 
-        for (final NodeInfo node : nodeInfo) {
-            LogRequest req;
-            SysClientFactory.SysClient sysClient;
-            String baseNodeURL = String.format(SysClientFactory.BASE_URL_FORMAT,
-                    node.getIpAddress(), node.getPort());
-            logger.debug("getting stream from node: " + baseNodeURL);
-            logger.debug("connectTimeout=" + propertiesLoader.getNodeLogConnectionTimeout() * 1000);
-            logger.debug("readTimeout=" + propertiesLoader.getNodeLogCollectorTimeout() * 1000);
-            sysClient = SysClientFactory.getSysClient(URI.create(baseNodeURL),
-                    propertiesLoader.getNodeLogCollectorTimeout() * 1000,
-                    propertiesLoader.getNodeLogConnectionTimeout() * 1000);
-            logger.debug("sysclient=" + sysClient + " uri=" + URI.create(baseNodeURL));
-            try {
-                req = request;
-                req.setNodeIds(new ArrayList<String>() {
-                    {
-                        add(node.getId());
+        // nodes are asked for their logs at once, each node filters and merges its logs before sending any
+        List<Future<LogNetworkReader>> futures = new ArrayList<>();
+        NamedThreadPoolExecutor executor = new NamedThreadPoolExecutor("LogNetworkStreams", nodeInfo.size());
+        try {
+            for (final NodeInfo node : nodeInfo) {
+                futures.add(executor.submit(new Callable<LogNetworkReader>() {
+                    @Override
+                    public LogNetworkReader call() {
+                        return getLogNetworkStream(node);
+                    }
+                }));
+            }
+            for (Future<LogNetworkReader> future : futures) {
+                try {
+                    LogNetworkReader reader = future.get();
+                    if (reader != null) {
+                        logNetworkStreams.add(reader);
                     }
-                });
-                InputStream nodeResponseStream = sysClient.post(SysClientFactory
-                        .URI_NODE_LOGS, InputStream.class, req);
-                if (nodeResponseStream != null && nodeResponseStream.available() > 0) {
-                    LogNetworkReader reader = new LogNetworkReader(node.getId(),node.getName(),nodeResponseStream,status);
-                    logNetworkStreams.add(reader);
+                } catch (ExecutionException e) {
+                    logger.error("Exception getting node stream:", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
-            } catch (Exception e) {
-                logger.error("Exception accessing node {}:", baseNodeURL, e);
             }
+        } finally {
+            executor.shutdown();
         }
         return logNetworkStreams;
     }
 
+    private LogNetworkReader getLogNetworkStream(NodeInfo node) {
+        SysClientFactory.SysClient sysClient;
+        String baseNodeURL = String.format(SysClientFactory.BASE_URL_FORMAT,
+                node.getIpAddress(), node.getPort());
+        logger.debug("getting stream from node: " + baseNodeURL);
+        logger.debug("connectTimeout=" + propertiesLoader.getNodeLogConnectionTimeout() * 1000);
+        logger.debug("readTimeout=" + propertiesLoader.getNodeLogCollectorTimeout() * 1000);
+        sysClient = SysClientFactory.getSysClient(URI.create(baseNodeURL),
+                propertiesLoader.getNodeLogCollectorTimeout() * 1000,
+                propertiesLoader.getNodeLogConnectionTimeout() * 1000);
+        logger.debug("sysclient=" + sysClient + " uri=" + URI.create(baseNodeURL));
+        try {
+            // the request of each node only differs by its node id, the request itself is left unchanged
+            LogRequest req = new LogRequest.Builder().startTime(request.getStartTime())
+                    .endTime(request.getEndTime()).logLevel(request.getLogLevel())
+                    .maxCont(request.getMaxCount()).maxBytes(request.getMaxBytes())
+                    .nodeIds(Collections.singletonList(node.getId()))
+                    .baseNames(request.getBaseNames()).regex(request.getRegex()).build();
+            boolean compressed = true;
+            InputStream nodeResponseStream = sysClient.postIfSupported(SysClientFactory.URI_NODE_LOGS_COMPRESSED,
+                    InputStream.class, req);
+            if (nodeResponseStream == null) {
+                // node not upgraded yet, other failures are not retried
+                logger.info("Compressed logs not available from node {}, falling back", baseNodeURL);
+                compressed = false;
+                nodeResponseStream = sysClient.post(SysClientFactory.URI_NODE_LOGS, InputStream.class, req);
+            }
+            if (nodeResponseStream != null && nodeResponseStream.available() > 0) {
+                if (compressed) {
+                    nodeResponseStream = new GZIPInputStream(nodeResponseStream, LogConstants.BUFFER_SIZE);
+                }
+                LogNetworkReader reader = new LogNetworkReader(node.getId(), node.getName(), nodeResponseStream, status);
+                reader.startPrefetch();
+                return reader;
+            }
+        } catch (Exception e) {
+            logger.error("Exception accessing node {}:", baseNodeURL, e);
+        }
+        return null;
+    }
+
+    /**
+     * Closes the streams of all nodes, the nodes stop sending logs which are not merged
+     */
+    public void close() {
+        for (LogStream reader : logStreamList) {
+            ((LogNetworkReader) reader).close();
+        }
+    }
+
     private List<NodeInfo> getClusterNodesWithIds(List<String> nodeIds) {
         List<NodeInfo> matchingNodes = new ArrayList<>();
         List<NodeInfo> nodeInfoList = ClusterNodesUtil.getClusterNodeInfo();
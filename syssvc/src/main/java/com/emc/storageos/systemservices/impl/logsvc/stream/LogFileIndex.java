@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
+import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+import com.emc.storageos.systemservices.impl.logsvc.parse.LogParser;
+import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
+import com.emc.vipr.model.sys.logging.LogRequest;
+import com.emc.vipr.model.sys.logging.LogSeverity;
+
+/**
+ * Sparse index of a log file, splitting it into blocks of about INDEX_BLOCK_SIZE
+ * uncompressed bytes which start at the first line of a log message. Each block records
+ * the earliest and latest time and the most severe level of its log messages, so that a
+ * time or level filtered request only reads the blocks which may have matching logs,
+ * see {@link RangeInputStream}.
+ *
+ * The index of a file is built the first time it is read with a filter, and cached.
+ * Rotated log files do not change, so they are indexed once; the index of the file being
+ * written to is extended from its last block as the file grows.
+ */
+public class LogFileIndex {
+    // Logger reference.
+    private static final Logger logger = LoggerFactory.getLogger(LogFileIndex.class);
+
+    private static final Map<String, LogFileIndex> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, LogFileIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LogFileIndex> eldest) {
+                    return size() > LogConstants.INDEX_CACHE_SIZE;
+                }
+            });
+
+    private static class Block {
+        private final long offset;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private int minLevel = Integer.MAX_VALUE;
+
+        Block(long offset) {
+            this.offset = offset;
+        }
+
+        boolean hasLogs() {
+            return minTime <= maxTime;
+        }
+
+        void add(LogMessage log) {
+            minTime = Math.min(minTime, log.getTime());
+            maxTime = Math.max(maxTime, log.getTime());
+            // headers are never skipped for their level
+            minLevel = Math.min(minLevel, log.isHeader() ? -1 : log.getLevelValue());
+        }
+    }
+
+    // bytes at the start of the file, to tell a file truncated and written again from a grown one
+    private static final int HEAD_SIZE = 256;
+
+    private final Object fileKey;
+    private final long length;
+    private final long lastModified;
+    private final byte[] head;
+    private final List<Block> blocks;
+
+    private LogFileIndex(BasicFileAttributes attrs, byte[] head, List<Block> blocks) {
+        this.fileKey = attrs.fileKey();
+        this.length = attrs.size();
+        this.lastModified = attrs.lastModifiedTime().toMillis();
+        this.head = head;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Whether reading only the matching blocks of the log files is worth it for a request
+     */
+    static boolean isUseful(LogRequest req) {
+        return req.getStartTime() != null || req.getEndTime() != null
+                || req.getLogLevel() < LogSeverity.MAX_LEVEL;
+    }
+
+    /**
+     * Returns the index of a log file, building or extending it if the file changed.
+     *
+     * @param path path of the log file
+     * @return the index
+     * @throws IOException
+     * @throws CompressorException
+     */
+    static LogFileIndex getIndex(String path) throws IOException, CompressorException {
+        BasicFileAttributes attrs = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        LogFileIndex index = cache.get(path);
+        if (index != null && index.isCurrent(attrs)) {
+            return index;
+        }
+        long start = System.currentTimeMillis();
+        index = build(path, attrs, index);
+        cache.put(path, index);
+        logger.debug("Indexed {} in {} msec, {} blocks", path, System.currentTimeMillis() - start, index.blocks.size());
+        return index;
+    }
+
+    private boolean isCurrent(BasicFileAttributes attrs) {
+        return equals(fileKey, attrs.fileKey()) && length == attrs.size()
+                && lastModified == attrs.lastModifiedTime().toMillis();
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static LogFileIndex build(String path, BasicFileAttributes attrs, LogFileIndex previous)
+            throws IOException, CompressorException {
+        List<Block> blocks = new ArrayList<>();
+        long offset = 0;
+        byte[] head = readHead(path);
+        // a log file being written to only grows, until it is rotated
+        if (previous != null && !LogUtil.logFileZipped(path) && !previous.blocks.isEmpty()
+                && equals(previous.fileKey, attrs.fileKey()) && previous.length <= attrs.size()
+                && Arrays.equals(previous.head, Arrays.copyOf(head, previous.head.length))) {
+            blocks.addAll(previous.blocks.subList(0, previous.blocks.size() - 1));
+            offset = previous.blocks.get(previous.blocks.size() - 1).offset;
+        }
+
+        LogRequest all = new LogRequest.Builder().build();
+        LogParser parser = null;
+        try (InputStream in = LogUtil.getInputStream(path)) {
+            RangeInputStream.skipFully(in, offset);
+            LineScanner scanner = new LineScanner(in, offset);
+            Block block = new Block(offset);
+            blocks.add(block);
+            String line;
+            while ((line = scanner.readLine()) != null) {
+                LogMessage log = null;
+                if (parser != null) {
+                    log = parser.parseLine(line, all);
+                } else {
+                    for (LogParser candidate : LogReader.parserTable) {
+                        log = candidate.parseLine(line, all);
+                        if (!log.isContinuation()) {
+                            parser = candidate;
+                            break;
+                        }
+                    }
+                }
+                if (log == null || log.isContinuation() || log.isRejected() || log.isRejectedLast()) {
+                    continue;
+                }
+                if (scanner.getLineOffset() - block.offset >= LogConstants.INDEX_BLOCK_SIZE) {
+                    block = new Block(scanner.getLineOffset());
+                    blocks.add(block);
+                }
+                block.add(log);
+            }
+        }
+        return new LogFileIndex(attrs, head, blocks);
+    }
+
+    private static byte[] readHead(String path) throws IOException, CompressorException {
+        byte[] head = new byte[HEAD_SIZE];
+        int len = 0;
+        try (InputStream in = LogUtil.getInputStream(path)) {
+            int n;
+            while (len < HEAD_SIZE && (n = in.read(head, len, HEAD_SIZE - len)) > 0) {
+                len += n;
+            }
+        }
+        return Arrays.copyOf(head, len);
+    }
+
+    /**
+     * Returns the ranges of the file to read for a request, skipping the blocks whose logs are
+     * all out of the requested time range or less severe than the requested level. Reading
+     * stops after the first block with logs later than the end time, as LogReader does.
+     *
+     * @param req the request
+     * @return list of [start offset, end offset) of the ranges to read, in file order
+     */
+    List<long[]> getRanges(LogRequest req) {
+        long startTime = req.getStartTime() == null ? Long.MIN_VALUE : req.getStartTime().getTime();
+        long endTime = req.getEndTime() == null ? Long.MAX_VALUE : req.getEndTime().getTime();
+        int level = req.getLogLevel();
+
+        List<long[]> ranges = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            // the last block reaches what has been written to the file since it was indexed
+            long blockEnd = i + 1 < blocks.size() ? blocks.get(i + 1).offset : Long.MAX_VALUE;
+            if (block.hasLogs() && block.minTime > endTime) {
+                break;
+            }
+            if (!block.hasLogs() || (block.maxTime >= startTime && block.minLevel <= level)) {
+                long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                if (last != null && last[1] == block.offset) {
+                    last[1] = blockEnd;
+                } else {
+                    ranges.add(new long[] { block.offset, blockEnd });
+                }
+            }
+            if (block.hasLogs() && block.maxTime > endTime) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Reads the lines of a stream, keeping the offset each line starts at.
+     * Lines are decoded with the default charset, as LogReader does.
+     */
+    private static class LineScanner {
+        private final InputStream in;
+        private final byte[] buffer = new byte[LogConstants.BUFFER_SIZE];
+        private int pos;
+        private int limit;
+        private long offset;
+        private long lineOffset;
+        private byte[] line = new byte[1024];
+
+        LineScanner(InputStream in, long offset) {
+            this.in = in;
+            this.offset = offset;
+        }
+
+        String readLine() throws IOException {
+            lineOffset = offset;
+            int len = 0;
+            while (true) {
+                if (pos == limit) {
+                    limit = in.read(buffer);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return len == 0 && offset == lineOffset ? null : toString(len);
+                    }
+                }
+                byte b = buffer[pos++];
+                offset++;
+                if (b == '\n') {
+                    return toString(len);
+                }
+                if (len == line.length) {
+                    byte[] grown = new byte[len * 2];
+                    System.arraycopy(line, 0, grown, 0, len);
+                    line = grown;
+                }
+                line[len++] = b;
+            }
+        }
+
+        private String toString(int len) {
+            if (len > 0 && line[len - 1] == '\r') {
+                len--;
+            }
+            return new String(line, 0, len);
+        }
+
+        long getLineOffset() {
+            return lineOffset;
+        }
+    }
+
+    /**
+     * Stream of the given ranges of a file, skipping the bytes between them
+     */
+    static class RangeInputStream extends InputStream {
+        private final InputStream in;
+        private final List<long[]> ranges;
+        private int rangeIndex;
+        private long position;
+
+        RangeInputStream(InputStream in, List<long[]> ranges) {
+            this.in = in;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (rangeIndex < ranges.size()) {
+                long[] range = ranges.get(rangeIndex);
+                if (position >= range[1]) {
+                    rangeIndex++;
+                    continue;
+                }
+                if (position < range[0]) {
+                    position += skipFully(in, range[0] - position);
+                    if (position < range[0]) {
+                        return -1;
+                    }
+                }
+                int n = in.read(b, off, (int) Math.min(len, range[1] - position));
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Skips bytes of a stream, seeking in a file stream.
+         *
+         * @return number of bytes skipped, less than asked only at the end of the stream
+         */
+        static long skipFully(InputStream in, long count) throws IOException {
+            long skipped = 0;
+            while (skipped < count) {
+                long n = in.skip(count - skipped);
+                if (n <= 0) {
+                    // skip does not tell the end of the stream apart
+                    if (in.read() < 0) {
+                        break;
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return skipped;
+        }
+    }
+}
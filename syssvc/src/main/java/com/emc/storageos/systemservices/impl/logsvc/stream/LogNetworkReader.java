@@ -7,7 +7,14 @@ package com.emc.storageos.systemservices.impl.logsvc.stream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,12 +27,22 @@ public class LogNetworkReader implements LogStream {
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(LogNetworkReader.class);
 
+    // number of logs read ahead in a batch, and number of batches read ahead
+    private static final int PREFETCH_BATCH_SIZE = 256;
+    private static final int PREFETCH_BATCHES = 8;
+    private static final List<Object> END_OF_STREAM = new ArrayList<>(0);
+
     private DataInputStream dis;
     private LogStatusInfo status;
     private boolean isFinished;  // record is the logs and status chucks are all finished
     private String nodeId;
     private String nodeName;
     private int logMessageCount = 0;
+
+    // batches of logs and status lines read ahead by the prefetch thread, in stream order
+    private BlockingQueue<List<Object>> prefetched;
+    private Iterator<Object> batch;
+    private volatile boolean closed;
     
     public LogNetworkReader(String nodeId, String nodeName, InputStream inputStream, LogStatusInfo status) {
         this.nodeId = nodeId;
@@ -35,8 +52,134 @@ public class LogNetworkReader implements LogStream {
         this.isFinished = false;
     }
 
+    /**
+     * Starts reading the stream ahead of the merger in a separate thread, so that receiving and
+     * deserializing the logs of a node overlaps with merging them with the logs of the other nodes.
+     * 
+     * The prefetch thread waits for the merger as long as it takes, the merger only takes logs
+     * from the node with the earliest pending log. It stops when the stream ends, fails or is
+     * closed, and always queues the end of the stream unless the stream was closed.
+     */
+    public void startPrefetch() {
+        prefetched = new ArrayBlockingQueue<>(PREFETCH_BATCHES);
+        Thread prefetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prefetch();
+            }
+        }, "LogPrefetch-" + nodeId);
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+    }
+
+    private void prefetch() {
+        List<Object> next = new ArrayList<>(PREFETCH_BATCH_SIZE);
+        try {
+            while (!closed) {
+                int read = dis.read();
+                if (read < 0) {
+                    logger.error("Stream of node {} ended before FIN", nodeId);
+                    next.add(getErrorStatus("stream ended unexpectedly"));
+                    break;
+                }
+                byte flag = (byte) read;
+                if (flag == LogACKCode.ACK_FIN) {
+                    logger.debug("received FIN");
+                    break;
+                } else if (flag == LogACKCode.ACK_STATUS) {
+                    // status lines are appended to the merger status when the merger reaches them
+                    LogStatusInfo lines = new LogStatusInfo();
+                    lines.readAndAppend(dis);
+                    next.addAll(lines.getStatus());
+                } else if (flag == LogACKCode.ACK_LOG_ENTRY) {
+                    next.add(readLog());
+                    if (next.size() >= PREFETCH_BATCH_SIZE) {
+                        if (!put(next)) {
+                            return;
+                        }
+                        next = new ArrayList<>(PREFETCH_BATCH_SIZE);
+                    }
+                } else {
+                    logger.info("receive {} -- ERROR", flag);
+                }
+            }
+        } catch (Exception e) {
+            if (!closed) {
+                logger.error("Exception reading stream of node " + nodeId, e);
+                next.add(getErrorStatus(e.getMessage()));
+            }
+        }
+        if (!next.isEmpty() && !put(next)) {
+            return;
+        }
+        put(END_OF_STREAM);
+    }
+
+    private String getErrorStatus(String message) {
+        return "Failed to read the logs of node " + nodeName + " (" + nodeId + "): " + message;
+    }
+
+    /**
+     * Queues logs read ahead, waiting for the merger to make room for them.
+     * 
+     * @return false if the stream was closed meanwhile
+     */
+    private boolean put(List<Object> next) {
+        try {
+            while (!closed) {
+                if (prefetched.offer(next, 1, TimeUnit.SECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+        return false;
+    }
+
     @Override
     public LogMessage readNextLogMessage() {
+        if (prefetched == null) {
+            return readNextLogMessageFromStream();
+        }
+        try {
+            while (true) {
+                if (batch != null && batch.hasNext()) {
+                    Object next = batch.next();
+                    if (next instanceof LogMessage) {
+                        return (LogMessage) next;
+                    }
+                    status.append((String) next);
+                    continue;
+                }
+                if (isFinished) {
+                    return null;
+                }
+                List<Object> next = prefetched.poll(1, TimeUnit.SECONDS);
+                if (next == null) {
+                    // nothing more is queued once the stream is closed
+                    if (closed && prefetched.isEmpty()) {
+                        isFinished = true;
+                        return null;
+                    }
+                    continue;
+                }
+                if (next == END_OF_STREAM) {
+                    logger.debug("logMessageCount_Reader={}", logMessageCount);
+                    isFinished = true;
+                    return null;
+                }
+                batch = next.iterator();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            return null;
+        }
+    }
+
+    private LogMessage readNextLogMessageFromStream() {
         try {
             while (true) {
                 byte flag = (byte) dis.read();
@@ -48,14 +191,7 @@ public class LogNetworkReader implements LogStream {
                 } else if (flag == LogACKCode.ACK_STATUS) {
                     status.readAndAppend(dis);
                 } else if (flag == LogACKCode.ACK_LOG_ENTRY) {
-                    LogMessage log = LogMessage.read(dis);
-                    logMessageCount++;
-                    log.setNodeId(LogUtil.nodeIdToBytes(nodeId));
-                    log.setNodeName(LogUtil.nodeNameToBytes(nodeName));
-                    if (logMessageCount % 100000 == 0) {
-                        logger.debug("processing the {}th log messages", logMessageCount);
-                    }
-                    return log;
+                    return readLog();
                 } else {
                     logger.info("receive {} -- ERROR", flag);
                 }
@@ -67,6 +203,25 @@ public class LogNetworkReader implements LogStream {
         }
     }
 
+    private LogMessage readLog() throws IOException {
+        LogMessage log = LogMessage.read(dis);
+        logMessageCount++;
+        log.setNodeId(LogUtil.nodeIdToBytes(nodeId));
+        log.setNodeName(LogUtil.nodeNameToBytes(nodeName));
+        if (logMessageCount % 100000 == 0) {
+            logger.debug("processing the {}th log messages", logMessageCount);
+        }
+        return log;
+    }
+
+    /**
+     * Closes the stream, stopping the prefetch thread if any
+     */
+    public void close() {
+        closed = true;
+        IOUtils.closeQuietly(dis);
+    }
+
     public String getNodeId() {
         return this.nodeId;
     }
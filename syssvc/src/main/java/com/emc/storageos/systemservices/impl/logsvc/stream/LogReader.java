@@ -7,6 +7,7 @@ package com.emc.storageos.systemservices.impl.logsvc.stream;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -37,7 +38,7 @@ public class LogReader implements LogStream {
     private long logCount;
     private LogMessage currentLog = null;
     private LogParser parser = null;
-    private static List<LogParser> parserTable = new LinkedList<>();
+    static List<LogParser> parserTable = new LinkedList<>();
     private LogStatusInfo status = null;
     private final String filePath;
     private int fileLineNumber = 0;
@@ -60,7 +61,19 @@ public class LogReader implements LogStream {
 
     public LogReader(String path, LogRequest req, LogStatusInfo status, String service) throws IOException,
             CompressorException {
-        if (LogUtil.logFileZipped(path)) {
+        List<long[]> ranges = null;
+        if (LogFileIndex.isUseful(req)) {
+            try {
+                ranges = LogFileIndex.getIndex(path).getRanges(req);
+            } catch (IOException | CompressorException | RuntimeException e) {
+                logger.warn("Failed to index log file {}, reading all of it", path, e);
+            }
+        }
+        if (ranges != null) {
+            // read only the parts of the file which may have logs matching the request
+            reader = new BufferedReader(new InputStreamReader(
+                    new LogFileIndex.RangeInputStream(LogUtil.getInputStream(path), ranges)));
+        } else if (LogUtil.logFileZipped(path)) {
             reader = LogUtil.getBufferedReaderForBZ2File(path);
         } else {
             reader = new BufferedReader(new FileReader(path));
@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -23,6 +24,7 @@ import java.util.Map;
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorInputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -209,6 +211,28 @@ public class LogUtil {
         return br;
     }
 
+    /**
+     * Opens a log file for reading, decompressing it if compressed (bz2/xz/gzip).
+     * 
+     * @param fileIn
+     * @return
+     * @throws FileNotFoundException
+     * @throws CompressorException
+     */
+    public static InputStream getInputStream(String fileIn)
+            throws FileNotFoundException, CompressorException {
+        FileInputStream fin = new FileInputStream(fileIn);
+        if (!logFileZipped(fileIn)) {
+            return fin;
+        }
+        try {
+            return new CompressorStreamFactory().createCompressorInputStream(new BufferedInputStream(fin));
+        } catch (CompressorException | RuntimeException e) {
+            IOUtils.closeQuietly(fin);
+            throw e;
+        }
+    }
+
     /**
      * Check for a compressed file extension - for now, .bz2, .xz and .gz
      * 
@@ -14,6 +14,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
@@ -38,6 +40,7 @@ import com.emc.storageos.services.ServicesMetadata;
 import com.emc.storageos.services.util.TimeUtils;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 import com.emc.storageos.systemservices.impl.client.SysClientFactory;
+import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
 import com.emc.storageos.systemservices.impl.logsvc.LogLevelManager;
 import com.emc.storageos.systemservices.impl.logsvc.LogNetworkWriter;
 import com.emc.storageos.systemservices.impl.logsvc.LogRequestParam;
@@ -320,6 +323,38 @@ public class LogService extends BaseLogSvcResource {
         return Response.ok(logMsgStream).build();
     }
 
+    /**
+     * Internal Use
+     * <p/>
+     * Same as getNodeLogs, with the log data gzip compressed, so that fewer bytes cross the network between nodes.
+     *
+     * @return A Response containing the compressed log messages.
+     */
+    @POST
+    @Path("internal/node-logs-compressed/")
+    @Produces({ MediaType.APPLICATION_OCTET_STREAM })
+    public Response getCompressedNodeLogs(LogRequest logReqInfo) {
+        _log.trace("Enter into getCompressedNodeLogs()");
+        if (logReqInfo.isDryRun()) {
+            return Response.ok().build();
+        }
+        final LogNetworkWriter logRequestMgr = new LogNetworkWriter(logReqInfo,
+                _logSvcPropertiesLoader);
+        StreamingOutput logMsgStream = new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) throws IOException,
+                    WebApplicationException {
+                // logs compress well, the fastest level is enough and keeps up with the merge
+                logRequestMgr.write(new GZIPOutputStream(outputStream, LogConstants.BUFFER_SIZE) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                });
+            }
+        };
+        return Response.ok(logMsgStream).build();
+    }
+
     /**
      * Get current logging levels for all services and virtual machines
      *
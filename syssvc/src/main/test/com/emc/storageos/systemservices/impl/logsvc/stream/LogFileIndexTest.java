@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.stream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
+import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+import com.emc.storageos.systemservices.impl.logsvc.LogStatusInfo;
+import com.emc.vipr.model.sys.logging.LogRequest;
+import com.emc.vipr.model.sys.logging.LogSeverity;
+
+/**
+ * Reading time and level filtered logs through the log file index
+ */
+public class LogFileIndexTest {
+    private static final long START = 1452960000000L;
+    private static final int LOGS = 20000;
+    private static final int ERROR_EVERY = 2000;
+
+    private static volatile File logDir;
+
+    @BeforeClass
+    public static void createLogDir() {
+        logDir = new File(FileUtils.getTempDirectory(), LogFileIndexTest.class.getSimpleName());
+        logDir.mkdirs();
+    }
+
+    @AfterClass
+    public static void deleteLogDir() {
+        if (logDir != null) {
+            FileUtils.deleteQuietly(logDir);
+        }
+    }
+
+    /**
+     * Writes logs one second apart, one ERROR every ERROR_EVERY logs, each INFO log followed by a continuation line
+     */
+    private static void writeLogs(File file, int from, int to, boolean append) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat(LogConstants.DATE_FORMAT);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8")) {
+            for (int i = from; i < to; i++) {
+                String level = i % ERROR_EVERY == 0 ? "ERROR" : "INFO";
+                out.write(format.format(new Date(START + i * 1000L)) + " [thread-1]  " + level
+                        + "  LogFileIndexTest.java (line 1) log " + i + "\n");
+                if (!"ERROR".equals(level)) {
+                    out.write("    continuation of log " + i + "\n");
+                }
+            }
+        }
+    }
+
+    private static List<String> read(File file, LogRequest req) throws Exception {
+        LogReader reader = new LogReader(file.getAbsolutePath(), req, new LogStatusInfo(), "test");
+        List<String> logs = new ArrayList<>();
+        LogMessage log;
+        while ((log = reader.readNextLogMessage()) != null) {
+            logs.add(new String(log.getLogContent()));
+        }
+        return logs;
+    }
+
+    private static LogRequest request(int from, int to, int level) {
+        return new LogRequest.Builder().startTime(new Date(START + from * 1000L))
+                .endTime(new Date(START + to * 1000L)).logLevel(level).build();
+    }
+
+    private static long bytes(List<long[]> ranges, long length) {
+        long bytes = 0;
+        for (long[] range : ranges) {
+            bytes += Math.min(range[1], length) - range[0];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testTimeRange() throws Exception {
+        File file = new File(logDir, "timerange.log");
+        writeLogs(file, 0, LOGS, false);
+
+        List<String> logs = read(file, request(5000, 5599, LogSeverity.INFO.ordinal()));
+        Assert.assertEquals(600, logs.size());
+        Assert.assertEquals("log 5000\n    continuation of log 5000", logs.get(0));
+        Assert.assertEquals("log 5599\n    continuation of log 5599", logs.get(599));
+
+        List<long[]> ranges = LogFileIndex.getIndex(file.getAbsolutePath())
+                .getRanges(request(5000, 5599, LogSeverity.INFO.ordinal()));
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertTrue(bytes(ranges, file.length()) < file.length() / 10);
+    }
+
+    @Test
+    public void testLevel() throws Exception {
+        File file = new File(logDir, "level.log");
+        writeLogs(file, 0, LOGS, false);
+
+        List<String> logs = read(file, request(0, LOGS, LogSeverity.ERROR.ordinal()));
+        Assert.assertEquals(LOGS / ERROR_EVERY, logs.size());
+        for (int i = 0; i < logs.size(); i++) {
+            Assert.assertEquals("log " + i * ERROR_EVERY, logs.get(i));
+        }
+        List<long[]> ranges = LogFileIndex.getIndex(file.getAbsolutePath())
+                .getRanges(request(0, LOGS, LogSeverity.ERROR.ordinal()));
+        Assert.assertTrue(bytes(ranges, file.length()) < file.length() / 2);
+    }
+
+    @Test
+    public void testGrowingFile() throws Exception {
+        File file = new File(logDir, "growing.log");
+        writeLogs(file, 0, LOGS / 2, false);
+        Assert.assertEquals(100, read(file, request(LOGS / 2 - 100, LOGS, LogSeverity.INFO.ordinal())).size());
+
+        writeLogs(file, LOGS / 2, LOGS, true);
+        List<String> logs = read(file, request(LOGS / 2 - 100, LOGS / 2 + 99, LogSeverity.INFO.ordinal()));
+        Assert.assertEquals(200, logs.size());
+        Assert.assertTrue(logs.get(199).startsWith("log " + (LOGS / 2 + 99)));
+
+        // truncated and written again
+        writeLogs(file, LOGS, LOGS + 10, false);
+        logs = read(file, request(LOGS, LOGS + 10, LogSeverity.INFO.ordinal()));
+        Assert.assertEquals(10, logs.size());
+        Assert.assertTrue(logs.get(0).startsWith("log " + LOGS));
+    }
+}
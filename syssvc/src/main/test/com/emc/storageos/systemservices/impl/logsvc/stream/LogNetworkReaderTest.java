@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogACKCode;
+import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+import com.emc.storageos.systemservices.impl.logsvc.LogStatusInfo;
+import com.emc.storageos.systemservices.impl.logsvc.merger.AbstractLogStreamMerger;
+import com.emc.vipr.model.sys.logging.LogRequest;
+
+/**
+ * Merging the streams of several nodes read ahead by LogNetworkReader
+ */
+public class LogNetworkReaderTest {
+    private static final long START = 1452960000000L;
+
+    private static class Merger extends AbstractLogStreamMerger {
+        Merger(LogStream... streams) {
+            logStreamList = streams;
+            logHeads = new LogMessage[streams.length];
+            request = new LogRequest.Builder().build();
+        }
+    }
+
+    private static void writeLogs(DataOutputStream out, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            out.write(LogACKCode.ACK_LOG_ENTRY);
+            new LogMessage(START + i, ("log " + i).getBytes()).write(out);
+        }
+    }
+
+    private static InputStream stream(int from, int to, boolean fin) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeLogs(out, from, to);
+        if (fin) {
+            out.write(LogACKCode.ACK_FIN);
+        }
+        out.flush();
+        return new ByteArrayInputStream(bytes.toByteArray());
+    }
+
+    private static List<Long> merge(Merger merger) throws Exception {
+        List<Long> times = new ArrayList<>();
+        LogMessage log;
+        while ((log = merger.readNextMergedLogMessage()) != null || !merger.isFinished()) {
+            if (log != null) {
+                times.add(log.getTime());
+            }
+        }
+        return times;
+    }
+
+    private static void assertInOrder(List<Long> times, int count) {
+        Assert.assertEquals(count, times.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(START + i, times.get(i).longValue());
+        }
+    }
+
+    /**
+     * The logs of the second node are all later than the logs of the first, which arrive slowly:
+     * the second reader fills its read ahead queue and waits for the merger until the first is done.
+     */
+    @Test
+    public void testIdleReader() throws Exception {
+        final PipedOutputStream pipe = new PipedOutputStream();
+        PipedInputStream slow = new PipedInputStream(pipe, 64 * 1024);
+        LogStatusInfo status = new LogStatusInfo();
+        LogNetworkReader early = new LogNetworkReader("node1", "vipr1", slow, status);
+        LogNetworkReader late = new LogNetworkReader("node2", "vipr2", stream(3000, 8000, true), status);
+        early.startPrefetch();
+        late.startPrefetch();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    DataOutputStream out = new DataOutputStream(pipe);
+                    writeLogs(out, 0, 1500);
+                    out.flush();
+                    Thread.sleep(2000);
+                    writeLogs(out, 1500, 3000);
+                    out.write(LogACKCode.ACK_FIN);
+                    out.close();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        writer.start();
+        assertInOrder(merge(new Merger(early, late)), 8000);
+        writer.join();
+        Assert.assertTrue(status.getStatus().isEmpty());
+    }
+
+    /**
+     * A node stream ending without FIN ends the logs of that node with a status line
+     */
+    @Test
+    public void testTruncatedStream() throws Exception {
+        LogStatusInfo status = new LogStatusInfo();
+        LogNetworkReader truncated = new LogNetworkReader("node1", "vipr1", stream(0, 1000, false), status);
+        LogNetworkReader complete = new LogNetworkReader("node2", "vipr2", stream(1000, 2000, true), status);
+        truncated.startPrefetch();
+        complete.startPrefetch();
+
+        assertInOrder(merge(new Merger(truncated, complete)), 2000);
+        Assert.assertTrue(truncated.isFinished());
+        Assert.assertEquals(1, status.getStatus().size());
+        Assert.assertTrue(status.getStatus().get(0).contains("vipr1"));
+    }
+
+    /**
+     * Closing a reader ends its logs instead of blocking the merger
+     */
+    @Test(timeout = 10000)
+    public void testClosedReader() throws Exception {
+        PipedInputStream open = new PipedInputStream(new PipedOutputStream());
+        LogNetworkReader reader = new LogNetworkReader("node1", "vipr1", open, new LogStatusInfo());
+        reader.startPrefetch();
+        reader.close();
+        Assert.assertNull(reader.readNextLogMessage());
+        Assert.assertTrue(reader.isFinished());
+    }
+}